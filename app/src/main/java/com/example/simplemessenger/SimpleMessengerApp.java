@@ -10,6 +10,16 @@ import androidx.annotation.NonNull;
 import androidx.work.Configuration;
 import androidx.work.WorkManager;
 
+import com.example.SImpleMessenger.data.ContactsManager;
+import com.example.SImpleMessenger.data.EmailIndex;
+import com.example.SImpleMessenger.data.IndexBuckets;
+import com.example.SImpleMessenger.data.MessageCache;
+import com.example.SImpleMessenger.data.ReadStateBuffer;
+import com.example.SImpleMessenger.data.cleanup.OrphanIndexWorker;
+import com.example.SImpleMessenger.data.local.ContactsSnapshotStore;
+import com.example.SImpleMessenger.data.local.LocalMessageStore;
+import com.example.SImpleMessenger.data.outbox.MessageOutbox;
+import com.example.SImpleMessenger.data.search.RecipientFrecency;
 import com.example.SImpleMessenger.util.FirebaseFactory;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
@@ -40,11 +50,50 @@ public class SimpleMessengerApp extends Application implements Configuration.Pro
         // Initialize Firebase first
         initializeFirebase();
         
+        // Index layout is fixed per deployment; every client must use the same one
+        IndexBuckets.setEnabled(getResources().getBoolean(R.bool.partition_message_index));
+        
         // Then initialize CategoryManager
         CategoryManager.getInstance(this);
         
+        // Open the local message store so screens can render cached data before Firebase answers
+        LocalMessageStore.getInstance(this);
+        
+        // Whatever path signs the user out, the next account must not see their rows
+        FirebaseAuth.getInstance().addAuthStateListener(firebaseAuth -> {
+            if (firebaseAuth.getCurrentUser() == null) {
+                LocalMessageStore.getInstance().clear();
+                MessageCache.getInstance().clear();
+            }
+        });
+        
+        // Cached email-to-uid mappings let repeat sends skip the /users lookup
+        EmailIndex.getInstance(this);
+        
+        // Read the contacts saved by the last run so names resolve before Firebase answers
+        ContactsSnapshotStore.getInstance(this);
+        ContactsManager.getInstance().hydrateFromDisk();
+        
+        // Load send history so the compose screen can rank recipients right away
+        RecipientFrecency.getInstance(this);
+        
         // Initialize WorkManager
         WorkManager.initialize(this, getWorkManagerConfiguration());
+        
+        // Flush sends still queued when the app last stopped
+        MessageOutbox.getInstance(this).resume();
+        
+        // Prune index entries whose message was deleted by the other party
+        OrphanIndexWorker.schedule(this);
+    }
+    
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            // The app went to the background; write read flags now rather than risk losing them
+            ReadStateBuffer.getInstance().flush();
+        }
     }
     
     private void initializeFirebase() {
@@ -0,0 +1,325 @@
+package com.example.SImpleMessenger.data;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.SImpleMessenger.data.local.LocalMessageStore;
+import com.example.SImpleMessenger.data.model.Message;
+import com.google.firebase.database.DatabaseReference;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Applies one action to many messages of a box.
+ *
+ * The ids are split into chunks of {@link #CHUNK_SIZE}, each written as one
+ * multi-path update, with at most {@link #MAX_IN_FLIGHT} chunks outstanding. A
+ * failed chunk is retried with a growing delay; after {@link #MAX_CHUNK_ATTEMPTS}
+ * its ids are reported as failed and {@link #resume()} tries them again. Local
+ * caches are updated per chunk as it succeeds. Create through
+ * {@link DatabaseHelper#startBulkOperation}; all callbacks run on the main thread.
+ */
+public class BulkMessageOperation {
+    private static final String TAG = "BulkMessageOperation";
+    static final int CHUNK_SIZE = 100;
+    static final int MAX_IN_FLIGHT = 3;
+    static final int MAX_CHUNK_ATTEMPTS = 3;
+    static final long RETRY_DELAY_MS = 1000;
+
+    public enum Kind {
+        /**
+         * Removes the message, its body and its index entry. In the inbox only the
+         * entry is removed, since the sender's outbox still lists the message;
+         * the message and body stay until the sender deletes them, flagged so
+         * that /messages queries of the inbox skip them.
+         */
+        DELETE,
+        /** Flags the message archived and removes its index entry */
+        ARCHIVE,
+        /** Sets the read flag on the message and its inbox summary */
+        MARK_READ,
+        /** Sets the category of the message and its summary */
+        MOVE_CATEGORY
+    }
+
+    interface Scheduler {
+        void postDelayed(Runnable task, long delayMs);
+    }
+
+    public interface ProgressListener {
+        /** Called after each chunk that was written */
+        void onProgress(int completed, int total);
+
+        /**
+         * Called once no chunk is left to write
+         * @param failedIds Ids whose chunk kept failing; empty if everything was written
+         */
+        void onFinished(int completed, List<String> failedIds);
+
+        void onError(String error);
+    }
+
+    private static class Chunk {
+        final List<String> ids;
+        int attempts = 0;
+
+        Chunk(List<String> ids) {
+            this.ids = ids;
+        }
+    }
+
+    private final DatabaseReference rootRef;
+    private final Kind kind;
+    private final String ownerId;
+    private final String box;
+    private final String category;
+    private final List<String> messageIds;
+    private final ArrayDeque<Chunk> queue = new ArrayDeque<>();
+    private final List<String> failedIds = new ArrayList<>();
+    private final Scheduler scheduler;
+    private ProgressListener listener;
+    private int inFlight = 0;
+    private int completed = 0;
+    private boolean cancelled = false;
+    private boolean finished = false;
+
+    /**
+     * @param box "received", "sent" or "notes"
+     * @param category Target category for {@link Kind#MOVE_CATEGORY}, otherwise ignored
+     */
+    BulkMessageOperation(DatabaseReference rootRef, Kind kind, String ownerId, String box,
+                         List<String> messageIds, String category) {
+        this(rootRef, kind, ownerId, box, messageIds, category,
+                new Handler(Looper.getMainLooper())::postDelayed);
+    }
+
+    /**
+     * Package-private constructor for testing
+     */
+    BulkMessageOperation(DatabaseReference rootRef, Kind kind, String ownerId, String box,
+                         List<String> messageIds, String category, Scheduler scheduler) {
+        this.rootRef = rootRef;
+        this.kind = kind;
+        this.ownerId = ownerId;
+        this.box = box;
+        this.category = category;
+        this.messageIds = new ArrayList<>(messageIds);
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Splits {@code ids} into consecutive runs of at most {@code size}
+     */
+    static List<List<String>> split(List<String> ids, int size) {
+        List<List<String>> chunks = new ArrayList<>((ids.size() + size - 1) / size);
+        for (int from = 0; from < ids.size(); from += size) {
+            chunks.add(new ArrayList<>(ids.subList(from, Math.min(ids.size(), from + size))));
+        }
+        return chunks;
+    }
+
+    void start(ProgressListener listener) {
+        this.listener = listener;
+        Log.d(TAG, kind + " of " + messageIds.size() + " messages in " + box);
+        run(messageIds);
+    }
+
+    /**
+     * Tries the ids that failed in the last run again
+     */
+    public void resume() {
+        if (isRunning() || failedIds.isEmpty()) {
+            return;
+        }
+        List<String> retry = new ArrayList<>(failedIds);
+        failedIds.clear();
+        run(retry);
+    }
+
+    /**
+     * Stops sending chunks; chunks already sent still complete. The ids that were
+     * not sent are reported as failed, so {@link #resume()} picks them up.
+     */
+    public void cancel() {
+        cancelled = true;
+        while (!queue.isEmpty()) {
+            failedIds.addAll(queue.poll().ids);
+        }
+        pump();
+    }
+
+    public boolean isRunning() {
+        return !finished;
+    }
+
+    public int getTotal() {
+        return messageIds.size();
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    private void run(List<String> ids) {
+        cancelled = false;
+        finished = false;
+        for (List<String> chunkIds : split(ids, CHUNK_SIZE)) {
+            queue.add(new Chunk(chunkIds));
+        }
+        pump();
+    }
+
+    private void pump() {
+        while (!cancelled && inFlight < MAX_IN_FLIGHT && !queue.isEmpty()) {
+            inFlight++;
+            send(queue.poll());
+        }
+        if (inFlight == 0 && queue.isEmpty() && !finished) {
+            finished = true;
+            listener.onFinished(completed, new ArrayList<>(failedIds));
+        }
+    }
+
+    private void send(Chunk chunk) {
+        if (kind == Kind.MARK_READ || kind == Kind.MOVE_CATEGORY) {
+            // These write fields under the index entries, which legacy entries don't have
+            String entryBox = kind == Kind.MARK_READ ? DatabaseHelper.USER_RECEIVED_NODE : box;
+            List<String> entryPaths = new ArrayList<>(chunk.ids.size());
+            for (String messageId : chunk.ids) {
+                entryPaths.add(IndexBuckets.entryPath(ownerId, entryBox, messageId));
+            }
+            IndexEntries.findSummaries(rootRef, entryPaths, summaryPaths -> write(chunk, summaryPaths));
+        } else if (kind == Kind.DELETE && DatabaseHelper.USER_RECEIVED_NODE.equals(box)) {
+            // A flag on its own would recreate a message the sender already deleted
+            List<String> messagePaths = new ArrayList<>(chunk.ids.size());
+            for (String messageId : chunk.ids) {
+                messagePaths.add(recipientPath(messageId));
+            }
+            IndexEntries.findExisting(rootRef, messagePaths, existing -> write(chunk, existing));
+        } else {
+            write(chunk, Collections.emptyList());
+        }
+    }
+
+    private static String recipientPath(String messageId) {
+        return DatabaseHelper.MESSAGES_NODE + "/" + messageId + "/recipientId";
+    }
+
+    /**
+     * @param foundPaths Summaries to update for {@link Kind#MARK_READ} and {@link Kind#MOVE_CATEGORY},
+     *                   or the messages still there for an inbox {@link Kind#DELETE}
+     */
+    private void write(Chunk chunk, List<String> foundPaths) {
+        Map<String, Object> updates = new HashMap<>();
+        for (String messageId : chunk.ids) {
+            String messagePath = "/" + DatabaseHelper.MESSAGES_NODE + "/" + messageId;
+            String entryPath = "/" + IndexBuckets.entryPath(ownerId, box, messageId);
+            switch (kind) {
+                case DELETE:
+                    if (DatabaseHelper.USER_RECEIVED_NODE.equals(box)) {
+                        if (foundPaths.contains(recipientPath(messageId))) {
+                            updates.put(messagePath + "/" + MessagePagingSource.RECIPIENT_DELETED, true);
+                        }
+                    } else {
+                        updates.put(messagePath, null);
+                        updates.put("/" + DatabaseHelper.MESSAGE_BODIES_NODE + "/" + messageId, null);
+                    }
+                    updates.put(entryPath, null);
+                    break;
+                case ARCHIVE:
+                    updates.put(messagePath + "/archived", true);
+                    updates.put(entryPath, null);
+                    break;
+                case MARK_READ:
+                    updates.put(messagePath + "/read", true);
+                    break;
+                case MOVE_CATEGORY:
+                    updates.put(messagePath + "/category", category);
+                    break;
+            }
+        }
+        if (kind == Kind.MARK_READ || kind == Kind.MOVE_CATEGORY) {
+            for (String summaryPath : foundPaths) {
+                updates.put("/" + summaryPath + (kind == Kind.MARK_READ ? "/read" : "/category"),
+                        kind == Kind.MARK_READ ? (Object) true : category);
+            }
+        }
+
+        rootRef.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> {
+                    applyLocally(chunk.ids);
+                    completed += chunk.ids.size();
+                    inFlight--;
+                    listener.onProgress(completed, messageIds.size());
+                    pump();
+                })
+                .addOnFailureListener(e -> {
+                    chunk.attempts++;
+                    Log.e(TAG, kind + " chunk of " + chunk.ids.size() + " failed (attempt "
+                            + chunk.attempts + "): " + e.getMessage());
+                    if (chunk.attempts < MAX_CHUNK_ATTEMPTS && !cancelled) {
+                        scheduler.postDelayed(() -> {
+                            inFlight--;
+                            if (cancelled) {
+                                failedIds.addAll(chunk.ids);
+                            } else {
+                                queue.addFirst(chunk);
+                            }
+                            pump();
+                        }, RETRY_DELAY_MS << (chunk.attempts - 1));
+                    } else {
+                        failedIds.addAll(chunk.ids);
+                        inFlight--;
+                        pump();
+                    }
+                });
+    }
+
+    private void applyLocally(List<String> ids) {
+        MessageCache cache = MessageCache.getInstance();
+        LocalMessageStore localStore = LocalMessageStore.getInstance();
+        switch (kind) {
+            case DELETE:
+            case ARCHIVE:
+                for (String messageId : ids) {
+                    cache.invalidate(messageId);
+                }
+                if (localStore != null) {
+                    localStore.removeEntries(ownerId, box, ids);
+                }
+                break;
+            case MARK_READ:
+                for (String messageId : ids) {
+                    Message cached = cache.get(messageId);
+                    if (cached != null) {
+                        Message updated = new Message(cached);
+                        updated.setRead(true);
+                        cache.put(updated);
+                    }
+                    if (localStore != null) {
+                        localStore.markRead(messageId);
+                    }
+                }
+                break;
+            case MOVE_CATEGORY:
+                for (String messageId : ids) {
+                    Message cached = cache.get(messageId);
+                    if (cached != null) {
+                        Message updated = new Message(cached);
+                        updated.setCategory(category);
+                        cache.put(updated);
+                    }
+                }
+                if (localStore != null) {
+                    localStore.setCategory(ids, category);
+                }
+                break;
+        }
+    }
+}
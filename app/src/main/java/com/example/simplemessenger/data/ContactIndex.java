@@ -0,0 +1,209 @@
+package com.example.SImpleMessenger.data;
+
+import com.example.SImpleMessenger.data.model.Contact;
+
+import java.util.AbstractMap;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The contacts cache: a map keyed by contactId that also keeps secondary
+ * indexes by normalized email and by Firebase key.
+ *
+ * Writes go through {@link #put}, {@link #remove}, {@link #removeByKey},
+ * {@link #replaceContents} or {@link #clear}. They are serialized, update a
+ * private working copy, and then publish a new {@link ContactsSnapshot}. Every
+ * read goes to the current snapshot, so readers on any thread never lock, never
+ * copy and never see a half-applied change. Publishing copies the maps, so
+ * bulk loads should use {@link #replaceContents}.
+ */
+public class ContactIndex extends AbstractMap<String, Contact> {
+    // Writer-side working copy, guarded by this
+    private final Map<String, Contact> byContactId = new HashMap<>();
+    private final Map<String, String> byEmail = new HashMap<>();
+    private final Map<String, String> byKey = new HashMap<>();
+    // The email and key each contactId was indexed under, so a contact mutated in place still unindexes cleanly
+    private final Map<String, String> indexedEmail = new HashMap<>();
+    private final Map<String, String> indexedKey = new HashMap<>();
+
+    private volatile ContactsSnapshot snapshot = ContactsSnapshot.EMPTY;
+
+    static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return The current contents; never null and never modified afterwards
+     */
+    public ContactsSnapshot snapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public synchronized Contact put(String contactId, Contact contact) {
+        Contact current = byContactId.get(contactId);
+        if (current != null && current != contact && sameContent(current, contact)) {
+            // A re-delivered copy (e.g. onChildAdded replaying the list); skip the copy and publish
+            return current;
+        }
+        Contact previous = putInternal(contactId, contact);
+        publish();
+        return previous;
+    }
+
+    @Override
+    public synchronized Contact remove(Object contactId) {
+        Contact removed = removeInternal(contactId);
+        if (removed != null) {
+            publish();
+        }
+        return removed;
+    }
+
+    /**
+     * Removes the contact stored under Firebase key {@code key}
+     */
+    public synchronized Contact removeByKey(String key) {
+        String contactId = key == null ? null : byKey.get(key);
+        return contactId == null ? null : remove(contactId);
+    }
+
+    @Override
+    public synchronized void clear() {
+        clearInternal();
+        publish();
+    }
+
+    /**
+     * Swaps the whole cache for {@code contacts} (keyed by contactId) as one change
+     */
+    public synchronized void replaceContents(Collection<Contact> contacts) {
+        clearInternal();
+        for (Contact contact : contacts) {
+            putInternal(contact.getContactId(), contact);
+        }
+        publish();
+    }
+
+    @Override
+    public Contact get(Object contactId) {
+        return snapshot.asMap().get(contactId);
+    }
+
+    @Override
+    public boolean containsKey(Object contactId) {
+        return snapshot.asMap().containsKey(contactId);
+    }
+
+    @Override
+    public int size() {
+        return snapshot.size();
+    }
+
+    /**
+     * @return The contact with this email, ignoring case and surrounding whitespace
+     */
+    public Contact getByEmail(String email) {
+        return snapshot.getByEmail(email);
+    }
+
+    /**
+     * @return The contact stored under Firebase key {@code key}
+     */
+    public Contact getByKey(String key) {
+        return snapshot.getByKey(key);
+    }
+
+    /**
+     * @return Every contact's email address; the same list is returned until the cache changes
+     */
+    public List<String> emails() {
+        return snapshot.getEmails();
+    }
+
+    /**
+     * @return Every contact; the same read-only list is returned until the cache changes
+     */
+    @Override
+    public List<Contact> values() {
+        return snapshot.getContacts();
+    }
+
+    /**
+     * Read-only view of the current snapshot
+     */
+    @Override
+    public Set<Entry<String, Contact>> entrySet() {
+        return snapshot.asMap().entrySet();
+    }
+
+    private static boolean sameContent(Contact a, Contact b) {
+        return Objects.equals(a.getId(), b.getId())
+                && Objects.equals(a.getContactId(), b.getContactId())
+                && Objects.equals(a.getUserId(), b.getUserId())
+                && Objects.equals(a.getEmailAddress(), b.getEmailAddress())
+                && Objects.equals(a.getDisplayName(), b.getDisplayName())
+                && Objects.equals(a.getUserName(), b.getUserName())
+                && a.getTimestamp() == b.getTimestamp()
+                && a.isCustomName() == b.isCustomName();
+    }
+
+    private void publish() {
+        snapshot = new ContactsSnapshot(snapshot.getVersion() + 1,
+                new HashMap<>(byContactId), new HashMap<>(byEmail), new HashMap<>(byKey));
+    }
+
+    private Contact putInternal(String contactId, Contact contact) {
+        Contact previous = byContactId.put(contactId, contact);
+        if (previous != null) {
+            unindex(contactId);
+        }
+        index(contactId, contact);
+        return previous;
+    }
+
+    private Contact removeInternal(Object contactId) {
+        Contact removed = byContactId.remove(contactId);
+        if (removed != null) {
+            unindex((String) contactId);
+        }
+        return removed;
+    }
+
+    private void clearInternal() {
+        byContactId.clear();
+        byEmail.clear();
+        byKey.clear();
+        indexedEmail.clear();
+        indexedKey.clear();
+    }
+
+    private void index(String contactId, Contact contact) {
+        String email = normalizeEmail(contact.getEmailAddress());
+        if (email != null && !email.isEmpty()) {
+            byEmail.put(email, contactId);
+            indexedEmail.put(contactId, email);
+        }
+        if (contact.getId() != null && !contact.getId().isEmpty()) {
+            byKey.put(contact.getId(), contactId);
+            indexedKey.put(contactId, contact.getId());
+        }
+    }
+
+    private void unindex(String contactId) {
+        // Only drop index entries that still point at this contact
+        String email = indexedEmail.remove(contactId);
+        if (email != null && contactId.equals(byEmail.get(email))) {
+            byEmail.remove(email);
+        }
+        String key = indexedKey.remove(contactId);
+        if (key != null && contactId.equals(byKey.get(key))) {
+            byKey.remove(key);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.SImpleMessenger.data;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.SImpleMessenger.data.model.Contact;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Batches uid-to-contact lookups.
+ *
+ * Requests arriving within {@link #BATCH_WINDOW_MS} of each other form one
+ * batch. Duplicate and already-cached uids are dropped, the rest are fetched
+ * through {@link ContactsManager#fetchAndCreateContact} with at most
+ * {@link #MAX_PARALLEL_FETCHES} in flight, and when the whole batch is done
+ * each distinct callback runs once. Callers pass the same Runnable instance
+ * for every row they want refreshed together. All methods run on the main thread.
+ */
+public class ContactResolver {
+    private static final String TAG = "ContactResolver";
+    static final long BATCH_WINDOW_MS = 30;
+    static final int MAX_PARALLEL_FETCHES = 4;
+    private static ContactResolver instance;
+
+    private final ContactsManager contactsManager;
+    private final Handler handler;
+
+    private final Set<String> queuedUids = new LinkedHashSet<>();
+    private final Set<Runnable> queuedCallbacks = new LinkedHashSet<>();
+    private boolean flushScheduled = false;
+    private long batchCount = 0;
+    private long fetchCount = 0;
+
+    public static synchronized ContactResolver getInstance() {
+        if (instance == null) {
+            instance = new ContactResolver(ContactsManager.getInstance(), new Handler(Looper.getMainLooper()));
+        }
+        return instance;
+    }
+
+    /**
+     * Package-private constructor for testing
+     */
+    ContactResolver(ContactsManager contactsManager, Handler handler) {
+        this.contactsManager = contactsManager;
+        this.handler = handler;
+    }
+
+    /**
+     * Queues {@code uid} for the next batch
+     * @param onBatchResolved Runs once when the batch containing {@code uid} has settled,
+     *                        whether or not the lookup succeeded; read results from ContactsManager
+     */
+    public void resolve(String uid, Runnable onBatchResolved) {
+        if (uid == null || uid.isEmpty()) {
+            return;
+        }
+        queuedUids.add(uid);
+        if (onBatchResolved != null) {
+            queuedCallbacks.add(onBatchResolved);
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            handler.postDelayed(this::flush, BATCH_WINDOW_MS);
+        }
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        ArrayDeque<String> toFetch = new ArrayDeque<>();
+        for (String uid : queuedUids) {
+            if (contactsManager.getContactById(uid) == null) {
+                toFetch.add(uid);
+            }
+        }
+        List<Runnable> callbacks = new ArrayList<>(queuedCallbacks);
+        queuedUids.clear();
+        queuedCallbacks.clear();
+
+        batchCount++;
+        Log.d(TAG, "Batch " + batchCount + ": fetching " + toFetch.size() + " contacts for "
+                + callbacks.size() + " subscribers");
+        new Batch(toFetch, callbacks).start();
+    }
+
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    public long getFetchCount() {
+        return fetchCount;
+    }
+
+    /** One flushed batch; fetches its uids with bounded parallelism */
+    private class Batch {
+        private final ArrayDeque<String> pending;
+        private final List<Runnable> callbacks;
+        private int inFlight = 0;
+
+        Batch(ArrayDeque<String> pending, List<Runnable> callbacks) {
+            this.pending = pending;
+            this.callbacks = callbacks;
+        }
+
+        void start() {
+            if (pending.isEmpty()) {
+                finish();
+                return;
+            }
+            while (inFlight < MAX_PARALLEL_FETCHES && !pending.isEmpty()) {
+                fetch(pending.poll());
+            }
+        }
+
+        private void fetch(String uid) {
+            inFlight++;
+            fetchCount++;
+            final boolean[] settled = {false};
+            contactsManager.fetchAndCreateContact(uid, new ContactsManager.ContactsLoadListener() {
+                @Override
+                public void onContactAdded(Contact contact) {
+                    if (!settled[0]) {
+                        settled[0] = true;
+                        onFetchDone();
+                    }
+                }
+
+                @Override
+                public void onContactsLoaded(List<Contact> contacts) {
+                    // Not used in this context
+                }
+
+                @Override
+                public void onContactRemoved(Contact contact) {
+                    // Not used in this context
+                }
+
+                @Override
+                public void onError(String error) {
+                    Log.e(TAG, "Error resolving " + uid + ": " + error);
+                    if (!settled[0]) {
+                        settled[0] = true;
+                        onFetchDone();
+                    }
+                }
+            });
+        }
+
+        private void onFetchDone() {
+            inFlight--;
+            if (!pending.isEmpty()) {
+                fetch(pending.poll());
+            } else if (inFlight == 0) {
+                finish();
+            }
+        }
+
+        private void finish() {
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+        }
+    }
+}
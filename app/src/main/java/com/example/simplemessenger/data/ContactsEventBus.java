@@ -0,0 +1,127 @@
+package com.example.SImpleMessenger.data;
+
+import com.example.SImpleMessenger.data.model.Contact;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Fans contact events out to every subscribed {@link ContactsManager.ContactsLoadListener}.
+ *
+ * Subscribers are held strongly or weakly; a weak subscriber is dropped once its
+ * listener is garbage collected. Dispatch iterates over a copy, so a listener may
+ * subscribe or unsubscribe from inside a callback.
+ */
+class ContactsEventBus {
+
+    private static final class Subscriber {
+        final ContactsManager.ContactsLoadListener strong;
+        final WeakReference<ContactsManager.ContactsLoadListener> weak;
+
+        Subscriber(ContactsManager.ContactsLoadListener listener, boolean weakly) {
+            this.strong = weakly ? null : listener;
+            this.weak = weakly ? new WeakReference<>(listener) : null;
+        }
+
+        ContactsManager.ContactsLoadListener get() {
+            return strong != null ? strong : weak.get();
+        }
+    }
+
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return False if {@code listener} was already subscribed
+     */
+    synchronized boolean add(ContactsManager.ContactsLoadListener listener, boolean weakly) {
+        if (listener == null || contains(listener)) {
+            return false;
+        }
+        subscribers.add(new Subscriber(listener, weakly));
+        return true;
+    }
+
+    synchronized boolean remove(ContactsManager.ContactsLoadListener listener) {
+        for (Subscriber subscriber : subscribers) {
+            ContactsManager.ContactsLoadListener current = subscriber.get();
+            if (current == null || current == listener) {
+                subscribers.remove(subscriber);
+                if (current == listener) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    synchronized boolean contains(ContactsManager.ContactsLoadListener listener) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.get() == listener) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The number of live subscribers
+     */
+    int size() {
+        int size = 0;
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.get() != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    void clear() {
+        subscribers.clear();
+    }
+
+    void contactsLoaded(List<Contact> contacts) {
+        for (Subscriber subscriber : subscribers) {
+            ContactsManager.ContactsLoadListener listener = live(subscriber);
+            if (listener != null) {
+                listener.onContactsLoaded(contacts);
+            }
+        }
+    }
+
+    void contactAdded(Contact contact) {
+        for (Subscriber subscriber : subscribers) {
+            ContactsManager.ContactsLoadListener listener = live(subscriber);
+            if (listener != null) {
+                listener.onContactAdded(contact);
+            }
+        }
+    }
+
+    void contactRemoved(Contact contact) {
+        for (Subscriber subscriber : subscribers) {
+            ContactsManager.ContactsLoadListener listener = live(subscriber);
+            if (listener != null) {
+                listener.onContactRemoved(contact);
+            }
+        }
+    }
+
+    void error(String error) {
+        for (Subscriber subscriber : subscribers) {
+            ContactsManager.ContactsLoadListener listener = live(subscriber);
+            if (listener != null) {
+                listener.onError(error);
+            }
+        }
+    }
+
+    private ContactsManager.ContactsLoadListener live(Subscriber subscriber) {
+        ContactsManager.ContactsLoadListener listener = subscriber.get();
+        if (listener == null) {
+            subscribers.remove(subscriber);
+        }
+        return listener;
+    }
+}
@@ -3,10 +3,16 @@ package com.example.SImpleMessenger.data;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
 
 import com.example.SImpleMessenger.util.FirebaseFactory;
 import com.example.SImpleMessenger.util.LogWrapper;
 
+import com.example.SImpleMessenger.data.codec.ContactCodec;
+import com.example.SImpleMessenger.data.local.ContactsSnapshotStore;
+import com.example.SImpleMessenger.data.local.LocalMessageStore;
 import com.example.SImpleMessenger.data.model.Contact;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
@@ -14,6 +20,8 @@ import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ServerValue;
 import com.google.firebase.database.ValueEventListener;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
@@ -35,13 +43,32 @@ public class ContactsManager {
 
     private static final String TAG = "ContactsManager";
     private static final String CONTACTS_NODE = "user-contacts";
+    // Download everything at least this often. Removals reach delta syncs as tombstones,
+    // which are purged once every device must have done a full listing since
+    static final long FULL_SYNC_INTERVAL_MS = 24L * 60 * 60 * 1000;
+    // Contacts written before timestamps came from the server carry device clocks;
+    // re-read this much before the watermark
+    static final long WATERMARK_SKEW_MS = 5L * 60 * 1000;
     private static ContactsManager instance;
     private final DatabaseReference databaseReference;
     private final FirebaseAuth auth;
-    private final Map<String, Contact> contactsCache = new HashMap<>();
+    private final ContactIndex contactsCache = new ContactIndex();
     private final LogWrapper log;
-    private ContactsLoadListener loadListener;
-    private ContactsLoadListener previousListener;
+    // Every screen subscribes here; one set of Firebase listeners feeds them all
+    private final ContactsEventBus events = new ContactsEventBus();
+    // Subscribed through the deprecated setLoadListener()
+    private ContactsLoadListener legacyListener;
+    // Whose contacts the Firebase listeners are attached to
+    private String listeningUserId;
+    // Set once a full listing or a delta sync on top of the disk snapshot is in place
+    private boolean contactsLoaded = false;
+    // Sync state saved with the on-disk snapshot; see hydrateFromDisk()
+    private String hydratedOwnerId;
+    private long syncWatermark = 0;
+    private long lastFullSyncAt = 0;
+    private long savedVersion = -1;
+    // Callbacks waiting on a fetchAndCreateContact run, keyed by the uid or email looked up
+    private final Map<String, List<ContactsLoadListener>> pendingContactFetches = new HashMap<>();
 
     public interface ContactsLoadListener {
         void onContactsLoaded(List<Contact> contacts);
@@ -79,33 +106,78 @@ public class ContactsManager {
         return instance;
     }
 
-    public ContactsLoadListener getLoadListener() {
-        return loadListener;
+    /**
+     * Subscribes {@code listener} until {@code owner} is destroyed. If contacts are
+     * already loaded the listener gets them right away through onContactsLoaded.
+     * Call from the main thread.
+     */
+    public void subscribe(LifecycleOwner owner, ContactsLoadListener listener) {
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            return;
+        }
+        if (!events.add(listener, false)) {
+            return;
+        }
+        owner.getLifecycle().addObserver(new DefaultLifecycleObserver() {
+            @Override
+            public void onDestroy(@NonNull LifecycleOwner source) {
+                source.getLifecycle().removeObserver(this);
+                events.remove(listener);
+            }
+        });
+        replay(listener);
     }
 
-    public void setLoadListener(ContactsLoadListener listener) {
-        Log.d(TAG, "setLoadListener called with listener: " + (listener != null ? listener.getClass().getSimpleName() : "null"));
-        
-        // Store the previous listener before replacing it
-        previousListener = loadListener;
-        this.loadListener = listener;
-        
-        // If we have cached contacts and a new listener is set, notify the new listener
-        if (listener != null && !contactsCache.isEmpty()) {
-            Log.d(TAG, "Notifying new listener with " + contactsCache.size() + " cached contacts");
-            listener.onContactsLoaded(new ArrayList<>(contactsCache.values()));
-        } else if (listener != null) {
-            Log.d(TAG, "No cached contacts to notify new listener");
+    /**
+     * Subscribes {@code listener} weakly: it stays subscribed until
+     * {@link #unsubscribe} or until nothing else references it, so the caller must
+     * keep a reference. If contacts are already loaded the listener gets them right
+     * away through onContactsLoaded. Call from the main thread.
+     */
+    public void subscribe(ContactsLoadListener listener) {
+        if (events.add(listener, true)) {
+            replay(listener);
         }
     }
 
-    public void clearPreviousListener() {
-        // Clear the previous listener to prevent memory leaks
-        previousListener = null;
+    public void unsubscribe(ContactsLoadListener listener) {
+        events.remove(listener);
+        if (listener == legacyListener) {
+            legacyListener = null;
+        }
+    }
+
+    private void replay(ContactsLoadListener listener) {
+        if (contactsLoaded || !contactsCache.isEmpty()) {
+            Log.d(TAG, "Replaying " + contactsCache.size() + " contacts to new subscriber");
+            listener.onContactsLoaded(contactsCache.values());
+        }
+    }
+
+    /**
+     * Replaces the listener set by the previous call, holding it strongly.
+     * @deprecated Use {@link #subscribe(LifecycleOwner, ContactsLoadListener)},
+     *             which lets several screens listen at once
+     */
+    @Deprecated
+    public void setLoadListener(ContactsLoadListener listener) {
+        if (legacyListener != null) {
+            events.remove(legacyListener);
+        }
+        legacyListener = listener;
+        if (listener != null && events.add(listener, false)) {
+            replay(listener);
+        }
     }
 
     private ValueEventListener contactListener;
     private ChildEventListener contactChildListener;
+    // What contactChildListener is attached to: the contacts node, or a watermark query on it
+    private Query contactChildQuery;
+    // True while a full listing is loading; the child listener's replay of the
+    // existing contacts is skipped because the value listener stores them in one step.
+    // Cleared when the listing arrives or fails
+    private boolean childReplayPending = false;
 
     public void initializeContacts() {
         Log.d(TAG, "initializeContacts() called");
@@ -114,58 +186,108 @@ public class ContactsManager {
         if (currentUserId == null) {
             String errorMsg = "User not authenticated in initializeContacts()";
             Log.e(TAG, errorMsg);
-            if (loadListener != null) {
-                loadListener.onError(errorMsg);
-            }
+            events.error(errorMsg);
             return;
         }
         
         Log.d(TAG, "initializeContacts: Current user ID: " + currentUserId);
         
+        // Listeners that are already attached keep the cache current, and
+        // subscribers got the cached contacts when they subscribed
+        if (contactChildListener != null && currentUserId.equals(listeningUserId)) {
+            Log.d(TAG, "initializeContacts: Already listening, " + contactsCache.size() + " cached contacts");
+            return;
+        }
+        
         // Clean up any existing listeners to prevent duplicates
         cleanupListeners();
+        if (listeningUserId != null && !currentUserId.equals(listeningUserId)) {
+            // Another account signed in since the listeners were attached
+            contactsCache.clear();
+            contactsLoaded = false;
+        }
+        listeningUserId = currentUserId;
         
-        // If we have cached contacts, notify immediately
-        if (!contactsCache.isEmpty()) {
-            Log.d(TAG, "initializeContacts: Using " + contactsCache.size() + " cached contacts");
-            if (loadListener != null) {
-                loadListener.onContactsLoaded(new ArrayList<>(contactsCache.values()));
-            }
-            return;
+        LocalMessageStore localStore = LocalMessageStore.getInstance();
+        boolean deltaSync = currentUserId.equals(hydratedOwnerId) && syncWatermark > 0
+                && System.currentTimeMillis() - lastFullSyncAt < FULL_SYNC_INTERVAL_MS;
+
+        // Without a snapshot file, show the contacts stored in Room while the remote listing loads
+        if (localStore != null && contactsCache.isEmpty()) {
+            localStore.loadContacts(currentUserId, storedContacts -> {
+                if (!contactsCache.isEmpty() || storedContacts.isEmpty()) {
+                    return;
+                }
+                Log.d(TAG, "initializeContacts: Using " + storedContacts.size() + " stored contacts");
+                contactsCache.replaceContents(storedContacts);
+                events.contactsLoaded(contactsCache.values());
+            });
         }
 
         // First load existing contacts
         Log.d(TAG, "Setting up contact listener for user: " + currentUserId);
+        DatabaseReference contactsRef = databaseReference.child(CONTACTS_NODE).child(currentUserId);
         contactListener = new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
                 Log.d(TAG, "onDataChange called with " + dataSnapshot.getChildrenCount() + " contacts");
-                contactsCache.clear();
+                List<Contact> loaded = new ArrayList<>((int) dataSnapshot.getChildrenCount());
+                Map<String, Object> expiredTombstones = new HashMap<>();
+                long tombstoneCutoff = System.currentTimeMillis() - FULL_SYNC_INTERVAL_MS - WATERMARK_SKEW_MS;
                 for (DataSnapshot contactSnapshot : dataSnapshot.getChildren()) {
-                    Contact contact = contactSnapshot.getValue(Contact.class);
+                    if (ContactCodec.isDeleted(contactSnapshot)) {
+                        if (ContactCodec.timestampOf(contactSnapshot) < tombstoneCutoff) {
+                            expiredTombstones.put(contactSnapshot.getKey(), null);
+                        }
+                        continue;
+                    }
+                    Contact contact = ContactCodec.decode(contactSnapshot);
                     if (contact != null) {
                         contact.setId(contactSnapshot.getKey());
-                        contactsCache.put(contact.getContactId(), contact);
-                        
-                        // Notify listener about each contact
-                        if (loadListener != null) {
-                            loadListener.onContactAdded(contact);
-                        }
+                        loaded.add(contact);
                     }
                 }
+                if (!expiredTombstones.isEmpty()) {
+                    contactsRef.updateChildren(expiredTombstones);
+                }
+                // Swap the cache and its indexes in one step
+                contactsCache.replaceContents(loaded);
+                childReplayPending = false;
+                syncWatermark = 0;
+                for (Contact contact : loaded) {
+                    syncWatermark = Math.max(syncWatermark, contact.getTimestamp());
+                }
+                lastFullSyncAt = System.currentTimeMillis();
+                hydratedOwnerId = currentUserId;
+                contactsLoaded = true;
+                saveSnapshot(currentUserId);
                 
-                // Notify about all contacts loaded
-                if (loadListener != null) {
-                    loadListener.onContactsLoaded(new ArrayList<>(contactsCache.values()));
+                // Notify listener about each contact
+                for (Contact contact : loaded) {
+                    events.contactAdded(contact);
                 }
+                
+                if (localStore != null) {
+                    localStore.putContacts(currentUserId, contactsCache.values());
+                }
+                
+                // Notify about all contacts loaded
+                events.contactsLoaded(contactsCache.values());
                 log.d(TAG, "Loaded " + contactsCache.size() + " contacts for user");
             }
 
             @Override
             public void onCancelled(@NonNull DatabaseError databaseError) {
-                if (loadListener != null) {
-                    loadListener.onError(databaseError.getMessage());
+                events.error(databaseError.getMessage());
+                if (contactListener != this || contactChildListener == null) {
+                    // Replaced or cleaned up since
+                    return;
                 }
+                // The listing won't come; re-attach the child listener so its replay
+                // of the existing contacts is applied instead of skipped
+                childReplayPending = false;
+                contactChildQuery.removeEventListener(contactChildListener);
+                contactChildQuery.addChildEventListener(contactChildListener);
             }
         };
 
@@ -173,36 +295,68 @@ public class ContactsManager {
         contactChildListener = new ChildEventListener() {
             @Override
             public void onChildAdded(@NonNull DataSnapshot dataSnapshot, @Nullable String previousChildName) {
-                Contact contact = dataSnapshot.getValue(Contact.class);
+                if (childReplayPending) {
+                    return;
+                }
+                if (ContactCodec.isDeleted(dataSnapshot)) {
+                    applyTombstone(currentUserId, dataSnapshot);
+                    return;
+                }
+                Contact contact = ContactCodec.decode(dataSnapshot);
                 if (contact != null) {
                     contact.setId(dataSnapshot.getKey());
                     contactsCache.put(contact.getContactId(), contact);
-                    if (loadListener != null) {
-                        loadListener.onContactAdded(contact);
+                    syncWatermark = Math.max(syncWatermark, contact.getTimestamp());
+                    saveSnapshot(currentUserId);
+                    if (localStore != null) {
+                        localStore.putContact(currentUserId, contact);
                     }
+                    events.contactAdded(contact);
                 }
             }
 
             @Override
             public void onChildChanged(@NonNull DataSnapshot dataSnapshot, @Nullable String previousChildName) {
-                Contact contact = dataSnapshot.getValue(Contact.class);
+                if (childReplayPending) {
+                    return;
+                }
+                if (ContactCodec.isDeleted(dataSnapshot)) {
+                    applyTombstone(currentUserId, dataSnapshot);
+                    return;
+                }
+                Contact contact = ContactCodec.decode(dataSnapshot);
                 if (contact != null) {
                     contact.setId(dataSnapshot.getKey());
                     contactsCache.put(contact.getContactId(), contact);
-                    if (loadListener != null) {
-                        loadListener.onContactAdded(contact);
+                    syncWatermark = Math.max(syncWatermark, contact.getTimestamp());
+                    saveSnapshot(currentUserId);
+                    if (localStore != null) {
+                        localStore.putContact(currentUserId, contact);
                     }
+                    events.contactAdded(contact);
                 }
             }
 
             @Override
             public void onChildRemoved(@NonNull DataSnapshot dataSnapshot) {
-                Contact contact = dataSnapshot.getValue(Contact.class);
+                if (childReplayPending) {
+                    return;
+                }
+                Contact contact = ContactCodec.decode(dataSnapshot);
                 if (contact != null) {
-                    contactsCache.remove(contact.getContactId());
-                    if (loadListener != null) {
-                        loadListener.onContactRemoved(contact);
+                    Contact removed = contactsCache.removeByKey(dataSnapshot.getKey());
+                    if (removed == null) {
+                        removed = contactsCache.remove(contact.getContactId());
+                    }
+                    if (removed == null) {
+                        // Already dropped locally by removeContact()
+                        return;
                     }
+                    saveSnapshot(currentUserId);
+                    if (localStore != null) {
+                        localStore.removeContact(currentUserId, contact.getContactId());
+                    }
+                    events.contactRemoved(contact);
                 }
             }
 
@@ -213,17 +367,81 @@ public class ContactsManager {
 
             @Override
             public void onCancelled(@NonNull DatabaseError databaseError) {
-                if (loadListener != null) {
-                    loadListener.onError(databaseError.getMessage());
-                }
+                events.error(databaseError.getMessage());
             }
         };
 
-        // Add both listeners
-        databaseReference.child(CONTACTS_NODE).child(currentUserId)
-                .addListenerForSingleValueEvent(contactListener);
-        databaseReference.child(CONTACTS_NODE).child(currentUserId)
-                .addChildEventListener(contactChildListener);
+        if (deltaSync) {
+            // Only contacts written since the watermark; the rest came from disk
+            Log.d(TAG, "initializeContacts: Syncing contacts changed since " + syncWatermark);
+            contactListener = null;
+            contactChildQuery = contactsRef.orderByChild("timestamp").startAt(syncWatermark - WATERMARK_SKEW_MS);
+            childReplayPending = false;
+            contactChildQuery.addChildEventListener(contactChildListener);
+            // Subscribers already got the hydrated contacts when they subscribed
+            contactsLoaded = true;
+        } else {
+            // Add both listeners. Firebase raises the child listener's initial onChildAdded
+            // calls before the value event, which already holds all of those contacts
+            childReplayPending = true;
+            contactsRef.addListenerForSingleValueEvent(contactListener);
+            contactChildQuery = contactsRef;
+            contactChildQuery.addChildEventListener(contactChildListener);
+        }
+    }
+
+    /**
+     * Drops the contact a tombstone stands for, if it is still cached
+     */
+    private void applyTombstone(String ownerId, DataSnapshot tombstone) {
+        syncWatermark = Math.max(syncWatermark, ContactCodec.timestampOf(tombstone));
+        Contact removed = contactsCache.removeByKey(tombstone.getKey());
+        if (removed == null) {
+            removed = contactsCache.remove(tombstone.getKey());
+        }
+        if (removed == null) {
+            // Already dropped locally by removeContact()
+            return;
+        }
+        saveSnapshot(ownerId);
+        LocalMessageStore localStore = LocalMessageStore.getInstance();
+        if (localStore != null) {
+            localStore.removeContact(ownerId, removed.getContactId());
+        }
+        events.contactRemoved(removed);
+    }
+
+    /**
+     * Fills the cache from the on-disk snapshot of the signed-in user's contacts.
+     * Reads the file on the calling thread; meant to run once at startup so names
+     * resolve before Firebase answers.
+     */
+    public void hydrateFromDisk() {
+        ContactsSnapshotStore store = ContactsSnapshotStore.getInstance();
+        FirebaseUser user = auth.getCurrentUser();
+        if (store == null || user == null || !contactsCache.isEmpty()) {
+            return;
+        }
+        ContactsSnapshotStore.Stored stored = store.load(user.getUid());
+        if (stored == null) {
+            return;
+        }
+        contactsCache.replaceContents(stored.contacts);
+        hydratedOwnerId = stored.ownerId;
+        syncWatermark = stored.watermark;
+        lastFullSyncAt = stored.lastFullSyncAt;
+        savedVersion = contactsCache.snapshot().getVersion();
+        Log.d(TAG, "Hydrated " + contactsCache.size() + " contacts from disk");
+    }
+
+    private void saveSnapshot(String ownerId) {
+        ContactsSnapshotStore store = ContactsSnapshotStore.getInstance();
+        ContactsSnapshot snapshot = contactsCache.snapshot();
+        if (store == null || snapshot.getVersion() == savedVersion) {
+            return;
+        }
+        savedVersion = snapshot.getVersion();
+        store.save(ownerId, snapshot.getContacts(), syncWatermark, lastFullSyncAt);
     }
 
     public void cleanupContacts() {
@@ -232,8 +450,9 @@ public class ContactsManager {
             contactListener = null;
         }
         if (contactChildListener != null) {
-            databaseReference.removeEventListener(contactChildListener);
+            (contactChildQuery != null ? contactChildQuery : databaseReference).removeEventListener(contactChildListener);
             contactChildListener = null;
+            contactChildQuery = null;
         }
     }
 
@@ -251,6 +470,65 @@ public class ContactsManager {
      * @param callback Callback to handle the result
      */
     public void fetchAndCreateContact(String userIdOrEmail, final ContactsLoadListener callback) {
+        if (userIdOrEmail == null || userIdOrEmail.isEmpty()) {
+            doFetchAndCreateContact(userIdOrEmail, callback);
+            return;
+        }
+        
+        // Users that recently had no /users record are not queried again until their backoff expires
+        if (getContactById(userIdOrEmail) == null
+                && NegativeLookupCache.getInstance().isKnownMissing(userIdOrEmail)) {
+            Log.d(TAG, "[fetchAndCreateContact] Skipping known-missing user: " + userIdOrEmail);
+            callback.onError("No user found with this email");
+            return;
+        }
+        
+        // Concurrent lookups of the same user (list rows, detail screen, loader) share one run
+        List<ContactsLoadListener> waiters = pendingContactFetches.get(userIdOrEmail);
+        if (waiters != null) {
+            Log.d(TAG, "[fetchAndCreateContact] Joining in-flight lookup for: " + userIdOrEmail);
+            waiters.add(callback);
+            SingleFlight.getInstance().countSharedRead();
+            return;
+        }
+        final List<ContactsLoadListener> newWaiters = new ArrayList<>();
+        newWaiters.add(callback);
+        pendingContactFetches.put(userIdOrEmail, newWaiters);
+        
+        doFetchAndCreateContact(userIdOrEmail, new ContactsLoadListener() {
+            @Override
+            public void onContactsLoaded(List<Contact> contacts) {
+                for (ContactsLoadListener waiter : newWaiters) {
+                    waiter.onContactsLoaded(contacts);
+                }
+            }
+
+            @Override
+            public void onContactAdded(Contact contact) {
+                pendingContactFetches.remove(userIdOrEmail);
+                for (ContactsLoadListener waiter : newWaiters) {
+                    waiter.onContactAdded(contact);
+                }
+            }
+
+            @Override
+            public void onContactRemoved(Contact contact) {
+                for (ContactsLoadListener waiter : newWaiters) {
+                    waiter.onContactRemoved(contact);
+                }
+            }
+
+            @Override
+            public void onError(String error) {
+                pendingContactFetches.remove(userIdOrEmail);
+                for (ContactsLoadListener waiter : newWaiters) {
+                    waiter.onError(error);
+                }
+            }
+        });
+    }
+    
+    private void doFetchAndCreateContact(String userIdOrEmail, final ContactsLoadListener callback) {
         Log.d(TAG, "[fetchAndCreateContact] Starting lookup for: " + userIdOrEmail);
         
         if (userIdOrEmail == null || userIdOrEmail.isEmpty()) {
@@ -277,8 +555,8 @@ public class ContactsManager {
         
         if (isUidPattern) {
             Log.d(TAG, "[fetchAndCreateContact] 4. Checking users node for UID: " + userIdOrEmail);
-            databaseReference.child("users").child(userIdOrEmail)
-                .addListenerForSingleValueEvent(new ValueEventListener() {
+            SingleFlight.getInstance().read(databaseReference.child("users").child(userIdOrEmail),
+                new ValueEventListener() {
                     @Override
                     public void onDataChange(@NonNull DataSnapshot userSnapshot) {
                         Log.d(TAG, "[fetchAndCreateContact] 5. UID lookup result - exists: " + userSnapshot.exists());
@@ -293,6 +571,7 @@ public class ContactsManager {
                             
                             if (email != null && !email.isEmpty()) {
                                 Log.d(TAG, "[fetchAndCreateContact] 7. Adding contact from UID lookup");
+                                NegativeLookupCache.getInstance().recordFound(userIdOrEmail);
                                 addContact(uid, name != null ? name : email, email, new DatabaseCallback() {
                                     @Override
                                     public void onSuccess(Object result) {
@@ -350,72 +629,64 @@ public class ContactsManager {
             return;
         }
 
+        EmailIndex emailIndex = EmailIndex.getInstance();
+        if (emailIndex != null && email.contains("@")) {
+            // /email-index read (or local cache hit) instead of a query over /users
+            Log.d(TAG, "3. Resolving email through the email index: " + email);
+            emailIndex.resolve(email, new EmailIndex.ResolveCallback() {
+                @Override
+                public void onResolved(String uid) {
+                    SingleFlight.getInstance().read(databaseReference.child("users").child(uid),
+                        new ValueEventListener() {
+                            @Override
+                            public void onDataChange(@NonNull DataSnapshot userSnapshot) {
+                                if (userSnapshot.exists()) {
+                                    onUserFound(userSnapshot, email, callback);
+                                } else {
+                                    // The mapping outlived the account
+                                    emailIndex.forget(email);
+                                    NegativeLookupCache.getInstance().recordMiss(email);
+                                    callback.onError("No user found with this email");
+                                }
+                            }
+
+                            @Override
+                            public void onCancelled(@NonNull DatabaseError databaseError) {
+                                callback.onError("Error looking up user in database: " + databaseError.getMessage());
+                            }
+                        });
+                }
+
+                @Override
+                public void onNotFound() {
+                    Log.d(TAG, "13. No user found in database with email: " + email);
+                    NegativeLookupCache.getInstance().recordMiss(email);
+                    callback.onError("No user found with this email");
+                }
+
+                @Override
+                public void onError(String error) {
+                    callback.onError("Error looking up user in database: " + error);
+                }
+            });
+            return;
+        }
+
         Log.d(TAG, "3. Checking database for user with email: " + email.toLowerCase());
-        databaseReference.child("users")
+        SingleFlight.getInstance().read(databaseReference.child("users")
             .orderByChild("email")
-            .equalTo(email.toLowerCase())
-            .addListenerForSingleValueEvent(new ValueEventListener() {
+            .equalTo(email.toLowerCase()), "users?email=" + email.toLowerCase(), new ValueEventListener() {
                 @Override
                 public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
                     Log.d(TAG, "4. Database query completed. Data exists: " + dataSnapshot.exists() + 
                         ", has children: " + dataSnapshot.hasChildren());
                         
                     if (dataSnapshot.exists() && dataSnapshot.hasChildren()) {
-                        try {
-                            // Get the first user with this email (should be only one)
-                            DataSnapshot userSnapshot = dataSnapshot.getChildren().iterator().next();
-                            String uid = userSnapshot.getKey();
-                            String userEmail = userSnapshot.child("email").getValue(String.class);
-                            String name = userSnapshot.child("name").getValue(String.class);
-                            
-                            Log.d(TAG, "5. Found user in database - UID: " + uid + 
-                                ", Email: " + userEmail + ", Name: " + name);
-                            
-                            if (uid == null || userEmail == null) {
-                                Log.e(TAG, "6. Invalid user data - UID or email is null");
-                                callback.onError("Invalid user data in database");
-                                return;
-                            }
-                            
-                            if (name == null) {
-                                // If no name in database, use email prefix as name
-                                name = userEmail.contains("@") ? 
-                                    userEmail.substring(0, userEmail.indexOf('@')) : 
-                                    userEmail;
-                                Log.d(TAG, "7. Using email prefix as name: " + name);
-                            }
-                            
-                            // Create a temporary contact object with the user's details
-                            Contact tempContact = new Contact();
-                            tempContact.setContactId(uid);
-                            tempContact.setEmailAddress(userEmail);
-                            tempContact.setDisplayName(name);
-                            tempContact.setCustomName(false);
-                            
-                            // Return the contact immediately
-                            Log.d(TAG, "8. Returning temporary contact for immediate use");
-                            callback.onContactAdded(tempContact);
-                            
-                            // Save the contact in the background
-                            Log.d(TAG, "9. Saving contact in background");
-                            addContact(uid, name, userEmail, new DatabaseCallback() {
-                                @Override
-                                public void onSuccess(Object result) {
-                                    Log.d(TAG, "10. Successfully saved contact in background: " + uid);
-                                }
-                                
-                                @Override
-                                public void onError(String error) {
-                                    Log.e(TAG, "11. Error saving contact in background: " + error);
-                                }
-                            });
-                            
-                        } catch (Exception e) {
-                            Log.e(TAG, "12. Error processing user data: " + e.getMessage(), e);
-                            callback.onError("Error processing user data");
-                        }
+                        // Get the first user with this email (should be only one)
+                        onUserFound(dataSnapshot.getChildren().iterator().next(), email, callback);
                     } else {
                         Log.d(TAG, "13. No user found in database with email: " + email);
+                        NegativeLookupCache.getInstance().recordMiss(email);
                         callback.onError("No user found with this email");
                     }
                 }
@@ -427,6 +698,65 @@ public class ContactsManager {
                 }
             });
     }
+
+    /**
+     * Returns a contact for a /users record straight away and saves it in the background
+     * @param email The address or id that was looked up
+     */
+    private void onUserFound(DataSnapshot userSnapshot, String email, ContactsLoadListener callback) {
+        try {
+            String uid = userSnapshot.getKey();
+            String userEmail = userSnapshot.child("email").getValue(String.class);
+            String name = userSnapshot.child("name").getValue(String.class);
+            
+            Log.d(TAG, "5. Found user in database - UID: " + uid + 
+                ", Email: " + userEmail + ", Name: " + name);
+            NegativeLookupCache.getInstance().recordFound(email);
+            
+            if (uid == null || userEmail == null) {
+                Log.e(TAG, "6. Invalid user data - UID or email is null");
+                callback.onError("Invalid user data in database");
+                return;
+            }
+            
+            if (name == null) {
+                // If no name in database, use email prefix as name
+                name = userEmail.contains("@") ? 
+                    userEmail.substring(0, userEmail.indexOf('@')) : 
+                    userEmail;
+                Log.d(TAG, "7. Using email prefix as name: " + name);
+            }
+            
+            // Create a temporary contact object with the user's details
+            Contact tempContact = new Contact();
+            tempContact.setContactId(uid);
+            tempContact.setEmailAddress(userEmail);
+            tempContact.setDisplayName(name);
+            tempContact.setCustomName(false);
+            
+            // Return the contact immediately
+            Log.d(TAG, "8. Returning temporary contact for immediate use");
+            callback.onContactAdded(tempContact);
+            
+            // Save the contact in the background
+            Log.d(TAG, "9. Saving contact in background");
+            addContact(uid, name, userEmail, new DatabaseCallback() {
+                @Override
+                public void onSuccess(Object result) {
+                    Log.d(TAG, "10. Successfully saved contact in background: " + uid);
+                }
+                
+                @Override
+                public void onError(String error) {
+                    Log.e(TAG, "11. Error saving contact in background: " + error);
+                }
+            });
+            
+        } catch (Exception e) {
+            Log.e(TAG, "12. Error processing user data: " + e.getMessage(), e);
+            callback.onError("Error processing user data");
+        }
+    }
     
     /**
      * Updates a contact's display name
@@ -448,6 +778,8 @@ public class ContactsManager {
         Map<String, Object> updates = new HashMap<>();
         updates.put("displayName", newName.trim());
         updates.put("customName", isCustomName);
+        // Moves the contact past other devices' sync watermarks
+        updates.put("timestamp", ServerValue.TIMESTAMP);
         
         contactRef.updateChildren(updates)
             .addOnSuccessListener(aVoid -> log.d(TAG, "Contact name updated successfully"))
@@ -541,9 +873,7 @@ public class ContactsManager {
         if (currentUserId == null) {
             String error = "User not authenticated";
             log.e(TAG, error);
-            if (loadListener != null) {
-                loadListener.onError(error);
-            }
+            events.error(error);
             return;
         }
 
@@ -551,9 +881,7 @@ public class ContactsManager {
         if (email == null || email.isEmpty() || !android.util.Patterns.EMAIL_ADDRESS.matcher(email).matches()) {
             String error = "Invalid email address";
             log.e(TAG, error);
-            if (loadListener != null) {
-                loadListener.onError(error);
-            }
+            events.error(error);
             return;
         }
 
@@ -562,14 +890,11 @@ public class ContactsManager {
             FirebaseFactory.getDatabase().getReference(CONTACTS_NODE).child(currentUserId).push().getKey();
 
         // Check if contact already exists in cache by email
-        for (Contact contact : contactsCache.values()) {
-            if (email.equalsIgnoreCase(contact.getEmailAddress())) {
-                log.d(TAG, "Contact already exists in cache: " + email);
-                if (loadListener != null) {
-                    loadListener.onContactAdded(contact);
-                }
-                return;
-            }
+        Contact existing = contactsCache.getByEmail(email);
+        if (existing != null) {
+            log.d(TAG, "Contact already exists in cache: " + email);
+            events.contactAdded(existing);
+            return;
         }
 
         // Create a new contact with minimal information
@@ -593,25 +918,62 @@ public class ContactsManager {
             }
         };
 
+        // Save with the minimal info straight away if this email recently had no /users record
+        if (NegativeLookupCache.getInstance().isKnownMissing(email)) {
+            saveContactToDatabase(newContact, dcb);
+            return;
+        }
+
+        EmailIndex emailIndex = EmailIndex.getInstance();
+        if (emailIndex != null) {
+            emailIndex.resolve(email, new EmailIndex.ResolveCallback() {
+                @Override
+                public void onResolved(String uid) {
+                    SingleFlight.getInstance().read(databaseReference.child("users").child(uid),
+                        new ValueEventListener() {
+                            @Override
+                            public void onDataChange(@NonNull DataSnapshot userSnapshot) {
+                                if (userSnapshot.exists()) {
+                                    applyUserDetails(newContact, userSnapshot, contactId);
+                                }
+                                saveContactToDatabase(newContact, dcb);
+                            }
+
+                            @Override
+                            public void onCancelled(@NonNull DatabaseError databaseError) {
+                                log.e(TAG, "Error looking up user: " + databaseError.getMessage());
+                                saveContactToDatabase(newContact, dcb);
+                            }
+                        });
+                }
+
+                @Override
+                public void onNotFound() {
+                    NegativeLookupCache.getInstance().recordMiss(email);
+                    saveContactToDatabase(newContact, dcb);
+                }
+
+                @Override
+                public void onError(String error) {
+                    // If user lookup fails, just save with the minimal info we have
+                    log.e(TAG, "Error looking up user: " + error);
+                    saveContactToDatabase(newContact, dcb);
+                }
+            });
+            return;
+        }
+
         // Try to look up user details from /users node
         databaseReference.child("users").orderByChild("email").equalTo(email.toLowerCase())
             .addListenerForSingleValueEvent(new ValueEventListener() {
                 @Override
                 public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                    if (!dataSnapshot.exists()) {
+                        NegativeLookupCache.getInstance().recordMiss(email);
+                    }
                     if (dataSnapshot.exists()) {
-                        // User found, update contact with their details
-                        for (DataSnapshot userSnapshot : dataSnapshot.getChildren()) {
-                            String displayName = userSnapshot.child("displayName").getValue(String.class);
-                            if (displayName != null && !displayName.isEmpty()) {
-                                newContact.setDisplayName(displayName);
-                                newContact.setUserName(displayName);
-                            }
-                            // Update contactId to match the actual user's UID if this was a new contact
-                            if (contactId == null || contactId.isEmpty()) {
-                                newContact.setContactId(userSnapshot.getKey());
-                            }
-                            break; // Just use the first matching user
-                        }
+                        // User found, update contact with their details; just use the first match
+                        applyUserDetails(newContact, dataSnapshot.getChildren().iterator().next(), contactId);
                     }
                     saveContactToDatabase(newContact,dcb);
                 }
@@ -625,6 +987,18 @@ public class ContactsManager {
             });
     }
 
+    private static void applyUserDetails(Contact contact, DataSnapshot userSnapshot, String requestedContactId) {
+        String displayName = userSnapshot.child("displayName").getValue(String.class);
+        if (displayName != null && !displayName.isEmpty()) {
+            contact.setDisplayName(displayName);
+            contact.setUserName(displayName);
+        }
+        // Update contactId to match the actual user's UID if this was a new contact
+        if (requestedContactId == null || requestedContactId.isEmpty()) {
+            contact.setContactId(userSnapshot.getKey());
+        }
+    }
+
     private void saveContactToDatabase(Contact contact, DatabaseCallback callback) {
         String currentUserId = getCurrentUserId();
         if (currentUserId == null) {
@@ -655,9 +1029,13 @@ public class ContactsManager {
               ", UserID: " + contact.getUserId() + 
               ", Email: " + contact.getEmailAddress());
 
+        // Server time, so other devices' delta syncs see the change whatever this clock says
+        Map<String, Object> values = ContactCodec.encode(contact);
+        values.put("timestamp", ServerValue.TIMESTAMP);
+
         // Save to the current user's contacts
         databaseReference.child(CONTACTS_NODE).child(currentUserId).child(contact.getContactId())
-            .setValue(contact)
+            .setValue(values)
             .addOnSuccessListener(aVoid -> {
                 // Update cache
                 contact.setId(contact.getContactId());
@@ -665,9 +1043,7 @@ public class ContactsManager {
                 log.d(TAG, "Contact added/updated: " + contact.getEmailAddress() + " (ID: " + contact.getContactId() + ")");
                 
                 // Notify listeners
-                if (loadListener != null) {
-                    loadListener.onContactAdded(contact);
-                }
+                events.contactAdded(contact);
                 
                 // Call the callback
                 if (callback != null) {
@@ -677,9 +1053,7 @@ public class ContactsManager {
             .addOnFailureListener(e -> {
                 String errorMsg = "Failed to save contact: " + e.getMessage();
                 log.e(TAG, errorMsg, e);
-                if (loadListener != null) {
-                    loadListener.onError(errorMsg);
-                }
+                events.error(errorMsg);
                 if (callback != null) {
                     callback.onError(errorMsg);
                 }
@@ -687,24 +1061,18 @@ public class ContactsManager {
     }
 
     public Contact getContactByEmail(String email) {
-        for (Contact contact : contactsCache.values()) {
-            if (contact.getEmailAddress().equalsIgnoreCase(email)) {
-                return contact;
-            }
-        }
-        return null;
+        return contactsCache.getByEmail(email);
     }
 
     public Contact getContactById(String contactId) {
         return contactsCache.get(contactId);
     }
 
+    /**
+     * @return All contact emails; read-only and shared until the cache next changes
+     */
     public List<String> getContactEmails() {
-        List<String> emails = new ArrayList<>();
-        for (Contact contact : contactsCache.values()) {
-            emails.add(contact.getEmailAddress());
-        }
-        return emails;
+        return contactsCache.emails();
     }
 
     private String getCurrentUserId() {
@@ -721,39 +1089,53 @@ public class ContactsManager {
     public Task<Void> removeContact(String contactId) {
         String currentUserId = getCurrentUserId();
         if (currentUserId == null) {
-            if (loadListener != null) {
-                loadListener.onError("User not authenticated");
-            }
+            events.error("User not authenticated");
             return Tasks.forException(new IllegalStateException("User not authenticated"));
         }
         
         // Find the contact in the cache to get its key
-        for (Map.Entry<String, Contact> entry : contactsCache.entrySet()) {
-            if (entry.getValue().getContactId().equals(contactId)) {
-                // Remove from Firebase and return the task
-                return databaseReference.child(CONTACTS_NODE).child(currentUserId).child(entry.getKey())
-                        .removeValue()
-                        .addOnSuccessListener(aVoid -> {
-                            // The onChildRemoved listener will handle updating the cache and notifying listeners
-                            log.d(TAG, "Contact removed successfully: " + contactId);
-                        })
-                        .addOnFailureListener(e -> {
-                            log.e(TAG, "Error removing contact: " + e.getMessage(), e);
-                            if (loadListener != null) {
-                                loadListener.onError("Failed to remove contact: " + e.getMessage());
-                            }
-                        });
-            }
+        Contact contact = contactsCache.get(contactId);
+        if (contact == null) {
+            return Tasks.forException(new IllegalStateException("Contact not found"));
         }
-        return Tasks.forException(new IllegalStateException("Contact not found"));
+        String key = contact.getId() != null && !contact.getId().isEmpty() ? contact.getId() : contactId;
+        // Leave a tombstone instead of deleting the node, so other devices' delta syncs see the removal
+        Map<String, Object> tombstone = new HashMap<>();
+        tombstone.put(ContactCodec.DELETED, true);
+        tombstone.put("timestamp", ServerValue.TIMESTAMP);
+        return databaseReference.child(CONTACTS_NODE).child(currentUserId).child(key)
+                .setValue(tombstone)
+                .addOnSuccessListener(aVoid -> {
+                    log.d(TAG, "Contact removed successfully: " + contactId);
+                    // Don't wait for the listener to report the tombstone
+                    if (contactsCache.remove(contactId) != null) {
+                        saveSnapshot(currentUserId);
+                        events.contactRemoved(contact);
+                    }
+                })
+                .addOnFailureListener(e -> {
+                    log.e(TAG, "Error removing contact: " + e.getMessage(), e);
+                    events.error("Failed to remove contact: " + e.getMessage());
+                });
     }
     
+    /**
+     * @return Every cached contact; read-only and shared until the cache next changes
+     */
     public List<Contact> getCachedContacts() {
-        return new ArrayList<>(contactsCache.values());
+        return contactsCache.values();
+    }
+
+    /**
+     * @return The current contacts snapshot; safe to read from any thread, and its
+     *         version tells whether the cache changed since an earlier snapshot
+     */
+    public ContactsSnapshot getContactsSnapshot() {
+        return contactsCache.snapshot();
     }
     
     /**
-     * Cleans up all Firebase listeners without clearing the cache or load listener.
+     * Cleans up all Firebase listeners without clearing the cache or subscribers.
      * This is useful for reinitializing the listeners.
      */
     private void cleanupListeners() {
@@ -772,8 +1154,9 @@ public class ContactsManager {
         }
         
         if (contactChildListener != null) {
-            contactsRef.removeEventListener(contactChildListener);
+            (contactChildQuery != null ? contactChildQuery : contactsRef).removeEventListener(contactChildListener);
             contactChildListener = null;
+            contactChildQuery = null;
         }
         
         Log.d(TAG, "Firebase listeners cleaned up");
@@ -790,9 +1173,8 @@ public class ContactsManager {
         // Clear the cache
         contactsCache.clear();
         
-        // Clear the listeners
-        loadListener = null;
-        previousListener = null;
+        contactsLoaded = false;
+        listeningUserId = null;
         
         Log.d(TAG, "ContactsManager cleanup completed");
     }
@@ -0,0 +1,98 @@
+package com.example.SImpleMessenger.data;
+
+import com.example.SImpleMessenger.data.model.Contact;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable view of the contacts cache at one point in time.
+ *
+ * {@link ContactIndex} publishes a new snapshot after every change, so a snapshot
+ * can be read from any thread without locking or copying. The version grows by
+ * one per change; comparing versions tells a reader whether anything changed.
+ * Only the collection is immutable: the Contact objects are shared with the cache.
+ */
+public final class ContactsSnapshot {
+    static final ContactsSnapshot EMPTY = new ContactsSnapshot(0,
+            new HashMap<>(), new HashMap<>(), new HashMap<>());
+
+    private final long version;
+    private final Map<String, Contact> byContactId;
+    // Secondary indexes map to the contactId, which then resolves through byContactId
+    private final Map<String, String> byEmail;
+    private final Map<String, String> byKey;
+    private final List<Contact> contacts;
+    private final List<String> emails;
+
+    /**
+     * Takes ownership of the maps; callers must not modify them afterwards
+     */
+    ContactsSnapshot(long version, Map<String, Contact> byContactId,
+                     Map<String, String> byEmail, Map<String, String> byKey) {
+        this.version = version;
+        this.byContactId = Collections.unmodifiableMap(byContactId);
+        this.byEmail = byEmail;
+        this.byKey = byKey;
+        List<Contact> contacts = new ArrayList<>(byContactId.values());
+        List<String> emails = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            emails.add(contact.getEmailAddress());
+        }
+        this.contacts = Collections.unmodifiableList(contacts);
+        this.emails = Collections.unmodifiableList(emails);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Every contact; read-only
+     */
+    public List<Contact> getContacts() {
+        return contacts;
+    }
+
+    /**
+     * @return Every contact's email address; read-only
+     */
+    public List<String> getEmails() {
+        return emails;
+    }
+
+    public Contact getById(String contactId) {
+        return contactId == null ? null : byContactId.get(contactId);
+    }
+
+    /**
+     * @return The contact with this email, ignoring case and surrounding whitespace
+     */
+    public Contact getByEmail(String email) {
+        String contactId = email == null ? null : byEmail.get(ContactIndex.normalizeEmail(email));
+        return contactId == null ? null : byContactId.get(contactId);
+    }
+
+    /**
+     * @return The contact stored under Firebase key {@code key}
+     */
+    public Contact getByKey(String key) {
+        String contactId = key == null ? null : byKey.get(key);
+        return contactId == null ? null : byContactId.get(contactId);
+    }
+
+    public int size() {
+        return byContactId.size();
+    }
+
+    public boolean isEmpty() {
+        return byContactId.isEmpty();
+    }
+
+    Map<String, Contact> asMap() {
+        return byContactId;
+    }
+}
@@ -4,7 +4,12 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import com.example.SImpleMessenger.data.codec.MessageCodec;
+import com.example.SImpleMessenger.data.local.LocalMessageStore;
 import com.example.SImpleMessenger.data.model.Message;
+import com.example.SImpleMessenger.data.search.RecipientFrecency;
+import com.example.SImpleMessenger.data.model.MessageSummary;
+import com.example.SImpleMessenger.data.outbox.MessageOutbox;
 import com.example.SImpleMessenger.util.FirebaseFactory;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.database.DataSnapshot;
@@ -12,6 +17,7 @@ import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.ValueEventListener;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,14 +27,14 @@ public class DatabaseHelper {
     private static DatabaseHelper instance;
     private final DatabaseReference databaseReference;
     private final FirebaseAuth mAuth;
-    private boolean isNotes = false;
-    private boolean isInbox = true;
 
     // Database paths
     protected static final String MESSAGES_NODE = "messages";
+    protected static final String MESSAGE_BODIES_NODE = "message-bodies";
     protected static final String USER_MESSAGES_NODE = "user-messages";
     protected static final String USER_SENT_NODE = "sent";
     protected static final String USER_RECEIVED_NODE = "received";
+    protected static final String USER_NOTES_NODE = "notes";
     protected static final String USER_CATEGORY_NODE = "user-category";
     protected static final String CATEGORY_LIST_NODE = "categoryList";
 
@@ -37,16 +43,6 @@ public class DatabaseHelper {
              FirebaseFactory.getAuth());
     }
     
-    /**
-     * Set the current tab state for message operations
-     * @param isNotes Whether the current tab is the Notes tab
-     * @param isInbox Whether the current tab is the Inbox tab (only relevant if not Notes)
-     */
-    public void setTabState(boolean isNotes, boolean isInbox) {
-        this.isNotes = isNotes;
-        this.isInbox = isInbox;
-    }
-    
     /**
      * Package-private constructor for testing
      */
@@ -100,18 +96,9 @@ public class DatabaseHelper {
         
         // The timestamp will be set by the Message.toMap() method using ServerValue.TIMESTAMP
         
-        // Create a map to update multiple locations at once
         String currentUserId = mAuth.getCurrentUser().getUid();
-        Map<String, Object> updates = new HashMap<>();
-        
-        // Add the message to the messages node
-        updates.put("/" + MESSAGES_NODE + "/" + messageId, message.toMap());
-        
-        if (message.isNote()) {
-            // For notes, save to the user's notes node
-            updates.put("/" + USER_MESSAGES_NODE + "/" + currentUserId + "/notes/" + messageId, true);
-        } else {
-            // For regular messages, validate recipient and set up sent/received references
+        if (!message.isNote()) {
+            // For regular messages, validate recipient
             String recipientId = message.getRecipientId();
             
             // Validate recipient ID
@@ -125,14 +112,19 @@ public class DatabaseHelper {
                 callback.onError("Invalid recipient ID format. Expected UID but got: " + recipientId);
                 return;
             }
-            
-            // Add reference to sender's sent messages
-            updates.put("/" + USER_MESSAGES_NODE + "/" + currentUserId + "/" + USER_SENT_NODE + "/" + messageId, true);
-            
-            // Add reference to recipient's received messages using their UID
-            updates.put("/" + USER_MESSAGES_NODE + "/" + recipientId + "/" + USER_RECEIVED_NODE + "/" + messageId, true);
         }
         
+        // Queued sends survive restarts and go out in batches once there is a network
+        MessageOutbox outbox = MessageOutbox.getInstance();
+        if (outbox != null) {
+            outbox.enqueue(message, currentUserId);
+            recordSend(message);
+            callback.onSuccess(messageId);
+            return;
+        }
+        
+        Map<String, Object> updates = buildSendUpdates(message, currentUserId);
+        
         // Log the updates map for debugging
         try {
             com.google.gson.Gson gson = new com.google.gson.GsonBuilder().setPrettyPrinting().create();
@@ -144,18 +136,73 @@ public class DatabaseHelper {
 
         // Perform all updates as a single atomic operation
         databaseReference.updateChildren(updates)
-                .addOnSuccessListener(aVoid -> callback.onSuccess(messageId))
+                .addOnSuccessListener(aVoid -> {
+                    recordSend(message);
+                    callback.onSuccess(messageId);
+                })
                 .addOnFailureListener(e -> {
                     Log.e(TAG, "Error sending message: " + e.getMessage());
                     callback.onError("Firebase Database error: " + e.getMessage());
                 });
     }
 
+    /**
+     * Builds the multi-path update that writes {@code message} and its index entries
+     * @param message A validated message with its id set
+     * @param senderId uid of the signed-in sender
+     */
+    public static Map<String, Object> buildSendUpdates(Message message, String senderId) {
+        String messageId = message.getId();
+        Map<String, Object> updates = new HashMap<>();
+        
+        // The header goes to the messages node and the body to its own node, so
+        // header reads never download the body
+        MessageBodies.putSplit(updates, message);
+        
+        // Index entries carry a summary of the message so lists can render without
+        // fetching every /messages/{id} node
+        if (message.isNote()) {
+            // For notes, save to the user's notes node
+            putIndexEntry(updates, senderId, USER_NOTES_NODE, messageId,
+                    MessageSummary.fromMessage(message, false).toMap());
+        } else {
+            // Add reference to sender's sent messages
+            putIndexEntry(updates, senderId, USER_SENT_NODE, messageId,
+                    MessageSummary.fromMessage(message, false).toMap());
+            
+            // Add reference to recipient's received messages using their UID
+            putIndexEntry(updates, message.getRecipientId(), USER_RECEIVED_NODE, messageId,
+                    MessageSummary.fromMessage(message, true).toMap());
+        }
+        return updates;
+    }
+
+    /**
+     * Adds an index entry and, when the index is partitioned, the directory entry of its bucket
+     */
+    private static void putIndexEntry(Map<String, Object> updates, String ownerId, String box,
+                                      String messageId, Object value) {
+        updates.put("/" + IndexBuckets.entryPath(ownerId, box, messageId), value);
+        String directoryPath = IndexBuckets.directoryPath(ownerId, box, messageId);
+        if (directoryPath != null) {
+            updates.put("/" + directoryPath, true);
+        }
+    }
+
+    private static void recordSend(Message message) {
+        if (!message.isNote()) {
+            RecipientFrecency frecency = RecipientFrecency.getInstance();
+            if (frecency != null) {
+                frecency.recordSend(message.getRecipientEmail());
+            }
+        }
+    }
+
     // Get all messages for the current user
     public void getUserMessages(String userId, boolean isSent, final DatabaseCallback callback) {
         String messageType = isSent ? USER_SENT_NODE : USER_RECEIVED_NODE;
         
-        databaseReference.child(USER_MESSAGES_NODE).child(userId).child(messageType)
+        IndexBuckets.liveRef(databaseReference, userId, messageType)
                 .addValueEventListener(new ValueEventListener() {
                     @Override
                     public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
@@ -171,21 +218,45 @@ public class DatabaseHelper {
                 });
     }
 
-    // Mark a message as read
+    /**
+     * Marks a message read. Local caches change right away; the Firebase writes
+     * are batched by {@link ReadStateBuffer}.
+     */
     public void markMessageAsRead(String messageId) {
-        databaseReference.child(MESSAGES_NODE).child(messageId).child("read").setValue(true);
+        // Replace the cached message rather than change the instance rows may hold
+        Message cached = MessageCache.getInstance().get(messageId);
+        if (cached != null) {
+            Message updated = new Message(cached);
+            updated.setRead(true);
+            MessageCache.getInstance().put(updated);
+        }
+        
+        LocalMessageStore localStore = LocalMessageStore.getInstance();
+        if (localStore != null) {
+            localStore.markRead(messageId);
+        }
+        
+        // Keep the read flag in the inbox summary in step
+        String ownerId = mAuth.getCurrentUser() != null ? mAuth.getCurrentUser().getUid() : null;
+        ReadStateBuffer.getInstance().markRead(messageId, ownerId);
     }
 
     // Delete a message
     public void deleteMessage(String messageId, String currentUserId) {
         // Instead of deleting, we'll mark it as archived
         databaseReference.child(MESSAGES_NODE).child(messageId).child("archived").setValue(true);
+        MessageCache.getInstance().invalidate(messageId);
         
         // Remove from user's message lists
-        databaseReference.child(USER_MESSAGES_NODE).child(currentUserId)
-                .child(USER_RECEIVED_NODE).child(messageId).removeValue();
-        databaseReference.child(USER_MESSAGES_NODE).child(currentUserId)
-                .child(USER_SENT_NODE).child(messageId).removeValue();
+        databaseReference.child(IndexBuckets.entryPath(currentUserId, USER_RECEIVED_NODE, messageId)).removeValue();
+        databaseReference.child(IndexBuckets.entryPath(currentUserId, USER_SENT_NODE, messageId)).removeValue();
+        
+        LocalMessageStore localStore = LocalMessageStore.getInstance();
+        if (localStore != null) {
+            List<String> ids = Collections.singletonList(messageId);
+            localStore.removeEntries(currentUserId, USER_RECEIVED_NODE, ids);
+            localStore.removeEntries(currentUserId, USER_SENT_NODE, ids);
+        }
     }
 
     // Helper method to convert email to user ID (replace @ and . with _)
@@ -204,15 +275,33 @@ public class DatabaseHelper {
             return;
         }
         
-        databaseReference.child(MESSAGES_NODE).child(messageId)
-                .addListenerForSingleValueEvent(new ValueEventListener() {
+        Message cached = MessageCache.getInstance().get(messageId);
+        if (cached != null && !cached.isHeaderOnly()) {
+            callback.onSuccess(cached);
+            return;
+        }
+        
+        // Concurrent requests for the same message share one read
+        SingleFlight.getInstance().read(databaseReference.child(MESSAGES_NODE).child(messageId),
+                new ValueEventListener() {
                     @Override
                     public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
                         if (dataSnapshot.exists()) {
-                            Message message = dataSnapshot.getValue(Message.class);
+                            Message message = MessageCodec.decode(dataSnapshot);
                             if (message != null) {
                                 message.setId(dataSnapshot.getKey());
-                                callback.onSuccess(message);
+                                MessageBodies.load(databaseReference, message, new MessageBodies.BodyCallback() {
+                                    @Override
+                                    public void onLoaded(Message loaded) {
+                                        MessageCache.getInstance().put(loaded);
+                                        callback.onSuccess(loaded);
+                                    }
+
+                                    @Override
+                                    public void onError(String error) {
+                                        callback.onError(error);
+                                    }
+                                });
                                 return;
                             }
                         }
@@ -330,45 +419,55 @@ public class DatabaseHelper {
     }
     
     /**
-     * Delete multiple messages by their IDs
+     * Delete multiple messages by their IDs from one box
+     * @param box "received", "sent" or "notes"
      * @param messageIds List of message IDs to delete
      * @param callback Callback to handle success or error
      */
-    public void deleteMessages(List<String> messageIds, final MessageOperationCallback callback) {
+    public void deleteMessages(String box, List<String> messageIds, final MessageOperationCallback callback) {
+        startBulkOperation(BulkMessageOperation.Kind.DELETE, box, messageIds, null,
+                new BulkMessageOperation.ProgressListener() {
+                    @Override
+                    public void onProgress(int completed, int total) {
+                    }
+
+                    @Override
+                    public void onFinished(int completed, List<String> failedIds) {
+                        if (callback == null) {
+                            return;
+                        }
+                        if (failedIds.isEmpty()) {
+                            callback.onSuccess();
+                        } else {
+                            callback.onError(failedIds.size() + " messages could not be deleted");
+                        }
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        if (callback != null) {
+                            callback.onError(error);
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Applies {@code kind} to the given messages of one box in bounded chunks
+     * @param box "received", "sent" or "notes"
+     * @param category Target category for {@link BulkMessageOperation.Kind#MOVE_CATEGORY}, otherwise null
+     * @return The running operation, or null if no user is signed in
+     */
+    public BulkMessageOperation startBulkOperation(BulkMessageOperation.Kind kind, String box,
+                                                   List<String> messageIds, String category,
+                                                   BulkMessageOperation.ProgressListener listener) {
         if (mAuth.getCurrentUser() == null) {
-            if (callback != null) {
-                callback.onError("User not authenticated");
-            }
-            return;
-        }
-        
-        String currentUserId = mAuth.getCurrentUser().getUid();
-        DatabaseReference userMessagesRef = databaseReference.child(USER_MESSAGES_NODE).child(currentUserId);
-        
-        // Determine the message type based on the current tab (inbox/outbox/notes)
-        String messageType = isNotes ? "notes" : (isInbox ? USER_RECEIVED_NODE : USER_SENT_NODE);
-        
-        // Create a map to hold all updates
-        Map<String, Object> updates = new HashMap<>();
-        
-        // Add each message to be deleted to the updates map
-        for (String messageId : messageIds) {
-            updates.put("/" + MESSAGES_NODE + "/" + messageId, null);
-            updates.put("/" + USER_MESSAGES_NODE + "/" + currentUserId + "/" + messageType + "/" + messageId, null);
+            listener.onError("User not authenticated");
+            return null;
         }
-        
-        // Perform the updates atomically
-        databaseReference.updateChildren(updates)
-            .addOnSuccessListener(aVoid -> {
-                if (callback != null) {
-                    callback.onSuccess();
-                }
-            })
-            .addOnFailureListener(e -> {
-                Log.e(TAG, "Error deleting messages: " + e.getMessage());
-                if (callback != null) {
-                    callback.onError(e.getMessage());
-                }
-            });
+        BulkMessageOperation operation = new BulkMessageOperation(databaseReference, kind,
+                mAuth.getCurrentUser().getUid(), box, messageIds, category);
+        operation.start(listener);
+        return operation;
     }
 }
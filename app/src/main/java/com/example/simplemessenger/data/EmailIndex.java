@@ -0,0 +1,226 @@
+package com.example.SImpleMessenger.data;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.SImpleMessenger.util.FirebaseFactory;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.Locale;
+
+/**
+ * Resolves email addresses to user ids through the /email-index/{key} node, whose value is the uid.
+ *
+ * {@link UserProfileManager} writes the mapping right after saving a profile.
+ * Resolved mappings are kept in SharedPreferences, so a repeat lookup needs no
+ * network at all; a first lookup is a single-node read instead of an
+ * orderByChild("email") query over /users. Profiles saved before the index
+ * existed are still found through that query as a fallback.
+ *
+ * Index entries are not trusted on their own: a hit is only used once
+ * /users/{uid}/email confirms it, so a planted mapping can't redirect sends.
+ */
+public class EmailIndex {
+    private static final String TAG = "EmailIndex";
+    public static final String EMAIL_INDEX_NODE = "email-index";
+    private static final String PREFS_NAME = "email_index_cache";
+    private static EmailIndex instance;
+
+    public interface ResolveCallback {
+        void onResolved(String uid);
+        void onNotFound();
+        void onError(String error);
+    }
+
+    private final SharedPreferences prefs;
+    private final DatabaseReference databaseReference;
+    private long localHitCount = 0;
+    private long indexHitCount = 0;
+    private long legacyHitCount = 0;
+
+    private EmailIndex(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        databaseReference = FirebaseFactory.getDatabase().getReference();
+    }
+
+    /**
+     * Package-private constructor for testing
+     */
+    EmailIndex(DatabaseReference databaseReference, SharedPreferences prefs) {
+        this.databaseReference = databaseReference;
+        this.prefs = prefs;
+    }
+
+    public static synchronized EmailIndex getInstance(Context context) {
+        if (instance == null) {
+            instance = new EmailIndex(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the index created by the application, or null if it has not been
+     * created yet (e.g. in plain unit tests)
+     */
+    public static synchronized EmailIndex getInstance() {
+        return instance;
+    }
+
+    static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return The /email-index child key for {@code email}; escapes the characters
+     *         Firebase does not allow in keys, so the mapping is one-to-one
+     */
+    public static String keyFor(String email) {
+        String normalized = normalize(email);
+        StringBuilder key = new StringBuilder(normalized.length() + 8);
+        for (int i = 0; i < normalized.length(); i++) {
+            char c = normalized.charAt(i);
+            switch (c) {
+                case '%':
+                case '.':
+                case '#':
+                case '$':
+                case '[':
+                case ']':
+                case '/':
+                    key.append('%').append(String.format(Locale.ROOT, "%02X", (int) c));
+                    break;
+                default:
+                    key.append(c);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Looks up the uid registered for {@code email}; callbacks run on the main thread
+     */
+    public void resolve(String email, ResolveCallback callback) {
+        String normalized = normalize(email);
+        String cached = prefs.getString(normalized, null);
+        if (cached != null) {
+            synchronized (this) {
+                localHitCount++;
+            }
+            callback.onResolved(cached);
+            return;
+        }
+
+        SingleFlight.getInstance().read(databaseReference.child(EMAIL_INDEX_NODE).child(keyFor(normalized)),
+                new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        Object value = snapshot.getValue();
+                        if (value instanceof String && !((String) value).isEmpty()) {
+                            verify(normalized, (String) value, callback);
+                        } else {
+                            resolveFromUsers(normalized, callback);
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Error reading email index: " + error.getMessage());
+                        callback.onError(error.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Uses an index hit only if the profile it points to has that email address
+     */
+    private void verify(String normalized, String uid, ResolveCallback callback) {
+        SingleFlight.getInstance().read(databaseReference.child("users").child(uid).child("email"),
+                new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        Object email = snapshot.getValue();
+                        if (email instanceof String && normalize((String) email).equals(normalized)) {
+                            synchronized (EmailIndex.this) {
+                                indexHitCount++;
+                            }
+                            remember(normalized, uid);
+                            callback.onResolved(uid);
+                        } else {
+                            Log.w(TAG, "Ignoring email index entry that doesn't match its profile");
+                            resolveFromUsers(normalized, callback);
+                        }
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Error checking email index entry: " + error.getMessage());
+                        callback.onError(error.getMessage());
+                    }
+                });
+    }
+
+    private void resolveFromUsers(String normalized, ResolveCallback callback) {
+        // Profiles saved before /email-index existed have no entry yet
+        SingleFlight.getInstance().read(databaseReference.child("users").orderByChild("email").equalTo(normalized),
+                "users?email=" + normalized, new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        if (!snapshot.hasChildren()) {
+                            callback.onNotFound();
+                            return;
+                        }
+                        String uid = snapshot.getChildren().iterator().next().getKey();
+                        synchronized (EmailIndex.this) {
+                            legacyHitCount++;
+                        }
+                        remember(normalized, uid);
+                        callback.onResolved(uid);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Error querying users by email: " + error.getMessage());
+                        callback.onError(error.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Stores a known mapping locally, e.g. one learned from a /users record
+     */
+    public void remember(String email, String uid) {
+        if (email != null && uid != null) {
+            prefs.edit().putString(normalize(email), uid).apply();
+        }
+    }
+
+    /**
+     * Drops a local mapping that turned out to be stale
+     */
+    public void forget(String email) {
+        if (email != null) {
+            prefs.edit().remove(normalize(email)).apply();
+        }
+    }
+
+    /** Lookups answered from the local cache */
+    public synchronized long getLocalHitCount() {
+        return localHitCount;
+    }
+
+    /** Lookups answered by reading /email-index */
+    public synchronized long getIndexHitCount() {
+        return indexHitCount;
+    }
+
+    /** Lookups that needed the /users email query */
+    public synchronized long getLegacyHitCount() {
+        return legacyHitCount;
+    }
+}
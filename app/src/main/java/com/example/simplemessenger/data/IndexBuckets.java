@@ -0,0 +1,135 @@
+package com.example.SImpleMessenger.data;
+
+import com.google.firebase.database.DatabaseReference;
+
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Optional month partitioning of the /user-messages indexes.
+ *
+ * When enabled, an entry lives at /user-messages/{uid}/{box}/{yyyy-MM}/{id}
+ * instead of directly under the box, and every bucket that holds entries is
+ * listed in /user-messages/{uid}/buckets/{box}/{yyyy-MM}. The bucket comes from
+ * the time encoded in the push id, so any client can find an entry from its id.
+ * All clients of one database must agree on the setting; it is read from
+ * {@code R.bool.partition_message_index} at startup.
+ */
+public final class IndexBuckets {
+    static final String DIRECTORY_NODE = "buckets";
+    private static final String PUSH_CHARS = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+    private static final int PUSH_ID_LENGTH = 20;
+    private static final int PUSH_TIME_LENGTH = 8;
+    private static volatile boolean enabled = false;
+
+    private IndexBuckets() {}
+
+    public static void setEnabled(boolean partitioned) {
+        enabled = partitioned;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return The "yyyy-MM" bucket (UTC) holding entries written at {@code timeMillis}
+     */
+    static String bucketOf(long timeMillis) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.US);
+        calendar.setTimeInMillis(timeMillis);
+        return String.format(Locale.US, "%04d-%02d",
+                calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1);
+    }
+
+    /**
+     * @return Start (UTC) of the month bucket holding entries written at {@code timeMillis}
+     */
+    static long bucketStartOf(long timeMillis) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"), Locale.US);
+        calendar.setTimeInMillis(timeMillis);
+        calendar.set(Calendar.DAY_OF_MONTH, 1);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * @return Oldest timestamp {@link #liveRef} can hold: the start of this month when
+     *         partitioned, otherwise {@code Long.MIN_VALUE}
+     */
+    public static long liveRangeStart() {
+        return enabled ? bucketStartOf(System.currentTimeMillis()) : Long.MIN_VALUE;
+    }
+
+    /**
+     * @return Whether {@code key} names a month bucket rather than an entry
+     */
+    public static boolean isBucketKey(String key) {
+        return key != null && key.matches("\\d{4}-\\d{2}");
+    }
+
+    /**
+     * @return Milliseconds encoded in the first characters of a push id, or -1 if it is not one
+     */
+    static long pushIdTime(String messageId) {
+        if (messageId == null || messageId.length() != PUSH_ID_LENGTH) {
+            return -1;
+        }
+        long time = 0;
+        for (int i = 0; i < PUSH_TIME_LENGTH; i++) {
+            int digit = PUSH_CHARS.indexOf(messageId.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            time = time * 64 + digit;
+        }
+        return time;
+    }
+
+    /**
+     * @return The bucket of {@code messageId}; ids that are not push ids go to the current month
+     */
+    static String bucketOfMessage(String messageId) {
+        long time = pushIdTime(messageId);
+        return bucketOf(time > 0 ? time : System.currentTimeMillis());
+    }
+
+    /**
+     * @return Path of the index entry, without a leading slash
+     */
+    public static String entryPath(String ownerId, String box, String messageId) {
+        String boxPath = DatabaseHelper.USER_MESSAGES_NODE + "/" + ownerId + "/" + box;
+        return enabled
+                ? boxPath + "/" + bucketOfMessage(messageId) + "/" + messageId
+                : boxPath + "/" + messageId;
+    }
+
+    /**
+     * @return Path of the directory entry that lists the bucket of {@code messageId}, or null when not partitioned
+     */
+    public static String directoryPath(String ownerId, String box, String messageId) {
+        return enabled
+                ? DatabaseHelper.USER_MESSAGES_NODE + "/" + ownerId + "/" + DIRECTORY_NODE + "/" + box
+                        + "/" + bucketOfMessage(messageId)
+                : null;
+    }
+
+    /**
+     * @return The directory listing the buckets of one box
+     */
+    public static DatabaseReference directoryRef(DatabaseReference rootRef, String ownerId, String box) {
+        return rootRef.child(DatabaseHelper.USER_MESSAGES_NODE).child(ownerId).child(DIRECTORY_NODE).child(box);
+    }
+
+    /**
+     * @return The node holding the newest entries of a box: the box itself, or this month's bucket
+     */
+    public static DatabaseReference liveRef(DatabaseReference rootRef, String ownerId, String box) {
+        DatabaseReference boxRef = rootRef.child(DatabaseHelper.USER_MESSAGES_NODE).child(ownerId).child(box);
+        return enabled ? boxRef.child(bucketOf(System.currentTimeMillis())) : boxRef;
+    }
+}
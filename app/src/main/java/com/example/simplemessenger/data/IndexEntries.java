@@ -0,0 +1,80 @@
+package com.example.SImpleMessenger.data;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for /user-messages index entries
+ */
+final class IndexEntries {
+    private static final String TAG = "IndexEntries";
+
+    interface PathsCallback {
+        /** Called on the main thread with the paths that matched */
+        void onPaths(List<String> summaryPaths);
+    }
+
+    private IndexEntries() {
+    }
+
+    /**
+     * Finds which of {@code entryPaths} hold summaries. Legacy entries are plain
+     * booleans and writing a child under one would turn it into an object, so
+     * callers only write fields under the returned paths. The reads are usually
+     * answered from the local cache kept by the list listeners.
+     * @param entryPaths Paths relative to {@code rootRef}, without a leading slash
+     */
+    static void findSummaries(DatabaseReference rootRef, List<String> entryPaths, PathsCallback callback) {
+        filter(rootRef, entryPaths, true, callback);
+    }
+
+    /**
+     * Finds which of {@code paths} hold data; a deleted node reads as empty. A read
+     * that fails counts as missing too, since writing under a path that is really
+     * gone would recreate it as a stub, while a skipped write is only lost.
+     * @param paths Paths relative to {@code rootRef}, without a leading slash
+     */
+    static void findExisting(DatabaseReference rootRef, List<String> paths, PathsCallback callback) {
+        filter(rootRef, paths, false, callback);
+    }
+
+    private static void filter(DatabaseReference rootRef, List<String> paths, boolean summariesOnly,
+                               PathsCallback callback) {
+        List<String> matches = new ArrayList<>(paths.size());
+        if (paths.isEmpty()) {
+            callback.onPaths(matches);
+            return;
+        }
+        int[] remaining = {paths.size()};
+        for (String path : paths) {
+            rootRef.child(path).addListenerForSingleValueEvent(new ValueEventListener() {
+                @Override
+                public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+                    if (summariesOnly ? dataSnapshot.hasChildren() : dataSnapshot.exists()) {
+                        matches.add(path);
+                    }
+                    if (--remaining[0] == 0) {
+                        callback.onPaths(matches);
+                    }
+                }
+
+                @Override
+                public void onCancelled(@NonNull DatabaseError databaseError) {
+                    Log.e(TAG, "Error reading " + path + ": " + databaseError.getMessage());
+                    if (--remaining[0] == 0) {
+                        callback.onPaths(matches);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.SImpleMessenger.data;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.SImpleMessenger.data.codec.MessageCodec;
+import com.example.SImpleMessenger.data.model.Message;
+import com.example.SImpleMessenger.data.model.MessageSummary;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.Map;
+
+/**
+ * Message bodies live in /message-bodies/{id}, apart from the /messages/{id}
+ * header, so list paths never download them. Only the detail screen loads one.
+ */
+public final class MessageBodies {
+    private static final String TAG = "MessageBodies";
+
+    public interface BodyCallback {
+        void onLoaded(Message message);
+
+        void onError(String error);
+    }
+
+    private MessageBodies() {}
+
+    /**
+     * Fills in the body of a header-only message; other messages are passed straight through.
+     * If the body node is missing the preview is kept.
+     */
+    public static void load(DatabaseReference rootRef, Message message, BodyCallback callback) {
+        if (!message.isHeaderOnly()) {
+            callback.onLoaded(message);
+            return;
+        }
+        SingleFlight.getInstance().read(rootRef.child(DatabaseHelper.MESSAGE_BODIES_NODE).child(message.getId()),
+                new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        String content = MessageCodec.decodeBody(snapshot);
+                        if (content != null) {
+                            message.setContent(content);
+                            message.setHeaderOnly(false);
+                        } else {
+                            Log.w(TAG, "No body stored for message " + message.getId());
+                        }
+                        callback.onLoaded(message);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Error loading body of " + message.getId() + ": " + error.getMessage());
+                        callback.onError(error.getMessage());
+                    }
+                });
+    }
+
+    /**
+     * Adds the updates that write {@code message} as a header plus a separate body
+     */
+    static void putSplit(Map<String, Object> updates, Message message) {
+        updates.put("/" + DatabaseHelper.MESSAGES_NODE + "/" + message.getId(), MessageCodec.encode(message));
+        updates.put("/" + DatabaseHelper.MESSAGE_BODIES_NODE + "/" + message.getId(), MessageCodec.encodeBody(message));
+    }
+
+    /**
+     * Adds the updates that move the inline content of a message written before the
+     * split into /message-bodies, leaving a preview in its header
+     */
+    public static void putMigration(Map<String, Object> updates, String messageId, String content) {
+        String headerPath = "/" + DatabaseHelper.MESSAGES_NODE + "/" + messageId;
+        updates.put("/" + DatabaseHelper.MESSAGE_BODIES_NODE + "/" + messageId + "/content", content != null ? content : "");
+        updates.put(headerPath + "/preview", MessageSummary.makePreview(content));
+        updates.put(headerPath + "/content", null);
+    }
+}
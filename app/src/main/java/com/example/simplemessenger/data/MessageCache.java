@@ -0,0 +1,163 @@
+package com.example.SImpleMessenger.data;
+
+import com.example.SImpleMessenger.data.model.Message;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide LRU cache of fully decoded /messages/{id} nodes.
+ *
+ * Bounded by an estimate of the memory the cached messages hold rather than by
+ * entry count, so a few long messages cannot crowd out the heap. Only complete
+ * messages belong here; list rows built from index summaries carry a truncated
+ * preview instead of the content and must not be cached.
+ */
+public class MessageCache {
+    // Rough fixed cost of a Message object and its fields, excluding string contents
+    private static final int MESSAGE_OVERHEAD_BYTES = 160;
+    private static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+
+    private static MessageCache instance;
+
+    private final LinkedHashMap<String, CachedMessage> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final int maxBytes;
+    private int sizeBytes = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    private static class CachedMessage {
+        final Message message;
+        final int sizeBytes;
+
+        CachedMessage(Message message, int sizeBytes) {
+            this.message = message;
+            this.sizeBytes = sizeBytes;
+        }
+    }
+
+    /**
+     * Package-private constructor for testing
+     * @param maxBytes Upper bound on the estimated size of all cached messages
+     */
+    MessageCache(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public static synchronized MessageCache getInstance() {
+        if (instance == null) {
+            instance = new MessageCache(DEFAULT_MAX_BYTES);
+        }
+        return instance;
+    }
+
+    /**
+     * @return The cached message, or null on a miss
+     */
+    public synchronized Message get(String messageId) {
+        CachedMessage cached = messageId != null ? entries.get(messageId) : null;
+        if (cached == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return cached.message;
+    }
+
+    /**
+     * Adds or replaces a fully decoded message
+     */
+    public synchronized void put(Message message) {
+        if (message == null || message.getId() == null || message.getId().isEmpty()) {
+            return;
+        }
+        int size = estimateSize(message);
+        CachedMessage previous = entries.remove(message.getId());
+        if (previous != null) {
+            sizeBytes -= previous.sizeBytes;
+        }
+        if (size > maxBytes) {
+            // Larger than the whole cache; keeping it would evict everything else
+            return;
+        }
+        entries.put(message.getId(), new CachedMessage(message, size));
+        sizeBytes += size;
+        trimToSize();
+    }
+
+    /**
+     * Drops a message whose remote copy changed or was removed
+     */
+    public synchronized void invalidate(String messageId) {
+        if (messageId == null) {
+            return;
+        }
+        CachedMessage removed = entries.remove(messageId);
+        if (removed != null) {
+            sizeBytes -= removed.sizeBytes;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        sizeBytes = 0;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int getSizeBytes() {
+        return sizeBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long lookups = hitCount + missCount;
+        int hitPercent = lookups > 0 ? (int) (100 * hitCount / lookups) : 0;
+        return "MessageCache[entries=" + entries.size() + ", bytes=" + sizeBytes + "/" + maxBytes
+                + ", hits=" + hitCount + ", misses=" + missCount + " (" + hitPercent + "% hit)"
+                + ", evictions=" + evictionCount + "]";
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, CachedMessage>> iterator = entries.entrySet().iterator();
+        while (sizeBytes > maxBytes && iterator.hasNext()) {
+            // Access order: the first entry is the least recently used
+            sizeBytes -= iterator.next().getValue().sizeBytes;
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    static int estimateSize(Message message) {
+        return MESSAGE_OVERHEAD_BYTES
+                + charBytes(message.getId())
+                + charBytes(message.getSenderId())
+                + charBytes(message.getSenderEmail())
+                + charBytes(message.getRecipientId())
+                + charBytes(message.getRecipientEmail())
+                + charBytes(message.getSubject())
+                + charBytes(message.getContent())
+                + charBytes(message.getPreviousMessageId())
+                + charBytes(message.getCategory());
+    }
+
+    private static int charBytes(String value) {
+        return value != null ? value.length() * 2 : 0;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.SImpleMessenger.data;
+
+import android.util.Log;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Developer tool comparing the two ways {@link MessagePagingSource} can fetch a box
+ * that has no index summaries: {@link MessagePagingSource.LoadMode#REFERENCE_WALK}
+ * (read the index, then every /messages/{id} it lists) and
+ * {@link MessagePagingSource.LoadMode#SERVER_QUERY} (one indexed query on /messages).
+ * For each list size it times both paths end to end against the server and
+ * reports the average, so a deployment can pick the faster mode for its inboxes.
+ *
+ * Run from a debug build while signed in, e.g.
+ * {@code MessageLoadBenchmark.run(FirebaseFactory.getDatabase().getReference(), uid, true, null)},
+ * and read the results from logcat (tag MessageLoadBenchmark).
+ */
+public final class MessageLoadBenchmark {
+    private static final String TAG = "MessageLoadBenchmark";
+    private static final int[] LIST_SIZES = {10, 50, 100, 500};
+    private static final int MEASURED_ROUNDS = 3;
+    private static final long READ_TIMEOUT_SECONDS = 60;
+
+    public interface Listener {
+        void onResult(Result result);
+        void onError(String error);
+    }
+
+    public static final class Result {
+        public final int listSize;
+        /** Rows the reference walk produced; fewer than listSize when the box is smaller or has dangling entries */
+        public final int walkRows;
+        public final int queryRows;
+        /** Average milliseconds until all rows of the reference walk had arrived */
+        public final long walkMillis;
+        /** Average milliseconds for the server query */
+        public final long queryMillis;
+
+        Result(int listSize, int walkRows, int queryRows, long walkMillis, long queryMillis) {
+            this.listSize = listSize;
+            this.walkRows = walkRows;
+            this.queryRows = queryRows;
+            this.walkMillis = walkMillis;
+            this.queryMillis = queryMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "limit %d: reference walk %d rows in %d ms, server query %d rows in %d ms (%.1fx)",
+                    listSize, walkRows, walkMillis, queryRows, queryMillis,
+                    queryMillis > 0 ? (double) walkMillis / queryMillis : 0);
+        }
+    }
+
+    private MessageLoadBenchmark() {}
+
+    /**
+     * Measures every size in {@link #LIST_SIZES} on a background thread
+     * @param rootRef Database root
+     * @param ownerId uid whose box is loaded
+     * @param inbox true for the inbox, false for the outbox
+     * @param listener Optional; called on the benchmark thread, once per size
+     */
+    public static void run(DatabaseReference rootRef, String ownerId, boolean inbox, Listener listener) {
+        new Thread(() -> {
+            try {
+                for (int listSize : LIST_SIZES) {
+                    Result result = measure(rootRef, ownerId, inbox, listSize);
+                    Log.d(TAG, result.toString());
+                    if (listener != null) {
+                        listener.onResult(result);
+                    }
+                }
+            } catch (ExecutionException | TimeoutException e) {
+                Log.e(TAG, "Benchmark failed: " + e.getMessage());
+                if (listener != null) {
+                    listener.onError(e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, TAG).start();
+    }
+
+    private static Result measure(DatabaseReference rootRef, String ownerId, boolean inbox, int listSize)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        long walkNanos = 0;
+        long queryNanos = 0;
+        int walkRows = 0;
+        int queryRows = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            // Alternate the order so neither path always profits from a warmed-up connection
+            if (i % 2 == 0) {
+                long start = System.nanoTime();
+                walkRows = referenceWalk(rootRef, ownerId, inbox, listSize);
+                walkNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                queryRows = serverQuery(rootRef, ownerId, inbox, listSize);
+                queryNanos += System.nanoTime() - start;
+            } else {
+                long start = System.nanoTime();
+                queryRows = serverQuery(rootRef, ownerId, inbox, listSize);
+                queryNanos += System.nanoTime() - start;
+                start = System.nanoTime();
+                walkRows = referenceWalk(rootRef, ownerId, inbox, listSize);
+                walkNanos += System.nanoTime() - start;
+            }
+        }
+        return new Result(listSize, walkRows, queryRows,
+                TimeUnit.NANOSECONDS.toMillis(walkNanos / MEASURED_ROUNDS),
+                TimeUnit.NANOSECONDS.toMillis(queryNanos / MEASURED_ROUNDS));
+    }
+
+    /**
+     * Reads the newest index entries, then every referenced message in parallel
+     * @return Messages that exist
+     */
+    private static int referenceWalk(DatabaseReference rootRef, String ownerId, boolean inbox, int listSize)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        String box = inbox ? DatabaseHelper.USER_RECEIVED_NODE : DatabaseHelper.USER_SENT_NODE;
+        List<Task<DataSnapshot>> reads = new ArrayList<>();
+        for (String messageId : newestEntries(rootRef, ownerId, box, listSize)) {
+            reads.add(rootRef.child(DatabaseHelper.MESSAGES_NODE).child(messageId).get());
+        }
+        int rows = 0;
+        for (Task<DataSnapshot> read : reads) {
+            if (Tasks.await(read, READ_TIMEOUT_SECONDS, TimeUnit.SECONDS).exists()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Reads the ids of the newest {@code listSize} index entries. A partitioned
+     * index is read bucket by bucket, newest first, until enough entries are found,
+     * so the walk covers the same messages as the server query.
+     */
+    private static List<String> newestEntries(DatabaseReference rootRef, String ownerId, String box, int listSize)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        DatabaseReference boxRef = rootRef.child(DatabaseHelper.USER_MESSAGES_NODE).child(ownerId).child(box);
+        List<String> buckets = new ArrayList<>();
+        if (IndexBuckets.isEnabled()) {
+            DataSnapshot directory = Tasks.await(IndexBuckets.directoryRef(rootRef, ownerId, box).get(),
+                    READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            for (DataSnapshot bucket : directory.getChildren()) {
+                buckets.add(bucket.getKey());
+            }
+            // Month keys sort chronologically
+            Collections.sort(buckets, Collections.reverseOrder());
+        } else {
+            buckets.add(null);
+        }
+
+        List<String> ids = new ArrayList<>(listSize);
+        for (String bucket : buckets) {
+            if (ids.size() >= listSize) {
+                break;
+            }
+            DatabaseReference bucketRef = bucket != null ? boxRef.child(bucket) : boxRef;
+            DataSnapshot index = Tasks.await(bucketRef.orderByKey().limitToLast(listSize - ids.size()).get(),
+                    READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            for (DataSnapshot entry : index.getChildren()) {
+                ids.add(entry.getKey());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * @return Messages returned by the query, notes included
+     */
+    private static int serverQuery(DatabaseReference rootRef, String ownerId, boolean inbox, int listSize)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        DataSnapshot result = Tasks.await(MessagePagingSource.serverQuery(rootRef, ownerId, inbox, listSize).get(),
+                READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        return (int) result.getChildrenCount();
+    }
+}
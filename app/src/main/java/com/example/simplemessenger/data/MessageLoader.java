@@ -4,8 +4,9 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
-import com.example.SImpleMessenger.data.model.Contact;
+import com.example.SImpleMessenger.data.codec.MessageCodec;
 import com.example.SImpleMessenger.data.model.Message;
+import com.example.SImpleMessenger.data.model.MessageSummary;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
@@ -13,11 +14,12 @@ import com.google.firebase.database.Query;
 import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 public class MessageLoader {
     private static final String TAG = "MessageLoader";
+    // Upper bound on index entries a live listener keeps attached to
+    private static final int MAX_LIVE_MESSAGES = 100;
     
     public interface MessageLoadListener {
         void onMessagesLoaded(List<Message> messages);
@@ -26,10 +28,12 @@ public class MessageLoader {
     
     private final DatabaseHelper databaseHelper;
     private final ContactsManager contactsManager;
+    private final MessageCache messageCache = MessageCache.getInstance();
     private final String currentUserId;
     private boolean isInbox;
     private String currentSortField;
     private boolean isAscending;
+    private MessagePagingSource.LoadMode loadMode = MessagePagingSource.LoadMode.INDEX_SUMMARY;
     
     private ValueEventListener messageListener;
     private Query messagesQuery;
@@ -65,10 +69,9 @@ public class MessageLoader {
         String messageType = isInbox ? "received" : "sent";
         
         // Query messages
-        DatabaseReference userMessagesRef = databaseHelper.getDatabaseReference()
-                .child("user-messages")
-                .child(currentUserId)
-                .child(messageType);
+        // A partitioned index is read from this month's bucket only
+        DatabaseReference userMessagesRef = IndexBuckets.liveRef(databaseHelper.getDatabaseReference(),
+                currentUserId, messageType);
                 
         // Add a listener to check if the reference exists
         userMessagesRef.addListenerForSingleValueEvent(new ValueEventListener() {
@@ -80,12 +83,9 @@ public class MessageLoader {
                     return;
                 }
                 
-                // If reference exists, proceed with the query
-                messagesQuery = userMessagesRef.orderByChild(currentSortField);
-                
-                if (!isAscending) {
-                    messagesQuery = messagesQuery.limitToLast(100); // Only get last 100 messages
-                }
+                // If reference exists, proceed with the query. Always the newest entries,
+                // whatever the display order; sortAndNotify orders them
+                messagesQuery = userMessagesRef.orderByChild("timestamp").limitToLast(MAX_LIVE_MESSAGES);
                 
                 // Add a value event listener for real-time updates
                 messageListener = new ValueEventListener() {
@@ -99,66 +99,68 @@ public class MessageLoader {
                         }
                         
                         final List<Message> loadedMessages = new ArrayList<>();
-                        final int[] completedFetches = {0};
-                        final int totalMessages = (int) dataSnapshot.getChildrenCount();
+                        final List<String> idsToFetch = new ArrayList<>();
+                        // One instance, so a batch of resolved contacts triggers one refresh
+                        final Runnable refreshLoaded = () -> listener.onMessagesLoaded(loadedMessages);
                         
                         for (DataSnapshot messageRef : dataSnapshot.getChildren()) {
                             String messageId = messageRef.getKey();
+                            if (messageId == null) {
+                                continue;
+                            }
+                            
+                            MessageSummary summary = loadMode != MessagePagingSource.LoadMode.REFERENCE_WALK
+                                    ? MessageSummary.fromSnapshot(messageRef) : null;
+                            if (summary != null) {
+                                Message message = summary.toMessage(messageId, currentUserId, messageType);
+                                resolveContact(message, refreshLoaded);
+                                loadedMessages.add(message);
+                            } else {
+                                idsToFetch.add(messageId);
+                            }
+                        }
+                        
+                        if (idsToFetch.isEmpty()) {
+                            Log.d(TAG, "Rendered " + loadedMessages.size() + " messages from index summaries");
+                            sortAndNotify(loadedMessages, listener);
+                            return;
+                        }
+                        
+                        Log.d(TAG, "Fetching " + idsToFetch.size() + " messages without summaries");
+                        final int[] completedFetches = {0};
+                        final int totalMessages = idsToFetch.size();
+                        
+                        for (String messageId : idsToFetch) {
+                            Message cached = messageCache.get(messageId);
+                            if (cached != null) {
+                                resolveContact(cached, refreshLoaded);
+                                loadedMessages.add(cached);
+                                completedFetches[0]++;
+                                if (completedFetches[0] == totalMessages) {
+                                    sortAndNotify(loadedMessages, listener);
+                                }
+                                continue;
+                            }
                             Log.d(TAG, "Fetching message with ID: " + messageId);
                             
-                            databaseHelper.getDatabaseReference()
+                            SingleFlight.getInstance().read(databaseHelper.getDatabaseReference()
                                     .child("messages")
-                                    .child(messageId)
-                                    .addListenerForSingleValueEvent(new ValueEventListener() {
+                                    .child(messageId), new ValueEventListener() {
                                         @Override
                                         public void onDataChange(@NonNull DataSnapshot snapshot) {
-                                            Message message = snapshot.getValue(Message.class);
+                                            Message message = MessageCodec.decode(snapshot);
                                             if (message != null) {
                                                 // Set message ID
                                                 message.setId(messageId);
-                                                
-                                                // Look up contact info from cache
-                                                String contactId = isInbox ? message.getSenderId() : message.getRecipientId();
-                                                Contact contact = contactsManager.getContactById(contactId);
-                                                
-                                                if (contact != null) {
-                                                    // If contact is in cache, we don't need to set contact info in the message
-                                                    // as the message already contains the necessary sender/recipient info
-                                                } else {
-                                                    // If contact not in cache, try to fetch it
-                                                    contactsManager.fetchAndCreateContact(contactId, new ContactsManager.ContactsLoadListener() {
-                                                        @Override
-                                                        public void onContactsLoaded(List<Contact> contacts) {}
-
-                                                        @Override
-                                                        public void onContactAdded(Contact newContact) {
-                                                            // No need to update message with contact info
-                                                            // as the message already contains the necessary sender/recipient info
-                                                            // Just notify listener about the update
-                                                            listener.onMessagesLoaded(loadedMessages);
-                                                        }
-
-                                                        @Override
-                                                        public void onContactRemoved(Contact contact) {}
-
-                                                        @Override
-                                                        public void onError(String error) {
-                                                            Log.e(TAG, "Error fetching contact: " + error);
-                                                        }
-                                                    });
+                                                if (!message.isHeaderOnly()) {
+                                                    messageCache.put(message);
                                                 }
-                                                
+                                                resolveContact(message, refreshLoaded);
                                                 loadedMessages.add(message);
-                                                completedFetches[0]++;
-
-                                                if (completedFetches[0] == totalMessages) {
-                                                    sortAndNotify(loadedMessages, listener);
-                                                }
-                                            } else {
-                                                completedFetches[0]++;
-                                                if (completedFetches[0] == totalMessages) {
-                                                    sortAndNotify(loadedMessages, listener);
-                                                }
+                                            }
+                                            completedFetches[0]++;
+                                            if (completedFetches[0] == totalMessages) {
+                                                sortAndNotify(loadedMessages, listener);
                                             }
                                         }
 
@@ -193,11 +195,29 @@ public class MessageLoader {
         });
     }
     
+    /**
+     * Looks up the counterpart of a message in the contacts cache, fetching it if missing
+     * @param onContactFetched Run once a missing contact has been fetched
+     */
+    private void resolveContact(Message message, Runnable onContactFetched) {
+        String contactId = isInbox ? message.getSenderId() : message.getRecipientId();
+        if (contactId == null || contactId.isEmpty() || contactsManager.getContactById(contactId) != null) {
+            // The message already contains the necessary sender/recipient info
+            return;
+        }
+        
+        // If contact not in cache, queue it; lookups are batched across messages
+        ContactResolver.getInstance().resolve(contactId, onContactFetched);
+    }
+    
+    /**
+     * Sorts by the current field; fetched messages arrive in completion order, not query order
+     */
     private void sortAndNotify(List<Message> messages, MessageLoadListener listener) {
         if (currentSortField.equals("timestamp")) {
-            if (!isAscending) {
-                Collections.reverse(messages);
-            }
+            messages.sort((m1, m2) -> isAscending
+                    ? Long.compare(m1.getTimestamp(), m2.getTimestamp())
+                    : Long.compare(m2.getTimestamp(), m1.getTimestamp()));
         } else if (currentSortField.equals("subject")) {
             messages.sort((m1, m2) -> {
                 String s1 = m1.getSubject() != null ? m1.getSubject() : "";
@@ -241,6 +261,19 @@ public class MessageLoader {
         }
     }
     
+    /**
+     * Selects how rows are built; takes effect on the next {@link #loadMessages} call.
+     * SERVER_QUERY is served by {@link MessagePagingSource}; here it reads summaries like INDEX_SUMMARY.
+     * @param loadMode INDEX_SUMMARY (default), REFERENCE_WALK or SERVER_QUERY
+     */
+    public void setLoadMode(MessagePagingSource.LoadMode loadMode) {
+        this.loadMode = loadMode != null ? loadMode : MessagePagingSource.LoadMode.INDEX_SUMMARY;
+    }
+    
+    public MessagePagingSource.LoadMode getLoadMode() {
+        return loadMode;
+    }
+    
     public void cleanup() {
         removeListener();
     }
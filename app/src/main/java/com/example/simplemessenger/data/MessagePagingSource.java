@@ -0,0 +1,577 @@
+package com.example.SImpleMessenger.data;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.SImpleMessenger.data.codec.MessageCodec;
+import com.example.SImpleMessenger.data.model.Message;
+import com.example.SImpleMessenger.data.model.MessageSummary;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads one /user-messages/{uid}/{box} index in pages, newest first.
+ *
+ * Pages are fetched with orderByChild("timestamp") and (timestamp, key) keyset
+ * cursors, so each request reads at most one page regardless of inbox size.
+ * Only {@code maxPages} pages are kept in memory; pages that fall out of the
+ * window are dropped and re-fetched if the user scrolls back to them.
+ *
+ * A partitioned index (see {@link IndexBuckets}) is paged one month bucket at a
+ * time: the newest bucket first, and the next older one only once the user
+ * scrolls past the end of the current one.
+ *
+ * With {@link LoadMode#SERVER_QUERY} the index is skipped: pages come straight
+ * from /messages, queried by recipientId or senderId and paged by key. Every
+ * query is bounded to the owner's id with equalTo, or startAt and endAt both at
+ * it, which is what the /messages read rule accepts. Messages the recipient
+ * deleted carry {@link #RECIPIENT_DELETED} and are left out of the inbox.
+ */
+public class MessagePagingSource {
+    private static final String TAG = "MessagePagingSource";
+    private static final String ORDER_FIELD = "timestamp";
+    /** Set on a /messages node once its recipient deleted it from the inbox */
+    static final String RECIPIENT_DELETED = "recipientDeleted";
+
+    /**
+     * How list rows are materialised; see config.xml (message_load_mode)
+     */
+    public enum LoadMode {
+        /** Fetch every /messages/{id} node referenced by the index (one read per row) */
+        REFERENCE_WALK,
+        /** Build rows from the summaries stored in the index; only legacy entries are fetched */
+        INDEX_SUMMARY,
+        /**
+         * Skip the index and query /messages by recipientId (inbox) or senderId (outbox).
+         * Needs the .indexOn rules on /messages; entries only removed from the
+         * index (single-sided deletes) still show up in this mode. Notes always use the index.
+         */
+        SERVER_QUERY
+    }
+
+    public interface PageListener {
+        /**
+         * Called on every change to the in-memory window.
+         * @param window Messages currently held, newest first
+         * @param positionShift How far existing rows moved (items added at the start minus items removed from it)
+         */
+        void onWindowChanged(List<Message> window, int positionShift);
+        void onError(String error);
+    }
+
+    /** Keyset position of an index entry; timestamp is null for legacy boolean entries */
+    private static class Cursor {
+        final Double timestamp;
+        final String key;
+
+        Cursor(Double timestamp, String key) {
+            this.timestamp = timestamp;
+            this.key = key;
+        }
+    }
+
+    private static class Page {
+        final List<Message> messages;
+        final Cursor newest;
+        final Cursor oldest;
+        // Index into buckets of the bucket the page was read from
+        final int bucket;
+        // Whether the page reaches the oldest / newest entry of its bucket
+        final boolean bucketStart;
+        final boolean bucketEnd;
+
+        Page(List<Message> messages, Cursor newest, Cursor oldest, int bucket,
+             boolean bucketStart, boolean bucketEnd) {
+            this.messages = messages;
+            this.newest = newest;
+            this.oldest = oldest;
+            this.bucket = bucket;
+            this.bucketStart = bucketStart;
+            this.bucketEnd = bucketEnd;
+        }
+    }
+
+    private final DatabaseReference rootRef;
+    private final DatabaseReference indexRef;
+    private final String ownerId;
+    private final String box;
+    private final int pageSize;
+    private final int maxPages;
+    private final PageListener listener;
+
+    private final ArrayDeque<Page> pages = new ArrayDeque<>();
+    // Bucket keys newest first; a single null entry stands for an unpartitioned box
+    private List<String> buckets = Collections.singletonList(null);
+    private boolean loading = false;
+    private boolean hasMoreOlder = true;
+    private boolean hasMoreNewer = false;
+    private int generation = 0;
+    private LoadMode loadMode = LoadMode.INDEX_SUMMARY;
+
+    /**
+     * @param rootRef Database root
+     * @param ownerId uid owning the index
+     * @param box "received", "sent" or "notes"
+     * @param pageSize Index entries per request
+     * @param maxPages Pages kept in memory before the farthest one is dropped
+     */
+    public MessagePagingSource(DatabaseReference rootRef, String ownerId, String box,
+                               int pageSize, int maxPages, PageListener listener) {
+        this.rootRef = rootRef;
+        this.indexRef = rootRef.child(DatabaseHelper.USER_MESSAGES_NODE).child(ownerId).child(box);
+        this.ownerId = ownerId;
+        this.box = box;
+        this.pageSize = pageSize;
+        this.maxPages = Math.max(2, maxPages);
+        this.listener = listener;
+    }
+
+    /**
+     * Selects how rows are built; takes effect on the next {@link #refresh()}
+     */
+    public void setLoadMode(LoadMode loadMode) {
+        this.loadMode = loadMode != null ? loadMode : LoadMode.INDEX_SUMMARY;
+    }
+
+    /**
+     * @return The mode named {@code name}, or INDEX_SUMMARY if there is none
+     */
+    public static LoadMode parseLoadMode(String name) {
+        for (LoadMode mode : LoadMode.values()) {
+            if (mode.name().equals(name)) {
+                return mode;
+            }
+        }
+        Log.w(TAG, "Unknown load mode " + name + ", using " + LoadMode.INDEX_SUMMARY);
+        return LoadMode.INDEX_SUMMARY;
+    }
+
+    /**
+     * The /messages query behind {@link LoadMode#SERVER_QUERY}. Matches tie on the
+     * queried field, so they come in key order, which for push ids is send order.
+     */
+    static Query serverQuery(DatabaseReference rootRef, String ownerId, boolean inbox, int limit) {
+        return rootRef.child(DatabaseHelper.MESSAGES_NODE)
+                .orderByChild(inbox ? "recipientId" : "senderId")
+                .equalTo(ownerId)
+                .limitToLast(limit);
+    }
+
+    /**
+     * @return Whether {@code box} is loaded with a /messages query in {@code mode}
+     */
+    static boolean usesServerQuery(LoadMode mode, String box) {
+        return mode == LoadMode.SERVER_QUERY && (DatabaseHelper.USER_RECEIVED_NODE.equals(box)
+                || DatabaseHelper.USER_SENT_NODE.equals(box));
+    }
+
+    private boolean serverQueryMode() {
+        return usesServerQuery(loadMode, box);
+    }
+
+    private Query messagesByOwner() {
+        return rootRef.child(DatabaseHelper.MESSAGES_NODE)
+                .orderByChild(DatabaseHelper.USER_RECEIVED_NODE.equals(box) ? "recipientId" : "senderId");
+    }
+
+    /**
+     * Discards the window and loads the newest page
+     */
+    public void refresh() {
+        generation++;
+        pages.clear();
+        hasMoreOlder = true;
+        hasMoreNewer = false;
+        loading = true;
+        if (serverQueryMode() || !IndexBuckets.isEnabled()) {
+            buckets = Collections.singletonList(null);
+            loadNewest(0);
+            return;
+        }
+        final int requestGeneration = generation;
+        IndexBuckets.directoryRef(rootRef, ownerId, box).orderByKey()
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        if (requestGeneration != generation) {
+                            return;
+                        }
+                        List<String> keys = new ArrayList<>();
+                        for (DataSnapshot bucket : snapshot.getChildren()) {
+                            keys.add(bucket.getKey());
+                        }
+                        Collections.reverse(keys);
+                        buckets = keys;
+                        if (buckets.isEmpty()) {
+                            loading = false;
+                            hasMoreOlder = false;
+                            listener.onWindowChanged(currentWindow(), 0);
+                            return;
+                        }
+                        loadNewest(0);
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        if (requestGeneration != generation) {
+                            return;
+                        }
+                        loading = false;
+                        Log.e(TAG, "Error loading buckets: " + error.getMessage());
+                        listener.onError(error.getMessage());
+                    }
+                });
+    }
+
+    /** The newest page of bucket {@code bucket} */
+    private void loadNewest(int bucket) {
+        if (serverQueryMode()) {
+            serverQuery(rootRef, ownerId, DatabaseHelper.USER_RECEIVED_NODE.equals(box), pageSize)
+                    .addListenerForSingleValueEvent(new PageQueryListener(generation, null, true, bucket));
+            return;
+        }
+        bucketRef(bucket).orderByChild(ORDER_FIELD).limitToLast(pageSize)
+                .addListenerForSingleValueEvent(new PageQueryListener(generation, null, true, bucket));
+    }
+
+    /** The oldest page of bucket {@code bucket} */
+    private void loadOldest(int bucket) {
+        if (serverQueryMode()) {
+            messagesByOwner().equalTo(ownerId).limitToFirst(pageSize)
+                    .addListenerForSingleValueEvent(new PageQueryListener(generation, null, false, bucket));
+            return;
+        }
+        bucketRef(bucket).orderByChild(ORDER_FIELD).limitToFirst(pageSize)
+                .addListenerForSingleValueEvent(new PageQueryListener(generation, null, false, bucket));
+    }
+
+    private DatabaseReference bucketRef(int bucket) {
+        String key = buckets.get(bucket);
+        return key != null ? indexRef.child(key) : indexRef;
+    }
+
+    /**
+     * Loads the page older than the oldest one in the window
+     */
+    public void loadOlder() {
+        if (loading || !hasMoreOlder || pages.isEmpty()) {
+            return;
+        }
+        loading = true;
+        Page oldestPage = pages.peekLast();
+        if (oldestPage.bucketStart) {
+            if (oldestPage.bucket + 1 >= buckets.size()) {
+                loading = false;
+                hasMoreOlder = false;
+                return;
+            }
+            loadNewest(oldestPage.bucket + 1);
+            return;
+        }
+        Cursor cursor = oldestPage.oldest;
+        if (serverQueryMode()) {
+            messagesByOwner().startAt(ownerId).endAt(ownerId, cursor.key).limitToLast(pageSize + 1)
+                    .addListenerForSingleValueEvent(new PageQueryListener(generation, cursor.key, true, oldestPage.bucket));
+            return;
+        }
+        Query query = bucketRef(oldestPage.bucket).orderByChild(ORDER_FIELD);
+        query = cursor.timestamp != null
+                ? query.endAt(cursor.timestamp, cursor.key)
+                : query.endAt((String) null, cursor.key);
+        query.limitToLast(pageSize + 1)
+                .addListenerForSingleValueEvent(new PageQueryListener(generation, cursor.key, true, oldestPage.bucket));
+    }
+
+    /**
+     * Re-loads the page newer than the newest one in the window (after it was dropped)
+     */
+    public void loadNewer() {
+        if (loading || !hasMoreNewer || pages.isEmpty()) {
+            return;
+        }
+        loading = true;
+        Page newestPage = pages.peekFirst();
+        if (newestPage.bucketEnd) {
+            if (newestPage.bucket == 0) {
+                loading = false;
+                hasMoreNewer = false;
+                return;
+            }
+            loadOldest(newestPage.bucket - 1);
+            return;
+        }
+        Cursor cursor = newestPage.newest;
+        if (serverQueryMode()) {
+            messagesByOwner().startAt(ownerId, cursor.key).endAt(ownerId).limitToFirst(pageSize + 1)
+                    .addListenerForSingleValueEvent(new PageQueryListener(generation, cursor.key, false, newestPage.bucket));
+            return;
+        }
+        Query query = bucketRef(newestPage.bucket).orderByChild(ORDER_FIELD);
+        query = cursor.timestamp != null
+                ? query.startAt(cursor.timestamp, cursor.key)
+                : query.startAt((String) null, cursor.key);
+        query.limitToFirst(pageSize + 1)
+                .addListenerForSingleValueEvent(new PageQueryListener(generation, cursor.key, false, newestPage.bucket));
+    }
+
+    public boolean isLoading() {
+        return loading;
+    }
+
+    public boolean hasMoreOlder() {
+        return hasMoreOlder;
+    }
+
+    public boolean hasMoreNewer() {
+        return hasMoreNewer;
+    }
+
+    /**
+     * Detaches any in-flight page from the listener
+     */
+    public void cancel() {
+        generation++;
+        loading = false;
+    }
+
+    private class PageQueryListener implements ValueEventListener {
+        private final int requestGeneration;
+        private final String cursorKey;
+        private final boolean older;
+        private final int bucket;
+
+        PageQueryListener(int requestGeneration, String cursorKey, boolean older, int bucket) {
+            this.requestGeneration = requestGeneration;
+            this.cursorKey = cursorKey;
+            this.older = older;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
+            if (requestGeneration != generation) {
+                return;
+            }
+
+            // Query results arrive oldest first; drop the inclusive cursor entry
+            List<DataSnapshot> entries = new ArrayList<>();
+            for (DataSnapshot child : dataSnapshot.getChildren()) {
+                if (cursorKey == null || !cursorKey.equals(child.getKey())) {
+                    entries.add(child);
+                }
+            }
+
+            // A short page means this bucket is used up in that direction
+            boolean bucketDone = entries.size() < pageSize;
+            boolean moreBuckets = older ? bucket + 1 < buckets.size() : bucket > 0;
+            if (older) {
+                hasMoreOlder = !bucketDone || moreBuckets;
+            } else {
+                hasMoreNewer = !bucketDone || moreBuckets;
+            }
+
+            if (entries.isEmpty()) {
+                if (moreBuckets) {
+                    // An emptied bucket; go straight on to the next one
+                    if (older) {
+                        loadNewest(bucket + 1);
+                    } else {
+                        loadOldest(bucket - 1);
+                    }
+                    return;
+                }
+                loading = false;
+                listener.onWindowChanged(currentWindow(), 0);
+                return;
+            }
+
+            Cursor oldest = cursorOf(entries.get(0));
+            Cursor newest = cursorOf(entries.get(entries.size() - 1));
+            // The first page of a bucket read newest first is at its end, and vice versa
+            boolean bucketStart = older ? bucketDone : cursorKey == null;
+            boolean bucketEnd = older ? cursorKey == null : bucketDone;
+            toMessages(rootRef, ownerId, box, loadMode, entries, messages -> {
+                if (requestGeneration != generation) {
+                    return;
+                }
+                loading = false;
+                Page page = new Page(messages, newest, oldest, bucket, bucketStart, bucketEnd);
+                int shift = 0;
+                if (older) {
+                    pages.addLast(page);
+                    if (pages.size() > maxPages) {
+                        shift -= pages.removeFirst().messages.size();
+                        hasMoreNewer = true;
+                    }
+                } else {
+                    pages.addFirst(page);
+                    shift += messages.size();
+                    if (pages.size() > maxPages) {
+                        pages.removeLast();
+                        hasMoreOlder = true;
+                    }
+                }
+                Log.d(TAG, "Window now holds " + pages.size() + " pages for " + box);
+                listener.onWindowChanged(currentWindow(), shift);
+            });
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError databaseError) {
+            if (requestGeneration != generation) {
+                return;
+            }
+            loading = false;
+            Log.e(TAG, "Error loading page: " + databaseError.getMessage());
+            listener.onError(databaseError.getMessage());
+        }
+    }
+
+    interface PageCallback {
+        void onPage(List<Message> newestFirst);
+    }
+
+    /**
+     * Turns query results into messages the way {@code mode} loads {@code box}
+     * @param entries Index entries of {@code box}, or /messages nodes when
+     *                {@link #usesServerQuery} holds; oldest first
+     */
+    static void toMessages(DatabaseReference rootRef, String ownerId, String box, LoadMode mode,
+                           List<DataSnapshot> entries, PageCallback callback) {
+        if (!usesServerQuery(mode, box)) {
+            materialize(rootRef, ownerId, box, entries, mode != LoadMode.REFERENCE_WALK, callback);
+            return;
+        }
+        boolean inbox = DatabaseHelper.USER_RECEIVED_NODE.equals(box);
+        Message[] slots = new Message[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            slots[i] = fromQueryResult(entries.get(i), inbox);
+        }
+        callback.onPage(toNewestFirst(slots));
+    }
+
+    /**
+     * Decodes a message returned by a /messages query
+     * @param inbox Whether the query matched the recipient
+     * @return The message, or null for notes, archived messages and, in the inbox, messages
+     *         the recipient deleted, none of which the index lists either
+     */
+    static Message fromQueryResult(DataSnapshot snapshot, boolean inbox) {
+        if (inbox && Boolean.TRUE.equals(snapshot.child(RECIPIENT_DELETED).getValue())) {
+            return null;
+        }
+        Message message = MessageCodec.decode(snapshot);
+        if (message == null || message.isNote() || message.isArchived()) {
+            return null;
+        }
+        message.setId(snapshot.getKey());
+        return message;
+    }
+
+    /**
+     * Turns index entries into messages, fetching only entries without a summary
+     * @param entries Index entries of {@code box}, oldest first
+     * @param useSummaries False to fetch every message, as {@link LoadMode#REFERENCE_WALK} does
+     */
+    static void materialize(DatabaseReference rootRef, String ownerId, String box,
+                            List<DataSnapshot> entries, boolean useSummaries, PageCallback callback) {
+        final Message[] slots = new Message[entries.size()];
+        final List<Integer> missing = new ArrayList<>();
+
+        for (int i = 0; i < entries.size(); i++) {
+            DataSnapshot entry = entries.get(i);
+            MessageSummary summary = useSummaries ? MessageSummary.fromSnapshot(entry) : null;
+            if (summary != null) {
+                slots[i] = summary.toMessage(entry.getKey(), ownerId, box);
+            } else {
+                missing.add(i);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            callback.onPage(toNewestFirst(slots));
+            return;
+        }
+
+        // Entries decoded earlier in this process need no read
+        MessageCache cache = MessageCache.getInstance();
+        for (int i = missing.size() - 1; i >= 0; i--) {
+            int index = missing.get(i);
+            Message cached = cache.get(entries.get(index).getKey());
+            if (cached != null) {
+                slots[index] = cached;
+                missing.remove(i);
+            }
+        }
+        if (missing.isEmpty()) {
+            callback.onPage(toNewestFirst(slots));
+            return;
+        }
+
+        final int[] remaining = {missing.size()};
+        for (int index : missing) {
+            String messageId = entries.get(index).getKey();
+            SingleFlight.getInstance().read(rootRef.child(DatabaseHelper.MESSAGES_NODE).child(messageId),
+                    new ValueEventListener() {
+                        @Override
+                        public void onDataChange(@NonNull DataSnapshot snapshot) {
+                            Message message = MessageCodec.decode(snapshot);
+                            if (message != null) {
+                                message.setId(messageId);
+                                message.setNote("notes".equals(box));
+                                if (!message.isHeaderOnly()) {
+                                    // Split messages carry only a preview until their body is loaded
+                                    cache.put(message);
+                                }
+                                slots[index] = message;
+                            }
+                            if (--remaining[0] == 0) {
+                                callback.onPage(toNewestFirst(slots));
+                            }
+                        }
+
+                        @Override
+                        public void onCancelled(@NonNull DatabaseError error) {
+                            Log.e(TAG, "Error loading message " + messageId + ": " + error.getMessage());
+                            if (--remaining[0] == 0) {
+                                callback.onPage(toNewestFirst(slots));
+                            }
+                        }
+                    });
+        }
+    }
+
+    private static List<Message> toNewestFirst(Message[] slots) {
+        List<Message> messages = new ArrayList<>(slots.length);
+        for (Message message : slots) {
+            if (message != null) {
+                messages.add(message);
+            }
+        }
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    private static Cursor cursorOf(DataSnapshot entry) {
+        Object value = entry.child(ORDER_FIELD).getValue();
+        Double timestamp = value instanceof Number ? ((Number) value).doubleValue() : null;
+        return new Cursor(timestamp, entry.getKey());
+    }
+
+    private List<Message> currentWindow() {
+        List<Message> window = new ArrayList<>();
+        for (Page page : pages) {
+            window.addAll(page.messages);
+        }
+        return window;
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.SImpleMessenger.data;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.SImpleMessenger.data.codec.MessageCodec;
+import com.example.SImpleMessenger.data.local.LocalMessageStore;
+import com.example.SImpleMessenger.data.model.Message;
+import com.google.firebase.database.ChildEventListener;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps {@link LocalMessageStore} in sync with Firebase. Listeners attached here
+ * never touch the UI; they only write, and screens pick the changes up by
+ * observing the store.
+ */
+public class MessageStoreWriter {
+    private static final String TAG = "MessageStoreWriter";
+    // Newest index entries kept live per box; older ones are written by the paging source
+    private static final int LIVE_WINDOW = 30;
+
+    public interface ErrorListener {
+        void onError(String error);
+    }
+
+    private final DatabaseReference rootRef;
+    private final LocalMessageStore store;
+    private final Map<Query, ValueEventListener> listeners = new HashMap<>();
+    private final Map<Query, ChildEventListener> childListeners = new HashMap<>();
+    private MessagePagingSource.LoadMode loadMode = MessagePagingSource.LoadMode.INDEX_SUMMARY;
+
+    public MessageStoreWriter(DatabaseReference rootRef, LocalMessageStore store) {
+        this.rootRef = rootRef;
+        this.store = store;
+    }
+
+    /**
+     * Selects how rows are built, as for {@link MessagePagingSource#setLoadMode}; set before {@link #syncBox}
+     */
+    public void setLoadMode(MessagePagingSource.LoadMode loadMode) {
+        this.loadMode = loadMode != null ? loadMode : MessagePagingSource.LoadMode.INDEX_SUMMARY;
+    }
+
+    /**
+     * Mirrors the newest entries of /user-messages/{ownerId}/{box} into the store until {@link #stop()}.
+     * A partitioned index is mirrored from this month's bucket; older ones come from the paging source.
+     * With {@link MessagePagingSource.LoadMode#SERVER_QUERY} the newest /messages matching the
+     * owner are mirrored instead.
+     *
+     * The first batch is stored as one window, which also drops entries deleted while
+     * no listener was attached. After that a ChildEventListener writes each added,
+     * changed or removed entry on its own, so a new message costs one row write
+     * instead of re-materialising the whole window.
+     */
+    public void syncBox(String ownerId, String box, ErrorListener errorListener) {
+        Query query = MessagePagingSource.usesServerQuery(loadMode, box)
+                ? MessagePagingSource.serverQuery(rootRef, ownerId, DatabaseHelper.USER_RECEIVED_NODE.equals(box), LIVE_WINDOW)
+                : IndexBuckets.liveRef(rootRef, ownerId, box).orderByChild("timestamp").limitToLast(LIVE_WINDOW);
+        final boolean[] initialLoadDone = {false};
+        ChildEventListener deltaListener = new ChildEventListener() {
+            @Override
+            public void onChildAdded(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                // The initial replay is covered by the window written below
+                if (initialLoadDone[0]) {
+                    putEntry(ownerId, box, snapshot);
+                }
+            }
+
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                if (initialLoadDone[0]) {
+                    MessageCache.getInstance().invalidate(snapshot.getKey());
+                    putEntry(ownerId, box, snapshot);
+                }
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+                if (initialLoadDone[0]) {
+                    removeEntryIfDeleted(ownerId, box, snapshot);
+                }
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, @Nullable String previousChildName) {
+                // Rows are ordered by the store query
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Box sync cancelled for " + box + ": " + error.getMessage());
+                if (errorListener != null) {
+                    errorListener.onError(error.getMessage());
+                }
+            }
+        };
+        attachChildListener(query, deltaListener);
+
+        // A value event on the same query fires after the initial child events
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (!childListeners.containsValue(deltaListener)) {
+                    // Stopped before the first batch arrived
+                    return;
+                }
+                initialLoadDone[0] = true;
+                List<DataSnapshot> entries = new ArrayList<>();
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    entries.add(child);
+                }
+                // A partitioned live window only sees this month's bucket; older rows stay
+                long notBefore = MessagePagingSource.usesServerQuery(loadMode, box)
+                        ? Long.MIN_VALUE : IndexBuckets.liveRangeStart();
+                MessagePagingSource.toMessages(rootRef, ownerId, box, loadMode, entries,
+                        messages -> store.putWindow(ownerId, box, messages, true, notBefore));
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Error loading " + box + " window: " + error.getMessage());
+            }
+        });
+    }
+
+    private void putEntry(String ownerId, String box, DataSnapshot entry) {
+        MessagePagingSource.toMessages(rootRef, ownerId, box, loadMode, Collections.singletonList(entry), messages -> {
+            if (!messages.isEmpty()) {
+                store.putEntry(ownerId, box, messages.get(0));
+            } else if (MessagePagingSource.usesServerQuery(loadMode, box)) {
+                // Archived, or deleted by the recipient, since it was listed
+                removeEntry(ownerId, box, entry.getKey());
+            }
+        });
+    }
+
+    /**
+     * Entries that only slid out of the live window are reported as removed too, so
+     * the stored row is dropped only if the entry is really gone, which reads as an
+     * empty snapshot. A failed read keeps the row; the next sync of the box settles it.
+     */
+    private void removeEntryIfDeleted(String ownerId, String box, DataSnapshot entry) {
+        String messageId = entry.getKey();
+        entry.getRef().addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (!snapshot.exists()) {
+                    removeEntry(ownerId, box, messageId);
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Error checking removed entry " + messageId + ": " + error.getMessage());
+            }
+        });
+    }
+
+    private void removeEntry(String ownerId, String box, String messageId) {
+        MessageCache.getInstance().invalidate(messageId);
+        store.removeEntries(ownerId, box, Collections.singletonList(messageId));
+    }
+
+    /**
+     * Mirrors /messages/{messageId} into the store until {@link #stop()}
+     * @param errorListener Told about load failures and when the message no longer exists
+     */
+    public void syncMessage(String messageId, ErrorListener errorListener) {
+        Query query = rootRef.child(DatabaseHelper.MESSAGES_NODE).child(messageId);
+        ValueEventListener listener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                // The remote copy changed, so the cached one is stale either way
+                Message previous = MessageCache.getInstance().get(messageId);
+                MessageCache.getInstance().invalidate(messageId);
+                Message message = MessageCodec.decode(snapshot);
+                if (message == null) {
+                    if (errorListener != null) {
+                        errorListener.onError("Message not found");
+                    }
+                    return;
+                }
+                message.setId(snapshot.getKey());
+                // Bodies never change, so header updates (read, category) keep the one already loaded
+                if (message.isHeaderOnly() && previous != null && !previous.isHeaderOnly()) {
+                    message.setContent(previous.getContent());
+                    message.setHeaderOnly(false);
+                }
+                MessageBodies.load(rootRef, message, new MessageBodies.BodyCallback() {
+                    @Override
+                    public void onLoaded(Message loaded) {
+                        MessageCache.getInstance().put(loaded);
+                        store.putMessage(loaded);
+                    }
+
+                    @Override
+                    public void onError(String error) {
+                        if (errorListener != null) {
+                            errorListener.onError(error);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Message sync cancelled for " + messageId + ": " + error.getMessage());
+                if (errorListener != null) {
+                    errorListener.onError(error.getMessage());
+                }
+            }
+        };
+        attach(query, listener);
+    }
+
+    /**
+     * Detaches every listener started by this writer
+     */
+    public void stop() {
+        for (Map.Entry<Query, ValueEventListener> entry : listeners.entrySet()) {
+            entry.getKey().removeEventListener(entry.getValue());
+        }
+        listeners.clear();
+        for (Map.Entry<Query, ChildEventListener> entry : childListeners.entrySet()) {
+            entry.getKey().removeEventListener(entry.getValue());
+        }
+        childListeners.clear();
+    }
+
+    private void attach(Query query, ValueEventListener listener) {
+        ValueEventListener previous = listeners.put(query, listener);
+        if (previous != null) {
+            query.removeEventListener(previous);
+        }
+        query.addValueEventListener(listener);
+    }
+
+    private void attachChildListener(Query query, ChildEventListener listener) {
+        ChildEventListener previous = childListeners.put(query, listener);
+        if (previous != null) {
+            query.removeEventListener(previous);
+        }
+        query.addChildEventListener(listener);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.SImpleMessenger.data;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Remembers user ids and emails that have no /users record.
+ *
+ * After a miss the key is suppressed for {@link #BASE_TTL_MS}; each further
+ * miss once that expires doubles the time, up to {@link #MAX_TTL_MS}, so a
+ * deleted account in an old thread costs a handful of queries per day instead
+ * of one per list bind. A successful lookup forgets the key. Emails are matched
+ * ignoring case and surrounding whitespace.
+ */
+public class NegativeLookupCache {
+    static final long BASE_TTL_MS = 60 * 1000;
+    static final long MAX_TTL_MS = 6L * 60 * 60 * 1000;
+    private static final int MAX_ENTRIES = 1000;
+
+    private static NegativeLookupCache instance;
+
+    interface Clock {
+        long now();
+    }
+
+    private static class Miss {
+        int count;
+        long expiresAt;
+    }
+
+    // Access order, so the least recently used key is dropped once full
+    private final LinkedHashMap<String, Miss> misses = new LinkedHashMap<String, Miss>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Miss> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private final Clock clock;
+    private long suppressedCount = 0;
+    private long missCount = 0;
+
+    /**
+     * Package-private constructor for testing
+     */
+    NegativeLookupCache(Clock clock) {
+        this.clock = clock;
+    }
+
+    public static synchronized NegativeLookupCache getInstance() {
+        if (instance == null) {
+            instance = new NegativeLookupCache(System::currentTimeMillis);
+        }
+        return instance;
+    }
+
+    static String normalize(String userIdOrEmail) {
+        // Uids are case-sensitive; emails are not
+        return userIdOrEmail.indexOf('@') >= 0
+                ? userIdOrEmail.trim().toLowerCase(Locale.ROOT)
+                : userIdOrEmail;
+    }
+
+    /**
+     * @return True if a recent lookup of {@code userIdOrEmail} found nothing and it
+     *         should not be queried again yet; counted as a suppressed query
+     */
+    public synchronized boolean isKnownMissing(String userIdOrEmail) {
+        if (userIdOrEmail == null) {
+            return false;
+        }
+        Miss miss = misses.get(normalize(userIdOrEmail));
+        if (miss == null || clock.now() >= miss.expiresAt) {
+            return false;
+        }
+        suppressedCount++;
+        return true;
+    }
+
+    /**
+     * Records that {@code userIdOrEmail} has no /users record
+     */
+    public synchronized void recordMiss(String userIdOrEmail) {
+        if (userIdOrEmail == null) {
+            return;
+        }
+        String key = normalize(userIdOrEmail);
+        Miss miss = misses.get(key);
+        if (miss == null) {
+            miss = new Miss();
+            misses.put(key, miss);
+        }
+        miss.count++;
+        missCount++;
+        long ttl = BASE_TTL_MS << Math.min(miss.count - 1, 20);
+        miss.expiresAt = clock.now() + Math.min(ttl, MAX_TTL_MS);
+    }
+
+    /**
+     * Forgets any miss for {@code userIdOrEmail}, e.g. once it resolved
+     */
+    public synchronized void recordFound(String userIdOrEmail) {
+        if (userIdOrEmail != null) {
+            misses.remove(normalize(userIdOrEmail));
+        }
+    }
+
+    /** Lookups skipped because the key was known to be missing */
+    public synchronized long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    /** Lookups that went to Firebase and found nothing */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized int size() {
+        return misses.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "NegativeLookupCache[keys=" + misses.size() + ", misses=" + missCount
+                + ", suppressed=" + suppressedCount + "]";
+    }
+}
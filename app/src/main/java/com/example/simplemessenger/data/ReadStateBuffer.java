@@ -0,0 +1,191 @@
+package com.example.SImpleMessenger.data;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.SImpleMessenger.util.FirebaseFactory;
+import com.google.firebase.database.DatabaseReference;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Write-behind buffer for read flags.
+ *
+ * Messages marked read are collected for {@link #FLUSH_DELAY_MS}, or until
+ * {@link #MAX_PENDING} are waiting or the app goes to the background, and then
+ * written with one multi-path update covering /messages/{id}/read and the inbox
+ * summaries. Flags of messages deleted in the meantime are dropped, and if the
+ * update is rejected each message is retried on its own. Callers update local
+ * caches themselves, so rows change right away.
+ * Call from the main thread.
+ */
+public class ReadStateBuffer {
+    private static final String TAG = "ReadStateBuffer";
+    static final long FLUSH_DELAY_MS = 3000;
+    static final int MAX_PENDING = 100;
+    private static ReadStateBuffer instance;
+
+    interface Scheduler {
+        void postDelayed(Runnable task, long delayMs);
+
+        void cancel(Runnable task);
+    }
+
+    private final DatabaseReference rootRef;
+    private final Scheduler scheduler;
+    private final Runnable flushRunnable = this::flush;
+    // Message id to the uid whose inbox summary gets the flag; null for none
+    private Map<String, String> pending = new LinkedHashMap<>();
+    private boolean flushScheduled = false;
+    private long flushCount = 0;
+    private long coalescedCount = 0;
+
+    /**
+     * Package-private constructor for testing
+     */
+    ReadStateBuffer(DatabaseReference rootRef, Scheduler scheduler) {
+        this.rootRef = rootRef;
+        this.scheduler = scheduler;
+    }
+
+    public static synchronized ReadStateBuffer getInstance() {
+        if (instance == null) {
+            Handler handler = new Handler(Looper.getMainLooper());
+            instance = new ReadStateBuffer(FirebaseFactory.getDatabase().getReference(), new Scheduler() {
+                @Override
+                public void postDelayed(Runnable task, long delayMs) {
+                    handler.postDelayed(task, delayMs);
+                }
+
+                @Override
+                public void cancel(Runnable task) {
+                    handler.removeCallbacks(task);
+                }
+            });
+        }
+        return instance;
+    }
+
+    /**
+     * Queues the read flag of {@code messageId}
+     * @param ownerId uid whose received summary should be updated too, or null
+     */
+    public void markRead(String messageId, String ownerId) {
+        if (messageId == null || messageId.isEmpty()) {
+            return;
+        }
+        if (pending.containsKey(messageId)) {
+            coalescedCount++;
+        }
+        pending.put(messageId, ownerId);
+        if (pending.size() >= MAX_PENDING) {
+            flush();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            scheduler.postDelayed(flushRunnable, FLUSH_DELAY_MS);
+        }
+    }
+
+    /**
+     * Writes everything queued so far, e.g. when the app goes to the background
+     */
+    public void flush() {
+        scheduler.cancel(flushRunnable);
+        flushScheduled = false;
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<String, String> batch = pending;
+        pending = new LinkedHashMap<>();
+        flushCount++;
+
+        // A message deleted while its flag waited would come back as a partial
+        // header that fails validation and takes the whole update down with it
+        List<String> headerPaths = new ArrayList<>(batch.size());
+        for (String messageId : batch.keySet()) {
+            headerPaths.add(headerPath(messageId));
+        }
+        IndexEntries.findExisting(rootRef, headerPaths, existing -> {
+            Set<String> live = new HashSet<>(existing);
+            Map<String, String> flags = new LinkedHashMap<>();
+            for (Map.Entry<String, String> entry : batch.entrySet()) {
+                if (live.contains(headerPath(entry.getKey()))) {
+                    flags.put(entry.getKey(), entry.getValue());
+                }
+            }
+            if (flags.size() < batch.size()) {
+                Log.d(TAG, "Dropped " + (batch.size() - flags.size()) + " read flags of deleted messages");
+            }
+            if (!flags.isEmpty()) {
+                writeFlags(flags);
+            }
+        });
+    }
+
+    private static String headerPath(String messageId) {
+        return DatabaseHelper.MESSAGES_NODE + "/" + messageId + "/recipientId";
+    }
+
+    private void writeFlags(Map<String, String> flags) {
+        // Only inbox entries that hold summaries get the flag; see IndexEntries
+        List<String> entryPaths = new ArrayList<>();
+        for (Map.Entry<String, String> entry : flags.entrySet()) {
+            if (entry.getValue() != null) {
+                entryPaths.add(IndexBuckets.entryPath(entry.getValue(), DatabaseHelper.USER_RECEIVED_NODE, entry.getKey()));
+            }
+        }
+        IndexEntries.findSummaries(rootRef, entryPaths, summaryPaths -> {
+            Set<String> summaries = new HashSet<>(summaryPaths);
+            // Updates per message, so a rejected batch can be retried one message at a time
+            Map<String, Map<String, Object>> perMessage = new LinkedHashMap<>();
+            Map<String, Object> updates = new HashMap<>();
+            for (Map.Entry<String, String> entry : flags.entrySet()) {
+                Map<String, Object> messageUpdates = new HashMap<>();
+                messageUpdates.put("/" + DatabaseHelper.MESSAGES_NODE + "/" + entry.getKey() + "/read", true);
+                if (entry.getValue() != null) {
+                    String entryPath = IndexBuckets.entryPath(entry.getValue(), DatabaseHelper.USER_RECEIVED_NODE, entry.getKey());
+                    if (summaries.contains(entryPath)) {
+                        messageUpdates.put("/" + entryPath + "/read", true);
+                    }
+                }
+                perMessage.put(entry.getKey(), messageUpdates);
+                updates.putAll(messageUpdates);
+            }
+            write(updates, perMessage);
+        });
+    }
+
+    private void write(Map<String, Object> updates, Map<String, Map<String, Object>> perMessage) {
+        rootRef.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> Log.d(TAG, "Marked " + perMessage.size() + " messages read in one update"))
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Error writing read flags: " + e.getMessage());
+                    if (perMessage.size() > 1) {
+                        // One bad message fails the whole update; write the others on their own
+                        for (Map.Entry<String, Map<String, Object>> entry : perMessage.entrySet()) {
+                            rootRef.updateChildren(entry.getValue())
+                                    .addOnFailureListener(error -> Log.e(TAG, "Error marking message "
+                                            + entry.getKey() + " read: " + error.getMessage()));
+                        }
+                    }
+                });
+    }
+
+    /** Flags still waiting to be written */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ReadStateBuffer[pending=" + pending.size() + ", flushes=" + flushCount
+                + ", coalesced=" + coalescedCount + "]";
+    }
+}
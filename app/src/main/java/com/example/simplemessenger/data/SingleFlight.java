@@ -0,0 +1,117 @@
+package com.example.SImpleMessenger.data;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-flight table for one-off Firebase reads.
+ *
+ * While a read of a node is outstanding, further requests for the same node
+ * join it instead of attaching their own listener; the single result is then
+ * delivered to every waiting listener in arrival order.
+ */
+public class SingleFlight {
+    private static final String TAG = "SingleFlight";
+    private static SingleFlight instance;
+
+    private final Map<String, List<ValueEventListener>> inFlight = new HashMap<>();
+    private long requestCount = 0;
+    private long readCount = 0;
+
+    public static synchronized SingleFlight getInstance() {
+        if (instance == null) {
+            instance = new SingleFlight();
+        }
+        return instance;
+    }
+
+    /**
+     * Reads {@code ref} once, sharing the read with any identical request already in flight
+     */
+    public void read(DatabaseReference ref, ValueEventListener listener) {
+        read(ref, ref.toString(), listener);
+    }
+
+    /**
+     * Runs {@code query} once, sharing it with any in-flight request with the same key
+     * @param key Identifies the query, e.g. its path plus ordering and filter values
+     */
+    public void read(Query query, String key, ValueEventListener listener) {
+        synchronized (this) {
+            requestCount++;
+            List<ValueEventListener> waiters = inFlight.get(key);
+            if (waiters != null) {
+                waiters.add(listener);
+                Log.d(TAG, "Joined in-flight read of " + key + " (" + waiters.size() + " waiting)");
+                return;
+            }
+            waiters = new ArrayList<>();
+            waiters.add(listener);
+            inFlight.put(key, waiters);
+            readCount++;
+        }
+
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                for (ValueEventListener waiter : take(key)) {
+                    waiter.onDataChange(snapshot);
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                for (ValueEventListener waiter : take(key)) {
+                    waiter.onCancelled(error);
+                }
+            }
+        });
+    }
+
+    /**
+     * Records a request that was served by joining a coalesced operation outside this
+     * table (e.g. a contact lookup), so the statistics cover it too
+     */
+    public synchronized void countSharedRead() {
+        requestCount++;
+    }
+
+    private synchronized List<ValueEventListener> take(String key) {
+        List<ValueEventListener> waiters = inFlight.remove(key);
+        return waiters != null ? waiters : Collections.emptyList();
+    }
+
+    /** Reads requested through this table */
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    /** Reads actually sent to Firebase */
+    public synchronized long getReadCount() {
+        return readCount;
+    }
+
+    /** Reads avoided by joining one already in flight */
+    public synchronized long getSavedReadCount() {
+        return requestCount - readCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SingleFlight[requests=" + requestCount + ", reads=" + readCount
+                + ", saved=" + (requestCount - readCount) + ", inFlight=" + inFlight.size() + "]";
+    }
+}
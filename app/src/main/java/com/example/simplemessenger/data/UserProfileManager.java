@@ -4,6 +4,7 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import com.example.SImpleMessenger.data.codec.UserCodec;
 import com.example.SImpleMessenger.data.model.User;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
@@ -13,6 +14,9 @@ import com.google.firebase.database.DatabaseReference;
 import com.example.SImpleMessenger.util.FirebaseFactory;
 import com.google.firebase.database.ValueEventListener;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class UserProfileManager {
     private static final String TAG = "UserProfileManager";
     private static final String USERS_NODE = "users";
@@ -58,12 +62,14 @@ public class UserProfileManager {
                 @Override
                 public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
                     User user;
+                    String previousEmail = null;
                     if (dataSnapshot.exists()) {
                         // Update existing user
-                        user = dataSnapshot.getValue(User.class);
+                        user = UserCodec.decode(dataSnapshot);
                         if (user == null) {
                             user = new User();
                         }
+                        previousEmail = user.getEmail();
                         user.setDisplayName(displayName);
                         if (email != null && !email.isEmpty()) {
                             user.setEmail(email);
@@ -79,10 +85,13 @@ public class UserProfileManager {
                     user.setOnline(true);
                     
                     // Save the user
+                    final String savedEmail = user.getEmail();
+                    final String replacedEmail = previousEmail;
                     databaseReference.child(USERS_NODE).child(userId)
                             .setValue(user)
                             .addOnSuccessListener(aVoid -> {
                                 Log.d(TAG, "User profile updated successfully");
+                                updateEmailIndex(userId, savedEmail, replacedEmail);
                                 if (listener != null) {
                                     listener.onSuccess();
                                 }
@@ -125,7 +134,7 @@ public class UserProfileManager {
                     public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
                         if (dataSnapshot.exists()) {
                             // User exists, map to User object
-                            User user = dataSnapshot.getValue(User.class);
+                            User user = UserCodec.decode(dataSnapshot);
                             if (user != null) {
                                 user.setUid(currentUser.getUid());
                                 // Ensure email is set (in case it was updated in Firebase Auth)
@@ -192,6 +201,7 @@ public class UserProfileManager {
         databaseReference.child(USERS_NODE).child(firebaseUser.getUid())
                 .setValue(newUser)
                 .addOnSuccessListener(aVoid -> {
+                    updateEmailIndex(firebaseUser.getUid(), newUser.getEmail(), null);
                     if (listener != null) {
                         listener.onProfileLoaded(newUser);
                     }
@@ -204,6 +214,32 @@ public class UserProfileManager {
                 });
     }
 
+    /**
+     * Points /email-index at {@code userId} for {@code email} and drops the entry for
+     * {@code previousEmail} if the address changed. Failures are logged only: lookups
+     * fall back to querying /users by email.
+     */
+    private void updateEmailIndex(String userId, String email, String previousEmail) {
+        if (email == null || email.trim().isEmpty()) {
+            return;
+        }
+        String key = EmailIndex.keyFor(email);
+        Map<String, Object> updates = new HashMap<>();
+        updates.put("/" + EmailIndex.EMAIL_INDEX_NODE + "/" + key, userId);
+        if (previousEmail != null && !previousEmail.trim().isEmpty()
+                && !EmailIndex.keyFor(previousEmail).equals(key)) {
+            updates.put("/" + EmailIndex.EMAIL_INDEX_NODE + "/" + EmailIndex.keyFor(previousEmail), null);
+        }
+        databaseReference.updateChildren(updates)
+                .addOnSuccessListener(aVoid -> {
+                    EmailIndex emailIndex = EmailIndex.getInstance();
+                    if (emailIndex != null) {
+                        emailIndex.remember(email, userId);
+                    }
+                })
+                .addOnFailureListener(e -> Log.e(TAG, "Failed to update email index: " + e.getMessage()));
+    }
+
     public interface ProfileLoadListener {
         /**
          * Called when the user profile is successfully loaded
@@ -0,0 +1,295 @@
+package com.example.SImpleMessenger.data.cleanup;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.SImpleMessenger.data.IndexBuckets;
+import com.example.SImpleMessenger.data.MessageBodies;
+import com.example.SImpleMessenger.data.MessageCache;
+import com.example.SImpleMessenger.data.codec.MessageCodec;
+import com.example.SImpleMessenger.data.local.LocalMessageStore;
+import com.example.SImpleMessenger.util.FirebaseFactory;
+import com.example.SImpleMessenger.util.FirebaseUtils;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Prunes /user-messages/{uid} entries whose /messages/{id} no longer exists.
+ *
+ * Deleting a message only removes the deleter's own entry, so the other party
+ * keeps a reference that every list load pays a round trip for. Each run walks
+ * the signed-in user's boxes (bucket by bucket when the index is partitioned)
+ * in key order, {@link #PAGE_SIZE} entries at a time,
+ * removes the dangling ones with one multi-path update per page, and stores how
+ * far it got so the next run continues there. A run checks at most
+ * {@link #MAX_CHECKS_PER_RUN} entries.
+ *
+ * The same pass migrates the user's own sent messages and notes written before
+ * bodies moved to /message-bodies, since it reads their headers anyway. With a
+ * partitioned index it also moves entries written directly under a box before
+ * partitioning was switched on into their month buckets, which is the only place
+ * the lists read from.
+ */
+public class OrphanIndexWorker extends Worker {
+    private static final String TAG = "OrphanIndexWorker";
+    private static final String WORK_NAME = "orphan-index-gc";
+    private static final String PREFS_NAME = "orphan_index_gc";
+    private static final String[] BOXES = {"received", "sent", "notes"};
+    static final int PAGE_SIZE = 100;
+    static final int MAX_CHECKS_PER_RUN = 1000;
+    private static final long REPEAT_HOURS = 24;
+    private static final long READ_TIMEOUT_SECONDS = 30;
+
+    private int checked = 0;
+    private int pruned = 0;
+    private int migrated = 0;
+
+    public OrphanIndexWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Schedules a daily sweep while the device is idle enough; keeps an existing schedule
+     */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.UNMETERED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(
+                OrphanIndexWorker.class, REPEAT_HOURS, TimeUnit.HOURS)
+                .setConstraints(constraints)
+                .build();
+        WorkManager.getInstance(context.getApplicationContext())
+                .enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        FirebaseUser user = FirebaseFactory.getAuth().getCurrentUser();
+        if (user == null) {
+            return Result.success();
+        }
+        String ownerId = user.getUid();
+        DatabaseReference rootRef = FirebaseFactory.getDatabase().getReference();
+
+        try {
+            for (String box : BOXES) {
+                if (IndexBuckets.isEnabled()) {
+                    moveFlatEntries(rootRef, ownerId, box);
+                }
+                for (String node : indexNodes(rootRef, ownerId, box)) {
+                    sweep(rootRef, ownerId, box, node);
+                }
+            }
+        } catch (ExecutionException | TimeoutException e) {
+            Log.e(TAG, "Sweep stopped after " + checked + " entries: " + e.getMessage());
+            return Result.retry();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        }
+        Log.d(TAG, "Checked " + checked + " index entries, pruned " + pruned + ", moved " + migrated + " bodies");
+        return Result.success();
+    }
+
+    /**
+     * Checks the entries of one index node page by page from its saved cursor,
+     * until the node ends or the run's budget is spent
+     */
+    private void sweep(DatabaseReference rootRef, String ownerId, String box, String node)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        SharedPreferences cursors = getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String cursorKey = ownerId + "/" + node;
+        while (checked < MAX_CHECKS_PER_RUN && !isStopped()) {
+            String cursor = cursors.getString(cursorKey, null);
+            List<String> ids = readPage(rootRef, ownerId, node, cursor);
+            checked += ids.size();
+
+            Map<String, DataSnapshot> messages = readMessages(rootRef, ids);
+            Map<String, Object> prunes = new HashMap<>();
+            List<String> orphans = removeOrphans(ownerId, node, messages, prunes);
+            if (!prunes.isEmpty()) {
+                Tasks.await(rootRef.updateChildren(prunes), READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                dropLocally(ownerId, box, orphans);
+                pruned += orphans.size();
+            }
+            if (!"received".equals(box)) {
+                // Only the sender moves a body; the recipient sees the same message
+                migrateBodies(rootRef, messages);
+            }
+
+            if (ids.size() < PAGE_SIZE) {
+                // Reached the end of the node; the next pass starts over
+                cursors.edit().remove(cursorKey).apply();
+                return;
+            }
+            cursors.edit().putString(cursorKey, ids.get(ids.size() - 1)).apply();
+        }
+    }
+
+    /**
+     * Moves the inline bodies of the page's messages to /message-bodies. Written
+     * apart from the prunes, so a body the rules reject neither blocks the
+     * cleanup nor stops the sweep; the next pass tries it again.
+     */
+    private void migrateBodies(DatabaseReference rootRef, Map<String, DataSnapshot> messages)
+            throws InterruptedException, TimeoutException {
+        Map<String, Object> updates = new HashMap<>();
+        int count = 0;
+        for (Map.Entry<String, DataSnapshot> message : messages.entrySet()) {
+            DataSnapshot header = message.getValue();
+            if (header.exists() && header.hasChild("content")) {
+                MessageBodies.putMigration(updates, message.getKey(), MessageCodec.decodeBody(header));
+                count++;
+            }
+        }
+        if (updates.isEmpty()) {
+            return;
+        }
+        try {
+            Tasks.await(rootRef.updateChildren(updates), READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            migrated += count;
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Moving " + count + " bodies failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves entries stored directly under {@code box} into their month buckets and lists
+     * the buckets in the directory. Only keys that can't be bucket keys are read: push ids
+     * sort before the digits bucket keys start with, anything else after them, so the
+     * buckets themselves are never downloaded. Moved entries leave the range, so each
+     * page is read from the start again.
+     */
+    private void moveFlatEntries(DatabaseReference rootRef, String ownerId, String box)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        DatabaseReference boxRef = rootRef.child(FirebaseUtils.PATH_USER_MESSAGES).child(ownerId).child(box);
+        Query[] ranges = {boxRef.orderByKey().endBefore("0"), boxRef.orderByKey().startAt(":")};
+        for (Query range : ranges) {
+            while (checked < MAX_CHECKS_PER_RUN && !isStopped()) {
+                DataSnapshot page = Tasks.await(range.limitToFirst(PAGE_SIZE).get(),
+                        READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                Map<String, Object> updates = new HashMap<>();
+                for (DataSnapshot entry : page.getChildren()) {
+                    String messageId = entry.getKey();
+                    if (IndexBuckets.isBucketKey(messageId)) {
+                        continue;
+                    }
+                    updates.put("/" + FirebaseUtils.PATH_USER_MESSAGES + "/" + ownerId + "/" + box + "/" + messageId, null);
+                    updates.put("/" + IndexBuckets.entryPath(ownerId, box, messageId), entry.getValue());
+                    updates.put("/" + IndexBuckets.directoryPath(ownerId, box, messageId), true);
+                }
+                checked += (int) page.getChildrenCount();
+                if (updates.isEmpty()) {
+                    break;
+                }
+                Tasks.await(rootRef.updateChildren(updates), READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                Log.d(TAG, "Moved " + updates.size() / 3 + " " + box + " entries into month buckets");
+            }
+        }
+    }
+
+    /**
+     * @return The nodes holding the entries of {@code box}: the box itself, or each of its month buckets
+     */
+    private static List<String> indexNodes(DatabaseReference rootRef, String ownerId, String box)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        List<String> nodes = new ArrayList<>();
+        if (!IndexBuckets.isEnabled()) {
+            nodes.add(box);
+            return nodes;
+        }
+        DataSnapshot directory = Tasks.await(IndexBuckets.directoryRef(rootRef, ownerId, box).get(),
+                READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        for (DataSnapshot bucket : directory.getChildren()) {
+            nodes.add(box + "/" + bucket.getKey());
+        }
+        return nodes;
+    }
+
+    /**
+     * @param node A box, or a box and bucket such as "received/2026-10"
+     */
+    private static List<String> readPage(DatabaseReference rootRef, String ownerId, String node, String cursor)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        Query query = rootRef.child(FirebaseUtils.PATH_USER_MESSAGES).child(ownerId).child(node).orderByKey();
+        if (cursor != null) {
+            query = query.startAfter(cursor);
+        }
+        DataSnapshot page = Tasks.await(query.limitToFirst(PAGE_SIZE).get(), READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        List<String> ids = new ArrayList<>();
+        for (DataSnapshot entry : page.getChildren()) {
+            ids.add(entry.getKey());
+        }
+        return ids;
+    }
+
+    /**
+     * Reads the header of every message of the page in parallel. A deleted
+     * message reads as an empty snapshot; any failed read stops the sweep.
+     * @return Each id with its /messages snapshot
+     */
+    static Map<String, DataSnapshot> readMessages(DatabaseReference rootRef, List<String> ids)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        Map<String, Task<DataSnapshot>> reads = new LinkedHashMap<>();
+        for (String messageId : ids) {
+            reads.put(messageId, rootRef.child(FirebaseUtils.PATH_MESSAGES).child(messageId).get());
+        }
+        Map<String, DataSnapshot> messages = new LinkedHashMap<>();
+        for (Map.Entry<String, Task<DataSnapshot>> read : reads.entrySet()) {
+            messages.put(read.getKey(), Tasks.await(read.getValue(), READ_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+        return messages;
+    }
+
+    /**
+     * Adds the removal of every dangling entry of {@code messages} to {@code updates}
+     * @param messages Result of {@link #readMessages}
+     * @return Ids of the dangling entries
+     */
+    static List<String> removeOrphans(String ownerId, String node, Map<String, DataSnapshot> messages,
+                                      Map<String, Object> updates) {
+        List<String> orphans = new ArrayList<>();
+        for (Map.Entry<String, DataSnapshot> message : messages.entrySet()) {
+            DataSnapshot header = message.getValue();
+            if (!header.exists()) {
+                orphans.add(message.getKey());
+                updates.put("/" + FirebaseUtils.PATH_USER_MESSAGES + "/" + ownerId + "/" + node + "/" + message.getKey(), null);
+            }
+        }
+        return orphans;
+    }
+
+    private void dropLocally(String ownerId, String box, List<String> orphans) {
+        for (String messageId : orphans) {
+            MessageCache.getInstance().invalidate(messageId);
+        }
+        LocalMessageStore.getInstance(getApplicationContext()).removeEntries(ownerId, box, orphans);
+        Log.d(TAG, "Pruned " + orphans.size() + " dangling entries from " + box);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.SImpleMessenger.data.codec;
+
+import com.example.SImpleMessenger.data.model.Category;
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.Map;
+
+/**
+ * Hand-written codec for {@link Category} entries of a user's category list
+ */
+public final class CategoryCodec {
+    private static final int FIELD_COUNT = 2;
+
+    private CategoryCodec() {}
+
+    /**
+     * @return The decoded category, or null if the node is empty
+     */
+    public static Category decode(DataSnapshot snapshot) {
+        if (snapshot == null || !snapshot.hasChildren()) {
+            return null;
+        }
+        return new Category(
+                CodecValues.asString(snapshot.child("id").getValue()),
+                CodecValues.asString(snapshot.child("name").getValue()));
+    }
+
+    public static Map<String, Object> encode(Category category) {
+        Map<String, Object> map = CodecValues.newMap(FIELD_COUNT);
+        map.put("id", category.getId());
+        map.put("name", category.getName());
+        return map;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.SImpleMessenger.data.codec;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.example.SImpleMessenger.data.model.Message;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Developer tool comparing {@code getValue(Message.class)} with {@link MessageCodec#decode}
+ * on real /messages data. Reads a sample once, then decodes it repeatedly with
+ * both paths off the main thread and reports the cost per 1,000 messages.
+ *
+ * Run from a debug build, e.g. {@code CodecBenchmark.run(FirebaseFactory.getDatabase().getReference(), 1000, null)},
+ * and read the result from logcat (tag CodecBenchmark).
+ */
+public final class CodecBenchmark {
+    private static final String TAG = "CodecBenchmark";
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 10;
+
+    public interface Listener {
+        void onResult(Result result);
+        void onError(String error);
+    }
+
+    public static final class Result {
+        public final int sampleSize;
+        /** Average nanoseconds to decode 1,000 messages via CustomClassMapper */
+        public final long reflectionNanosPer1000;
+        /** Average nanoseconds to decode 1,000 messages via MessageCodec */
+        public final long codecNanosPer1000;
+
+        Result(int sampleSize, long reflectionNanosPer1000, long codecNanosPer1000) {
+            this.sampleSize = sampleSize;
+            this.reflectionNanosPer1000 = reflectionNanosPer1000;
+            this.codecNanosPer1000 = codecNanosPer1000;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "%d messages: getValue %.2f ms/1000, codec %.2f ms/1000 (%.1fx)",
+                    sampleSize,
+                    reflectionNanosPer1000 / 1e6,
+                    codecNanosPer1000 / 1e6,
+                    codecNanosPer1000 > 0 ? (double) reflectionNanosPer1000 / codecNanosPer1000 : 0);
+        }
+    }
+
+    private CodecBenchmark() {}
+
+    /**
+     * @param rootRef Database root
+     * @param sampleSize Number of /messages nodes to read (the newest by key)
+     * @param listener Optional; called on the benchmark thread
+     */
+    public static void run(DatabaseReference rootRef, int sampleSize, Listener listener) {
+        rootRef.child("messages").limitToLast(sampleSize)
+                .addListenerForSingleValueEvent(new ValueEventListener() {
+                    @Override
+                    public void onDataChange(@NonNull DataSnapshot snapshot) {
+                        List<DataSnapshot> sample = new ArrayList<>((int) snapshot.getChildrenCount());
+                        for (DataSnapshot child : snapshot.getChildren()) {
+                            sample.add(child);
+                        }
+                        if (sample.isEmpty()) {
+                            Log.d(TAG, "No messages to benchmark");
+                            if (listener != null) {
+                                listener.onError("No messages to benchmark");
+                            }
+                            return;
+                        }
+                        new Thread(() -> {
+                            Result result = measure(sample);
+                            Log.d(TAG, result.toString());
+                            if (listener != null) {
+                                listener.onResult(result);
+                            }
+                        }, TAG).start();
+                    }
+
+                    @Override
+                    public void onCancelled(@NonNull DatabaseError error) {
+                        Log.e(TAG, "Error reading sample: " + error.getMessage());
+                        if (listener != null) {
+                            listener.onError(error.getMessage());
+                        }
+                    }
+                });
+    }
+
+    static Result measure(List<DataSnapshot> sample) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            decodeWithReflection(sample);
+            decodeWithCodec(sample);
+        }
+
+        long reflectionNanos = 0;
+        long codecNanos = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            // Alternate the order so neither path always runs on a warmer heap
+            if (i % 2 == 0) {
+                reflectionNanos += decodeWithReflection(sample);
+                codecNanos += decodeWithCodec(sample);
+            } else {
+                codecNanos += decodeWithCodec(sample);
+                reflectionNanos += decodeWithReflection(sample);
+            }
+        }
+
+        long per1000Divisor = (long) MEASURED_ROUNDS * sample.size();
+        return new Result(sample.size(),
+                reflectionNanos * 1000 / per1000Divisor,
+                codecNanos * 1000 / per1000Divisor);
+    }
+
+    private static long decodeWithReflection(List<DataSnapshot> sample) {
+        long start = System.nanoTime();
+        int decoded = 0;
+        for (DataSnapshot snapshot : sample) {
+            if (snapshot.getValue(Message.class) != null) {
+                decoded++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (decoded == 0) {
+            Log.d(TAG, "getValue decoded nothing");
+        }
+        return elapsed;
+    }
+
+    private static long decodeWithCodec(List<DataSnapshot> sample) {
+        long start = System.nanoTime();
+        int decoded = 0;
+        for (DataSnapshot snapshot : sample) {
+            if (MessageCodec.decode(snapshot) != null) {
+                decoded++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (decoded == 0) {
+            Log.d(TAG, "Codec decoded nothing");
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.SImpleMessenger.data.codec;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Conversions from the raw values Firebase hands out (String, Long, Double,
+ * Boolean, Map) to model field types, without going through CustomClassMapper.
+ */
+final class CodecValues {
+
+    private CodecValues() {}
+
+    static String asString(Object value) {
+        if (value == null) {
+            return null;
+        }
+        return value instanceof String ? (String) value : String.valueOf(value);
+    }
+
+    static long asLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Long.parseLong((String) value);
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Like {@link #asLong} but resolves an unresolved ServerValue.TIMESTAMP placeholder
+     * (seen in locally cached writes) to the current time, as the model setters do
+     */
+    static long asTimestamp(Object value) {
+        if (value instanceof Map) {
+            return System.currentTimeMillis();
+        }
+        return asLong(value);
+    }
+
+    static boolean asBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof String) {
+            return Boolean.parseBoolean((String) value);
+        }
+        return false;
+    }
+
+    /**
+     * A map that will not rehash while {@code expectedSize} entries are added
+     */
+    static Map<String, Object> newMap(int expectedSize) {
+        return new HashMap<>((int) (expectedSize / 0.75f) + 1);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.SImpleMessenger.data.codec;
+
+import com.example.SImpleMessenger.data.model.Contact;
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.Map;
+
+/**
+ * Hand-written replacement for {@code getValue(Contact.class)} and {@link Contact#toMap()}
+ */
+public final class ContactCodec {
+    private static final int FIELD_COUNT = 7;
+    /** Set, with a timestamp, on a contact that was removed; nothing else is kept */
+    public static final String DELETED = "deleted";
+
+    private ContactCodec() {}
+
+    /**
+     * @return The decoded contact with its id set from the snapshot key, or null if the
+     *         node is empty or a tombstone
+     */
+    public static Contact decode(DataSnapshot snapshot) {
+        if (snapshot == null || !snapshot.hasChildren() || isDeleted(snapshot)) {
+            return null;
+        }
+        Contact contact = new Contact();
+        contact.setId(snapshot.getKey());
+        String displayName = null;
+
+        for (DataSnapshot child : snapshot.getChildren()) {
+            String key = child.getKey();
+            Object value = child.getValue();
+            if (key == null || value == null) {
+                continue;
+            }
+            switch (key) {
+                case "userId":
+                    contact.setUserId(CodecValues.asString(value));
+                    break;
+                case "contactId":
+                    contact.setContactId(CodecValues.asString(value));
+                    break;
+                case "userName":
+                    contact.setUserName(CodecValues.asString(value));
+                    break;
+                case "displayName":
+                    displayName = CodecValues.asString(value);
+                    break;
+                case "emailAddress":
+                    contact.setEmailAddress(CodecValues.asString(value));
+                    break;
+                case "timestamp":
+                    contact.setTimestamp(CodecValues.asTimestamp(value));
+                    break;
+                case "customName":
+                    contact.setCustomName(CodecValues.asBoolean(value));
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // Applied last: setDisplayName falls back into userName only when that is missing
+        if (displayName != null) {
+            contact.setDisplayName(displayName);
+        }
+        return contact;
+    }
+
+    /**
+     * @return Whether {@code snapshot} is the tombstone of a removed contact
+     */
+    public static boolean isDeleted(DataSnapshot snapshot) {
+        return Boolean.TRUE.equals(snapshot.child(DELETED).getValue());
+    }
+
+    /**
+     * @return The timestamp of a contact or tombstone, 0 if it has none
+     */
+    public static long timestampOf(DataSnapshot snapshot) {
+        Object value = snapshot.child("timestamp").getValue();
+        return value != null ? CodecValues.asTimestamp(value) : 0;
+    }
+
+    public static Map<String, Object> encode(Contact contact) {
+        Map<String, Object> map = CodecValues.newMap(FIELD_COUNT);
+        map.put("userId", contact.getUserId());
+        map.put("contactId", contact.getContactId());
+        map.put("userName", contact.getUserName());
+        map.put("displayName", contact.getDisplayName());  // Always include displayName
+        map.put("customName", contact.isCustomName());
+        map.put("emailAddress", contact.getEmailAddress());
+        map.put("timestamp", contact.getTimestamp());
+        return map;
+    }
+}
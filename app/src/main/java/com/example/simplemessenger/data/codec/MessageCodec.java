@@ -0,0 +1,155 @@
+package com.example.SImpleMessenger.data.codec;
+
+import com.example.SImpleMessenger.data.model.Message;
+import com.example.SImpleMessenger.data.model.MessageSummary;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.ServerValue;
+
+import java.util.Map;
+
+/**
+ * Hand-written replacement for {@code getValue(Message.class)} and {@link Message#toMap()}.
+ * Reads each child of a /messages/{id} snapshot once, with no reflection.
+ *
+ * New messages keep their body in /message-bodies/{id} and only a preview in the
+ * header; older ones still carry "content" inline. Both decode to a Message, the
+ * former flagged {@link Message#isHeaderOnly()}.
+ */
+public final class MessageCodec {
+    private static final int FIELD_COUNT = 15;
+
+    private MessageCodec() {}
+
+    /**
+     * @return The decoded message with its id set from the snapshot key, or null if the node is empty
+     */
+    public static Message decode(DataSnapshot snapshot) {
+        if (snapshot == null || !snapshot.hasChildren()) {
+            return null;
+        }
+        Message message = new Message();
+        message.setId(snapshot.getKey());
+        long reminderTime = 0;
+        Boolean hasReminder = null;
+        boolean hasContent = false;
+        String preview = null;
+
+        for (DataSnapshot child : snapshot.getChildren()) {
+            String key = child.getKey();
+            Object value = child.getValue();
+            if (key == null || value == null) {
+                continue;
+            }
+            switch (key) {
+                case "senderId":
+                    message.setSenderId(CodecValues.asString(value));
+                    break;
+                case "senderEmail":
+                    message.setSenderEmail(CodecValues.asString(value));
+                    break;
+                case "recipientId":
+                    message.setRecipientId(CodecValues.asString(value));
+                    break;
+                case "recipientEmail":
+                    message.setRecipientEmail(CodecValues.asString(value));
+                    break;
+                case "subject":
+                    message.setSubject(CodecValues.asString(value));
+                    break;
+                case "content":
+                    message.setContent(CodecValues.asString(value));
+                    hasContent = true;
+                    break;
+                case "preview":
+                    preview = CodecValues.asString(value);
+                    break;
+                case "timestamp":
+                    message.setTimestamp(CodecValues.asTimestamp(value));
+                    break;
+                case "read":
+                    message.setRead(CodecValues.asBoolean(value));
+                    break;
+                case "hasReminder":
+                    hasReminder = CodecValues.asBoolean(value);
+                    break;
+                case "reminderTime":
+                    reminderTime = CodecValues.asTimestamp(value);
+                    break;
+                case "archived":
+                    message.setArchived(CodecValues.asBoolean(value));
+                    break;
+                case "isNote":
+                    message.setNote(CodecValues.asBoolean(value));
+                    break;
+                case "previousMessageId":
+                    message.setPreviousMessageId(CodecValues.asString(value));
+                    break;
+                case "category":
+                    message.setCategory(CodecValues.asString(value));
+                    break;
+                default:
+                    // "id" duplicates the key; anything else is ignored like @IgnoreExtraProperties
+                    break;
+            }
+        }
+
+        // setReminderTime(long) implies a reminder; an explicit flag wins
+        if (reminderTime > 0) {
+            message.setReminderTime(reminderTime);
+        }
+        if (hasReminder != null) {
+            message.setHasReminder(hasReminder);
+        }
+        if (!hasContent && preview != null) {
+            message.setContent(preview);
+            message.setHeaderOnly(true);
+        }
+        return message;
+    }
+
+    /**
+     * Encodes the header written to /messages/{id}; the body goes through {@link #encodeBody}
+     */
+    public static Map<String, Object> encode(Message message) {
+        Map<String, Object> map = CodecValues.newMap(FIELD_COUNT);
+        map.put("id", message.getId());
+        map.put("senderId", message.getSenderId());
+        map.put("senderEmail", message.getSenderEmail());
+        map.put("recipientId", message.getRecipientId());
+        map.put("recipientEmail", message.getRecipientEmail());
+        map.put("subject", message.getSubject());
+        map.put("preview", MessageSummary.makePreview(message.getContent()));
+        map.put("timestamp", message.getTimestamp() > 0 ? message.getTimestamp() : ServerValue.TIMESTAMP);
+        map.put("read", message.isRead());
+        map.put("hasReminder", message.isHasReminder());
+        if (message.isHasReminder()) {
+            map.put("reminderTime", message.getReminderTime() > 0 ? message.getReminderTime() : ServerValue.TIMESTAMP);
+        }
+        map.put("archived", message.isArchived());
+        map.put("isNote", message.isNote());
+        if (message.getPreviousMessageId() != null && !message.getPreviousMessageId().isEmpty()) {
+            map.put("previousMessageId", message.getPreviousMessageId());
+        }
+        if (message.getCategory() != null && !message.getCategory().isEmpty()) {
+            map.put("category", message.getCategory());
+        }
+        return map;
+    }
+
+    /**
+     * @return The content stored in a /message-bodies/{id} snapshot, or null if there is none
+     */
+    public static String decodeBody(DataSnapshot snapshot) {
+        Object content = snapshot != null ? snapshot.child("content").getValue() : null;
+        return content != null ? CodecValues.asString(content) : null;
+    }
+
+    /**
+     * Encodes the node written to /message-bodies/{id}
+     */
+    public static Map<String, Object> encodeBody(Message message) {
+        Map<String, Object> map = CodecValues.newMap(1);
+        map.put("content", message.getContent() != null ? message.getContent() : "");
+        return map;
+    }
+}
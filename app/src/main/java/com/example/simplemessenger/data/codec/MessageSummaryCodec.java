@@ -0,0 +1,58 @@
+package com.example.SImpleMessenger.data.codec;
+
+import com.example.SImpleMessenger.data.model.MessageSummary;
+import com.google.firebase.database.DataSnapshot;
+
+/**
+ * Hand-written replacement for {@code getValue(MessageSummary.class)} on index entries
+ */
+public final class MessageSummaryCodec {
+
+    private MessageSummaryCodec() {}
+
+    /**
+     * @return The decoded summary, or null if the entry has no children (a legacy {@code true})
+     */
+    public static MessageSummary decode(DataSnapshot snapshot) {
+        if (snapshot == null || !snapshot.hasChildren()) {
+            return null;
+        }
+        MessageSummary summary = new MessageSummary();
+        for (DataSnapshot child : snapshot.getChildren()) {
+            String key = child.getKey();
+            Object value = child.getValue();
+            if (key == null || value == null) {
+                continue;
+            }
+            switch (key) {
+                case "counterpartId":
+                    summary.setCounterpartId(CodecValues.asString(value));
+                    break;
+                case "counterpartEmail":
+                    summary.setCounterpartEmail(CodecValues.asString(value));
+                    break;
+                case "subject":
+                    summary.setSubject(CodecValues.asString(value));
+                    break;
+                case "preview":
+                    summary.setPreview(CodecValues.asString(value));
+                    break;
+                case "timestamp":
+                    summary.setTimestamp(CodecValues.asTimestamp(value));
+                    break;
+                case "read":
+                    summary.setRead(CodecValues.asBoolean(value));
+                    break;
+                case "hasReminder":
+                    summary.setHasReminder(CodecValues.asBoolean(value));
+                    break;
+                case "category":
+                    summary.setCategory(CodecValues.asString(value));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.SImpleMessenger.data.codec;
+
+import com.example.SImpleMessenger.data.model.User;
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.Map;
+
+/**
+ * Hand-written replacement for {@code getValue(User.class)} and {@link User#toMap()}
+ */
+public final class UserCodec {
+    private static final int FIELD_COUNT = 6;
+
+    private UserCodec() {}
+
+    /**
+     * @return The decoded user, or null if the node is empty
+     */
+    public static User decode(DataSnapshot snapshot) {
+        if (snapshot == null || !snapshot.hasChildren()) {
+            return null;
+        }
+        User user = new User();
+
+        for (DataSnapshot child : snapshot.getChildren()) {
+            String key = child.getKey();
+            Object value = child.getValue();
+            if (key == null || value == null) {
+                continue;
+            }
+            switch (key) {
+                case "uid":
+                    user.setUid(CodecValues.asString(value));
+                    break;
+                case "email":
+                    user.setEmail(CodecValues.asString(value));
+                    break;
+                case "displayName":
+                    user.setDisplayName(CodecValues.asString(value));
+                    break;
+                case "lastSeen":
+                    user.setLastSeen(CodecValues.asTimestamp(value));
+                    break;
+                case "isOnline":
+                case "online":
+                    // toMap() writes "isOnline"; profiles saved via setValue(user) use the bean name
+                    user.setOnline(CodecValues.asBoolean(value));
+                    break;
+                case "createdAt":
+                    user.setCreatedAt(CodecValues.asTimestamp(value));
+                    break;
+                default:
+                    break;
+            }
+        }
+        return user;
+    }
+
+    public static Map<String, Object> encode(User user) {
+        Map<String, Object> map = CodecValues.newMap(FIELD_COUNT);
+        map.put("uid", user.getUid());
+        map.put("email", user.getEmail());
+        map.put("displayName", user.getDisplayName());
+        map.put("lastSeen", user.getLastSeen());
+        map.put("isOnline", user.isOnline());
+        map.put("createdAt", user.getCreatedAt());
+        return map;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.SImpleMessenger.data.local;
+
+import android.content.Context;
+
+import androidx.room.Database;
+import androidx.room.Room;
+import androidx.room.RoomDatabase;
+
+/**
+ * On-device store for messages, user-messages index entries and contacts.
+ * Firebase listeners write into it; list and detail screens read from it.
+ * The outbox table holds sends that have not reached Firebase yet.
+ */
+@Database(entities = {MessageEntity.class, IndexEntryEntity.class, ContactEntity.class, OutboxEntity.class},
+        version = 1, exportSchema = false)
+public abstract class AppDatabase extends RoomDatabase {
+    private static final String DATABASE_NAME = "simple_messenger.db";
+    private static volatile AppDatabase instance;
+
+    public abstract MessageDao messageDao();
+
+    public abstract ContactDao contactDao();
+
+    public abstract OutboxDao outboxDao();
+
+    public static AppDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (AppDatabase.class) {
+                if (instance == null) {
+                    // Apart from the outbox the store only caches remote data, so a schema change
+                    // can start from empty; later changes need a Migration to keep unsent messages
+                    instance = Room.databaseBuilder(context.getApplicationContext(), AppDatabase.class, DATABASE_NAME)
+                            .fallbackToDestructiveMigration()
+                            .build();
+                }
+            }
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.SImpleMessenger.data.local;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+@Dao
+public abstract class ContactDao {
+
+    @Query("SELECT * FROM contacts WHERE ownerId = :ownerId")
+    public abstract LiveData<List<ContactEntity>> observeContacts(String ownerId);
+
+    @Query("SELECT * FROM contacts WHERE ownerId = :ownerId")
+    public abstract List<ContactEntity> getContacts(String ownerId);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void upsert(ContactEntity contact);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void upsertAll(List<ContactEntity> contacts);
+
+    @Query("DELETE FROM contacts WHERE ownerId = :ownerId AND contactId = :contactId")
+    public abstract void delete(String ownerId, String contactId);
+
+    @Query("DELETE FROM contacts WHERE ownerId = :ownerId")
+    abstract void deleteAll(String ownerId);
+
+    @Query("DELETE FROM contacts")
+    public abstract void clear();
+
+    /**
+     * Replaces every stored contact of {@code ownerId} with a full remote listing
+     */
+    @Transaction
+    public void replaceAll(String ownerId, List<ContactEntity> contacts) {
+        deleteAll(ownerId);
+        upsertAll(contacts);
+    }
+}
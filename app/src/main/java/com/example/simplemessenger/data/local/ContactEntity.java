@@ -0,0 +1,49 @@
+package com.example.SImpleMessenger.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+import com.example.SImpleMessenger.data.model.Contact;
+
+/**
+ * Local copy of a /user-contacts/{ownerId}/{key} entry
+ */
+@Entity(tableName = "contacts", primaryKeys = {"ownerId", "contactId"})
+public class ContactEntity {
+    @NonNull
+    public String ownerId = "";
+    @NonNull
+    public String contactId = "";
+    public String key;
+    public String userName;
+    public String displayName;
+    public String emailAddress;
+    public long timestamp;
+    public boolean customName;
+
+    public static ContactEntity fromContact(String ownerId, Contact contact) {
+        ContactEntity entity = new ContactEntity();
+        entity.ownerId = ownerId;
+        entity.contactId = contact.getContactId();
+        entity.key = contact.getId();
+        entity.userName = contact.getUserName();
+        entity.displayName = contact.getDisplayName();
+        entity.emailAddress = contact.getEmailAddress();
+        entity.timestamp = contact.getTimestamp();
+        entity.customName = contact.isCustomName();
+        return entity;
+    }
+
+    public Contact toContact() {
+        Contact contact = new Contact();
+        contact.setId(key);
+        contact.setUserId(ownerId);
+        contact.setContactId(contactId);
+        contact.setUserName(userName);
+        contact.setDisplayName(displayName);
+        contact.setEmailAddress(emailAddress);
+        contact.setTimestamp(timestamp);
+        contact.setCustomName(customName);
+        return contact;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.SImpleMessenger.data.local;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import com.example.SImpleMessenger.data.model.Contact;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compact on-disk copy of the signed-in user's contacts.
+ *
+ * The file is small and read synchronously at startup, so names resolve before
+ * Firebase answers. Along with the contacts it stores a watermark (the newest
+ * contact timestamp seen) and when the last full download happened, which lets
+ * {@link com.example.SImpleMessenger.data.ContactsManager} fetch only changes.
+ * Saves run on a background thread; saves queued while one is writing collapse
+ * into a single write of the latest state.
+ */
+public class ContactsSnapshotStore {
+    private static final String TAG = "ContactsSnapshotStore";
+    private static final String FILE_NAME = "contacts.snapshot";
+    private static final int FORMAT_VERSION = 1;
+    private static ContactsSnapshotStore instance;
+
+    /** What a previous run saved */
+    public static final class Stored {
+        public final String ownerId;
+        /** Newest contact timestamp included in {@link #contacts} */
+        public final long watermark;
+        /** When the contacts were last downloaded in full (epoch millis) */
+        public final long lastFullSyncAt;
+        public final List<Contact> contacts;
+
+        Stored(String ownerId, long watermark, long lastFullSyncAt, List<Contact> contacts) {
+            this.ownerId = ownerId;
+            this.watermark = watermark;
+            this.lastFullSyncAt = lastFullSyncAt;
+            this.contacts = contacts;
+        }
+    }
+
+    private final AtomicFile file;
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+    private final AtomicReference<Stored> pendingSave = new AtomicReference<>();
+
+    private ContactsSnapshotStore(Context context) {
+        file = new AtomicFile(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+    }
+
+    public static synchronized ContactsSnapshotStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ContactsSnapshotStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the store created by the application, or null if it has not been
+     * created yet (e.g. in plain unit tests)
+     */
+    public static synchronized ContactsSnapshotStore getInstance() {
+        return instance;
+    }
+
+    /**
+     * Reads the saved contacts on the calling thread
+     * @return The saved state, or null if there is none for {@code ownerId} or it cannot be read
+     */
+    public Stored load(String ownerId) {
+        try (InputStream in = new BufferedInputStream(file.openRead())) {
+            Stored stored = read(in);
+            if (stored == null || !stored.ownerId.equals(ownerId)) {
+                return null;
+            }
+            Log.d(TAG, "Loaded " + stored.contacts.size() + " contacts, watermark " + stored.watermark);
+            return stored;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.e(TAG, "Error reading contacts snapshot", e);
+            return null;
+        }
+    }
+
+    /**
+     * Saves {@code contacts} in the background, replacing any save not yet written
+     */
+    public void save(String ownerId, Collection<Contact> contacts, long watermark, long lastFullSyncAt) {
+        // Copy the list here; the Contact objects are written as they are at write time
+        pendingSave.set(new Stored(ownerId, watermark, lastFullSyncAt, new ArrayList<>(contacts)));
+        writeExecutor.execute(() -> {
+            Stored stored = pendingSave.getAndSet(null);
+            if (stored != null) {
+                writeNow(stored);
+            }
+        });
+    }
+
+    /**
+     * Deletes the saved contacts, e.g. on sign-out
+     */
+    public void clear() {
+        pendingSave.set(null);
+        writeExecutor.execute(file::delete);
+    }
+
+    private void writeNow(Stored stored) {
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            BufferedOutputStream buffered = new BufferedOutputStream(out);
+            write(stored, buffered);
+            buffered.flush();
+            file.finishWrite(out);
+        } catch (IOException e) {
+            Log.e(TAG, "Error writing contacts snapshot", e);
+            if (out != null) {
+                file.failWrite(out);
+            }
+        }
+    }
+
+    static void write(Stored stored, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(FORMAT_VERSION);
+        data.writeUTF(stored.ownerId);
+        data.writeLong(stored.watermark);
+        data.writeLong(stored.lastFullSyncAt);
+        data.writeInt(stored.contacts.size());
+        for (Contact contact : stored.contacts) {
+            writeString(data, contact.getId());
+            writeString(data, contact.getContactId());
+            writeString(data, contact.getUserId());
+            writeString(data, contact.getUserName());
+            writeString(data, contact.getDisplayName());
+            writeString(data, contact.getEmailAddress());
+            data.writeLong(contact.getTimestamp());
+            data.writeBoolean(contact.isCustomName());
+        }
+        data.flush();
+    }
+
+    /**
+     * @return The decoded state, or null if it was written by another format version
+     */
+    static Stored read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != FORMAT_VERSION) {
+            return null;
+        }
+        String ownerId = data.readUTF();
+        long watermark = data.readLong();
+        long lastFullSyncAt = data.readLong();
+        int count = data.readInt();
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Contact contact = new Contact();
+            contact.setId(readString(data));
+            contact.setContactId(readString(data));
+            contact.setUserId(readString(data));
+            contact.setUserName(readString(data));
+            contact.setDisplayName(readString(data));
+            contact.setEmailAddress(readString(data));
+            contact.setTimestamp(data.readLong());
+            contact.setCustomName(data.readBoolean());
+            contacts.add(contact);
+        }
+        return new Stored(ownerId, watermark, lastFullSyncAt, contacts);
+    }
+
+    private static void writeString(DataOutputStream data, String value) throws IOException {
+        data.writeBoolean(value != null);
+        if (value != null) {
+            data.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream data) throws IOException {
+        return data.readBoolean() ? data.readUTF() : null;
+    }
+}
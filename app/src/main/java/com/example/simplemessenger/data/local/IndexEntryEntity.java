@@ -0,0 +1,67 @@
+package com.example.SImpleMessenger.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+import com.example.SImpleMessenger.data.model.Message;
+import com.example.SImpleMessenger.data.model.MessageSummary;
+
+/**
+ * Local copy of one /user-messages/{ownerId}/{box}/{messageId} entry, holding the
+ * same header fields as {@link MessageSummary} so list rows render without a join.
+ */
+@Entity(tableName = "index_entries",
+        primaryKeys = {"ownerId", "box", "messageId"},
+        indices = {@Index(value = {"ownerId", "box", "timestamp"})})
+public class IndexEntryEntity {
+    @NonNull
+    public String ownerId = "";
+    @NonNull
+    public String box = "";
+    @NonNull
+    public String messageId = "";
+    public String counterpartId;
+    public String counterpartEmail;
+    public String subject;
+    public String preview;
+    public long timestamp;
+    public boolean read;
+    public boolean hasReminder;
+    public String category;
+
+    /**
+     * Builds an entry from a list-row message, as produced by the paging source or a full fetch
+     * @param ownerId uid owning the index
+     * @param box "received", "sent" or "notes"
+     */
+    public static IndexEntryEntity fromMessage(String ownerId, String box, Message message) {
+        MessageSummary summary = MessageSummary.fromMessage(message, "received".equals(box));
+        IndexEntryEntity entity = new IndexEntryEntity();
+        entity.ownerId = ownerId;
+        entity.box = box;
+        entity.messageId = message.getId();
+        entity.counterpartId = summary.getCounterpartId();
+        entity.counterpartEmail = summary.getCounterpartEmail();
+        entity.subject = summary.getSubject();
+        entity.preview = summary.getPreview();
+        entity.timestamp = summary.getTimestamp();
+        entity.read = summary.isRead();
+        entity.hasReminder = summary.isHasReminder();
+        entity.category = summary.getCategory();
+        return entity;
+    }
+
+    public Message toMessage() {
+        MessageSummary summary = new MessageSummary();
+        summary.setCounterpartId(counterpartId);
+        summary.setCounterpartEmail(counterpartEmail);
+        summary.setSubject(subject);
+        summary.setPreview(preview);
+        summary.setTimestamp(timestamp);
+        summary.setRead(read);
+        summary.setHasReminder(hasReminder);
+        summary.setCategory(category);
+        return summary.toMessage(messageId, ownerId, box);
+    }
+}
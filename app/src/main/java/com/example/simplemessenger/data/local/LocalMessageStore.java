@@ -0,0 +1,245 @@
+package com.example.SImpleMessenger.data.local;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Transformations;
+
+import com.example.SImpleMessenger.data.model.Contact;
+import com.example.SImpleMessenger.data.model.Message;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Single source of truth for list and detail screens.
+ *
+ * Screens observe the LiveData queries below; Firebase listeners only ever write
+ * into the store, so cached data renders immediately (also offline) and remote
+ * changes reach every observer through Room's invalidation.
+ */
+public class LocalMessageStore {
+    private static final String TAG = "LocalMessageStore";
+    private static LocalMessageStore instance;
+
+    private final MessageDao messageDao;
+    private final ContactDao contactDao;
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public interface ContactsCallback {
+        void onContacts(List<Contact> contacts);
+    }
+
+    private LocalMessageStore(Context context) {
+        AppDatabase database = AppDatabase.getInstance(context);
+        this.messageDao = database.messageDao();
+        this.contactDao = database.contactDao();
+    }
+
+    public static synchronized LocalMessageStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocalMessageStore(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the store created by the application, or null if it has not been
+     * created yet (e.g. in plain unit tests)
+     */
+    public static synchronized LocalMessageStore getInstance() {
+        return instance;
+    }
+
+    // ---- Reads ----
+
+    /**
+     * Newest {@code limit} rows of one box, newest first
+     */
+    public LiveData<List<Message>> observeBox(String ownerId, String box, int limit) {
+        return Transformations.map(messageDao.observeBox(ownerId, box, limit), entries -> {
+            List<Message> messages = new ArrayList<>(entries.size());
+            for (IndexEntryEntity entry : entries) {
+                messages.add(entry.toMessage());
+            }
+            return messages;
+        });
+    }
+
+    /**
+     * Newest {@code limit} rows of one box with timestamps in [oldest, newest], newest first
+     */
+    public LiveData<List<Message>> observeRange(String ownerId, String box, long oldest, long newest, int limit) {
+        return Transformations.map(messageDao.observeRange(ownerId, box, oldest, newest, limit), entries -> {
+            List<Message> messages = new ArrayList<>(entries.size());
+            for (IndexEntryEntity entry : entries) {
+                messages.add(entry.toMessage());
+            }
+            return messages;
+        });
+    }
+
+    public LiveData<Message> observeMessage(String messageId) {
+        return Transformations.map(messageDao.observeMessage(messageId),
+                entity -> entity != null ? entity.toMessage() : null);
+    }
+
+    public LiveData<List<Contact>> observeContacts(String ownerId) {
+        return Transformations.map(contactDao.observeContacts(ownerId), entities -> {
+            List<Contact> contacts = new ArrayList<>(entities.size());
+            for (ContactEntity entity : entities) {
+                contacts.add(entity.toContact());
+            }
+            return contacts;
+        });
+    }
+
+    /**
+     * One-off read of the stored contacts, delivered on the main thread
+     */
+    public void loadContacts(String ownerId, ContactsCallback callback) {
+        writeExecutor.execute(() -> {
+            List<Contact> contacts = new ArrayList<>();
+            for (ContactEntity entity : contactDao.getContacts(ownerId)) {
+                contacts.add(entity.toContact());
+            }
+            mainHandler.post(() -> callback.onContacts(contacts));
+        });
+    }
+
+    // ---- Writes (called from Firebase listeners) ----
+
+    /**
+     * Stores a contiguous run of index entries as read from Firebase. Stored entries
+     * inside the same timestamp range that are missing from {@code window} are removed.
+     * @param window Rows of one box, in any order
+     * @param includesNewest true if nothing newer than {@code window} exists remotely
+     */
+    public void putWindow(String ownerId, String box, List<Message> window, boolean includesNewest) {
+        putWindow(ownerId, box, window, includesNewest, Long.MIN_VALUE);
+    }
+
+    /**
+     * Like {@link #putWindow(String, String, List, boolean)} for a window read from part of
+     * the box, e.g. one month bucket; stored entries older than {@code notBefore} are kept
+     * @param notBefore Oldest timestamp the source of {@code window} can hold
+     */
+    public void putWindow(String ownerId, String box, List<Message> window, boolean includesNewest, long notBefore) {
+        List<IndexEntryEntity> entries = new ArrayList<>(window.size());
+        List<String> keep = new ArrayList<>(window.size());
+        long oldest = Long.MAX_VALUE;
+        long newest = Long.MIN_VALUE;
+        for (Message message : window) {
+            if (message == null || message.getId() == null) {
+                continue;
+            }
+            entries.add(IndexEntryEntity.fromMessage(ownerId, box, message));
+            keep.add(message.getId());
+            oldest = Math.min(oldest, message.getTimestamp());
+            newest = Math.max(newest, message.getTimestamp());
+        }
+        if (entries.isEmpty()) {
+            if (includesNewest) {
+                // Nothing from notBefore on exists remotely
+                writeExecutor.execute(() -> messageDao.replaceRange(ownerId, box, notBefore, Long.MAX_VALUE,
+                        Collections.emptyList(), Collections.emptyList()));
+            }
+            return;
+        }
+        final long from = oldest;
+        final long to = includesNewest ? Long.MAX_VALUE : newest;
+        writeExecutor.execute(() -> {
+            messageDao.replaceRange(ownerId, box, from, to, entries, keep);
+            Log.d(TAG, "Stored " + entries.size() + " " + box + " entries for " + ownerId);
+        });
+    }
+
+    /**
+     * Stores or replaces a single index entry, e.g. one reported by a child event
+     */
+    public void putEntry(String ownerId, String box, Message message) {
+        if (message == null || message.getId() == null) {
+            return;
+        }
+        IndexEntryEntity entry = IndexEntryEntity.fromMessage(ownerId, box, message);
+        writeExecutor.execute(() -> messageDao.upsertEntries(Collections.singletonList(entry)));
+    }
+
+    public void removeEntries(String ownerId, String box, List<String> messageIds) {
+        if (messageIds == null || messageIds.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(messageIds);
+        writeExecutor.execute(() -> messageDao.deleteEntries(ownerId, box, ids));
+    }
+
+    public void putMessage(Message message) {
+        if (message == null || message.getId() == null || message.getId().isEmpty()) {
+            return;
+        }
+        MessageEntity entity = MessageEntity.fromMessage(message);
+        writeExecutor.execute(() -> messageDao.upsertMessage(entity));
+    }
+
+    public void markRead(String messageId) {
+        writeExecutor.execute(() -> {
+            messageDao.setMessageRead(messageId, true);
+            messageDao.setEntriesRead(messageId, true);
+        });
+    }
+
+    public void setCategory(List<String> messageIds, String category) {
+        if (messageIds == null || messageIds.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(messageIds);
+        writeExecutor.execute(() -> {
+            messageDao.setMessagesCategory(ids, category);
+            messageDao.setEntriesCategory(ids, category);
+        });
+    }
+
+    public void putContacts(String ownerId, List<Contact> contacts) {
+        List<ContactEntity> entities = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            if (contact != null && contact.getContactId() != null) {
+                entities.add(ContactEntity.fromContact(ownerId, contact));
+            }
+        }
+        writeExecutor.execute(() -> contactDao.replaceAll(ownerId, entities));
+    }
+
+    public void putContact(String ownerId, Contact contact) {
+        if (contact == null || contact.getContactId() == null) {
+            return;
+        }
+        ContactEntity entity = ContactEntity.fromContact(ownerId, contact);
+        writeExecutor.execute(() -> contactDao.upsert(entity));
+    }
+
+    public void removeContact(String ownerId, String contactId) {
+        if (contactId == null) {
+            return;
+        }
+        writeExecutor.execute(() -> contactDao.delete(ownerId, contactId));
+    }
+
+    /**
+     * Drops every stored message, index entry and contact, e.g. on sign-out.
+     * The outbox is kept so unsent messages go out when their owner signs in again.
+     */
+    public void clear() {
+        writeExecutor.execute(() -> {
+            messageDao.clear();
+            contactDao.clear();
+            Log.d(TAG, "Cleared stored messages and contacts");
+        });
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.SImpleMessenger.data.local;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import java.util.List;
+
+@Dao
+public abstract class MessageDao {
+
+    @Query("SELECT * FROM index_entries WHERE ownerId = :ownerId AND box = :box "
+            + "ORDER BY timestamp DESC, messageId DESC LIMIT :limit")
+    public abstract LiveData<List<IndexEntryEntity>> observeBox(String ownerId, String box, int limit);
+
+    @Query("SELECT * FROM index_entries WHERE ownerId = :ownerId AND box = :box "
+            + "AND timestamp BETWEEN :oldest AND :newest "
+            + "ORDER BY timestamp DESC, messageId DESC LIMIT :limit")
+    public abstract LiveData<List<IndexEntryEntity>> observeRange(String ownerId, String box, long oldest, long newest,
+                                                                  int limit);
+
+    @Query("SELECT * FROM messages WHERE id = :messageId")
+    public abstract LiveData<MessageEntity> observeMessage(String messageId);
+
+    @Query("SELECT * FROM messages WHERE id = :messageId")
+    public abstract MessageEntity getMessage(String messageId);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void upsertMessage(MessageEntity message);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void upsertEntries(List<IndexEntryEntity> entries);
+
+    @Query("DELETE FROM index_entries WHERE ownerId = :ownerId AND box = :box AND messageId IN (:messageIds)")
+    public abstract void deleteEntries(String ownerId, String box, List<String> messageIds);
+
+    @Query("DELETE FROM index_entries WHERE ownerId = :ownerId AND box = :box "
+            + "AND timestamp BETWEEN :oldest AND :newest AND messageId NOT IN (:keep)")
+    abstract void deleteEntriesMissingFrom(String ownerId, String box, long oldest, long newest, List<String> keep);
+
+    @Query("DELETE FROM index_entries")
+    abstract void deleteAllEntries();
+
+    @Query("DELETE FROM messages")
+    abstract void deleteAllMessages();
+
+    @Query("UPDATE index_entries SET read = :read WHERE messageId = :messageId")
+    public abstract void setEntriesRead(String messageId, boolean read);
+
+    @Query("UPDATE messages SET read = :read WHERE id = :messageId")
+    public abstract void setMessageRead(String messageId, boolean read);
+
+    @Query("UPDATE messages SET category = :category WHERE id IN (:messageIds)")
+    public abstract void setMessagesCategory(List<String> messageIds, String category);
+
+    @Query("UPDATE index_entries SET category = :category WHERE messageId IN (:messageIds)")
+    public abstract void setEntriesCategory(List<String> messageIds, String category);
+
+    /**
+     * Replaces the stored entries covering [oldest, newest] with {@code entries}, so
+     * entries deleted remotely inside a freshly fetched range disappear locally too.
+     */
+    @Transaction
+    public void replaceRange(String ownerId, String box, long oldest, long newest, List<IndexEntryEntity> entries,
+                             List<String> keep) {
+        deleteEntriesMissingFrom(ownerId, box, oldest, newest, keep);
+        upsertEntries(entries);
+    }
+
+    @Transaction
+    public void clear() {
+        deleteAllEntries();
+        deleteAllMessages();
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.SImpleMessenger.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+import com.example.SImpleMessenger.data.model.Message;
+
+/**
+ * Local copy of a full /messages/{id} node
+ */
+@Entity(tableName = "messages")
+public class MessageEntity {
+    @PrimaryKey
+    @NonNull
+    public String id = "";
+    public String senderId;
+    public String senderEmail;
+    public String recipientId;
+    public String recipientEmail;
+    public String subject;
+    public String content;
+    public long timestamp;
+    public boolean read;
+    public boolean hasReminder;
+    public long reminderTime;
+    public boolean archived;
+    public boolean note;
+    public String previousMessageId;
+    public String category;
+
+    public static MessageEntity fromMessage(Message message) {
+        MessageEntity entity = new MessageEntity();
+        entity.id = message.getId();
+        entity.senderId = message.getSenderId();
+        entity.senderEmail = message.getSenderEmail();
+        entity.recipientId = message.getRecipientId();
+        entity.recipientEmail = message.getRecipientEmail();
+        entity.subject = message.getSubject();
+        entity.content = message.getContent();
+        entity.timestamp = message.getTimestamp();
+        entity.read = message.isRead();
+        entity.hasReminder = message.isHasReminder();
+        entity.reminderTime = message.getReminderTime();
+        entity.archived = message.isArchived();
+        entity.note = message.isNote();
+        entity.previousMessageId = message.getPreviousMessageId();
+        entity.category = message.getCategory();
+        return entity;
+    }
+
+    public Message toMessage() {
+        Message message = new Message();
+        message.setId(id);
+        message.setSenderId(senderId);
+        message.setSenderEmail(senderEmail);
+        message.setRecipientId(recipientId);
+        message.setRecipientEmail(recipientEmail);
+        message.setSubject(subject);
+        message.setContent(content);
+        message.setTimestamp(timestamp);
+        message.setRead(read);
+        message.setHasReminder(hasReminder);
+        message.setReminderTime(reminderTime);
+        message.setArchived(archived);
+        message.setNote(note);
+        message.setPreviousMessageId(previousMessageId);
+        message.setCategory(category);
+        return message;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.SImpleMessenger.data.local;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Update;
+
+import java.util.List;
+
+@Dao
+public abstract class OutboxDao {
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    public abstract void insert(OutboxEntity entry);
+
+    @Update
+    public abstract void update(OutboxEntity entry);
+
+    @Query("SELECT * FROM outbox WHERE ownerId = :ownerId AND status = 'pending' ORDER BY createdAt LIMIT :limit")
+    public abstract List<OutboxEntity> getPending(String ownerId, int limit);
+
+    @Query("SELECT COUNT(*) FROM outbox WHERE status = 'pending'")
+    public abstract int countPending();
+
+    @Query("SELECT * FROM outbox WHERE ownerId = :ownerId ORDER BY createdAt DESC")
+    public abstract LiveData<List<OutboxEntity>> observe(String ownerId);
+
+    @Query("DELETE FROM outbox WHERE messageId IN (:messageIds)")
+    public abstract void delete(List<String> messageIds);
+
+    @Query("UPDATE outbox SET status = 'pending', attempts = 0, lastError = NULL "
+            + "WHERE messageId = :messageId AND status = 'failed'")
+    public abstract int retry(String messageId);
+}
@@ -0,0 +1,53 @@
+package com.example.SImpleMessenger.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.example.SImpleMessenger.data.model.Message;
+import com.google.gson.Gson;
+
+/**
+ * A message the user sent that has not reached Firebase yet. Rows are removed
+ * once the write succeeds; a row that keeps failing stays as {@link #STATUS_FAILED}
+ * until it is retried.
+ */
+@Entity(tableName = "outbox",
+        indices = {@Index(value = {"ownerId", "status", "createdAt"})})
+public class OutboxEntity {
+    public static final String STATUS_PENDING = "pending";
+    public static final String STATUS_FAILED = "failed";
+
+    private static final Gson GSON = new Gson();
+
+    @PrimaryKey
+    @NonNull
+    public String messageId = "";
+    public String ownerId;
+    public String messageJson;
+    public String status;
+    public int attempts;
+    public String lastError;
+    public long createdAt;
+
+    public static OutboxEntity fromMessage(String ownerId, Message message) {
+        OutboxEntity entity = new OutboxEntity();
+        entity.messageId = message.getId();
+        entity.ownerId = ownerId;
+        entity.messageJson = GSON.toJson(message);
+        entity.status = STATUS_PENDING;
+        entity.createdAt = System.currentTimeMillis();
+        return entity;
+    }
+
+    public Message toMessage() {
+        Message message = GSON.fromJson(messageJson, Message.class);
+        message.setId(messageId);
+        return message;
+    }
+
+    public boolean isFailed() {
+        return STATUS_FAILED.equals(status);
+    }
+}
@@ -1,9 +1,9 @@
 package com.example.SImpleMessenger.data.model;
 
+import com.example.SImpleMessenger.data.codec.ContactCodec;
 import com.google.firebase.database.Exclude;
 import com.google.firebase.database.IgnoreExtraProperties;
 
-import java.util.HashMap;
 import java.util.Map;
 
 @IgnoreExtraProperties
@@ -103,14 +103,6 @@ public class Contact {
 
     @Exclude
     public Map<String, Object> toMap() {
-        HashMap<String, Object> result = new HashMap<>();
-        result.put("userId", userId);
-        result.put("contactId", contactId);
-        result.put("userName", userName);
-        result.put("displayName", getDisplayName());  // Always include displayName
-        result.put("customName", customName);
-        result.put("emailAddress", emailAddress);
-        result.put("timestamp", timestamp);
-        return result;
+        return ContactCodec.encode(this);
     }
 }
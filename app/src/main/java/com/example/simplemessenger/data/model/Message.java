@@ -1,9 +1,8 @@
 package com.example.SImpleMessenger.data.model;
 
+import com.example.SImpleMessenger.data.codec.MessageCodec;
 import com.google.firebase.database.Exclude;
-import com.google.firebase.database.ServerValue;
 
-import java.util.HashMap;
 import java.util.Map;
 
 @com.google.firebase.database.IgnoreExtraProperties
@@ -24,6 +23,9 @@ public class Message {
     @com.google.firebase.database.PropertyName("isNote")
     private boolean isNote = false;
     private String previousMessageId = "";
+    private String category = "";
+    // Set when only the /messages header was read and content holds its preview
+    private transient boolean headerOnly = false;
 
     // Required empty constructor for Firebase
     public Message() {
@@ -55,6 +57,29 @@ public class Message {
         this.previousMessageId = previousMessageId != null ? previousMessageId : "";
     }
 
+    /**
+     * Copies every field, so a cached message can be replaced by a changed copy
+     * instead of being changed under the rows already built from it
+     */
+    public Message(Message other) {
+        this.id = other.id;
+        this.senderId = other.senderId;
+        this.senderEmail = other.senderEmail;
+        this.recipientId = other.recipientId;
+        this.recipientEmail = other.recipientEmail;
+        this.subject = other.subject;
+        this.content = other.content;
+        this.timestamp = other.timestamp;
+        this.read = other.read;
+        this.hasReminder = other.hasReminder;
+        this.reminderTime = other.reminderTime;
+        this.archived = other.archived;
+        this.isNote = other.isNote;
+        this.previousMessageId = other.previousMessageId;
+        this.category = other.category;
+        this.headerOnly = other.headerOnly;
+    }
+
     // Getters and Setters
     public String getId() {
         return id;
@@ -223,26 +248,7 @@ public class Message {
     // Convert to Map for Realtime Database
     @Exclude
     public Map<String, Object> toMap() {
-        Map<String, Object> map = new HashMap<>();
-        map.put("id", id);
-        map.put("senderId", senderId);
-        map.put("senderEmail", senderEmail);
-        map.put("recipientId", recipientId);  // Added missing recipientId
-        map.put("recipientEmail", recipientEmail);
-        map.put("subject", subject);
-        map.put("content", content);
-        map.put("timestamp", timestamp > 0 ? timestamp : ServerValue.TIMESTAMP);
-        map.put("read", read);
-        map.put("hasReminder", hasReminder);
-        if (hasReminder) {
-            map.put("reminderTime", reminderTime > 0 ? reminderTime : ServerValue.TIMESTAMP);
-        }
-        map.put("archived", archived);
-        map.put("isNote", isNote);  // Uncommented and fixed to use the field directly
-        if (previousMessageId != null && !previousMessageId.isEmpty()) {
-            map.put("previousMessageId", previousMessageId);
-        }
-        return map;
+        return MessageCodec.encode(this);
     }
 
     public String getPreviousMessageId() {
@@ -253,6 +259,27 @@ public class Message {
         this.previousMessageId = previousMessageId != null ? previousMessageId : "";
     }
     
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category != null ? category : "";
+    }
+    
+    /**
+     * @return True if the body is still in /message-bodies and content is only a preview
+     */
+    @Exclude
+    public boolean isHeaderOnly() {
+        return headerOnly;
+    }
+
+    @Exclude
+    public void setHeaderOnly(boolean headerOnly) {
+        this.headerOnly = headerOnly;
+    }
+    
     public void setContents(String messageText) {
     }
 }
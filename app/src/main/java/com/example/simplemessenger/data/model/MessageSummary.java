@@ -0,0 +1,190 @@
+package com.example.SImpleMessenger.data.model;
+
+import com.example.SImpleMessenger.data.codec.MessageSummaryCodec;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.Exclude;
+import com.google.firebase.database.IgnoreExtraProperties;
+import com.google.firebase.database.ServerValue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact copy of a message's header fields, stored as the value of an entry in
+ * /user-messages/{uid}/{received|sent|notes}/{messageId}.
+ *
+ * Lists can be rendered from the index alone; the full message is only fetched
+ * from /messages/{id} when the detail screen is opened.
+ */
+@IgnoreExtraProperties
+public class MessageSummary {
+    public static final int PREVIEW_LENGTH = 120;
+
+    private String counterpartId = "";
+    private String counterpartEmail = "";
+    private String subject = "";
+    private String preview = "";
+    private long timestamp = 0;
+    private boolean read = false;
+    private boolean hasReminder = false;
+    private String category = "";
+
+    // Required empty constructor for Firebase
+    public MessageSummary() {
+    }
+
+    /**
+     * Builds the index entry for one side of a message.
+     * @param message The message being written
+     * @param forRecipient true for the recipient's received entry, false for the sender's sent/notes entry
+     */
+    public static MessageSummary fromMessage(Message message, boolean forRecipient) {
+        MessageSummary summary = new MessageSummary();
+        if (!message.isNote()) {
+            summary.counterpartId = forRecipient ? message.getSenderId() : message.getRecipientId();
+            summary.counterpartEmail = forRecipient ? message.getSenderEmail() : message.getRecipientEmail();
+        }
+        summary.subject = message.getSubject();
+        summary.preview = makePreview(message.getContent());
+        summary.timestamp = message.getTimestamp();
+        summary.read = message.isRead();
+        summary.hasReminder = message.isHasReminder();
+        summary.category = message.getCategory();
+        return summary;
+    }
+
+    /**
+     * Reads an index entry. Entries written before summaries were introduced hold
+     * a plain {@code true}; those return null so callers can fall back to /messages.
+     */
+    public static MessageSummary fromSnapshot(DataSnapshot snapshot) {
+        if (snapshot == null || !snapshot.hasChildren()) {
+            return null;
+        }
+        MessageSummary summary = MessageSummaryCodec.decode(snapshot);
+        if (summary == null || summary.getTimestamp() <= 0) {
+            return null;
+        }
+        return summary;
+    }
+
+    public static String makePreview(String content) {
+        if (content == null) {
+            return "";
+        }
+        String singleLine = content.replace('\n', ' ').trim();
+        return singleLine.length() > PREVIEW_LENGTH ? singleLine.substring(0, PREVIEW_LENGTH) : singleLine;
+    }
+
+    /**
+     * Expands the summary into a list-row Message. The content field holds the preview only.
+     * @param messageId The index key
+     * @param ownerId The uid that owns the index
+     * @param box "received", "sent" or "notes"
+     */
+    @Exclude
+    public Message toMessage(String messageId, String ownerId, String box) {
+        Message message = new Message();
+        message.setId(messageId);
+        if ("notes".equals(box)) {
+            message.setNote(true);
+            message.setSenderId(ownerId);
+            message.setRecipientId(ownerId);
+        } else if ("received".equals(box)) {
+            message.setSenderId(counterpartId);
+            message.setSenderEmail(counterpartEmail);
+            message.setRecipientId(ownerId);
+        } else {
+            message.setSenderId(ownerId);
+            message.setRecipientId(counterpartId);
+            message.setRecipientEmail(counterpartEmail);
+        }
+        message.setSubject(subject);
+        message.setContent(preview);
+        message.setTimestamp(timestamp);
+        message.setRead(read);
+        message.setHasReminder(hasReminder);
+        message.setCategory(category);
+        return message;
+    }
+
+    @Exclude
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("counterpartId", counterpartId != null ? counterpartId : "");
+        map.put("counterpartEmail", counterpartEmail != null ? counterpartEmail : "");
+        map.put("subject", subject != null ? subject : "");
+        map.put("preview", preview != null ? preview : "");
+        map.put("timestamp", timestamp > 0 ? timestamp : ServerValue.TIMESTAMP);
+        map.put("read", read);
+        map.put("hasReminder", hasReminder);
+        if (category != null && !category.isEmpty()) {
+            map.put("category", category);
+        }
+        return map;
+    }
+
+    public String getCounterpartId() {
+        return counterpartId;
+    }
+
+    public void setCounterpartId(String counterpartId) {
+        this.counterpartId = counterpartId;
+    }
+
+    public String getCounterpartEmail() {
+        return counterpartEmail;
+    }
+
+    public void setCounterpartEmail(String counterpartEmail) {
+        this.counterpartEmail = counterpartEmail;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public void setSubject(String subject) {
+        this.subject = subject;
+    }
+
+    public String getPreview() {
+        return preview;
+    }
+
+    public void setPreview(String preview) {
+        this.preview = preview;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public boolean isRead() {
+        return read;
+    }
+
+    public void setRead(boolean read) {
+        this.read = read;
+    }
+
+    public boolean isHasReminder() {
+        return hasReminder;
+    }
+
+    public void setHasReminder(boolean hasReminder) {
+        this.hasReminder = hasReminder;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+}
@@ -1,9 +1,9 @@
 package com.example.SImpleMessenger.data.model;
 
+import com.example.SImpleMessenger.data.codec.UserCodec;
 import com.google.firebase.database.Exclude;
 import com.google.firebase.database.IgnoreExtraProperties;
 
-import java.util.HashMap;
 import java.util.Map;
 
 @IgnoreExtraProperties
@@ -83,14 +83,7 @@ public class User {
 
     @Exclude
     public Map<String, Object> toMap() {
-        HashMap<String, Object> result = new HashMap<>();
-        result.put("uid", uid);
-        result.put("email", email);
-        result.put("displayName", displayName);
-        result.put("lastSeen", lastSeen);
-        result.put("isOnline", isOnline);
-        result.put("createdAt", createdAt);
-        return result;
+        return UserCodec.encode(this);
     }
 
     @Override
@@ -0,0 +1,124 @@
+package com.example.SImpleMessenger.data.outbox;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import com.example.SImpleMessenger.data.local.AppDatabase;
+import com.example.SImpleMessenger.data.local.OutboxDao;
+import com.example.SImpleMessenger.data.local.OutboxEntity;
+import com.example.SImpleMessenger.data.model.Message;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable queue of outgoing messages.
+ *
+ * A send is stored in the outbox table first and reported as done to the
+ * caller; {@link OutboxWorker} then writes everything pending in one multi-path
+ * update once a network is available, retrying with exponential backoff. List
+ * screens observe the table to show which messages are still on their way.
+ */
+public class MessageOutbox {
+    private static final String TAG = "MessageOutbox";
+    static final String WORK_NAME = "outbox-flush";
+    static final long BACKOFF_SECONDS = 15;
+    private static MessageOutbox instance;
+
+    private final Context appContext;
+    private final OutboxDao outboxDao;
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+    private MessageOutbox(Context context) {
+        this.appContext = context.getApplicationContext();
+        this.outboxDao = AppDatabase.getInstance(appContext).outboxDao();
+    }
+
+    public static synchronized MessageOutbox getInstance(Context context) {
+        if (instance == null) {
+            instance = new MessageOutbox(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the outbox created by the application, or null if it has not been
+     * created yet (e.g. in plain unit tests)
+     */
+    public static synchronized MessageOutbox getInstance() {
+        return instance;
+    }
+
+    OutboxDao getDao() {
+        return outboxDao;
+    }
+
+    /**
+     * Stores {@code message} and schedules a flush
+     * @param message A validated message with its id set
+     * @param ownerId uid of the sender
+     */
+    public void enqueue(Message message, String ownerId) {
+        OutboxEntity entry = OutboxEntity.fromMessage(ownerId, message);
+        writeExecutor.execute(() -> {
+            outboxDao.insert(entry);
+            Log.d(TAG, "Queued message " + entry.messageId);
+            scheduleFlush();
+        });
+    }
+
+    /**
+     * Queued and failed sends of {@code ownerId}, newest first
+     */
+    public LiveData<List<OutboxEntity>> observe(String ownerId) {
+        return outboxDao.observe(ownerId);
+    }
+
+    /**
+     * Queues a failed send again
+     */
+    public void retry(String messageId) {
+        writeExecutor.execute(() -> {
+            if (outboxDao.retry(messageId) > 0) {
+                Log.d(TAG, "Retrying message " + messageId);
+                scheduleFlush();
+            }
+        });
+    }
+
+    /**
+     * Schedules a flush if sends are left over from an earlier run
+     */
+    public void resume() {
+        writeExecutor.execute(() -> {
+            int pending = outboxDao.countPending();
+            if (pending > 0) {
+                Log.d(TAG, "Resuming " + pending + " queued messages");
+                scheduleFlush();
+            }
+        });
+    }
+
+    private void scheduleFlush() {
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(OutboxWorker.class)
+                .setConstraints(constraints)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        // Appending means a send queued while a flush runs is picked up by the next one
+        WorkManager.getInstance(appContext)
+                .enqueueUniqueWork(WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+}
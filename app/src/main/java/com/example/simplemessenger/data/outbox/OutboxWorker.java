@@ -0,0 +1,141 @@
+package com.example.SImpleMessenger.data.outbox;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.example.SImpleMessenger.data.DatabaseHelper;
+import com.example.SImpleMessenger.data.local.OutboxDao;
+import com.example.SImpleMessenger.data.local.OutboxEntity;
+import com.example.SImpleMessenger.util.FirebaseFactory;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.database.DatabaseReference;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains {@link MessageOutbox}: pending sends are merged into one multi-path
+ * updateChildren per batch. If Firebase rejects a batch, its messages are sent
+ * one by one so a single bad message cannot hold back the rest; a message that
+ * fails {@link #MAX_ATTEMPTS} times is marked failed and left for the user to retry.
+ * Timeouts don't count as attempts: Firebase keeps a timed-out write queued and
+ * sends it once it is back online.
+ */
+public class OutboxWorker extends Worker {
+    private static final String TAG = "OutboxWorker";
+    static final int BATCH_SIZE = 50;
+    static final int MAX_ATTEMPTS = 8;
+    private static final long WRITE_TIMEOUT_SECONDS = 30;
+
+    public OutboxWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        FirebaseUser user = FirebaseFactory.getAuth().getCurrentUser();
+        if (user == null) {
+            // Sends wait for their sender to sign in again; MessageOutbox.resume() reschedules
+            return Result.success();
+        }
+        String ownerId = user.getUid();
+        OutboxDao outboxDao = MessageOutbox.getInstance(getApplicationContext()).getDao();
+        DatabaseReference rootRef = FirebaseFactory.getDatabase().getReference();
+
+        while (true) {
+            List<OutboxEntity> batch = outboxDao.getPending(ownerId, BATCH_SIZE);
+            if (batch.isEmpty()) {
+                return Result.success();
+            }
+            try {
+                write(rootRef, ownerId, batch);
+                outboxDao.delete(idsOf(batch));
+                Log.d(TAG, "Sent " + batch.size() + " queued messages in one update");
+                continue;
+            } catch (TimeoutException e) {
+                // Still offline as far as Firebase is concerned; try the whole batch later
+                Log.w(TAG, "Timed out sending " + batch.size() + " queued messages");
+                for (OutboxEntity entry : batch) {
+                    recordTimeout(outboxDao, entry);
+                }
+                return Result.retry();
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Batch of " + batch.size() + " rejected: " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.retry();
+            }
+
+            boolean retry = false;
+            for (OutboxEntity entry : batch) {
+                try {
+                    write(rootRef, ownerId, Collections.singletonList(entry));
+                    outboxDao.delete(Collections.singletonList(entry.messageId));
+                } catch (TimeoutException e) {
+                    recordTimeout(outboxDao, entry);
+                    retry = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    retry |= recordFailure(outboxDao, entry, cause.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return Result.retry();
+                }
+            }
+            if (retry) {
+                return Result.retry();
+            }
+        }
+    }
+
+    private static void write(DatabaseReference rootRef, String ownerId, List<OutboxEntity> entries)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        Map<String, Object> updates = new HashMap<>();
+        for (OutboxEntity entry : entries) {
+            updates.putAll(DatabaseHelper.buildSendUpdates(entry.toMessage(), ownerId));
+        }
+        Tasks.await(rootRef.updateChildren(updates), WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return True if the entry stays pending and should be retried
+     */
+    private static boolean recordFailure(OutboxDao outboxDao, OutboxEntity entry, String error) {
+        entry.attempts++;
+        entry.lastError = error;
+        if (entry.attempts >= MAX_ATTEMPTS) {
+            entry.status = OutboxEntity.STATUS_FAILED;
+            Log.e(TAG, "Giving up on message " + entry.messageId + ": " + error);
+        }
+        outboxDao.update(entry);
+        return !entry.isFailed();
+    }
+
+    /**
+     * Notes the timeout without spending an attempt; the write is still queued in Firebase
+     */
+    private static void recordTimeout(OutboxDao outboxDao, OutboxEntity entry) {
+        entry.lastError = "Timed out";
+        outboxDao.update(entry);
+    }
+
+    private static List<String> idsOf(List<OutboxEntity> entries) {
+        List<String> ids = new ArrayList<>(entries.size());
+        for (OutboxEntity entry : entries) {
+            ids.add(entry.messageId);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.SImpleMessenger.data.search;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Decayed send counts per recipient email.
+ *
+ * Each send adds 1 to the recipient's score and scores halve every
+ * {@link #HALF_LIFE_MS}, so someone messaged daily outranks someone messaged
+ * often months ago. Only the {@link #MAX_ENTRIES} highest scores are kept.
+ *
+ * Not thread-safe; {@link RecipientFrecency} guards it.
+ */
+public class FrecencyIndex {
+    static final long HALF_LIFE_MS = 14L * 24 * 60 * 60 * 1000;
+    static final int MAX_ENTRIES = 200;
+
+    private static final class Entry {
+        double score;
+        long updatedAt;
+
+        Entry(double score, long updatedAt) {
+            this.score = score;
+            this.updatedAt = updatedAt;
+        }
+
+        double scoreAt(long now) {
+            long age = Math.max(0, now - updatedAt);
+            return score * Math.pow(0.5, (double) age / HALF_LIFE_MS);
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Counts one send to {@code email} at time {@code now}
+     */
+    public void record(String email, long now) {
+        String key = normalizeEmail(email);
+        if (key == null || key.isEmpty()) {
+            return;
+        }
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entries.put(key, new Entry(1, now));
+            trim(now);
+        } else {
+            entry.score = entry.scoreAt(now) + 1;
+            entry.updatedAt = now;
+        }
+    }
+
+    /**
+     * @return Current score per lowercase email
+     */
+    public Map<String, Double> scores(long now) {
+        Map<String, Double> scores = new HashMap<>(entries.size() * 2);
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            scores.put(entry.getKey(), entry.getValue().scoreAt(now));
+        }
+        return scores;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void trim(long now) {
+        if (entries.size() <= MAX_ENTRIES) {
+            return;
+        }
+        String lowest = null;
+        double lowestScore = Double.MAX_VALUE;
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            double score = entry.getValue().scoreAt(now);
+            if (score < lowestScore) {
+                lowestScore = score;
+                lowest = entry.getKey();
+            }
+        }
+        entries.remove(lowest);
+    }
+
+    /**
+     * One line per recipient: email, score and last update, tab-separated
+     */
+    public String encode() {
+        StringBuilder out = new StringBuilder(entries.size() * 48);
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            out.append(entry.getKey()).append('\t')
+                    .append(entry.getValue().score).append('\t')
+                    .append(entry.getValue().updatedAt).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Reads what {@link #encode()} wrote; malformed lines are skipped
+     */
+    public static FrecencyIndex decode(String encoded) {
+        FrecencyIndex index = new FrecencyIndex();
+        if (encoded == null) {
+            return index;
+        }
+        for (String line : encoded.split("\n")) {
+            String[] fields = line.split("\t");
+            if (fields.length != 3 || fields[0].isEmpty()) {
+                continue;
+            }
+            try {
+                index.entries.put(fields[0],
+                        new Entry(Double.parseDouble(fields[1]), Long.parseLong(fields[2])));
+            } catch (NumberFormatException e) {
+                // Skip the line
+            }
+        }
+        return index;
+    }
+}
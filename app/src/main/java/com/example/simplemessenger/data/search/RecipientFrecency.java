@@ -0,0 +1,57 @@
+package com.example.SImpleMessenger.data.search;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.Map;
+
+/**
+ * Device-local send history used to rank recipient suggestions.
+ *
+ * {@link com.example.SImpleMessenger.data.DatabaseHelper#sendMessage} records
+ * every successful send here; the index is written back to SharedPreferences
+ * after each change and read once when the application starts.
+ */
+public class RecipientFrecency {
+    private static final String TAG = "RecipientFrecency";
+    private static final String PREFS_NAME = "recipient_frecency";
+    private static final String KEY_INDEX = "index";
+    private static RecipientFrecency instance;
+
+    private final SharedPreferences prefs;
+    private final FrecencyIndex index;
+
+    private RecipientFrecency(Context context) {
+        prefs = context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        index = FrecencyIndex.decode(prefs.getString(KEY_INDEX, null));
+        Log.d(TAG, "Loaded send history for " + index.size() + " recipients");
+    }
+
+    public static synchronized RecipientFrecency getInstance(Context context) {
+        if (instance == null) {
+            instance = new RecipientFrecency(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the history created by the application, or null if it has not been
+     * created yet (e.g. in plain unit tests)
+     */
+    public static synchronized RecipientFrecency getInstance() {
+        return instance;
+    }
+
+    public synchronized void recordSend(String recipientEmail) {
+        index.record(recipientEmail, System.currentTimeMillis());
+        prefs.edit().putString(KEY_INDEX, index.encode()).apply();
+    }
+
+    /**
+     * @return Current score per lowercase recipient email
+     */
+    public synchronized Map<String, Double> scores() {
+        return index.scores(System.currentTimeMillis());
+    }
+}
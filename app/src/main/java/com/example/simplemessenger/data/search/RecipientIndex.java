@@ -0,0 +1,398 @@
+package com.example.SImpleMessenger.data.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * In-memory search index over recipient emails and display names.
+ *
+ * A prefix trie over tokens (the whole email, its local part, and each word of
+ * the name) answers "starts with" queries; a trigram index answers "contains"
+ * queries of three or more characters. Both are updated per contact, so adding
+ * or removing one contact never rebuilds the index.
+ *
+ * Not thread-safe: {@link RecipientSearchEngine} confines it to one worker thread.
+ */
+public class RecipientIndex {
+    private static final int GRAM = 3;
+    // Tokens are stored at most this deep; longer queries are confirmed against the tokens.
+    // Keeps whole-email tokens from turning into long single-child chains the search has to walk.
+    static final int MAX_DEPTH = 6;
+
+    /** Match quality, best first */
+    static final int TIER_EMAIL_PREFIX = 0;
+    static final int TIER_TOKEN_PREFIX = 1;
+    static final int TIER_SUBSTRING = 2;
+
+    public static final class Suggestion {
+        public final String contactId;
+        public final String email;
+        public final String displayName;
+        final String emailLower;
+        final int tier;
+        final double boost;
+
+        Suggestion(Entry entry, int tier, double boost) {
+            this.contactId = entry.contactId;
+            this.email = entry.email;
+            this.displayName = entry.displayName;
+            this.emailLower = entry.emailLower;
+            this.tier = tier;
+            this.boost = boost;
+        }
+    }
+
+    private static final class Entry {
+        final int slot;
+        final String contactId;
+        final String email;
+        final String displayName;
+        final String emailLower;
+        final String nameLower;
+        final List<String> tokens;
+        final Set<String> grams;
+
+        Entry(int slot, String contactId, String email, String displayName) {
+            this.slot = slot;
+            this.contactId = contactId;
+            this.email = email;
+            this.displayName = displayName;
+            this.emailLower = email.toLowerCase(Locale.ROOT);
+            this.nameLower = displayName != null ? displayName.toLowerCase(Locale.ROOT) : "";
+            this.tokens = tokenize(emailLower, nameLower);
+            this.grams = new HashSet<>();
+            addGrams(emailLower, grams);
+            addGrams(nameLower, grams);
+        }
+    }
+
+    private static final class TrieNode {
+        final Map<Character, TrieNode> children = new HashMap<>(4);
+        // Slots of entries that have a token ending at this node
+        Set<Integer> slots;
+    }
+
+    private final TrieNode root = new TrieNode();
+    private final Map<String, Set<Integer>> gramIndex = new HashMap<>();
+    private final Map<String, Entry> byContactId = new HashMap<>();
+    private final Map<String, Entry> byEmail = new HashMap<>();
+    private final List<Entry> slots = new ArrayList<>();
+    private final List<Integer> freeSlots = new ArrayList<>();
+
+    private int[] matchStamp = new int[0];
+    private int[] matchTier = new int[0];
+    private int[] matched = new int[0];
+    private int matchedCount;
+    private int stamp;
+
+    /**
+     * Adds a recipient, replacing any previous entry for {@code contactId}
+     */
+    public void put(String contactId, String email, String displayName) {
+        if (contactId == null || email == null || email.isEmpty()) {
+            return;
+        }
+        remove(contactId);
+        int slot = freeSlots.isEmpty() ? slots.size() : freeSlots.remove(freeSlots.size() - 1);
+        Entry entry = new Entry(slot, contactId, email, displayName);
+        if (slot == slots.size()) {
+            slots.add(entry);
+        } else {
+            slots.set(slot, entry);
+        }
+        byContactId.put(contactId, entry);
+        byEmail.put(entry.emailLower, entry);
+
+        for (String token : entry.tokens) {
+            TrieNode node = root;
+            int depth = Math.min(token.length(), MAX_DEPTH);
+            for (int i = 0; i < depth; i++) {
+                char c = token.charAt(i);
+                TrieNode child = node.children.get(c);
+                if (child == null) {
+                    child = new TrieNode();
+                    node.children.put(c, child);
+                }
+                node = child;
+            }
+            if (node.slots == null) {
+                node.slots = new HashSet<>(2);
+            }
+            node.slots.add(slot);
+        }
+        for (String gram : entry.grams) {
+            Set<Integer> posting = gramIndex.get(gram);
+            if (posting == null) {
+                posting = new HashSet<>();
+                gramIndex.put(gram, posting);
+            }
+            posting.add(slot);
+        }
+    }
+
+    public void remove(String contactId) {
+        Entry entry = byContactId.remove(contactId);
+        if (entry == null) {
+            return;
+        }
+        if (byEmail.get(entry.emailLower) == entry) {
+            byEmail.remove(entry.emailLower);
+        }
+        for (String token : entry.tokens) {
+            removeToken(token, entry.slot);
+        }
+        for (String gram : entry.grams) {
+            Set<Integer> posting = gramIndex.get(gram);
+            if (posting != null) {
+                posting.remove(entry.slot);
+                if (posting.isEmpty()) {
+                    gramIndex.remove(gram);
+                }
+            }
+        }
+        slots.set(entry.slot, null);
+        freeSlots.add(entry.slot);
+    }
+
+    public void clear() {
+        root.children.clear();
+        root.slots = null;
+        gramIndex.clear();
+        byContactId.clear();
+        byEmail.clear();
+        slots.clear();
+        freeSlots.clear();
+    }
+
+    public int size() {
+        return byContactId.size();
+    }
+
+    /**
+     * @param query Text typed so far
+     * @param limit Maximum number of suggestions
+     * @param boosts Optional extra score per lowercase email (e.g. frecency); higher ranks first within a tier
+     * @return The best {@code limit} matches, best first
+     */
+    public List<Suggestion> query(String query, int limit, Map<String, Double> boosts) {
+        if (query == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        String q = query.trim().toLowerCase(Locale.ROOT);
+        if (q.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Per-query scratch: best tier per slot, valid where matchStamp == stamp
+        ensureScratchCapacity();
+        stamp++;
+        matchedCount = 0;
+        TrieNode node = root;
+        int depth = Math.min(q.length(), MAX_DEPTH);
+        for (int i = 0; i < depth && node != null; i++) {
+            node = node.children.get(q.charAt(i));
+        }
+        if (node != null) {
+            collectPrefixMatches(node, q);
+        }
+        if (q.length() >= GRAM) {
+            collectSubstringMatches(q);
+        }
+
+        // Keep the best `limit` in a bounded heap whose head is the worst kept suggestion
+        PriorityQueue<Suggestion> best = new PriorityQueue<>(limit + 1, (a, b) -> compare(b, a));
+        for (int i = 0; i < matchedCount; i++) {
+            int slot = matched[i];
+            int tier = matchTier[slot];
+            Entry entry = slots.get(slot);
+            Double boostValue = boosts != null ? boosts.get(entry.emailLower) : null;
+            double boost = boostValue != null ? boostValue : 0;
+            if (best.size() < limit) {
+                best.add(new Suggestion(entry, tier, boost));
+            } else if (compare(tier, boost, entry.emailLower, best.peek()) < 0) {
+                // Only allocate for candidates that beat the worst one kept
+                best.poll();
+                best.add(new Suggestion(entry, tier, boost));
+            }
+        }
+        List<Suggestion> results = new ArrayList<>(best);
+        results.sort(RecipientIndex::compare);
+        return results;
+    }
+
+    /**
+     * @param boosts Score per lowercase email
+     * @return Up to {@code limit} indexed recipients with the highest boosts, best first;
+     *         emails that are not in the index are skipped
+     */
+    public List<Suggestion> topBoosted(int limit, Map<String, Double> boosts) {
+        if (boosts == null || limit <= 0) {
+            return Collections.emptyList();
+        }
+        List<Suggestion> results = new ArrayList<>();
+        for (Map.Entry<String, Double> boost : boosts.entrySet()) {
+            Entry entry = byEmail.get(boost.getKey());
+            if (entry != null) {
+                results.add(new Suggestion(entry, TIER_EMAIL_PREFIX, boost.getValue()));
+            }
+        }
+        results.sort(RecipientIndex::compare);
+        return results.size() > limit ? new ArrayList<>(results.subList(0, limit)) : results;
+    }
+
+    private void ensureScratchCapacity() {
+        if (matchStamp.length < slots.size()) {
+            int capacity = Math.max(slots.size(), matchStamp.length * 2);
+            matchStamp = Arrays.copyOf(matchStamp, capacity);
+            matchTier = Arrays.copyOf(matchTier, capacity);
+            matched = Arrays.copyOf(matched, capacity);
+        }
+    }
+
+    private void match(int slot, int tier) {
+        if (matchStamp[slot] != stamp) {
+            matchStamp[slot] = stamp;
+            matchTier[slot] = tier;
+            matched[matchedCount++] = slot;
+        } else if (tier < matchTier[slot]) {
+            matchTier[slot] = tier;
+        }
+    }
+
+    private void collectPrefixMatches(TrieNode start, String q) {
+        ArrayDeque<TrieNode> stack = new ArrayDeque<>();
+        stack.push(start);
+        while (!stack.isEmpty()) {
+            TrieNode node = stack.pop();
+            if (node.slots != null) {
+                for (int slot : node.slots) {
+                    Entry entry = slots.get(slot);
+                    if (entry.emailLower.startsWith(q)) {
+                        match(slot, TIER_EMAIL_PREFIX);
+                    } else if (q.length() <= MAX_DEPTH || hasTokenWithPrefix(entry, q)) {
+                        match(slot, TIER_TOKEN_PREFIX);
+                    }
+                }
+            }
+            for (TrieNode child : node.children.values()) {
+                stack.push(child);
+            }
+        }
+    }
+
+    private static boolean hasTokenWithPrefix(Entry entry, String q) {
+        for (String token : entry.tokens) {
+            if (token.startsWith(q)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void collectSubstringMatches(String q) {
+        // Intersect trigram postings, starting from the rarest, then confirm with contains()
+        Set<String> queryGrams = new HashSet<>();
+        addGrams(q, queryGrams);
+        List<Set<Integer>> postings = new ArrayList<>(queryGrams.size());
+        for (String gram : queryGrams) {
+            Set<Integer> posting = gramIndex.get(gram);
+            if (posting == null) {
+                return;
+            }
+            postings.add(posting);
+        }
+        postings.sort((a, b) -> Integer.compare(a.size(), b.size()));
+
+        outer:
+        for (int slot : postings.get(0)) {
+            if (matchStamp[slot] == stamp) {
+                continue;
+            }
+            for (int i = 1; i < postings.size(); i++) {
+                if (!postings.get(i).contains(slot)) {
+                    continue outer;
+                }
+            }
+            Entry entry = slots.get(slot);
+            if (entry.emailLower.contains(q) || entry.nameLower.contains(q)) {
+                match(slot, TIER_SUBSTRING);
+            }
+        }
+    }
+
+    private void removeToken(String token, int slot) {
+        // Walk down, then prune nodes left with no slots and no children
+        int depth = Math.min(token.length(), MAX_DEPTH);
+        List<TrieNode> path = new ArrayList<>(depth + 1);
+        TrieNode node = root;
+        path.add(node);
+        for (int i = 0; i < depth; i++) {
+            node = node.children.get(token.charAt(i));
+            if (node == null) {
+                return;
+            }
+            path.add(node);
+        }
+        if (node.slots != null) {
+            node.slots.remove(slot);
+            if (node.slots.isEmpty()) {
+                node.slots = null;
+            }
+        }
+        for (int i = depth; i > 0; i--) {
+            TrieNode current = path.get(i);
+            if (current.slots != null || !current.children.isEmpty()) {
+                break;
+            }
+            path.get(i - 1).children.remove(token.charAt(i - 1));
+        }
+    }
+
+    static int compare(Suggestion a, Suggestion b) {
+        return compare(a.tier, a.boost, a.emailLower, b);
+    }
+
+    private static int compare(int tier, double boost, String emailLower, Suggestion other) {
+        if (tier != other.tier) {
+            return Integer.compare(tier, other.tier);
+        }
+        if (boost != other.boost) {
+            return Double.compare(other.boost, boost);
+        }
+        return emailLower.compareTo(other.emailLower);
+    }
+
+    static List<String> tokenize(String emailLower, String nameLower) {
+        List<String> tokens = new ArrayList<>();
+        tokens.add(emailLower);
+        int at = emailLower.indexOf('@');
+        if (at > 0) {
+            addWords(emailLower.substring(0, at), tokens);
+        }
+        addWords(nameLower, tokens);
+        return tokens;
+    }
+
+    private static void addWords(String text, List<String> tokens) {
+        for (String word : text.split("[\\s._\\-+]+")) {
+            if (!word.isEmpty() && !tokens.contains(word)) {
+                tokens.add(word);
+            }
+        }
+    }
+
+    private static void addGrams(String text, Set<String> grams) {
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.SImpleMessenger.data.search;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.SImpleMessenger.data.model.Contact;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs recipient autocomplete against a {@link RecipientIndex} on a background thread.
+ *
+ * Index updates and queries are serialized on one worker, so the index needs no
+ * locking. Searches are debounced, and every new search or {@link #cancel()}
+ * supersedes older ones: a stale query is skipped if it has not started and its
+ * results are dropped if it has. Matches are ranked by how well they match,
+ * then by {@link RecipientFrecency} send history.
+ */
+public class RecipientSearchEngine {
+    private static final String TAG = "RecipientSearchEngine";
+    static final long DEBOUNCE_MS = 120;
+    private static RecipientSearchEngine instance;
+
+    public interface SearchCallback {
+        /** Called on the main thread with the best matches, best first */
+        void onResults(String query, List<RecipientIndex.Suggestion> suggestions);
+    }
+
+    private final RecipientIndex index = new RecipientIndex();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Bumped on every search or cancel; read on the worker to skip stale queries
+    private volatile int generation = 0;
+    private Runnable pendingSearch;
+
+    public static synchronized RecipientSearchEngine getInstance() {
+        if (instance == null) {
+            instance = new RecipientSearchEngine();
+        }
+        return instance;
+    }
+
+    private RecipientSearchEngine() {
+    }
+
+    /**
+     * Replaces the index contents with {@code contacts}
+     */
+    public void rebuild(Collection<Contact> contacts) {
+        // Copy the fields on the calling thread; Contact objects are mutable
+        List<String[]> rows = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            rows.add(new String[]{contact.getContactId(), contact.getEmailAddress(), contact.getDisplayName()});
+        }
+        worker.execute(() -> {
+            long start = System.nanoTime();
+            index.clear();
+            for (String[] row : rows) {
+                index.put(row[0], row[1], row[2]);
+            }
+            Log.d(TAG, "Indexed " + index.size() + " recipients in "
+                    + (System.nanoTime() - start) / 1000 + "us");
+        });
+    }
+
+    public void put(Contact contact) {
+        if (contact == null) {
+            return;
+        }
+        String contactId = contact.getContactId();
+        String email = contact.getEmailAddress();
+        String displayName = contact.getDisplayName();
+        worker.execute(() -> index.put(contactId, email, displayName));
+    }
+
+    public void remove(Contact contact) {
+        if (contact == null) {
+            return;
+        }
+        String contactId = contact.getContactId();
+        worker.execute(() -> index.remove(contactId));
+    }
+
+    /**
+     * Debounces, then looks up the best {@code limit} recipients for {@code query}.
+     * Only the latest search delivers results.
+     * Call from the main thread.
+     */
+    public void search(String query, int limit, SearchCallback callback) {
+        cancel();
+        final int searchGeneration = generation;
+        final Map<String, Double> boosts = frecencyScores();
+        pendingSearch = () -> {
+            pendingSearch = null;
+            worker.execute(() -> {
+                if (searchGeneration != generation) {
+                    return;
+                }
+                List<RecipientIndex.Suggestion> results = index.query(query, limit, boosts);
+                mainHandler.post(() -> {
+                    if (searchGeneration == generation) {
+                        callback.onResults(query, results);
+                    }
+                });
+            });
+        };
+        mainHandler.postDelayed(pendingSearch, DEBOUNCE_MS);
+    }
+
+    /**
+     * Looks up the {@code limit} most frecent recipients that are in the index,
+     * e.g. to offer them before anything is typed. Runs after any index updates
+     * already queued; the callback runs on the main thread with an empty query.
+     */
+    public void topRecipients(int limit, SearchCallback callback) {
+        final Map<String, Double> boosts = frecencyScores();
+        worker.execute(() -> {
+            List<RecipientIndex.Suggestion> results = index.topBoosted(limit, boosts);
+            mainHandler.post(() -> callback.onResults("", results));
+        });
+    }
+
+    private static Map<String, Double> frecencyScores() {
+        RecipientFrecency frecency = RecipientFrecency.getInstance();
+        return frecency != null ? frecency.scores() : null;
+    }
+
+    /**
+     * Drops any pending or running search; call from the main thread
+     */
+    public void cancel() {
+        generation++;
+        if (pendingSearch != null) {
+            mainHandler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.example.SImpleMessenger.ui.adapters;
 
-import android.annotation.SuppressLint;
-import android.icu.text.SimpleDateFormat;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -12,27 +12,66 @@ import androidx.core.content.ContextCompat;
 import android.graphics.Color;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.SImpleMessenger.R;
+import com.example.SImpleMessenger.data.ContactResolver;
 import com.example.SImpleMessenger.data.ContactsManager;
+import com.example.SImpleMessenger.data.local.OutboxEntity;
 import com.example.SImpleMessenger.data.model.Contact;
 import com.example.SImpleMessenger.data.model.Message;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageViewHolder> {
     private static final String TAG = "MessageAdapter";
-    private List<Message> messages = new ArrayList<>();
+    /** Partial-bind payload: only the selection state of the row changed */
+    static final Object PAYLOAD_SELECTION = new Object();
+    /** Partial-bind payload: only the outbox status of the row changed */
+    static final Object PAYLOAD_SEND_STATE = new Object();
+
+    // Row models for every list are built here, off the main thread
+    private static final ExecutorService ROW_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private static final DiffUtil.ItemCallback<MessageRow> DIFF_CALLBACK = new DiffUtil.ItemCallback<MessageRow>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MessageRow oldItem, @NonNull MessageRow newItem) {
+            return Objects.equals(oldItem.id, newItem.id);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull MessageRow oldItem, @NonNull MessageRow newItem) {
+            return oldItem.sameContentAs(newItem);
+        }
+    };
+
+    // Diffs are computed on a background thread and dispatched as item-level notifications
+    private final AsyncListDiffer<MessageRow> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    // Last message list handed in; single-row edits build on it so pending updates aren't lost
+    private List<Message> latestMessages = Collections.emptyList();
+    private int buildGeneration = 0;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Shared instance so ContactResolver runs it once per batch
+    private final Runnable refreshRows = () -> submit(latestMessages);
+    // Counterpart uids already handed to ContactsManager for lookup
+    private final Set<String> requestedContacts = new HashSet<>();
     private final Set<String> selectedMessages = new HashSet<>();
     private boolean isMultiSelectMode = false;
+    // Outbox status of rows not yet written to Firebase, keyed by message id
+    private Map<String, String> sendStates = Collections.emptyMap();
     private final OnMessageActionListener actionListener;
     private final boolean isInbox;
     private final ContactsManager contactsManager;
@@ -47,6 +86,7 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
         this.actionListener = actionListener;
         this.isInbox = isInbox;
         this.contactsManager = ContactsManager.getInstance();
+        setHasStableIds(true);
         
         // Initialize contacts if not already done
         if (contactsManager != null) {
@@ -56,13 +96,92 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
         }
     }
 
-    @SuppressLint("NotifyDataSetChanged")
+    /**
+     * Replaces the rows; only rows whose id or contents changed are rebound
+     */
     public void updateMessages(List<Message> newMessages) {
-        this.messages.clear();
-        if (newMessages != null) {
-            this.messages.addAll(newMessages);
+        submit(newMessages != null ? new ArrayList<>(newMessages) : new ArrayList<>());
+    }
+
+    /**
+     * Builds row models for {@code updated} in the background, then diffs them in.
+     * A newer submit discards the result of an older one still being built.
+     */
+    private void submit(List<Message> updated) {
+        latestMessages = updated;
+        final int generation = ++buildGeneration;
+        final MessageRowBuilder builder = newRowBuilder(updated);
+        ROW_EXECUTOR.execute(() -> {
+            List<MessageRow> rows = builder.build(updated);
+            mainHandler.post(() -> {
+                if (generation != buildGeneration) {
+                    return;
+                }
+                differ.submitList(rows);
+                requestMissingContacts(rows);
+            });
+        });
+    }
+
+    /**
+     * Captures everything the builder needs from main-thread state
+     */
+    private MessageRowBuilder newRowBuilder(List<Message> messages) {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        String currentUserId = currentUser != null ? currentUser.getUid() : null;
+        String currentUserEmail = currentUser != null ? currentUser.getEmail() : null;
+
+        Map<String, String> contactEmails = new HashMap<>();
+        if (contactsManager != null) {
+            for (Message message : messages) {
+                String contactId = isInbox ? message.getSenderId() : message.getRecipientId();
+                if (contactId == null || contactEmails.containsKey(contactId)) {
+                    continue;
+                }
+                Contact contact = contactsManager.getContactById(contactId);
+                if (contact != null && contact.getEmailAddress() != null && !contact.getEmailAddress().isEmpty()) {
+                    contactEmails.put(contactId, contact.getEmailAddress());
+                }
+            }
+        }
+        return new MessageRowBuilder(isInbox, currentUserId, currentUserEmail, contactEmails);
+    }
+
+    /**
+     * Queues counterparts missing from the contacts cache, once per uid.
+     * Lookups are batched by ContactResolver, and each batch ends in one rebuild.
+     */
+    private void requestMissingContacts(List<MessageRow> rows) {
+        for (MessageRow row : rows) {
+            String contactId = row.unresolvedContactId;
+            if (contactId != null && requestedContacts.add(contactId)) {
+                ContactResolver.getInstance().resolve(contactId, refreshRows);
+            }
         }
-        notifyDataSetChanged();
+    }
+
+    private List<MessageRow> getRows() {
+        return differ.getCurrentList();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return stableIdOf(getRows().get(position).id);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the message id, so ids stay stable across list updates
+     */
+    static long stableIdOf(String messageId) {
+        if (messageId == null) {
+            return RecyclerView.NO_ID;
+        }
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < messageId.length(); i++) {
+            hash ^= messageId.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
     }
 
     @NonNull
@@ -74,36 +193,67 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
     }
 
     @Override
-    public void onBindViewHolder(@NonNull MessageViewHolder holder, int position) {
-        Message message = messages.get(position);
-        boolean isSelected = selectedMessages.contains(message.getId());
-        holder.bind(message, isInbox, isSelected, isMultiSelectMode);
-        
-        // Set click listener for the item
-        holder.itemView.setOnClickListener(v -> {
-            if (isMultiSelectMode) {
-                toggleSelection(message.getId());
-            } else if (actionListener != null) {
-                actionListener.onMessageSelected(message);
+    public void onBindViewHolder(@NonNull MessageViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && onlyPartialPayloads(payloads)) {
+            MessageRow row = getRows().get(position);
+            if (payloads.contains(PAYLOAD_SELECTION)) {
+                holder.bindSelection(selectedMessages.contains(row.id), isMultiSelectMode);
             }
-        });
-        
-        // Set long click listener for item selection
-        holder.itemView.setOnLongClickListener(v -> {
-            if (!isMultiSelectMode && actionListener != null) {
-                actionListener.onMessageLongClicked(message);
-                return true;
+            if (payloads.contains(PAYLOAD_SEND_STATE)) {
+                holder.bindSendState(row);
             }
-            return false;
-        });
+            return;
+        }
+        onBindViewHolder(holder, position);
+    }
+
+    /**
+     * Shows "sending" or "not sent" instead of the time on queued rows
+     * @param states Outbox status by message id
+     */
+    public void setSendStates(Map<String, String> states) {
+        if (sendStates.equals(states)) {
+            return;
+        }
+        Map<String, String> previous = sendStates;
+        sendStates = new HashMap<>(states);
+        // Rebind only the rows whose status appeared, changed or went away
+        List<MessageRow> rows = getRows();
+        for (int i = 0; i < rows.size(); i++) {
+            String id = rows.get(i).id;
+            if (!Objects.equals(previous.get(id), sendStates.get(id))) {
+                notifyItemChanged(i, PAYLOAD_SEND_STATE);
+            }
+        }
+    }
+
+    private static boolean onlyPartialPayloads(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_SELECTION && payload != PAYLOAD_SEND_STATE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull MessageViewHolder holder, int position) {
+        MessageRow row = getRows().get(position);
+        holder.bind(row, selectedMessages.contains(row.id), isMultiSelectMode);
     }
 
     @Override
     public int getItemCount() {
-        return messages.size();
+        return getRows().size();
+    }
+
+    /**
+     * Rebinds only the checkmark and background of every row
+     */
+    private void notifySelectionChanged() {
+        notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
     }
 
-    // ViewHolder inner class
     public void setMultiSelectMode(boolean enabled) {
         isMultiSelectMode = enabled;
         if (!enabled) {
@@ -112,18 +262,18 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
                 actionListener.onSelectionChanged(0);
             }
         }
-        notifyDataSetChanged();
+        notifySelectionChanged();
     }
     
     public void selectAll() {
         selectedMessages.clear();
-        for (Message message : messages) {
-            selectedMessages.add(message.getId());
+        for (MessageRow row : getRows()) {
+            selectedMessages.add(row.id);
         }
         if (actionListener != null) {
             actionListener.onSelectionChanged(selectedMessages.size());
         }
-        notifyDataSetChanged();
+        notifySelectionChanged();
     }
     
     public void clearSelections() {
@@ -131,7 +281,7 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
         if (actionListener != null) {
             actionListener.onSelectionChanged(0);
         }
-        notifyDataSetChanged();
+        notifySelectionChanged();
     }
     
     public List<String> getSelectedMessageIds() {
@@ -148,8 +298,9 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
     
     private int getPositionForId(String messageId) {
         if (messageId == null) return -1;
-        for (int i = 0; i < messages.size(); i++) {
-            if (messageId.equals(messages.get(i).getId())) {
+        List<MessageRow> rows = getRows();
+        for (int i = 0; i < rows.size(); i++) {
+            if (messageId.equals(rows.get(i).id)) {
                 return i;
             }
         }
@@ -167,7 +318,7 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
         
         int position = getPositionForId(messageId);
         if (position != -1) {
-            notifyItemChanged(position);
+            notifyItemChanged(position, PAYLOAD_SELECTION);
         }
         
         int selectedCount = selectedMessages.size();
@@ -184,7 +335,7 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
         private final TextView textPreview;
         private final View imageReminder;
         private final ImageView imageCheck;
-        private String currentUserId;
+        private final int notePadding;
 
         public MessageViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -194,46 +345,37 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
             textPreview = itemView.findViewById(R.id.text_preview);
             imageReminder = itemView.findViewById(R.id.image_reminder);
             imageCheck = itemView.findViewById(R.id.image_check);
-            
-            // Get current user ID
-            currentUserId = FirebaseAuth.getInstance().getCurrentUser() != null ? 
-                FirebaseAuth.getInstance().getCurrentUser().getUid() : null;
-                
-            // Set up click listeners
+            notePadding = itemView.getResources().getDimensionPixelSize(R.dimen.small_padding);
+
+            // Listeners are set once per holder and look the row up at click time
             itemView.setOnClickListener(v -> {
                 int position = getAdapterPosition();
-                if (position != RecyclerView.NO_POSITION) {
-                    Message message = messages.get(position);
-                    if (isMultiSelectMode) {
-                        int selectedCount = toggleSelection(message.getId());
-                        // Update the action bar immediately
-                        if (actionListener != null) {
-                            actionListener.onSelectionChanged(selectedCount);
-                        }
-                    } else if (actionListener != null) {
-                        actionListener.onMessageSelected(message);
-                    }
+                if (position == RecyclerView.NO_POSITION) {
+                    return;
+                }
+                Message message = getRows().get(position).message;
+                if (isMultiSelectMode) {
+                    toggleSelection(message.getId());
+                } else if (actionListener != null) {
+                    actionListener.onMessageSelected(message);
                 }
             });
-            
+
+            // Set long click listener for item selection
             itemView.setOnLongClickListener(v -> {
-                if (!isMultiSelectMode) {
-                    int position = getAdapterPosition();
-                    if (position != RecyclerView.NO_POSITION) {
-                        Message message = messages.get(position);
-                        if (actionListener != null) {
-                            actionListener.onMessageLongClicked(message);
-                            // Select the item on long click
-                            toggleSelection(message.getId());
-                            return true;
-                        }
-                    }
+                int position = getAdapterPosition();
+                if (isMultiSelectMode || actionListener == null || position == RecyclerView.NO_POSITION) {
+                    return false;
                 }
-                return false;
+                actionListener.onMessageLongClicked(getRows().get(position).message);
+                return true;
             });
         }
 
-        public void bind(Message message, boolean isInbox, boolean isSelected, boolean multiSelectMode) {
+        /**
+         * Updates only the checkmark and background for the row's selection state
+         */
+        void bindSelection(boolean isSelected, boolean multiSelectMode) {
             // Always show the checkbox, but update its state based on selection
             if (imageCheck != null) {
                 // Set the appropriate drawable based on selection state
@@ -250,199 +392,40 @@ public class MessageAdapter extends RecyclerView.Adapter<MessageAdapter.MessageV
                 // Set alpha based on multi-select mode to make it more subtle when not in multi-select
                 imageCheck.setAlpha(multiSelectMode ? 1.0f : 0.5f);
             }
-            // Clear all views first
-            textSender.setText("");
-            textTime.setText("");
-            textSubject.setText("");
-            textPreview.setText("");
-            imageReminder.setVisibility(View.GONE);
-            
-            if (message == null) {
-                return;
-            }
-            
-            // Always update message info first to ensure all fields are set
-            updateMessageInfo(message);
-            
-            // For notes, show "Note" as the sender
-            if (message.getIsNote()) {
-                String noteLabel = itemView.getContext().getString(R.string.label_note);
-                textSender.setText(noteLabel);
+        }
+
+        /**
+         * Copies a prebuilt row into the views; all formatting happened in {@link MessageRowBuilder}
+         */
+        public void bind(MessageRow row, boolean isSelected, boolean multiSelectMode) {
+            bindSelection(isSelected, multiSelectMode);
+
+            if (row.isNote) {
+                // For notes, show "Note" as the sender
+                textSender.setText(R.string.label_note);
                 textSender.setCompoundDrawablesRelativeWithIntrinsicBounds(R.drawable.ic_note_small, 0, 0, 0);
-                textSender.setCompoundDrawablePadding(itemView.getContext().getResources()
-                        .getDimensionPixelSize(R.dimen.small_padding));
-                return;
-            }
-            
-            // For messages, resolve contact information
-            String contactId = isInbox ? message.getSenderId() : message.getRecipientId();
-            String currentEmail = isInbox ? message.getSenderEmail() : message.getRecipientEmail();
-            
-            // If we already have the email, use it
-            if (currentEmail != null && !currentEmail.isEmpty()) {
-                updateDisplayName(message, currentEmail, isInbox);
-            } 
-            // If it's the current user, use their email
-            else if (contactId != null && contactId.equals(currentUserId)) {
-                FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
-                String userEmail = currentUser != null ? 
-                    (currentUser.getEmail() != null ? currentUser.getEmail() : "Me") : "Me";
-                // Update the message with the current user's email
-                if (isInbox) {
-                    message.setSenderEmail(userEmail);
-                } else {
-                    message.setRecipientEmail(userEmail);
-                }
-                updateDisplayName(message, userEmail, isInbox);
-            }
-            // Otherwise, try to get from contacts cache
-            else if (contactId != null && contactsManager != null) {
-                // First check if we have the contact in cache
-                Contact contact = contactsManager.getContactById(contactId);
-                if (contact != null && contact.getEmailAddress() != null && !contact.getEmailAddress().isEmpty()) {
-                    String email = contact.getEmailAddress();
-                    // Update the message with the contact's email
-                    if (isInbox) {
-                        message.setSenderEmail(email);
-                    } else {
-                        message.setRecipientEmail(email);
-                    }
-                    updateDisplayName(message, email, isInbox);
-                } else {
-                    // If not in cache, fetch it
-                    fetchAndUpdateContact(contactId, message, isInbox);
-                    
-                    // Show a temporary display name while loading
-                    String tempName = isInbox ? 
-                        (message.getSenderEmail() != null ? message.getSenderEmail() : 
-                         (message.getSenderId() != null ? "User " + message.getSenderId().substring(0, Math.min(6, message.getSenderId().length())) : "Unknown Sender")) :
-                        (message.getRecipientEmail() != null ? message.getRecipientEmail() :
-                         (message.getRecipientId() != null ? "User " + message.getRecipientId().substring(0, Math.min(6, message.getRecipientId().length())) : "Unknown Recipient"));
-                    textSender.setText(tempName);
-                }
+                textSender.setCompoundDrawablePadding(notePadding);
             } else {
-                // Fallback to showing the email if available, otherwise show ID
-                String tempName = isInbox ? 
-                    (message.getSenderEmail() != null ? message.getSenderEmail() : 
-                     (message.getSenderId() != null ? "User " + message.getSenderId().substring(0, Math.min(6, message.getSenderId().length())) : "Unknown Sender")) :
-                    (message.getRecipientEmail() != null ? message.getRecipientEmail() :
-                     (message.getRecipientId() != null ? "User " + message.getRecipientId().substring(0, Math.min(6, message.getRecipientId().length())) : "Unknown Recipient"));
-                textSender.setText(tempName);
-            }
-            
-            // Clear any compound drawables for messages (notes already handled above)
-            if (!message.getIsNote()) {
+                textSender.setText(row.senderLabel);
                 textSender.setCompoundDrawablesRelativeWithIntrinsicBounds(0, 0, 0, 0);
             }
+            bindSendState(row);
+            textSubject.setText(row.subject);
+            textPreview.setText(row.preview);
+            imageReminder.setVisibility(row.showReminder ? View.VISIBLE : View.GONE);
         }
-        
-        private void fetchAndUpdateContact(String contactId, Message message, boolean isInbox) {
-            if (contactsManager == null) {
-                Log.e(TAG, "ContactsManager is null, cannot fetch contact");
-                return;
-            }
-            
-            // First, check if we already have the contact in cache
-            Contact existingContact = contactsManager.getContactById(contactId);
-            if (existingContact != null && existingContact.getEmailAddress() != null && !existingContact.getEmailAddress().isEmpty()) {
-                updateContactInfo(existingContact, message, isInbox);
-                return;
-            }
-            
-            // Use the ContactsManager's fetchAndCreateContact method to handle the contact creation
-            contactsManager.fetchAndCreateContact(contactId, new ContactsManager.ContactsLoadListener() {
-                @Override
-                public void onContactAdded(Contact contact) {
-                    if (contact != null && contact.getEmailAddress() != null && !contact.getEmailAddress().isEmpty()) {
-                        // Update the message with the contact's email
-                        String email = contact.getEmailAddress();
-                        if (isInbox) {
-                            message.setSenderEmail(email);
-                        } else {
-                            message.setRecipientEmail(email);
-                        }
-                        
-                        // Update the UI on the main thread
-                        if (itemView.getHandler() != null) {
-                            itemView.post(() -> {
-                                updateDisplayName(message, email, isInbox);
-                                updateMessageInfo(message);
-                            });
-                        }
-                    }
-                }
 
-                @Override
-                public void onContactsLoaded(List<Contact> contacts) {
-                    // Not used in this context
-                }
-
-                @Override
-                public void onContactRemoved(Contact contact) {
-                    // Not used in this context
-                }
-
-                @Override
-                public void onError(String error) {
-                    Log.e(TAG, "Error fetching contact: " + error);
-                }
-            });
-        }
-        
-        private void updateContactInfo(Contact contact, Message message, boolean isInbox) {
-            if (contact == null || contact.getEmailAddress() == null) {
-                return;
-            }
-            
-            String email = contact.getEmailAddress();
-            if (isInbox) {
-                message.setSenderEmail(email);
+        /**
+         * Shows the outbox status of a queued row in place of its time
+         */
+        void bindSendState(MessageRow row) {
+            String sendState = sendStates.get(row.id);
+            if (sendState == null) {
+                textTime.setText(row.timeText);
             } else {
-                message.setRecipientEmail(email);
-            }
-            
-            // Update the UI on the main thread
-            if (itemView.getHandler() != null) {
-                itemView.post(() -> {
-                    updateDisplayName(message, email, isInbox);
-                    updateMessageInfo(message);
-                });
-            }
-        }
-        
-        private void updateDisplayName(Message message, String email, boolean isInbox) {
-            // This method is called when we have the email to display
-            if (email != null && !email.isEmpty()) {
-                textSender.setText(email);
-                
-                // If we're in the outbox and this is the current user's email, show "Me"
-                if (!isInbox && currentUserId != null) {
-                    String currentUserEmail = FirebaseAuth.getInstance().getCurrentUser() != null ? 
-                        FirebaseAuth.getInstance().getCurrentUser().getEmail() : null;
-                    if (email.equals(currentUserEmail)) {
-                        textSender.setText("Me");
-                    }
-                }
-            }
-        }
-        
-        private void updateMessageInfo(Message message) {
-            // Format and set time
-            long timestamp = message.getTimestamp();
-            String timeText = "";
-            if (timestamp > 0) {
-                // Format the timestamp to a readable date/time
-                SimpleDateFormat sdf = new SimpleDateFormat("MMM d, h:mm a", Locale.getDefault());
-                timeText = sdf.format(new Date(timestamp));
+                textTime.setText(OutboxEntity.STATUS_FAILED.equals(sendState)
+                        ? R.string.not_sent_tap_to_retry : R.string.sending);
             }
-            textTime.setText(timeText);
-            
-            // Set subject and preview
-            textSubject.setText(message.getSubject() != null ? message.getSubject() : "(No subject)");
-            textPreview.setText(message.getContent() != null ? message.getContent() : "");
-            
-            // Show reminder icon if there's a reminder set
-            imageReminder.setVisibility(message.isHasReminder() ? View.VISIBLE : View.GONE);
         }
     }
 }
@@ -0,0 +1,49 @@
+package com.example.SImpleMessenger.ui.adapters;
+
+import com.example.SImpleMessenger.data.model.Message;
+
+import java.util.Objects;
+
+/**
+ * Immutable, display-ready form of one message list row. Built off the main
+ * thread by {@link MessageRowBuilder} so binding only copies text into views.
+ */
+final class MessageRow {
+    final String id;
+    /** The source message, handed back to click listeners */
+    final Message message;
+    /** Resolved sender/recipient label; null for notes, which show the note label */
+    final String senderLabel;
+    final String timeText;
+    final String subject;
+    final String preview;
+    final boolean isNote;
+    final boolean showReminder;
+    /** Counterpart uid still missing from the contacts cache, or null */
+    final String unresolvedContactId;
+
+    MessageRow(Message message, String senderLabel, String timeText, String subject, String preview,
+               boolean showReminder, String unresolvedContactId) {
+        this.id = message.getId();
+        this.message = message;
+        this.senderLabel = senderLabel;
+        this.timeText = timeText;
+        this.subject = subject;
+        this.preview = preview;
+        this.isNote = message.isNote();
+        this.showReminder = showReminder;
+        this.unresolvedContactId = unresolvedContactId;
+    }
+
+    /**
+     * True if the rows look the same on screen
+     */
+    boolean sameContentAs(MessageRow other) {
+        return isNote == other.isNote
+                && showReminder == other.showReminder
+                && Objects.equals(senderLabel, other.senderLabel)
+                && Objects.equals(timeText, other.timeText)
+                && Objects.equals(subject, other.subject)
+                && Objects.equals(preview, other.preview);
+    }
+}
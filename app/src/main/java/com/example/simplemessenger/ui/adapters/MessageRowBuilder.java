@@ -0,0 +1,81 @@
+package com.example.SImpleMessenger.ui.adapters;
+
+import android.icu.text.SimpleDateFormat;
+
+import com.example.SImpleMessenger.data.model.Message;
+import com.example.SImpleMessenger.data.model.MessageSummary;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Turns messages into {@link MessageRow}s. Holds no Android views or shared
+ * state, so it can run on a background thread; one instance per build.
+ */
+final class MessageRowBuilder {
+    private final boolean isInbox;
+    private final String currentUserId;
+    private final String currentUserEmail;
+    /** Counterpart uid to email, copied from the contacts cache on the main thread */
+    private final Map<String, String> contactEmails;
+    private final SimpleDateFormat timeFormat = new SimpleDateFormat("MMM d, h:mm a", Locale.getDefault());
+
+    MessageRowBuilder(boolean isInbox, String currentUserId, String currentUserEmail,
+                      Map<String, String> contactEmails) {
+        this.isInbox = isInbox;
+        this.currentUserId = currentUserId;
+        this.currentUserEmail = currentUserEmail;
+        this.contactEmails = contactEmails;
+    }
+
+    List<MessageRow> build(List<Message> messages) {
+        List<MessageRow> rows = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            rows.add(build(message));
+        }
+        return rows;
+    }
+
+    MessageRow build(Message message) {
+        String timeText = message.getTimestamp() > 0 ? timeFormat.format(new Date(message.getTimestamp())) : "";
+        String subject = message.getSubject() != null ? message.getSubject() : "(No subject)";
+        String preview = MessageSummary.makePreview(message.getContent());
+
+        if (message.isNote()) {
+            return new MessageRow(message, null, timeText, subject, preview, message.isHasReminder(), null);
+        }
+
+        String contactId = isInbox ? message.getSenderId() : message.getRecipientId();
+        String email = isInbox ? message.getSenderEmail() : message.getRecipientEmail();
+        String unresolved = null;
+
+        if (isEmpty(email)) {
+            if (contactId != null && contactId.equals(currentUserId)) {
+                email = currentUserEmail != null ? currentUserEmail : "Me";
+            } else if (contactId != null) {
+                email = contactEmails.get(contactId);
+                if (isEmpty(email)) {
+                    unresolved = contactId;
+                }
+            }
+        }
+
+        String senderLabel;
+        if (!isEmpty(email)) {
+            // In the outbox, messages to yourself show "Me"
+            senderLabel = !isInbox && email.equals(currentUserEmail) ? "Me" : email;
+        } else if (!isEmpty(contactId)) {
+            senderLabel = "User " + contactId.substring(0, Math.min(6, contactId.length()));
+        } else {
+            senderLabel = isInbox ? "Unknown Sender" : "Unknown Recipient";
+        }
+        return new MessageRow(message, senderLabel, timeText, subject, preview, message.isHasReminder(), unresolved);
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
+}
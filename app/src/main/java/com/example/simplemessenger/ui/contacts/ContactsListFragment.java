@@ -104,30 +104,13 @@ public class ContactsListFragment extends Fragment implements ContactsManager.Co
         textNoContacts.setVisibility(View.GONE);
         recyclerView.setVisibility(View.GONE);
         
-        // Set up the load listener first
-        contactsManager.setLoadListener(this);
+        // Subscribe for as long as the view exists; cached contacts are delivered right away
+        contactsManager.subscribe(getViewLifecycleOwner(), this);
         
-        // Then initialize contacts
+        // Attaches the Firebase listeners unless another screen already did
         contactsManager.initializeContacts();
     }
     
-    @Override
-    public void onStart() {
-        super.onStart();
-        // Load any cached contacts
-        List<Contact> cachedContacts = contactsManager.getCachedContacts();
-        if (cachedContacts != null && !cachedContacts.isEmpty()) {
-            updateContactsList(cachedContacts);
-        }
-    }
-    
-    @Override
-    public void onStop() {
-        super.onStop();
-        // Unregister listener to prevent memory leaks
-        contactsManager.setLoadListener(null);
-    }
-    
     @Override
     public void onContactsLoaded(List<Contact> contacts) {
         if (getActivity() == null) return;
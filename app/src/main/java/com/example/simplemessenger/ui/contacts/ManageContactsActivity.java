@@ -14,6 +14,7 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.SImpleMessenger.R;
+import com.example.SImpleMessenger.data.codec.UserCodec;
 import com.example.SImpleMessenger.data.model.User;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.firebase.auth.FirebaseAuth;
@@ -101,7 +102,7 @@ public class ManageContactsActivity extends AppCompatActivity {
                 contactsList.clear();
                 
                 for (DataSnapshot snapshot : dataSnapshot.getChildren()) {
-                    User user = snapshot.getValue(User.class);
+                    User user = UserCodec.decode(snapshot);
                     if (user != null && !user.getUid().equals(currentUserId)) {
                         contactsList.add(user);
                     }
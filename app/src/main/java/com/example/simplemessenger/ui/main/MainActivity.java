@@ -269,19 +269,6 @@ public class MainActivity extends AppCompatActivity {
         checkAuthState(this, AuthActivity.class, MainActivity.class);
     }
     
-    @Override
-    protected void onPause() {
-        super.onPause();
-        
-        // Clean up contacts manager when app goes to background
-        try {
-            ContactsManager contactsManager = ContactsManager.getInstance();
-            contactsManager.cleanup();
-        } catch (Exception e) {
-            Log.e("MainActivity", "Error cleaning up ContactsManager in onPause", e);
-        }
-    }
-    
     @Override
     protected void onDestroy() {
         super.onDestroy();
@@ -290,12 +277,14 @@ public class MainActivity extends AppCompatActivity {
         viewPager = null;
         viewPagerAdapter = null;
         
-        // Clean up contacts manager
-        try {
-            ContactsManager contactsManager = ContactsManager.getInstance();
-            contactsManager.cleanup();
-        } catch (Exception e) {
-            Log.e("MainActivity", "Error cleaning up ContactsManager in onDestroy", e);
+        // Clean up contacts manager; other screens share it, so keep it across configuration changes
+        if (isFinishing()) {
+            try {
+                ContactsManager contactsManager = ContactsManager.getInstance();
+                contactsManager.cleanup();
+            } catch (Exception e) {
+                Log.e("MainActivity", "Error cleaning up ContactsManager in onDestroy", e);
+            }
         }
         
         mAuth = null;
@@ -14,7 +14,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.view.inputmethod.InputMethodManager;
 import android.widget.ArrayAdapter;
-import android.widget.AutoCompleteTextView;
+import android.widget.Filter;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -26,6 +26,8 @@ import com.example.SImpleMessenger.data.model.Contact;
 import com.example.SImpleMessenger.data.ContactsManager;
 import com.example.SImpleMessenger.data.DatabaseHelper;
 import com.example.SImpleMessenger.data.model.Message;
+import com.example.SImpleMessenger.data.search.RecipientIndex;
+import com.example.SImpleMessenger.data.search.RecipientSearchEngine;
 import com.example.SImpleMessenger.databinding.ActivityComposeMessageBinding;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
@@ -35,6 +37,7 @@ import java.util.List;
 
 public class ComposeMessageActivity extends AppCompatActivity implements ContactsManager.ContactsLoadListener {
     private static final String TAG = "ComposeMessage";
+    private static final int MAX_SUGGESTIONS = 8;
     
     // Intent extras
     public static final String EXTRA_MESSAGE_ID = "message_id";
@@ -51,7 +54,24 @@ public class ComposeMessageActivity extends AppCompatActivity implements Contact
     private DatabaseHelper databaseHelper;
     private FirebaseAuth mAuth;
     private ContactsManager contactsManager;
-    private List<String> contactEmails = new ArrayList<>();
+    private RecipientSearchEngine recipientSearch;
+    // Suggestions currently in the dropdown; read by the adapter's filter thread
+    private volatile int suggestionCount = 0;
+    // Most frecent recipients, offered while the recipient field is empty
+    private List<RecipientIndex.Suggestion> topRecipients = new ArrayList<>();
+    private final Filter passThroughFilter = new Filter() {
+        @Override
+        protected FilterResults performFiltering(CharSequence constraint) {
+            FilterResults results = new FilterResults();
+            results.count = suggestionCount;
+            return results;
+        }
+
+        @Override
+        protected void publishResults(CharSequence constraint, FilterResults results) {
+            // Items are replaced by showSuggestions()
+        }
+    };
     private boolean isNoteMode = false;
     private MenuItem sendMenuItem;
     private String pendingMessageContent;
@@ -68,7 +88,7 @@ public class ComposeMessageActivity extends AppCompatActivity implements Contact
         
         // Initialize ContactsManager
         contactsManager = ContactsManager.getInstance();
-        contactsManager.setLoadListener(this);
+        recipientSearch = RecipientSearchEngine.getInstance();
         
         // Set up the action bar
         setSupportActionBar(binding.toolbar);
@@ -143,26 +163,22 @@ public class ComposeMessageActivity extends AppCompatActivity implements Contact
     }
 
     private void loadContacts() {
-        // Set this activity as the load listener
-        contactsManager.setLoadListener(this);
-        
-        // Load contacts if not already loaded
+        // Show loading indicator until the first onContactsLoaded
         if (contactsManager.getCachedContacts().isEmpty()) {
-            // Show loading indicator
             showLoading(true);
-            
-            // Initialize contacts - this will trigger onContactsLoaded when done
-            try {
-                contactsManager.initializeContacts();
-            } catch (Exception e) {
-                Log.e(TAG, "Error initializing contacts", e);
-                showLoading(false);
-                Toast.makeText(this, "Error loading contacts: " + e.getMessage(), 
-                    Toast.LENGTH_SHORT).show();
-            }
-        } else {
-            // Contacts already loaded, update the adapter
-            updateAutoCompleteAdapter();
+        }
+        
+        // Cached contacts are delivered through onContactsLoaded right away
+        contactsManager.subscribe(this, this);
+        
+        // Attaches the Firebase listeners unless another screen already did
+        try {
+            contactsManager.initializeContacts();
+        } catch (Exception e) {
+            Log.e(TAG, "Error initializing contacts", e);
+            showLoading(false);
+            Toast.makeText(this, "Error loading contacts: " + e.getMessage(), 
+                Toast.LENGTH_SHORT).show();
         }
     }
     
@@ -183,12 +199,12 @@ public class ComposeMessageActivity extends AppCompatActivity implements Contact
                 pendingMessageContent = null; // Clear the pending message
             }, 500); // Small delay to ensure contact is fully processed
         }
-        updateAutoCompleteAdapter();
+        recipientSearch.put(contact);
     }
 
     @Override
     public void onContactRemoved(Contact contact) {
-        updateAutoCompleteAdapter();
+        recipientSearch.remove(contact);
     }
 
     @Override
@@ -220,6 +236,13 @@ public class ComposeMessageActivity extends AppCompatActivity implements Contact
                 }
                 return view;
             }
+
+            @NonNull
+            @Override
+            public Filter getFilter() {
+                // Matching is done by RecipientSearchEngine; keep the items as delivered
+                return passThroughFilter;
+            }
         };
         
         // Set up the AutoCompleteTextView
@@ -244,9 +267,6 @@ public class ComposeMessageActivity extends AppCompatActivity implements Contact
         
         // Update the adapter when the text changes
         binding.inputRecipient.addTextChangedListener(new TextWatcher() {
-            private final Handler handler = new Handler(Looper.getMainLooper());
-            private Runnable runnable;
-            
             @Override
             public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
             
@@ -255,20 +275,15 @@ public class ComposeMessageActivity extends AppCompatActivity implements Contact
                 // Clear any previous error when user types
                 binding.inputRecipient.setError(null);
                 
-                // Cancel any pending searches
-                if (runnable != null) {
-                    handler.removeCallbacks(runnable);
-                }
-                
-                // Debounce the search to avoid too many updates
+                // The engine debounces and drops results of superseded searches
                 String searchText = s.toString().trim();
                 if (searchText.length() >= 1) {  // Only search if there's at least 1 character
-                    runnable = () -> updateEmailSuggestions(searchText);
-                    handler.postDelayed(runnable, 300); // 300ms delay
+                    recipientSearch.search(searchText, MAX_SUGGESTIONS,
+                            (query, suggestions) -> showSuggestions(suggestions));
                 } else {
-                    // Clear the dropdown if search text is too short
-                    emailAdapter.clear();
-                    emailAdapter.notifyDataSetChanged();
+                    // Nothing typed: offer the most frecent recipients instead
+                    recipientSearch.cancel();
+                    showSuggestions(topRecipients);
                 }
             }
             
@@ -288,53 +303,38 @@ public class ComposeMessageActivity extends AppCompatActivity implements Contact
     }
     
     private void updateAutoCompleteAdapter() {
-        contactEmails.clear();
-        for (Contact contact : contactsManager.getCachedContacts()) {
-            contactEmails.add(contact.getEmailAddress());
-        }
-        
-        // Notify the adapter that the data has changed
-        AutoCompleteTextView recipientView = binding.inputRecipient;
-        ArrayAdapter<String> adapter = (ArrayAdapter<String>) recipientView.getAdapter();
-        if (adapter != null) {
-            adapter.notifyDataSetChanged();
-        }
+        // Re-index from the cache; searches pick up the new index as soon as it is built
+        recipientSearch.rebuild(contactsManager.getCachedContacts());
+        recipientSearch.topRecipients(MAX_SUGGESTIONS, (query, suggestions) -> {
+            if (isFinishing()) {
+                return;
+            }
+            topRecipients = suggestions;
+            if (!isNoteMode && TextUtils.isEmpty(binding.inputRecipient.getText())) {
+                showSuggestions(suggestions);
+            }
+        });
     }
     
-    private void updateEmailSuggestions(String searchText) {
-        if (searchText == null || searchText.isEmpty()) {
+    private void showSuggestions(List<RecipientIndex.Suggestion> suggestions) {
+        ArrayAdapter<String> adapter = (ArrayAdapter<String>) binding.inputRecipient.getAdapter();
+        if (adapter == null) {
             return;
         }
-        
-        String searchLower = searchText.toLowerCase();
-        List<String> matchingEmails = new ArrayList<>();
-        
-        // Search through all contacts
-        for (Contact contact : contactsManager.getCachedContacts()) {
-            String email = contact.getEmailAddress();
-            String name = contact.getDisplayName();
-            
-            if (email != null && email.toLowerCase().contains(searchLower)) {
-                matchingEmails.add(email);
-            } else if (name != null && name.toLowerCase().contains(searchLower)) {
-                matchingEmails.add(email);
-            }
+        List<String> emails = new ArrayList<>(suggestions.size());
+        for (RecipientIndex.Suggestion suggestion : suggestions) {
+            emails.add(suggestion.email);
+        }
+        suggestionCount = emails.size();
+        adapter.setNotifyOnChange(false);
+        adapter.clear();
+        adapter.addAll(emails);
+        adapter.notifyDataSetChanged();
+        
+        // Show dropdown if there are results and the field has focus
+        if (!emails.isEmpty() && binding.inputRecipient.hasFocus()) {
+            binding.inputRecipient.showDropDown();
         }
-        
-        // Update the adapter on the UI thread
-        runOnUiThread(() -> {
-            ArrayAdapter<String> adapter = (ArrayAdapter<String>) binding.inputRecipient.getAdapter();
-            if (adapter != null) {
-                adapter.clear();
-                adapter.addAll(matchingEmails);
-                adapter.notifyDataSetChanged();
-                
-                // Show dropdown if there are results and the field has focus
-                if (!matchingEmails.isEmpty() && binding.inputRecipient.hasFocus()) {
-                    binding.inputRecipient.showDropDown();
-                }
-            }
-        });
     }
     
     private void sendMessage() {
@@ -694,10 +694,10 @@ public class ComposeMessageActivity extends AppCompatActivity implements Contact
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (contactsManager != null) {
-            // Clear the listener to prevent memory leaks
-            contactsManager.clearPreviousListener();
-            contactsManager.cleanupContacts();
+        if (recipientSearch != null) {
+            recipientSearch.cancel();
         }
+        // The contacts subscription ends with this activity's lifecycle; the
+        // shared Firebase listeners stay attached for the other screens
     }
 }
@@ -7,21 +7,20 @@ import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.Toast;
 
-import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.example.SImpleMessenger.R;
 import com.example.SImpleMessenger.data.DatabaseHelper;
+import com.example.SImpleMessenger.data.MessageCache;
+import com.example.SImpleMessenger.data.MessageStoreWriter;
+import com.example.SImpleMessenger.data.local.LocalMessageStore;
 import com.example.SImpleMessenger.data.model.Message;
 import com.example.SImpleMessenger.databinding.ActivityMessageDetailBinding;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
 import com.example.SImpleMessenger.util.FirebaseFactory;
-import com.google.firebase.database.ValueEventListener;
 
+import com.example.SImpleMessenger.data.ContactResolver;
 import com.example.SImpleMessenger.data.ContactsManager;
 import com.example.SImpleMessenger.data.model.Contact;
 
@@ -37,8 +36,15 @@ public class MessageDetailActivity extends AppCompatActivity {
     private ContactsManager contactsManager;
     private ContactsManager.ContactsLoadListener contactListener;
     private MessageDetailUiHelper uiHelper;
-    private ValueEventListener messageValueEventListener;
+    private MessageStoreWriter storeWriter;
+    private boolean contactInformationRequested = false;
     private String currentUserId;
+    // Shared instance so each ContactResolver batch updates the screen once
+    private final Runnable contactsResolved = () -> {
+        if (message != null) {
+            resolveContactInfo(message, currentUserId, message.getSenderId(), message.getRecipientId());
+        }
+    };
 
     private void setupActionButtons() {
         // Set up click listeners for action buttons
@@ -156,61 +162,69 @@ public class MessageDetailActivity extends AppCompatActivity {
             return;
         }
 
-        // Get message from local database first
-        databaseHelper.getMessage(messageId, new DatabaseHelper.DatabaseCallback() {
-            @Override
-            public void onSuccess(Object result) {
-                if (result instanceof Message) {
-                    message = (Message) result;
-                    // Update UI with cached message
-                    runOnUiThread(() -> updateUI());
-                }
-            }
+        // The list usually decoded this message moments ago. A header-only copy
+        // holds the preview, not the body, so it waits for the load below
+        Message cached = MessageCache.getInstance().get(messageId);
+        if (cached != null && !cached.isHeaderOnly()) {
+            showMessage(cached);
+        }
 
-            @Override
-            public void onError(String error) {
-                Log.e("MessageDetail", "Error loading message from database: " + error);
+        LocalMessageStore localStore = LocalMessageStore.getInstance();
+        if (localStore == null) {
+            if (cached != null && !cached.isHeaderOnly()) {
+                return;
             }
-        });
-
-        // Then try to get the latest from Firebase
-        DatabaseReference messageRef = FirebaseFactory.getDatabase().getReference("messages").child(messageId);
-        messageValueEventListener = new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                if (dataSnapshot.exists()) {
-                    message = dataSnapshot.getValue(Message.class);
-                    if (message != null) {
-                        message.setId(dataSnapshot.getKey());
-                        
-                        // Save to local database - This needs to be implemented in DatabaseHelper
-                        // databaseHelper.saveMessage(message);
-                        
-                        // Mark as read if not already read
-                        if (!message.isRead()) {
-                            markAsRead();
-                        }
-                        
-                        // Update UI
-                        updateUI();
-                        
-                        // Load contact information
-                        loadContactInformation();
+            // No local store to observe; read the message once
+            databaseHelper.getMessage(messageId, new DatabaseHelper.DatabaseCallback() {
+                @Override
+                public void onSuccess(Object result) {
+                    if (result instanceof Message) {
+                        runOnUiThread(() -> showMessage((Message) result));
                     }
-                } else {
-                    showError("Message not found");
+                }
+
+                @Override
+                public void onError(String error) {
+                    showError("Failed to load message: " + error);
                     finish();
                 }
-            }
+            });
+            return;
+        }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                showError("Failed to load message: " + databaseError.getMessage());
-                finish();
+        // Render the stored copy straight away and every update written by the sync below
+        localStore.observeMessage(messageId).observe(this, storedMessage -> {
+            if (storedMessage != null) {
+                showMessage(storedMessage);
             }
-        };
-        
-        messageRef.addListenerForSingleValueEvent(messageValueEventListener);
+        });
+
+        // Firebase only writes the latest version into the store
+        storeWriter = new MessageStoreWriter(FirebaseFactory.getDatabase().getReference(), localStore);
+        storeWriter.syncMessage(messageId, error -> {
+            showError("Failed to load message: " + error);
+            finish();
+        });
+    }
+
+    private void showMessage(Message loadedMessage) {
+        message = loadedMessage;
+
+        // Mark as read if not already read
+        if (!message.isRead()) {
+            markAsRead();
+        }
+
+        // Update UI
+        updateUI();
+
+        // Load contact information once, then re-resolve from the cache on later updates
+        if (!contactInformationRequested) {
+            contactInformationRequested = true;
+            loadContactInformation();
+        } else if (!message.getIsNote()) {
+            resolveContactInfo(message, currentUserId, message.getSenderId(), message.getRecipientId());
+        }
     }
 
     private void loadContactInformation() {
@@ -224,7 +238,10 @@ public class MessageDetailActivity extends AppCompatActivity {
         final String recipientId = message.getRecipientId();
         final String currentUserId = mAuth.getCurrentUser() != null ? mAuth.getCurrentUser().getUid() : null;
 
-        // Set up contact listener
+        // Set up contact listener, replacing one subscribed for an earlier load
+        if (contactListener != null) {
+            contactsManager.unsubscribe(contactListener);
+        }
         contactListener = new ContactsManager.ContactsLoadListener() {
             @Override
             public void onContactsLoaded(List<Contact> contacts) {
@@ -234,12 +251,12 @@ public class MessageDetailActivity extends AppCompatActivity {
                 // Fetch any missing contacts
                 if (senderId != null && !senderId.equals(currentUserId) && 
                     (message.getSenderEmail() == null || message.getSenderEmail().isEmpty())) {
-                    fetchMissingContact(senderId, true);
+                    fetchMissingContact(senderId);
                 }
                 
                 if (recipientId != null && !recipientId.equals(currentUserId) && 
                     (message.getRecipientEmail() == null || message.getRecipientEmail().isEmpty())) {
-                    fetchMissingContact(recipientId, false);
+                    fetchMissingContact(recipientId);
                 }
             }
 
@@ -266,9 +283,8 @@ public class MessageDetailActivity extends AppCompatActivity {
             }
         };
 
-        // Set the listener and clear previous one
-        contactsManager.setLoadListener(contactListener);
-        contactsManager.clearPreviousListener();
+        // Subscribed until this activity is destroyed; cached contacts are delivered right away
+        contactsManager.subscribe(this, contactListener);
 
         // For notes, we don't need to load contacts
         if (message.getIsNote()) {
@@ -292,7 +308,7 @@ public class MessageDetailActivity extends AppCompatActivity {
             }
         }
 
-        // Initialize contacts to load any missing contact info
+        // Attaches the Firebase listeners unless another screen already did
         contactsManager.initializeContacts();
         
         // Initial resolution from cache
@@ -372,46 +388,21 @@ public class MessageDetailActivity extends AppCompatActivity {
     }
     
     /**
-     * Fetches a contact from the server if not in cache
+     * Queues a contact missing from the cache for the next ContactResolver batch
      * @param userId The user ID to fetch
-     * @param isSender Whether this is the sender (true) or recipient (false)
      */
-    private void fetchMissingContact(String userId, boolean isSender) {
+    private void fetchMissingContact(String userId) {
         if (userId == null || contactsManager == null) {
             return;
         }
-        
-        contactsManager.fetchAndCreateContact(userId, new ContactsManager.ContactsLoadListener() {
-            @Override
-            public void onContactAdded(Contact contact) {
-                if (contact != null && contact.getUserId().equals(userId)) {
-                    String email = contact.getEmailAddress();
-                    if (isSender) {
-                        message.setSenderEmail(email);
-                    } else {
-                        message.setRecipientEmail(email);
-                    }
-                    Log.d("MessageDetail", "Fetched contact: " + email);
-                    runOnUiThread(() -> updateUI());
-                }
-            }
-            
-            @Override public void onContactsLoaded(List<Contact> contacts) {}
-            @Override public void onContactRemoved(Contact contact) {}
-            @Override public void onError(String error) {
-                Log.e("MessageDetail", "Error fetching contact: " + error);
-            }
-        });
+        ContactResolver.getInstance().resolve(userId, contactsResolved);
     }
 
     private void markAsRead() {
         if (message != null && !message.isRead()) {
             message.setRead(true);
-            // Update read status in Firebase
-            FirebaseFactory.getDatabase().getReference("messages")
-                .child(message.getId())
-                .child("read")
-                .setValue(true);
+            // Update read status in Firebase (message and inbox summary)
+            databaseHelper.markMessageAsRead(message.getId());
         }
     }
 
@@ -477,14 +468,8 @@ public class MessageDetailActivity extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
         // Remove listeners to prevent memory leaks
-        if (messageValueEventListener != null) {
-            FirebaseFactory.getDatabase().getReference("messages")
-                .child(messageId)
-                .removeEventListener(messageValueEventListener);
-        }
-        
-        if (contactsManager != null) {
-            contactsManager.cleanupContacts();
+        if (storeWriter != null) {
+            storeWriter.stop();
         }
     }
     
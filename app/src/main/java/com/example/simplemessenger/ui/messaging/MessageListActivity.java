@@ -18,6 +18,7 @@ import androidx.appcompat.view.ActionMode;
 import androidx.appcompat.widget.Toolbar;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentActivity;
+import androidx.lifecycle.LiveData;
 import androidx.viewpager2.adapter.FragmentStateAdapter;
 import androidx.viewpager2.widget.ViewPager2;
 
@@ -25,6 +26,8 @@ import com.example.SImpleMessenger.R;
 import com.example.SImpleMessenger.data.ContactsManager;
 import com.example.SImpleMessenger.data.DatabaseHelper;
 import com.example.SImpleMessenger.data.MessageLoader;
+import com.example.SImpleMessenger.data.MessagePagingSource;
+import com.example.SImpleMessenger.data.local.LocalMessageStore;
 import com.example.SImpleMessenger.data.model.Contact;
 import com.example.SImpleMessenger.data.model.Message;
 import com.example.SImpleMessenger.ui.auth.AuthActivity;
@@ -37,10 +40,6 @@ import com.google.android.material.tabs.TabLayout;
 import com.google.android.material.tabs.TabLayoutMediator;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
-import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -95,6 +94,9 @@ public class MessageListActivity extends AppCompatActivity {
     private ActionMode actionMode;
     private String currentUserId;
     private final List<Message> messages = new ArrayList<>();
+    // Rows of the current tab as held by the local store
+    private static final int STORED_MESSAGES_LIMIT = 100;
+    private LiveData<List<Message>> storedMessages;
     private MessageLoader messageLoader;
     private boolean isAscending = true;
     private boolean isInbox = true;
@@ -102,6 +104,7 @@ public class MessageListActivity extends AppCompatActivity {
     private ContactsManager contactsManager;
     private MessagesPagerAdapter pagerAdapter;
     private boolean messagesLoaded = false; // Track if messages have been loaded
+    private ContactsManager.ContactsLoadListener contactsListener;
 
     private final MessageAdapter adapter = new MessageAdapter(new MessageAdapter.OnMessageActionListener() {
         @Override
@@ -305,33 +308,35 @@ public class MessageListActivity extends AppCompatActivity {
             return;
         }
 
-        // First, set up the listener
-        ContactsManager.ContactsLoadListener contactsListener = new ContactsManager.ContactsLoadListener() {
-            @Override
-            public void onContactsLoaded(List<Contact> contacts) {
-                Log.d("MessageList", "onContactsLoaded called with " + (contacts != null ? contacts.size() : 0) + " contacts");
-                messagesLoaded = true;
-                // Now load messages after contacts are loaded
-                loadMessages();
-            }
+        // First, set up the listener; onStart subscribes it again after each onStop
+        if (contactsListener == null) {
+            contactsListener = new ContactsManager.ContactsLoadListener() {
+                @Override
+                public void onContactsLoaded(List<Contact> contacts) {
+                    Log.d("MessageList", "onContactsLoaded called with " + (contacts != null ? contacts.size() : 0) + " contacts");
+                    messagesLoaded = true;
+                    // Now load messages after contacts are loaded
+                    loadMessages();
+                }
             
-            @Override
-            public void onContactAdded(Contact contact) {
-                Log.d("MessageList", "Contact added: " + (contact != null ? contact.getEmailAddress() : "null"));
-            }
+                @Override
+                public void onContactAdded(Contact contact) {
+                    Log.d("MessageList", "Contact added: " + (contact != null ? contact.getEmailAddress() : "null"));
+                }
 
-            @Override
-            public void onContactRemoved(Contact contact) {
-                Log.d("MessageList", "Contact removed: " + (contact != null ? contact.getEmailAddress() : "null"));
-            }
+                @Override
+                public void onContactRemoved(Contact contact) {
+                    Log.d("MessageList", "Contact removed: " + (contact != null ? contact.getEmailAddress() : "null"));
+                }
 
-            @Override
-            public void onError(String error) {
-                Log.e("MessageList", "Error in contacts listener: " + error);
-                // Load messages even if contacts fail to load
-                loadMessages();
-            }
-        };
+                @Override
+                public void onError(String error) {
+                    Log.e("MessageList", "Error in contacts listener: " + error);
+                    // Load messages even if contacts fail to load
+                    loadMessages();
+                }
+            };
+        }
         
         try {
             // Ensure we have a valid user ID
@@ -341,11 +346,11 @@ public class MessageListActivity extends AppCompatActivity {
                 return;
             }
             
-            // Set the listener first
-            Log.d("MessageList", "Setting contacts load listener");
-            contactsManager.setLoadListener(contactsListener);
+            // Subscribe first; cached contacts are delivered right away
+            Log.d("MessageList", "Subscribing to contacts");
+            contactsManager.subscribe(contactsListener);
             
-            // Initialize contacts
+            // Attaches the Firebase listeners unless another screen already did
             Log.d("MessageList", "Initializing contacts");
             contactsManager.initializeContacts();
             
@@ -371,6 +376,9 @@ public class MessageListActivity extends AppCompatActivity {
         if (messageLoader != null) {
             messageLoader.cleanup();
         }
+        if (contactsManager != null && contactsListener != null) {
+            contactsManager.unsubscribe(contactsListener);
+        }
     }
     
     @Override
@@ -616,12 +624,9 @@ public class MessageListActivity extends AppCompatActivity {
                 // Mark messages as loaded
                 messagesLoaded = true;
                 
-                // Update the title and UI state
+                // Update the title and UI state; the fragments observe the store themselves
                 updateTitle();
                 
-                // Update all fragments with the new messages
-                updateFragments();
-                
             } catch (Exception e) {
                 Log.e("MessageListActivity", "Error in UI update on UI thread", e);
                 if (binding != null) {
@@ -733,25 +738,12 @@ public class MessageListActivity extends AppCompatActivity {
     }
     
     /**
-     * Updates all fragments with the current messages
-     */
-    /**
-     * Directly loads messages from the database without using listeners
-     * This is a temporary solution for debugging UI issues
+     * Observes the current tab's box in the local store. The list fragments keep the
+     * store synced with Firebase, so no network reads are made here.
      */
     private void forceLoadMessages() {
         final String TAG = "MessageListActivity";
-        Log.d(TAG, "forceLoadMessages() called - Starting message loading process");
-        Log.d(TAG, "Thread: " + Thread.currentThread().getName());
-        Log.d(TAG, "Current state - isInbox: " + isInbox + 
-                  ", currentUserId: " + currentUserId + 
-                  ", databaseHelper: " + (databaseHelper != null));
-                  
-        if (databaseHelper == null) {
-            Log.e(TAG, "DatabaseHelper is null, cannot load messages");
-            runOnUiThread(() -> showSnackbar("Error: Database not available"));
-            return;
-        }
+        Log.d(TAG, "forceLoadMessages() called - isInbox: " + isInbox + ", currentUserId: " + currentUserId);
         
         if (currentUserId == null || currentUserId.isEmpty()) {
             Log.e(TAG, "Current user ID is not set, cannot load messages");
@@ -759,217 +751,18 @@ public class MessageListActivity extends AppCompatActivity {
             return;
         }
         
-        if (!isInitialized()) {
-            Log.e(TAG, "MessageLoader not properly initialized");
+        LocalMessageStore localStore = LocalMessageStore.getInstance();
+        if (localStore == null) {
+            Log.e(TAG, "Local message store is not available, cannot load messages");
+            runOnUiThread(() -> showSnackbar("Error: Database not available"));
             return;
         }
         
-        // Show loading indicator
-        runOnUiThread(() -> {
-            if (binding != null) {
-                binding.swipeRefreshLayout.setRefreshing(true);
-            }
-        });
-        
-        // Clear existing messages
-        messages.clear();
-        
-        // Get database reference
-        DatabaseReference messagesRef = databaseHelper.getDatabaseReference()
-                .child("user-messages")
-                .child(currentUserId)
-                .child(isInbox ? "received" : "sent");
-        
-        Log.d(TAG, "Loading messages from path: " + messagesRef.toString());
-        
-        // Use a single value event listener for a one-time fetch
-        messagesRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                Log.d(TAG, "onDataChange: Found " + dataSnapshot.getChildrenCount() + " message references");
-                
-                if (!dataSnapshot.exists() || dataSnapshot.getChildrenCount() == 0) {
-                    Log.d(TAG, "No messages found for user");
-                    runOnUiThread(() -> {
-                        updateUI(new ArrayList<>());
-                        if (binding != null) {
-                            binding.swipeRefreshLayout.setRefreshing(false);
-                        }
-                    });
-                    return;
-                }
-                
-                // List to hold all loaded messages
-                List<Message> loadedMessages = new ArrayList<>();
-                final int[] pendingFetches = { (int) dataSnapshot.getChildrenCount() };
-                
-                // For each message reference, fetch the actual message
-                for (DataSnapshot messageRef : dataSnapshot.getChildren()) {
-                    String messageId = messageRef.getKey();
-                    if (messageId == null) continue;
-                    
-                    DatabaseReference messageRefFull = databaseHelper.getDatabaseReference()
-                            .child("messages")
-                            .child(messageId);
-                    
-                    messageRefFull.addListenerForSingleValueEvent(new ValueEventListener() {
-                        @Override
-                        public void onDataChange(@NonNull DataSnapshot messageSnapshot) {
-                            if (messageSnapshot.exists()) {
-                                Message message = messageSnapshot.getValue(Message.class);
-                                if (message != null) {
-                                    message.setId(messageSnapshot.getKey());
-                                    synchronized (loadedMessages) {
-                                        loadedMessages.add(message);
-                                    }
-                                }
-                            }
-                            
-                            // Check if all fetches are complete
-                            synchronized (pendingFetches) {
-                                pendingFetches[0]--;
-                                if (pendingFetches[0] == 0) {
-                                    // All messages loaded, update UI
-                                    Log.d(TAG, "All messages loaded, count: " + loadedMessages.size());
-                                    runOnUiThread(() -> {
-                                        updateUI(loadedMessages);
-                                        if (binding != null) {
-                                            binding.swipeRefreshLayout.setRefreshing(false);
-                                        }
-                                    });
-                                }
-                            }
-                        }
-                        
-                        @Override
-                        public void onCancelled(@NonNull DatabaseError error) {
-                            Log.e(TAG, "Error loading message: " + error.getMessage());
-                            synchronized (pendingFetches) {
-                                pendingFetches[0]--;
-                                if (pendingFetches[0] == 0) {
-                                    runOnUiThread(() -> {
-                                        updateUI(loadedMessages);
-                                        if (binding != null) {
-                                            binding.swipeRefreshLayout.setRefreshing(false);
-                                        }
-                                    });
-                                }
-                            }
-                        }
-                    });
-                }
-            }
-
-            @Override
-            public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "Error loading messages: " + error.getMessage());
-                runOnUiThread(() -> {
-                    showSnackbar("Error loading messages: " + error.getMessage());
-                    if (binding != null) {
-                        binding.swipeRefreshLayout.setRefreshing(false);
-                    }
-                });
-            }
-        });
-    }
-    
-    /**
-     * Updates all fragments with the current messages
-     */
-    private void updateFragments() {
-        final String TAG = "MessageListActivity";
-        Log.d(TAG, "updateFragments() called with " + messages.size() + " messages, isInbox=" + isInbox);
-        
-        try {
-            // Check if pagerAdapter is initialized
-            if (pagerAdapter == null) {
-                Log.e(TAG, "pagerAdapter is null in updateFragments");
-                return;
-            }
-            
-            // Check if activity is finishing or destroyed
-            if (isFinishing() || isDestroyed()) {
-                Log.w(TAG, "Activity is finishing or destroyed, skipping fragment updates");
-                return;
-            }
-            
-            // Check if binding and view pager are valid
-            if (binding == null || binding.viewPager == null) {
-                Log.e(TAG, "Binding or ViewPager is null, cannot update fragments");
-                return;
-            }
-            
-            int itemCount = pagerAdapter.getItemCount();
-            Log.d(TAG, "Updating " + itemCount + " fragments, total messages: " + messages.size() + 
-                    ", isInbox: " + isInbox);
-            
-            // Get current view pager position for reference
-            int currentPosition = binding.viewPager.getCurrentItem();
-            Log.d(TAG, "Current view pager position: " + currentPosition);
-            
-            // Update both fragments (inbox and outbox)
-            for (int i = 0; i < itemCount; i++) {
-                try {
-                    Log.d(TAG, "Processing fragment at position: " + i);
-                    
-                    // Get the fragment from pager adapter
-                    MessageListFragment fragment = pagerAdapter.getFragment(i);
-                    if (fragment == null) {
-                        Log.e(TAG, "Fragment at position " + i + " is null");
-                        continue;
-                    }
-                    
-                    // Check fragment state
-                    if (!fragment.isAdded()) {
-                        Log.w(TAG, "Fragment at position " + i + " is not added to activity");
-                        continue;
-                    }
-                    
-                    if (fragment.isDetached()) {
-                        Log.w(TAG, "Fragment at position " + i + " is detached from activity");
-                        continue;
-                    }
-                    
-                    if (fragment.isRemoving()) {
-                        Log.w(TAG, "Fragment at position " + i + " is being removed");
-                        continue;
-                    }
-                    
-                    // Filter messages for this fragment (inbox or outbox)
-                    boolean isInboxFragment = (i == 0);
-                    List<Message> filteredMessages = filterMessages(messages, isInboxFragment);
-                    
-                    Log.d(TAG, String.format("Updating fragment %d (isInbox: %b) with %d messages", 
-                            i, isInboxFragment, filteredMessages != null ? filteredMessages.size() : 0));
-                    
-                    // Log first few messages for debugging
-                    if (filteredMessages != null && !filteredMessages.isEmpty()) {
-                        int logCount = Math.min(3, filteredMessages.size());
-                        for (int j = 0; j < logCount; j++) {
-                            Message msg = filteredMessages.get(j);
-                            Log.d(TAG, String.format("Message %d: id=%s, from=%s, to=%s, subject=%s", 
-                                    j, msg.getId(), msg.getSenderId(), 
-                                    msg.getRecipientId(), msg.getSubject()));
-                        }
-                    }
-                    
-                    // Update the fragment with the filtered messages
-                    if (filteredMessages != null) {
-                        fragment.updateMessages(filteredMessages);
-                    } else {
-                        Log.e(TAG, "Filtered messages is null for fragment " + i);
-                        fragment.updateMessages(new ArrayList<>());
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error updating fragment " + i, e);
-                }
-            }
-            
-            Log.d(TAG, "Fragment update completed");
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Unexpected error in updateFragments", e);
+        if (storedMessages != null) {
+            storedMessages.removeObservers(this);
         }
+        storedMessages = localStore.observeBox(currentUserId, isInbox ? "received" : "sent", STORED_MESSAGES_LIMIT);
+        storedMessages.observe(this, this::updateUI);
     }
 
     @Override
@@ -1099,6 +892,7 @@ public class MessageListActivity extends AppCompatActivity {
                 currentSortField,
                 isAscending
             );
+            messageLoader.setLoadMode(MessagePagingSource.parseLoadMode(getString(R.string.message_load_mode)));
             Log.d("MessageListActivity", "MessageLoader created successfully");
         } catch (Exception e) {
             Log.e("MessageListActivity", "Error creating MessageLoader", e);
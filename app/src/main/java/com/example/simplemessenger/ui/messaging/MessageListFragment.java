@@ -22,6 +22,7 @@ import android.view.MenuItem;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
@@ -29,21 +30,31 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.SImpleMessenger.R;
 import com.example.SImpleMessenger.databinding.FragmentMessageListBinding;
+import com.example.SImpleMessenger.data.BulkMessageOperation;
 import com.example.SImpleMessenger.data.DatabaseHelper;
+import com.example.SImpleMessenger.data.MessagePagingSource;
+import com.example.SImpleMessenger.data.MessageStoreWriter;
+import com.example.SImpleMessenger.data.local.LocalMessageStore;
+import com.example.SImpleMessenger.data.local.OutboxEntity;
+import com.example.SImpleMessenger.data.model.Category;
 import com.example.SImpleMessenger.data.model.Message;
+import com.example.SImpleMessenger.data.outbox.MessageOutbox;
 import com.example.SImpleMessenger.ui.adapters.MessageAdapter;
+import com.example.SImpleMessenger.util.CategoryManager;
+import com.google.android.material.snackbar.Snackbar;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.database.DataSnapshot;
-import com.google.firebase.database.DatabaseError;
-import com.google.firebase.database.DatabaseReference;
 import com.example.SImpleMessenger.util.FirebaseFactory;
-import com.google.firebase.database.ValueEventListener;
 
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 
 public class MessageListFragment extends Fragment {
@@ -57,8 +68,36 @@ public class MessageListFragment extends Fragment {
     private MessageAdapter adapter;
     private DatabaseHelper databaseHelper;
     private MenuItem trashMenuItem;
+    private MenuItem archiveMenuItem;
+    private MenuItem markReadMenuItem;
+    private MenuItem moveCategoryMenuItem;
+    private BulkMessageOperation bulkOperation;
     private boolean isMultiSelectMode = false;
     
+    // Paging: index entries per request, pages held in memory, and how close to
+    // either end of the window the list may scroll before the next page is requested
+    private static final int PAGE_SIZE = 30;
+    private static final int MAX_PAGES_IN_MEMORY = 5;
+    private static final int PREFETCH_DISTANCE = 10;
+    private MessagePagingSource pagingSource;
+    
+    // Local store: the list renders whatever the store holds for this box; Firebase
+    // listeners and the paging source only write into it
+    private LocalMessageStore localStore;
+    private MessageStoreWriter storeWriter;
+    private LiveData<List<Message>> storedRows;
+    private List<Message> lastStoredRows = Collections.emptyList();
+    // Sends of this box still in the outbox, shown above the stored rows
+    private LiveData<List<OutboxEntity>> outboxRows;
+    private List<Message> queuedMessages = Collections.emptyList();
+    private final Set<String> failedSends = new HashSet<>();
+    // Stored rows shown: the timestamp range of the paging window, capped like the window itself.
+    // Until the first page arrives the range is open and scrolling reveals more stored rows.
+    private static final int MAX_DISPLAY_ROWS = PAGE_SIZE * MAX_PAGES_IN_MEMORY;
+    private long displayOldest = Long.MIN_VALUE;
+    private long displayNewest = Long.MAX_VALUE;
+    private int displayLimit = PAGE_SIZE;
+    
     // Timeout handling
     private static final long DATABASE_TIMEOUT_MS = 15000; // 15 seconds
     private final Handler timeoutHandler = new Handler(Looper.getMainLooper());
@@ -87,6 +126,7 @@ public class MessageListFragment extends Fragment {
                 trashMenuItem.setVisible(true);
                 trashMenuItem.setEnabled(selectedCount > 0);
             }
+            setBulkActionsVisible(true, selectedCount > 0);
         } else {
             // Reset to normal mode
             actionBar.setDisplayHomeAsUpEnabled(false);
@@ -96,6 +136,7 @@ public class MessageListFragment extends Fragment {
                 trashMenuItem.setVisible(false);
                 trashMenuItem.setEnabled(false);
             }
+            setBulkActionsVisible(false, false);
         }
         
         // Invalidate the options menu to refresh the menu items
@@ -104,6 +145,17 @@ public class MessageListFragment extends Fragment {
         }
     }
 
+    private void setBulkActionsVisible(boolean visible, boolean enabled) {
+        for (MenuItem item : new MenuItem[] {archiveMenuItem, markReadMenuItem, moveCategoryMenuItem}) {
+            if (item != null) {
+                // Only received messages carry a read flag
+                boolean applies = item != markReadMenuItem || isInbox;
+                item.setVisible(visible && applies);
+                item.setEnabled(enabled && applies);
+            }
+        }
+    }
+
     public MessageListFragment() {
     }
 
@@ -150,11 +202,6 @@ public class MessageListFragment extends Fragment {
         // Set has options menu to enable toolbar menu items
         setHasOptionsMenu(true);
         
-        // Update the tab state in DatabaseHelper
-        if (databaseHelper != null) {
-            databaseHelper.setTabState(isNotes, isInbox);
-        }
-        
         // Ensure we have the latest arguments
         if (getArguments() != null) {
             position = getArguments().getInt(ARG_POSITION, 0);
@@ -183,7 +230,7 @@ public class MessageListFragment extends Fragment {
                         int selectedCount = adapter.toggleSelection(message.getId());
                         updateActionBarForSelection(selectedCount);
                     }
-                } else {
+                } else if (!retryIfNotSent(message)) {
                     // In normal mode, open message details
                     if (getActivity() != null && message != null) {
                         String messageId = message.getId();
@@ -273,6 +320,10 @@ public class MessageListFragment extends Fragment {
         // Show loading indicator initially
         showLoadingIndicator(true);
         
+        // Render stored rows straight away and keep the newest page synced into the store
+        localStore = LocalMessageStore.getInstance();
+        startStoreSync();
+        
         // Load messages directly
         Log.d("MessageListFragment", "Loading messages for tab: " + (isNotes ? "Notes" : (isInbox ? "Inbox" : "Outbox")));
         loadMessagesDirectly();
@@ -299,61 +350,14 @@ public class MessageListFragment extends Fragment {
         }
         
         String currentUserId = currentUser.getUid();
-        Log.d("MessageListFragment", "Loading messages for user: " + currentUserId + ", isNotes: " + isNotes + ", isInbox: " + isInbox);
-        
-        // Clear previous messages
-        messages.clear();
-        if (adapter != null) {
-            adapter.updateMessages(new ArrayList<>());
-        }
-        
-        // Show loading indicator
-        showLoadingIndicator(true);
-        
-        // Get the appropriate database reference based on the current tab
-        DatabaseReference rootRef = FirebaseFactory.getDatabase().getReference();
-        Log.d("MessageListFragment", "Root reference: " + rootRef.toString());
-        
-        // Note: Using hyphen to match security rules
-        DatabaseReference userMessagesRef = rootRef.child("user-messages");
-        Log.d("MessageListFragment", "user_messages reference: " + userMessagesRef.toString());
-        
-        DatabaseReference userRef = userMessagesRef.child(currentUserId);
-        Log.d("MessageListFragment", "User reference: " + userRef.toString() + " (UID: " + currentUserId + ")");
-                
-        DatabaseReference messagesRef = rootRef.child("messages");
-        Log.d("MessageListFragment", "Messages reference: " + messagesRef.toString());
-        
-        DatabaseReference tabRef;
-        
-        if (isNotes) {
-            tabRef = userRef.child("notes");
-            Log.d("MessageListFragment", "Loading notes from: " + tabRef.toString());
-        } else if (isInbox) {
-            tabRef = userRef.child("received");
-            Log.d("MessageListFragment", "Loading received messages from: " + tabRef.toString());
-        } else {
-            tabRef = userRef.child("sent");
-            Log.d("MessageListFragment", "Loading sent messages from: " + tabRef.toString());
-        }
+        String box = currentBox();
+        Log.d("MessageListFragment", "Loading first page of " + box + " for user: " + currentUserId);
         
-        // Ensure we have a valid reference
-        if (tabRef == null) {
-            Log.e("MessageListFragment", "Failed to get database reference for messages");
-            showLoadingIndicator(false);
-            if (binding != null) {
-                binding.swipeRefreshLayout.setRefreshing(false);
-            }
-            updateUIForEmptyState();
-            return;
+        // Keep stored rows on screen while the first page loads
+        if (messages.isEmpty()) {
+            showLoadingIndicator(true);
         }
         
-        // Use a counter to track the query
-        final int[] queriesCompleted = {0};
-        final List<Message> allMessages = new ArrayList<>();
-        
-        Log.d("MessageListFragment", "Loading from path: " + tabRef.toString());
-        
         // Set up timeout
         timeoutRunnable = () -> {
             Log.e("MessageListFragment", "Database operation timed out after " + DATABASE_TIMEOUT_MS + "ms");
@@ -372,192 +376,246 @@ public class MessageListFragment extends Fragment {
         };
         timeoutHandler.postDelayed(timeoutRunnable, DATABASE_TIMEOUT_MS);
         
-        // Load messages for the current tab
-        Log.d("MessageListFragment", "Adding value event listener to: " + tabRef.toString());
-        Log.d("MessageListFragment", "Current user UID: " + currentUserId);
-        Log.d("MessageListFragment", "Database URL: " + FirebaseFactory.getDatabaseUrl());
-        tabRef.addListenerForSingleValueEvent(new ValueEventListener() {
-            @Override
-            public void onDataChange(@NonNull DataSnapshot dataSnapshot) {
-                // Cancel the timeout since we got a response
-                if (timeoutRunnable != null) {
-                    timeoutHandler.removeCallbacks(timeoutRunnable);
-                    timeoutRunnable = null;
-                }
-                
-                // Log the raw snapshot value to see what's actually in the database
-                Log.d("MessageListFragment", "Raw snapshot value: " + dataSnapshot.getValue());
-                Log.d("MessageListFragment", "Snapshot exists: " + dataSnapshot.exists());
-                Log.d("MessageListFragment", "onDataChange called with " + dataSnapshot.getChildrenCount() + " children");
-                
-                // Log each child key and value
-                for (DataSnapshot child : dataSnapshot.getChildren()) {
-                    Log.d("MessageListFragment", "Child key: " + child.getKey() + 
-                                            ", value: " + child.getValue() + 
-                                            ", has children: " + (child.getChildren().iterator().hasNext()));
-                }
-                
-                FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
-                if (currentUser == null) {
-                    Log.e("MessageListFragment", "Current user is null in onDataChange");
-                    return;
-                }
-                
-                String currentUserId = currentUser.getUid();
-                final int totalMessages = (int) dataSnapshot.getChildrenCount();
-                Log.d("MessageListFragment", "Found " + totalMessages + " message references in " + (isNotes ? "notes" : (isInbox ? "inbox" : "sent")));
-                
-                if (totalMessages == 0) {
-                    Log.d("MessageListFragment", "No message references found. Checking parent node...");
-                    // Try to check if we can access the parent node
-                    tabRef.getParent().addListenerForSingleValueEvent(new ValueEventListener() {
-                        @Override
-                        public void onDataChange(@NonNull DataSnapshot parentSnapshot) {
-                            Log.d("MessageListFragment", "Parent node exists: " + parentSnapshot.exists());
-                            Log.d("MessageListFragment", "Parent node value: " + parentSnapshot.getValue());
-                            checkAllQueriesCompleted(++queriesCompleted[0], allMessages);
-                        }
-
-                        @Override
-                        public void onCancelled(@NonNull DatabaseError error) {
-                            Log.e("MessageListFragment", "Error checking parent node: " + error.getMessage());
-                            checkAllQueriesCompleted(++queriesCompleted[0], allMessages);
+        if (pagingSource != null) {
+            pagingSource.cancel();
+        }
+        pagingSource = new MessagePagingSource(
+                FirebaseFactory.getDatabase().getReference(),
+                currentUserId,
+                box,
+                PAGE_SIZE,
+                MAX_PAGES_IN_MEMORY,
+                new MessagePagingSource.PageListener() {
+                    @Override
+                    public void onWindowChanged(List<Message> window, int positionShift) {
+                        // Cancel the timeout since we got a response
+                        if (timeoutRunnable != null) {
+                            timeoutHandler.removeCallbacks(timeoutRunnable);
+                            timeoutRunnable = null;
                         }
-                    });
-                    return;
-                }
-                
-                final int[] loadedCount = {0};
-                
-                for (DataSnapshot messageRef : dataSnapshot.getChildren()) {
-                    String messageId = messageRef.getKey();
-                    if (messageId == null) {
-                        Log.d("MessageListFragment", "Skipping null message ID");
-                        continue;
-                    }
-                    Log.d("MessageListFragment", "Processing message reference: " + messageId + " with value: " + messageRef.getValue());
-                    
-                    messagesRef.child(messageId).addListenerForSingleValueEvent(new ValueEventListener() {
-                        @Override
-                        public void onDataChange(@NonNull DataSnapshot messageSnapshot) {
-                            Message message = messageSnapshot.getValue(Message.class);
-                            if (message != null) {
-                                // Always set the message ID
-                                message.setId(messageId);
-                                
-                                if (isNotes) {
-                                // For notes, we don't need to set sender/recipient
-                                // Set isNote after Firebase deserialization to ensure it's not overridden
-                                message.setNote(true);
-                                Log.d("MessageListFragment", "Set isNote=true for message: " + messageId);
-                            } else if (isInbox) {
-                                // For inbox, set recipient ID
-                                message.setRecipientId(currentUserId);
-                                message.setNote(false);
-                                Log.d("MessageListFragment", "Added received message from: " + message.getSenderId());
-                            } else {
-                                // For sent, set sender ID
-                                message.setSenderId(currentUserId);
-                                message.setNote(false);
-                                Log.d("MessageListFragment", "Added sent message to: " + message.getRecipientId());
-                            }
-                                allMessages.add(message);
-                                Log.d("MessageListFragment", "Added message with ID: " + messageId);
+                        if (localStore != null) {
+                            // The store observer renders the rows
+                            localStore.putWindow(currentUserId, box, window, !pagingSource.hasMoreNewer());
+                            followWindow(window);
+                            if (binding != null) {
+                                binding.swipeRefreshLayout.setRefreshing(false);
                             }
-                            
-                            // Check if we've loaded all messages
-                            if (++loadedCount[0] >= totalMessages) {
-                                checkAllQueriesCompleted(++queriesCompleted[0], allMessages);
+                            if (window.isEmpty() && messages.isEmpty()) {
+                                showMessagesWindow(window);
                             }
+                        } else {
+                            showMessagesWindow(window);
                         }
+                    }
 
-                        @Override
-                        public void onCancelled(@NonNull DatabaseError databaseError) {
-                            Log.e("MessageListFragment", "Error loading message " + messageId + ": " + databaseError.getMessage() + 
-                                ", Details: " + databaseError.getDetails() + 
-                                ", Code: " + databaseError.getCode(), databaseError.toException());
-                            if (++loadedCount[0] >= totalMessages) {
-                                checkAllQueriesCompleted(++queriesCompleted[0], allMessages);
-                            }
+                    @Override
+                    public void onError(String error) {
+                        if (timeoutRunnable != null) {
+                            timeoutHandler.removeCallbacks(timeoutRunnable);
+                            timeoutRunnable = null;
                         }
-                    });
-                }
-            }
+                        Log.e("MessageListFragment", "Error loading messages page: " + error);
+                        showMessagesWindow(new ArrayList<>(messages));
+                    }
+                });
+        pagingSource.setLoadMode(loadMode());
+        pagingSource.refresh();
+    }
 
-            @Override
-            public void onCancelled(@NonNull DatabaseError databaseError) {
-                // Cancel the timeout since we got an error
-                if (timeoutRunnable != null) {
-                    timeoutHandler.removeCallbacks(timeoutRunnable);
-                    timeoutRunnable = null;
+    private MessagePagingSource.LoadMode loadMode() {
+        return MessagePagingSource.parseLoadMode(getString(R.string.message_load_mode));
+    }
+    
+    /**
+     * Starts mirroring this tab's box into the local store and observing it,
+     * replacing any sync for a previously shown box
+     */
+    private void startStoreSync() {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (localStore == null || currentUser == null) {
+            return;
+        }
+        if (storeWriter != null) {
+            storeWriter.stop();
+        }
+        storeWriter = new MessageStoreWriter(FirebaseFactory.getDatabase().getReference(), localStore);
+        storeWriter.setLoadMode(loadMode());
+        storeWriter.syncBox(currentUser.getUid(), currentBox(),
+                error -> Log.e("MessageListFragment", "Error syncing messages: " + error));
+        displayOldest = Long.MIN_VALUE;
+        displayNewest = Long.MAX_VALUE;
+        displayLimit = PAGE_SIZE;
+        observeStoredRows();
+    }
+    
+    /**
+     * Moves the stored-row range to the timestamps covered by the paging window,
+     * so scrolling slides a bounded range instead of growing one
+     * @param window Rows held by the paging source, newest first
+     */
+    private void followWindow(List<Message> window) {
+        if (window.isEmpty()) {
+            return;
+        }
+        long oldest = pagingSource.hasMoreOlder() ? window.get(window.size() - 1).getTimestamp() : Long.MIN_VALUE;
+        long newest = pagingSource.hasMoreNewer() ? window.get(0).getTimestamp() : Long.MAX_VALUE;
+        int limit = Math.min(MAX_DISPLAY_ROWS, Math.max(PAGE_SIZE, window.size()));
+        if (oldest == displayOldest && newest == displayNewest && limit == displayLimit) {
+            return;
+        }
+        displayOldest = oldest;
+        displayNewest = newest;
+        displayLimit = limit;
+        observeStoredRows();
+    }
+    
+    private String currentBox() {
+        return isNotes ? "notes" : (isInbox ? "received" : "sent");
+    }
+    
+    /**
+     * (Re)subscribes the list to the stored rows of this box in the current display range
+     */
+    private void observeStoredRows() {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (localStore == null || currentUser == null || getView() == null) {
+            return;
+        }
+        if (storedRows != null) {
+            storedRows.removeObservers(getViewLifecycleOwner());
+        }
+        storedRows = localStore.observeRange(currentUser.getUid(), currentBox(), displayOldest, displayNewest,
+                displayLimit);
+        storedRows.observe(getViewLifecycleOwner(), rows -> {
+            // An empty store on first launch says nothing yet; wait for the network
+            if (rows.isEmpty() && pagingSource != null && pagingSource.isLoading()) {
+                return;
+            }
+            if (timeoutRunnable != null && !rows.isEmpty()) {
+                timeoutHandler.removeCallbacks(timeoutRunnable);
+                timeoutRunnable = null;
+            }
+            lastStoredRows = rows;
+            showMessagesWindow(withQueued(rows));
+        });
+        observeOutbox(currentUser.getUid());
+    }
+    
+    /**
+     * Keeps queued and failed sends of the sent and notes boxes on screen, with their status
+     */
+    private void observeOutbox(String ownerId) {
+        MessageOutbox outbox = MessageOutbox.getInstance();
+        if (outboxRows != null) {
+            outboxRows.removeObservers(getViewLifecycleOwner());
+            outboxRows = null;
+        }
+        queuedMessages = Collections.emptyList();
+        failedSends.clear();
+        if (outbox == null || "received".equals(currentBox())) {
+            return;
+        }
+        outboxRows = outbox.observe(ownerId);
+        outboxRows.observe(getViewLifecycleOwner(), entries -> {
+            List<Message> queued = new ArrayList<>(entries.size());
+            Map<String, String> states = new HashMap<>();
+            failedSends.clear();
+            for (OutboxEntity entry : entries) {
+                Message message = entry.toMessage();
+                if (message.isNote() != isNotes) {
+                    continue;
+                }
+                queued.add(message);
+                states.put(entry.messageId, entry.status);
+                if (entry.isFailed()) {
+                    failedSends.add(entry.messageId);
                 }
-                
-                Log.e("MessageListFragment", "Error loading sent messages refs: ", databaseError.toException());
-                checkAllQueriesCompleted(++queriesCompleted[0], allMessages);
             }
+            queuedMessages = queued;
+            if (adapter != null) {
+                adapter.setSendStates(states);
+            }
+            showMessagesWindow(withQueued(lastStoredRows));
         });
-        
-        // For notes or regular messages, we only need to load from one place
-        // The tabRef is already set up at the beginning of the method
-        // No need for separate receivedRef handling
     }
     
-    private void checkAllQueriesCompleted(int completedQueries, List<Message> messages) {
-        // For notes or regular messages, we only have one query to wait for
-        if (completedQueries == 1) {
-            final int messageCount = messages != null ? messages.size() : 0;
-            Log.d("MessageListFragment", "Loaded " + messageCount + " messages for " + 
-                (isNotes ? "notes" : (isInbox ? "inbox" : "outbox")));
-            
-            // Update UI on the main thread
-            if (getActivity() != null) {
-                getActivity().runOnUiThread(() -> {
-                    try {
-                        // Clear existing messages
-                        if (this.messages != null) {
-                            this.messages.clear();
-                            
-                            // Add new messages if available
-                            if (messages != null && !messages.isEmpty()) {
-                                this.messages.addAll(messages);
-                                Log.d("MessageListFragment", "Added " + messages.size() + " messages to the list");
-                            }
-                        }
-                        
-                        // Update the adapter
-                        if (adapter != null) {
-                            adapter.updateMessages(new ArrayList<>(this.messages));
-                        } else {
-                            Log.e("MessageListFragment", "Adapter is null, cannot update messages");
-                        }
-                        
-                        // Update UI based on message count
-                        if (this.messages.isEmpty()) {
-                            Log.d("MessageListFragment", "No messages found, showing empty state");
-                            updateUIForEmptyState();
-                        } else {
-                            Log.d("MessageListFragment", "Showing " + this.messages.size() + " messages");
-                            if (binding != null) {
-                                binding.progressBar.setVisibility(View.GONE);
-                                binding.recyclerView.setVisibility(View.VISIBLE);
-                                binding.textEmpty.setVisibility(View.GONE);
-                            }
-                        }
-                    } catch (Exception e) {
-                        Log.e("MessageListFragment", "Error updating UI with messages", e);
-                        updateUIForEmptyState();
-                    } finally {
-                        // Always hide loading indicators
-                        if (binding != null) {
-                            binding.swipeRefreshLayout.setRefreshing(false);
-                            binding.progressBar.setVisibility(View.GONE);
-                        }
-                    }
-                });
-            } else {
-                Log.e("MessageListFragment", "Activity is null, cannot update UI");
+    private List<Message> withQueued(List<Message> rows) {
+        if (queuedMessages.isEmpty()) {
+            return rows;
+        }
+        Set<String> stored = new HashSet<>();
+        for (Message row : rows) {
+            stored.add(row.getId());
+        }
+        List<Message> merged = new ArrayList<>(queuedMessages.size() + rows.size());
+        for (Message message : queuedMessages) {
+            if (!stored.contains(message.getId())) {
+                merged.add(message);
             }
         }
+        merged.addAll(rows);
+        return merged;
+    }
+    
+    /**
+     * Queues a send that the outbox gave up on again
+     * @return True if {@code message} was such a send
+     */
+    private boolean retryIfNotSent(Message message) {
+        MessageOutbox outbox = MessageOutbox.getInstance();
+        if (message == null || outbox == null || !failedSends.contains(message.getId())) {
+            return false;
+        }
+        outbox.retry(message.getId());
+        return true;
+    }
+    
+    /**
+     * Shows the paging window. Rows are diffed by id, so the first visible row
+     * stays anchored when pages are added or dropped above it.
+     * @param window Messages currently held by the paging source, newest first
+     */
+    private void showMessagesWindow(List<Message> window) {
+        if (getActivity() == null) {
+            Log.e("MessageListFragment", "Activity is null, cannot update UI");
+            return;
+        }
+        
+        getActivity().runOnUiThread(() -> {
+            try {
+                this.messages.clear();
+                this.messages.addAll(window);
+                
+                // Update the adapter
+                if (adapter != null) {
+                    adapter.updateMessages(new ArrayList<>(this.messages));
+                } else {
+                    Log.e("MessageListFragment", "Adapter is null, cannot update messages");
+                }
+                
+                // Update UI based on message count
+                if (this.messages.isEmpty()) {
+                    Log.d("MessageListFragment", "No messages found, showing empty state");
+                    updateUIForEmptyState();
+                } else {
+                    Log.d("MessageListFragment", "Showing " + this.messages.size() + " messages");
+                    if (binding != null) {
+                        binding.progressBar.setVisibility(View.GONE);
+                        binding.recyclerView.setVisibility(View.VISIBLE);
+                        binding.textEmpty.setVisibility(View.GONE);
+                    }
+                }
+            } catch (Exception e) {
+                Log.e("MessageListFragment", "Error updating UI with messages", e);
+                updateUIForEmptyState();
+            } finally {
+                // Always hide loading indicators
+                if (binding != null) {
+                    binding.swipeRefreshLayout.setRefreshing(false);
+                    binding.progressBar.setVisibility(View.GONE);
+                }
+            }
+        });
     }
 
 
@@ -575,7 +633,7 @@ public class MessageListFragment extends Fragment {
                     if (isMultiSelectMode) {
                         // Toggle selection in multi-select mode
                         adapter.toggleSelection(message.getId());
-                    } else {
+                    } else if (!retryIfNotSent(message)) {
                         // Open message details in normal mode
                         if (getActivity() != null && message != null) {
                             String messageId = message.getId();
@@ -631,6 +689,34 @@ public class MessageListFragment extends Fragment {
         recyclerView.setAdapter(adapter);
         recyclerView.addItemDecoration(new DividerItemDecoration(requireContext(), DividerItemDecoration.VERTICAL));
         
+        // Infinite scroll: request the neighbouring page as either end of the window comes into view
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) view.getLayoutManager();
+                if (layoutManager == null) {
+                    return;
+                }
+                boolean nearEnd = layoutManager.findLastVisibleItemPosition() >= layoutManager.getItemCount() - PREFETCH_DISTANCE;
+                if (localStore != null && dy > 0 && nearEnd && displayOldest == Long.MIN_VALUE
+                        && messages.size() >= displayLimit && displayLimit < MAX_DISPLAY_ROWS) {
+                    // No page yet (e.g. offline): show more of what is stored, up to one window
+                    displayLimit = Math.min(MAX_DISPLAY_ROWS, displayLimit + PAGE_SIZE);
+                    observeStoredRows();
+                }
+                if (pagingSource == null || pagingSource.isLoading()) {
+                    return;
+                }
+                if (dy > 0 && pagingSource.hasMoreOlder()
+                        && layoutManager.findLastVisibleItemPosition() >= layoutManager.getItemCount() - PREFETCH_DISTANCE) {
+                    pagingSource.loadOlder();
+                } else if (dy < 0 && pagingSource.hasMoreNewer()
+                        && layoutManager.findFirstVisibleItemPosition() <= PREFETCH_DISTANCE) {
+                    pagingSource.loadNewer();
+                }
+            }
+        });
+        
         // Set multi-select mode if needed
         if (adapter != null) {
             adapter.setMultiSelectMode(isMultiSelectMode);
@@ -944,6 +1030,17 @@ public class MessageListFragment extends Fragment {
 
     @Override
     public void onDestroyView() {
+        // Stop delivering pages to a destroyed view
+        if (pagingSource != null) {
+            pagingSource.cancel();
+            pagingSource = null;
+        }
+        if (storeWriter != null) {
+            storeWriter.stop();
+            storeWriter = null;
+        }
+        storedRows = null;
+        
         // Cancel any pending timeouts
         if (timeoutRunnable != null) {
             timeoutHandler.removeCallbacks(timeoutRunnable);
@@ -995,6 +1092,9 @@ public class MessageListFragment extends Fragment {
             trashMenuItem.setVisible(isMultiSelectMode);
             trashMenuItem.setEnabled(adapter != null && adapter.getSelectedCount() > 0);
         }
+        archiveMenuItem = menu.findItem(R.id.action_archive);
+        markReadMenuItem = menu.findItem(R.id.action_mark_read);
+        moveCategoryMenuItem = menu.findItem(R.id.action_move_category);
         
         // Show/hide menu items based on multi-select state
         updateActionBarForSelection(adapter != null ? adapter.getSelectedCount() : 0);
@@ -1010,6 +1110,15 @@ public class MessageListFragment extends Fragment {
             // Show delete confirmation dialog
             showDeleteConfirmationDialog();
             return true;
+        } else if (id == R.id.action_archive) {
+            runBulkOperation(BulkMessageOperation.Kind.ARCHIVE, null);
+            return true;
+        } else if (id == R.id.action_mark_read) {
+            runBulkOperation(BulkMessageOperation.Kind.MARK_READ, null);
+            return true;
+        } else if (id == R.id.action_move_category) {
+            showMoveCategoryDialog();
+            return true;
         } else if (id == android.R.id.home) {
             // Handle back button in multi-select mode
             if (isMultiSelectMode) {
@@ -1046,42 +1155,84 @@ public class MessageListFragment extends Fragment {
     }
     
     private void deleteSelectedMessages() {
+        runBulkOperation(BulkMessageOperation.Kind.DELETE, null);
+    }
+
+    private void showMoveCategoryDialog() {
+        if (getContext() == null || !isAdded() || adapter == null || adapter.getSelectedCount() == 0) {
+            return;
+        }
+        List<Category> categories = CategoryManager.getInstance(requireContext()).getAllCategories();
+        String[] names = new String[categories.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = categories.get(i).getName();
+        }
+        new AlertDialog.Builder(requireContext())
+            .setTitle(R.string.move_to_category)
+            .setItems(names, (dialog, which) ->
+                runBulkOperation(BulkMessageOperation.Kind.MOVE_CATEGORY, categories.get(which).getId()))
+            .setNegativeButton(android.R.string.cancel, null)
+            .show();
+    }
+
+    /**
+     * Applies {@code kind} to the selected messages of this box, showing progress
+     * as chunks complete and offering a retry for those that failed
+     */
+    private void runBulkOperation(BulkMessageOperation.Kind kind, String category) {
         if (adapter == null || databaseHelper == null) {
             return;
         }
-        
+        if (bulkOperation != null && bulkOperation.isRunning()) {
+            return;
+        }
+
         List<String> selectedIds = adapter.getSelectedMessageIds();
         if (selectedIds.isEmpty()) {
             return;
         }
-        
-        // Show loading indicator
-        showLoadingIndicator(true);
-        
-        // Delete messages using DatabaseHelper
-        databaseHelper.deleteMessages(selectedIds, new DatabaseHelper.MessageOperationCallback() {
+
+        binding.bulkProgress.setMax(selectedIds.size());
+        binding.bulkProgress.setProgress(0);
+        binding.bulkProgress.setVisibility(View.VISIBLE);
+
+        bulkOperation = databaseHelper.startBulkOperation(kind, currentBox(), selectedIds, category,
+                new BulkMessageOperation.ProgressListener() {
             @Override
-            public void onSuccess() {
-                // Exit multi-select mode and refresh the list
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> {
-                        showLoadingIndicator(false);
-                        exitMultiSelectMode();
-                        loadMessagesDirectly();
-                    });
+            public void onProgress(int completed, int total) {
+                if (binding != null) {
+                    binding.bulkProgress.setProgress(completed);
                 }
             }
-            
+
+            @Override
+            public void onFinished(int completed, List<String> failedIds) {
+                if (binding == null || !isAdded()) {
+                    return;
+                }
+                binding.bulkProgress.setVisibility(View.GONE);
+                if (failedIds.isEmpty()) {
+                    exitMultiSelectMode();
+                    return;
+                }
+                BulkMessageOperation operation = bulkOperation;
+                Snackbar.make(binding.getRoot(),
+                        getString(R.string.bulk_action_failed, failedIds.size()),
+                        Snackbar.LENGTH_INDEFINITE)
+                    .setAction(R.string.retry, v -> {
+                        binding.bulkProgress.setVisibility(View.VISIBLE);
+                        operation.resume();
+                    })
+                    .show();
+            }
+
             @Override
             public void onError(String error) {
-                if (getActivity() != null) {
-                    getActivity().runOnUiThread(() -> {
-                        showLoadingIndicator(false);
-                        Toast.makeText(requireContext(), 
-                            getString(R.string.error_deleting_messages, error), 
-                            Toast.LENGTH_SHORT).show();
-                    });
+                if (binding == null || !isAdded()) {
+                    return;
                 }
+                binding.bulkProgress.setVisibility(View.GONE);
+                Toast.makeText(requireContext(), error, Toast.LENGTH_SHORT).show();
             }
         });
     }
@@ -1178,36 +1329,25 @@ public class MessageListFragment extends Fragment {
     private void deleteMessage(Message message) {
         if (getContext() == null || getActivity() == null || databaseHelper == null) return;
         
-        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
-        if (currentUser == null) return;
-        
-        String userId = currentUser.getUid();
-        String messageType;
-        if (isNotes) {
-            messageType = "notes";
-        } else {
-            messageType = isInbox ? "received" : "sent";
-        }
-        
-        DatabaseReference messageRef = databaseHelper.getDatabaseReference()
-                .child("user-messages")
-                .child(userId)
-                .child(messageType)
-                .child(message.getId());
-                
-        messageRef.removeValue()
-                .addOnSuccessListener(aVoid -> {
-                    // Show success message
-                    if (getContext() != null) {
-                        Toast.makeText(getContext(), R.string.message_deleted, Toast.LENGTH_SHORT).show();
+        // Same path as a bulk delete, so an inbox delete also hides the message from /messages queries
+        databaseHelper.deleteMessages(currentBox(), Collections.singletonList(message.getId()),
+                new DatabaseHelper.MessageOperationCallback() {
+                    @Override
+                    public void onSuccess() {
+                        // Show success message
+                        if (getContext() != null) {
+                            Toast.makeText(getContext(), R.string.message_deleted, Toast.LENGTH_SHORT).show();
+                        }
+                        // Reload messages
+                        loadMessages();
                     }
-                    // Reload messages
-                    loadMessages();
-                })
-                .addOnFailureListener(e -> {
-                    Log.e("MessageListFragment", "Error deleting message", e);
-                    if (getContext() != null) {
-                        Toast.makeText(getContext(), R.string.error_deleting_message, Toast.LENGTH_SHORT).show();
+
+                    @Override
+                    public void onError(String error) {
+                        Log.e("MessageListFragment", "Error deleting message: " + error);
+                        if (getContext() != null) {
+                            Toast.makeText(getContext(), R.string.error_deleting_message, Toast.LENGTH_SHORT).show();
+                        }
                     }
                 });
     }
@@ -1231,20 +1371,16 @@ public class MessageListFragment extends Fragment {
                     // Clear the current messages
                     messages.clear();
                     if (adapter != null) {
-                        adapter.notifyDataSetChanged();
+                        adapter.updateMessages(new ArrayList<>());
                     }
                     
                     // Show loading indicator
                     showLoadingIndicator(true);
                     
-                    // Update the tab state in DatabaseHelper
-                    if (databaseHelper != null) {
-                        databaseHelper.setTabState(isNotes, isInbox);
-                    }
-                    
                     // Load messages for the new tab
                     Log.d("MessageListFragment", "Tab changed - Loading messages for tab: " + 
                             (isNotes ? "Notes" : (isInbox ? "Inbox" : "Outbox")));
+                    startStoreSync();
                     loadMessagesDirectly();
                 }
             }
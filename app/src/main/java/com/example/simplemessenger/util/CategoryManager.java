@@ -5,6 +5,7 @@ import android.util.Log;
 
 import com.example.SImpleMessenger.data.DatabaseHelper;
 import com.example.SImpleMessenger.data.DatabaseHelper.DatabaseCallback;
+import com.example.SImpleMessenger.data.codec.CategoryCodec;
 import com.example.SImpleMessenger.data.model.Category;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
@@ -123,10 +124,7 @@ public class CategoryManager {
         // Convert categories to a format that can be saved
         List<Map<String, Object>> categoriesToSave = new ArrayList<>();
         for (Category category : categoryCache.values()) {
-            Map<String, Object> categoryMap = new HashMap<>();
-            categoryMap.put("id", category.getId());
-            categoryMap.put("name", category.getName());
-            categoriesToSave.add(categoryMap);
+            categoriesToSave.add(CategoryCodec.encode(category));
         }
 
         // Save using DatabaseHelper
@@ -35,6 +35,7 @@ public class FirebaseUtils {
     // Realtime Database paths
     public static final String PATH_USERS = "users";
     public static final String PATH_MESSAGES = "messages";
+    public static final String PATH_MESSAGE_BODIES = "message-bodies";
     public static final String PATH_USER_MESSAGES = "user-messages";
     
     // Storage paths
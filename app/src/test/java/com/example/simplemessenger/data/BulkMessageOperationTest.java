@@ -0,0 +1,313 @@
+package com.example.SImpleMessenger.data;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+import com.example.SImpleMessenger.data.codec.FirebaseMocks;
+import com.example.SImpleMessenger.data.model.Message;
+import com.google.firebase.database.DatabaseReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class BulkMessageOperationTest {
+
+    private static final String OWNER_ID = "owner_1";
+
+    // Constants from DatabaseHelper
+    private static final String USER_SENT_NODE = "sent";
+    private static final String USER_RECEIVED_NODE = "received";
+
+    @Mock
+    private DatabaseReference mockRootRef;
+
+    // Index entry paths that hold summary objects; every other entry reads as a legacy boolean
+    private final Set<String> summaryPaths = new HashSet<>();
+    // Paths that read as empty; everything else exists
+    private final Set<String> missingPaths = new HashSet<>();
+    private final List<Map<String, Object>> writes = new ArrayList<>();
+    // Number of upcoming updateChildren calls that fail
+    private int failuresLeft = 0;
+    private final List<int[]> progress = new ArrayList<>();
+    private List<String> finishedFailedIds;
+    private int finishedCompleted = -1;
+    // Retries posted through the scheduler, run by runDelayed()
+    private final List<Runnable> delayed = new ArrayList<>();
+
+    private final BulkMessageOperation.ProgressListener listener = new BulkMessageOperation.ProgressListener() {
+        @Override
+        public void onProgress(int completed, int total) {
+            progress.add(new int[]{completed, total});
+        }
+
+        @Override
+        public void onFinished(int completed, List<String> failedIds) {
+            finishedCompleted = completed;
+            finishedFailedIds = failedIds;
+        }
+
+        @Override
+        public void onError(String error) {
+            fail("Unexpected error: " + error);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        FirebaseMocks.stubChildReads(mockRootRef, path -> !missingPaths.contains(path), summaryPaths::contains);
+        when(mockRootRef.updateChildren(anyMap())).thenAnswer(invocation -> {
+            writes.add(new HashMap<>(invocation.getArgument(0)));
+            boolean success = failuresLeft == 0;
+            if (!success) {
+                failuresLeft--;
+            }
+            return FirebaseMocks.completedTask(success);
+        });
+    }
+
+    private BulkMessageOperation start(BulkMessageOperation.Kind kind, String box, List<String> ids, String category) {
+        BulkMessageOperation operation = new BulkMessageOperation(mockRootRef, kind, OWNER_ID, box, ids, category,
+                (task, delayMs) -> delayed.add(task));
+        operation.start(listener);
+        return operation;
+    }
+
+    private void runDelayed() {
+        List<Runnable> due = new ArrayList<>(delayed);
+        delayed.clear();
+        for (Runnable task : due) {
+            task.run();
+        }
+    }
+
+    private static String entryPath(String box, String messageId) {
+        return IndexBuckets.entryPath(OWNER_ID, box, messageId);
+    }
+
+    private static List<String> ids(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add("m" + i);
+        }
+        return ids;
+    }
+
+    @Test
+    public void testSplitKeepsOrderAndBoundsChunks() {
+        List<List<String>> chunks = BulkMessageOperation.split(ids(250), 100);
+
+        assertEquals(3, chunks.size());
+        assertEquals(100, chunks.get(0).size());
+        assertEquals(100, chunks.get(1).size());
+        assertEquals(50, chunks.get(2).size());
+        assertEquals("m0", chunks.get(0).get(0));
+        assertEquals("m100", chunks.get(1).get(0));
+        assertEquals("m249", chunks.get(2).get(49));
+    }
+
+    @Test
+    public void testSplitOfExactMultipleAndEmpty() {
+        assertEquals(2, BulkMessageOperation.split(ids(200), 100).size());
+        assertTrue(BulkMessageOperation.split(new ArrayList<>(), 100).isEmpty());
+    }
+
+    @Test
+    public void testDeleteInSentBoxRemovesMessageBodyAndEntry() {
+        start(BulkMessageOperation.Kind.DELETE, USER_SENT_NODE, Arrays.asList("m1", "m2"), null);
+
+        assertEquals(1, writes.size());
+        Map<String, Object> updates = writes.get(0);
+        assertEquals(6, updates.size());
+        for (String id : Arrays.asList("m1", "m2")) {
+            assertTrue(updates.containsKey("/messages/" + id));
+            assertTrue(updates.containsKey("/message-bodies/" + id));
+            assertTrue(updates.containsKey("/" + entryPath(USER_SENT_NODE, id)));
+        }
+        for (Object value : updates.values()) {
+            assertNull(value);
+        }
+    }
+
+    @Test
+    public void testDeleteInInboxRemovesEntryAndFlagsMessage() {
+        start(BulkMessageOperation.Kind.DELETE, USER_RECEIVED_NODE, Arrays.asList("m1"), null);
+
+        Map<String, Object> updates = writes.get(0);
+        assertEquals(2, updates.size());
+        assertTrue(updates.containsKey("/" + entryPath(USER_RECEIVED_NODE, "m1")));
+        assertNull(updates.get("/" + entryPath(USER_RECEIVED_NODE, "m1")));
+        assertEquals(true, updates.get("/messages/m1/recipientDeleted"));
+    }
+
+    @Test
+    public void testDeleteInInboxDoesNotFlagMessagesTheSenderDeleted() {
+        missingPaths.add("messages/m2/recipientId");
+
+        start(BulkMessageOperation.Kind.DELETE, USER_RECEIVED_NODE, Arrays.asList("m1", "m2"), null);
+
+        Map<String, Object> updates = writes.get(0);
+        assertEquals(3, updates.size());
+        assertEquals(true, updates.get("/messages/m1/recipientDeleted"));
+        assertTrue(updates.containsKey("/" + entryPath(USER_RECEIVED_NODE, "m2")));
+        for (String path : updates.keySet()) {
+            assertFalse("Deleted message must not be recreated: " + path, path.startsWith("/messages/m2"));
+        }
+    }
+
+    @Test
+    public void testArchiveFlagsMessageAndRemovesEntry() {
+        start(BulkMessageOperation.Kind.ARCHIVE, USER_SENT_NODE, Arrays.asList("m1"), null);
+
+        Map<String, Object> updates = writes.get(0);
+        assertEquals(2, updates.size());
+        assertEquals(true, updates.get("/messages/m1/archived"));
+        assertTrue(updates.containsKey("/" + entryPath(USER_SENT_NODE, "m1")));
+        assertNull(updates.get("/" + entryPath(USER_SENT_NODE, "m1")));
+    }
+
+    @Test
+    public void testMarkReadWritesOnlyInboxSummaries() {
+        summaryPaths.add(entryPath(USER_RECEIVED_NODE, "m1"));
+
+        start(BulkMessageOperation.Kind.MARK_READ, USER_RECEIVED_NODE, Arrays.asList("m1", "m2"), null);
+
+        Map<String, Object> updates = writes.get(0);
+        assertEquals(3, updates.size());
+        assertEquals(true, updates.get("/messages/m1/read"));
+        assertEquals(true, updates.get("/messages/m2/read"));
+        assertEquals(true, updates.get("/" + entryPath(USER_RECEIVED_NODE, "m1") + "/read"));
+        // m2 has a legacy boolean entry, which must not become an object
+        assertFalse(updates.containsKey("/" + entryPath(USER_RECEIVED_NODE, "m2") + "/read"));
+    }
+
+    @Test
+    public void testMarkReadReplacesCachedMessageInsteadOfChangingIt() {
+        Message shown = new Message("sender", "s@example.com", OWNER_ID, "o@example.com", "Hi", "Body");
+        shown.setId("cached1");
+        MessageCache.getInstance().put(shown);
+
+        start(BulkMessageOperation.Kind.MARK_READ, USER_RECEIVED_NODE, Arrays.asList("cached1"), null);
+
+        assertFalse(shown.isRead());
+        Message cached = MessageCache.getInstance().get("cached1");
+        assertNotSame(shown, cached);
+        assertTrue(cached.isRead());
+        assertEquals("Body", cached.getContent());
+        MessageCache.getInstance().invalidate("cached1");
+    }
+
+    @Test
+    public void testMoveCategoryWritesSummariesOfTheBox() {
+        summaryPaths.add(entryPath(USER_SENT_NODE, "m2"));
+
+        start(BulkMessageOperation.Kind.MOVE_CATEGORY, USER_SENT_NODE, Arrays.asList("m1", "m2"), "work");
+
+        Map<String, Object> updates = writes.get(0);
+        assertEquals(3, updates.size());
+        assertEquals("work", updates.get("/messages/m1/category"));
+        assertEquals("work", updates.get("/messages/m2/category"));
+        assertEquals("work", updates.get("/" + entryPath(USER_SENT_NODE, "m2") + "/category"));
+    }
+
+    @Test
+    public void testChunksReportProgressAndFinish() {
+        start(BulkMessageOperation.Kind.ARCHIVE, USER_SENT_NODE, ids(250), null);
+
+        assertEquals(3, writes.size());
+        assertEquals(3, progress.size());
+        assertEquals(250, progress.get(2)[0]);
+        assertEquals(250, progress.get(2)[1]);
+        assertEquals(250, finishedCompleted);
+        assertTrue(finishedFailedIds.isEmpty());
+    }
+
+    @Test
+    public void testFailedChunkIsRetriedAfterDelay() {
+        failuresLeft = 1;
+
+        BulkMessageOperation operation = start(BulkMessageOperation.Kind.ARCHIVE, USER_SENT_NODE, ids(3), null);
+
+        assertEquals(1, writes.size());
+        assertTrue(operation.isRunning());
+        assertEquals(1, delayed.size());
+
+        runDelayed();
+
+        assertEquals(2, writes.size());
+        assertEquals(writes.get(0), writes.get(1));
+        assertFalse(operation.isRunning());
+        assertEquals(3, finishedCompleted);
+        assertTrue(finishedFailedIds.isEmpty());
+    }
+
+    @Test
+    public void testChunkGivesUpAfterMaxAttemptsAndResumeRetriesIt() {
+        failuresLeft = BulkMessageOperation.MAX_CHUNK_ATTEMPTS;
+
+        BulkMessageOperation operation = start(BulkMessageOperation.Kind.ARCHIVE, USER_SENT_NODE, ids(3), null);
+        for (int i = 1; i < BulkMessageOperation.MAX_CHUNK_ATTEMPTS; i++) {
+            runDelayed();
+        }
+
+        assertEquals(BulkMessageOperation.MAX_CHUNK_ATTEMPTS, writes.size());
+        assertTrue(delayed.isEmpty());
+        assertFalse(operation.isRunning());
+        assertEquals(0, finishedCompleted);
+        assertEquals(ids(3), finishedFailedIds);
+
+        operation.resume();
+
+        assertEquals(BulkMessageOperation.MAX_CHUNK_ATTEMPTS + 1, writes.size());
+        assertEquals(3, finishedCompleted);
+        assertTrue(finishedFailedIds.isEmpty());
+    }
+
+    @Test
+    public void testCancelReportsUnsentIdsAsFailedAndResumeSendsThem() {
+        failuresLeft = 1;
+
+        BulkMessageOperation operation = start(BulkMessageOperation.Kind.ARCHIVE, USER_SENT_NODE, ids(3), null);
+        // The failed chunk is waiting for its retry; cancelling keeps it from being sent
+        operation.cancel();
+        runDelayed();
+
+        assertEquals(1, writes.size());
+        assertFalse(operation.isRunning());
+        assertEquals(ids(3), finishedFailedIds);
+
+        operation.resume();
+
+        assertEquals(2, writes.size());
+        assertEquals(3, finishedCompleted);
+        assertTrue(finishedFailedIds.isEmpty());
+    }
+
+    @Test
+    public void testCancelMovesQueuedChunksToFailed() {
+        failuresLeft = BulkMessageOperation.MAX_IN_FLIGHT;
+
+        BulkMessageOperation operation = start(BulkMessageOperation.Kind.ARCHIVE, USER_SENT_NODE,
+                ids(BulkMessageOperation.CHUNK_SIZE * (BulkMessageOperation.MAX_IN_FLIGHT + 1)), null);
+        operation.cancel();
+        runDelayed();
+
+        assertEquals(BulkMessageOperation.MAX_IN_FLIGHT, writes.size());
+        assertFalse(operation.isRunning());
+        assertEquals(0, finishedCompleted);
+        assertEquals(BulkMessageOperation.CHUNK_SIZE * (BulkMessageOperation.MAX_IN_FLIGHT + 1),
+                finishedFailedIds.size());
+    }
+}
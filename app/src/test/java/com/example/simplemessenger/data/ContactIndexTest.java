@@ -0,0 +1,121 @@
+package com.example.SImpleMessenger.data;
+
+import static org.junit.Assert.*;
+
+import com.example.SImpleMessenger.data.model.Contact;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class ContactIndexTest {
+
+    private ContactIndex index;
+
+    @Before
+    public void setUp() {
+        index = new ContactIndex();
+    }
+
+    @Test
+    public void testLooksUpByNormalizedEmailAndKey() {
+        index.put("c1", createContact("c1", "key1", "Alice@Example.com"));
+
+        assertEquals("c1", index.getByEmail(" alice@example.COM ").getContactId());
+        assertEquals("c1", index.getByKey("key1").getContactId());
+        assertNull(index.getByEmail("bob@example.com"));
+    }
+
+    @Test
+    public void testReplacingContactDropsOldEmail() {
+        index.put("c1", createContact("c1", "key1", "old@example.com"));
+        index.put("c1", createContact("c1", "key1", "new@example.com"));
+
+        assertNull(index.getByEmail("old@example.com"));
+        assertNotNull(index.getByEmail("new@example.com"));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testContactMutatedInPlaceStillUnindexes() {
+        Contact contact = createContact("c1", "key1", "old@example.com");
+        index.put("c1", contact);
+
+        contact.setEmailAddress("new@example.com");
+        index.put("c1", contact);
+
+        assertNull(index.getByEmail("old@example.com"));
+        assertSame(contact, index.getByEmail("new@example.com"));
+    }
+
+    @Test
+    public void testRemoveByKeyClearsAllIndexes() {
+        index.put("c1", createContact("c1", "key1", "a@example.com"));
+
+        assertNotNull(index.removeByKey("key1"));
+
+        assertNull(index.get("c1"));
+        assertNull(index.getByEmail("a@example.com"));
+        assertNull(index.getByKey("key1"));
+        assertTrue(index.isEmpty());
+    }
+
+    @Test
+    public void testEmailsListIsReusedUntilChange() {
+        index.replaceContents(Arrays.asList(
+                createContact("c1", "key1", "a@example.com"),
+                createContact("c2", "key2", "b@example.com")));
+
+        List<String> first = index.emails();
+        assertSame(first, index.emails());
+        assertEquals(2, first.size());
+
+        index.remove("c1");
+        assertEquals(1, index.emails().size());
+    }
+
+    @Test
+    public void testWritesPublishNewSnapshotWithoutTouchingOldOne() {
+        index.put("c1", createContact("c1", "key1", "a@example.com"));
+        ContactsSnapshot before = index.snapshot();
+
+        index.put("c2", createContact("c2", "key2", "b@example.com"));
+        ContactsSnapshot after = index.snapshot();
+
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertEquals(1, before.size());
+        assertNull(before.getByEmail("b@example.com"));
+        assertEquals(2, after.getContacts().size());
+    }
+
+    @Test
+    public void testRedeliveredCopyKeepsVersion() {
+        index.put("c1", createContact("c1", "key1", "a@example.com"));
+        long version = index.snapshot().getVersion();
+
+        index.put("c1", createContact("c1", "key1", "a@example.com"));
+
+        assertEquals(version, index.snapshot().getVersion());
+    }
+
+    @Test
+    public void testReplaceContentsIsOneChange() {
+        long version = index.snapshot().getVersion();
+
+        index.replaceContents(Arrays.asList(
+                createContact("c1", "key1", "a@example.com"),
+                createContact("c2", "key2", "b@example.com")));
+
+        assertEquals(version + 1, index.snapshot().getVersion());
+    }
+
+    private Contact createContact(String contactId, String key, String email) {
+        Contact contact = new Contact();
+        contact.setId(key);
+        contact.setContactId(contactId);
+        contact.setEmailAddress(email);
+        return contact;
+    }
+}
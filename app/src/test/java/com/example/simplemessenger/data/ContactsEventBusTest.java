@@ -0,0 +1,113 @@
+package com.example.SImpleMessenger.data;
+
+import static org.junit.Assert.*;
+
+import com.example.SImpleMessenger.data.model.Contact;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ContactsEventBusTest {
+
+    private ContactsEventBus bus;
+
+    private static class RecordingListener implements ContactsManager.ContactsLoadListener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onContactsLoaded(List<Contact> contacts) {
+            events.add("loaded:" + contacts.size());
+        }
+
+        @Override
+        public void onContactAdded(Contact contact) {
+            events.add("added:" + contact.getContactId());
+        }
+
+        @Override
+        public void onContactRemoved(Contact contact) {
+            events.add("removed:" + contact.getContactId());
+        }
+
+        @Override
+        public void onError(String error) {
+            events.add("error:" + error);
+        }
+    }
+
+    private static Contact contact(String contactId) {
+        Contact contact = new Contact();
+        contact.setContactId(contactId);
+        return contact;
+    }
+
+    @Before
+    public void setUp() {
+        bus = new ContactsEventBus();
+    }
+
+    @Test
+    public void testEverySubscriberGetsEachEvent() {
+        RecordingListener first = new RecordingListener();
+        RecordingListener second = new RecordingListener();
+        bus.add(first, false);
+        bus.add(second, true);
+
+        bus.contactAdded(contact("c1"));
+        bus.contactRemoved(contact("c1"));
+        bus.error("boom");
+
+        assertEquals(List.of("added:c1", "removed:c1", "error:boom"), first.events);
+        assertEquals(first.events, second.events);
+    }
+
+    @Test
+    public void testDuplicateSubscribeIsIgnored() {
+        RecordingListener listener = new RecordingListener();
+
+        assertTrue(bus.add(listener, false));
+        assertFalse(bus.add(listener, true));
+        bus.contactsLoaded(new ArrayList<>());
+
+        assertEquals(1, listener.events.size());
+        assertEquals(1, bus.size());
+    }
+
+    @Test
+    public void testUnsubscribedListenerGetsNothing() {
+        RecordingListener kept = new RecordingListener();
+        RecordingListener removed = new RecordingListener();
+        bus.add(kept, false);
+        bus.add(removed, false);
+
+        assertTrue(bus.remove(removed));
+        bus.contactAdded(contact("c1"));
+
+        assertEquals(1, kept.events.size());
+        assertTrue(removed.events.isEmpty());
+        assertFalse(bus.remove(removed));
+    }
+
+    @Test
+    public void testListenerMayUnsubscribeDuringDispatch() {
+        RecordingListener other = new RecordingListener();
+        RecordingListener once = new RecordingListener() {
+            @Override
+            public void onContactAdded(Contact contact) {
+                super.onContactAdded(contact);
+                bus.remove(this);
+            }
+        };
+        bus.add(once, false);
+        bus.add(other, false);
+
+        bus.contactAdded(contact("c1"));
+        bus.contactAdded(contact("c2"));
+
+        assertEquals(List.of("added:c1"), once.events);
+        assertEquals(List.of("added:c1", "added:c2"), other.events);
+    }
+}
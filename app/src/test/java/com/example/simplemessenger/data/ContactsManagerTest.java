@@ -93,7 +93,7 @@ public class ContactsManagerTest {
         com.google.android.gms.tasks.Task<Void> mockTask = mock(com.google.android.gms.tasks.Task.class);
         
         // Mock the setValue operation
-        when(mockNewContactChildRef.setValue(any(Contact.class))).thenReturn(mockTask);
+        when(mockNewContactChildRef.setValue(anyMap())).thenReturn(mockTask);
         
         // Mock the success listener to call onSuccess immediately
         doAnswer(invocation -> {
@@ -152,7 +152,7 @@ public class ContactsManagerTest {
                   latch.await(2, TimeUnit.SECONDS));
         
         // Verify the contact was saved to the database
-        verify(mockNewContactChildRef).setValue(any(Contact.class));
+        verify(mockNewContactChildRef).setValue(anyMap());
         
         // Verify logging - we can't verify the exact message due to dynamic content
         verify(mockLogger).d(anyString(), contains("Contact added successfully"));
@@ -65,6 +65,7 @@ public class DatabaseHelperTest {
     
     // Constants from DatabaseHelper
     private static final String MESSAGES_NODE = "messages";
+    private static final String MESSAGE_BODIES_NODE = "message-bodies";
     private static final String USER_MESSAGES_NODE = "user-messages";
     private static final String USER_SENT_NODE = "sent";
     private static final String USER_RECEIVED_NODE = "received";
@@ -72,6 +73,7 @@ public class DatabaseHelperTest {
     @Before
     public void setUp() {
         MockitoAnnotations.openMocks(this);
+        MessageCache.getInstance().clear();
         
         // Set up auth mock that will be used in tests
         com.google.firebase.auth.FirebaseUser mockUser = mock(com.google.firebase.auth.FirebaseUser.class);
@@ -165,6 +167,12 @@ public class DatabaseHelperTest {
         assertTrue("Should contain messages path: " + messagesPath, updates.containsKey(messagesPath));
         assertTrue("Should contain sent path: " + sentPath, updates.containsKey(sentPath));
         assertTrue("Should contain received path: " + receivedPath, updates.containsKey(receivedPath));
+
+        // The body is written beside the header, not inside it
+        String bodyPath = "/" + MESSAGE_BODIES_NODE + "/" + TEST_MESSAGE_ID;
+        assertTrue("Should contain body path: " + bodyPath, updates.containsKey(bodyPath));
+        assertFalse("Header should not carry the body",
+                ((Map<?, ?>) updates.get(messagesPath)).containsKey("content"));
     }
     
     @Test
@@ -0,0 +1,135 @@
+package com.example.SImpleMessenger.data;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import android.content.SharedPreferences;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ValueEventListener;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class EmailIndexTest {
+
+    private static final String EMAIL = "alice@example.com";
+    private static final String ALICE_ID = "alice_uid";
+
+    // Values of the mocked database by path
+    private final Map<String, Object> data = new HashMap<>();
+    private final Map<String, String> remembered = new HashMap<>();
+    private final Map<String, DatabaseReference> refs = new HashMap<>();
+    private DatabaseReference rootRef;
+    private EmailIndex emailIndex;
+    private String resolvedUid;
+    private boolean notFound;
+
+    @Before
+    public void setUp() {
+        rootRef = ref("");
+        // No /users record matches the legacy email query
+        Query usersQuery = mock(Query.class);
+        when(usersQuery.equalTo(anyString())).thenReturn(usersQuery);
+        doAnswer(invocation -> {
+            DataSnapshot empty = mock(DataSnapshot.class);
+            when(empty.getChildren()).thenReturn(Collections.emptyList());
+            ((ValueEventListener) invocation.getArgument(0)).onDataChange(empty);
+            return null;
+        }).when(usersQuery).addListenerForSingleValueEvent(any(ValueEventListener.class));
+        DatabaseReference usersRef = rootRef.child("users");
+        when(usersRef.orderByChild("email")).thenReturn(usersQuery);
+
+        SharedPreferences prefs = mock(SharedPreferences.class);
+        SharedPreferences.Editor editor = mock(SharedPreferences.Editor.class);
+        when(prefs.getString(anyString(), any())).thenAnswer(invocation -> remembered.get(invocation.<String>getArgument(0)));
+        when(prefs.edit()).thenReturn(editor);
+        when(editor.putString(anyString(), anyString())).thenAnswer(invocation -> {
+            remembered.put(invocation.getArgument(0), invocation.getArgument(1));
+            return editor;
+        });
+        emailIndex = new EmailIndex(rootRef, prefs);
+    }
+
+    /** Mock reference for {@code path} whose reads answer from {@link #data} */
+    private DatabaseReference ref(String path) {
+        DatabaseReference existing = refs.get(path);
+        if (existing != null) {
+            return existing;
+        }
+        DatabaseReference ref = mock(DatabaseReference.class);
+        refs.put(path, ref);
+        when(ref.child(anyString())).thenAnswer(invocation ->
+                ref((path.isEmpty() ? "" : path + "/") + invocation.getArgument(0)));
+        doAnswer(invocation -> {
+            DataSnapshot snapshot = mock(DataSnapshot.class);
+            when(snapshot.getValue()).thenReturn(data.get(path));
+            ((ValueEventListener) invocation.getArgument(0)).onDataChange(snapshot);
+            return null;
+        }).when(ref).addListenerForSingleValueEvent(any(ValueEventListener.class));
+        return ref;
+    }
+
+    private void resolve(String email) {
+        emailIndex.resolve(email, new EmailIndex.ResolveCallback() {
+            @Override
+            public void onResolved(String uid) {
+                resolvedUid = uid;
+            }
+
+            @Override
+            public void onNotFound() {
+                notFound = true;
+            }
+
+            @Override
+            public void onError(String error) {
+                fail("Unexpected error: " + error);
+            }
+        });
+    }
+
+    @Test
+    public void testIndexHitConfirmedByProfileIsUsed() {
+        data.put("email-index/" + EmailIndex.keyFor(EMAIL), ALICE_ID);
+        data.put("users/" + ALICE_ID + "/email", "Alice@Example.com");
+
+        resolve(EMAIL);
+
+        assertEquals(ALICE_ID, resolvedUid);
+        assertEquals(ALICE_ID, remembered.get(EMAIL));
+    }
+
+    @Test
+    public void testIndexHitPointingAtAnotherProfileIsIgnored() {
+        // Someone else's uid written under alice's key
+        data.put("email-index/" + EmailIndex.keyFor(EMAIL), "mallory_uid");
+        data.put("users/mallory_uid/email", "mallory@example.com");
+
+        resolve(EMAIL);
+
+        assertNull(resolvedUid);
+        assertTrue(notFound);
+        assertTrue(remembered.isEmpty());
+    }
+
+    @Test
+    public void testKeyIsNormalizedAndEscaped() {
+        assertEquals("alice%2Esmith@example%2Ecom", EmailIndex.keyFor(" Alice.Smith@Example.com "));
+    }
+
+    @Test
+    public void testEscapingKeepsKeysDistinct() {
+        // A literal "%2E" must not collide with an escaped "."
+        assertNotEquals(EmailIndex.keyFor("a.b@example.com"), EmailIndex.keyFor("a%2Eb@example.com"));
+        assertEquals("a%252eb@example%2Ecom", EmailIndex.keyFor("a%2Eb@example.com"));
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.SImpleMessenger.data;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class IndexBucketsTest {
+
+    private static final String PUSH_CHARS = "-0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ_abcdefghijklmnopqrstuvwxyz";
+
+    /** Builds a push id the way Firebase does: 8 time characters, then 12 random ones */
+    private static String pushId(long timeMillis) {
+        char[] id = new char[20];
+        for (int i = 7; i >= 0; i--) {
+            id[i] = PUSH_CHARS.charAt((int) (timeMillis % 64));
+            timeMillis /= 64;
+        }
+        for (int i = 8; i < 20; i++) {
+            id[i] = 'a';
+        }
+        return new String(id);
+    }
+
+    @Test
+    public void testPushIdTimeRoundTrips() {
+        long time = 1792281600000L; // 2026-10-18T00:00:00Z
+
+        assertEquals(time, IndexBuckets.pushIdTime(pushId(time)));
+        assertEquals("2026-10", IndexBuckets.bucketOfMessage(pushId(time)));
+    }
+
+    @Test
+    public void testBucketsAreUtcMonths() {
+        assertEquals("1970-01", IndexBuckets.bucketOf(0));
+        assertEquals("2026-09", IndexBuckets.bucketOf(1790812799999L)); // 2026-09-30T23:59:59.999Z
+        assertEquals("2026-10", IndexBuckets.bucketOf(1790812800000L));
+    }
+
+    @Test
+    public void testNonPushIdsAreRejected() {
+        assertEquals(-1, IndexBuckets.pushIdTime("msg1"));
+        assertEquals(-1, IndexBuckets.pushIdTime("-Nabc!defghijklmnopq"));
+        assertEquals(-1, IndexBuckets.pushIdTime(null));
+    }
+
+    @Test
+    public void testEntryPathFollowsSetting() {
+        String id = pushId(1792281600000L);
+        try {
+            IndexBuckets.setEnabled(false);
+            assertEquals("user-messages/u1/received/" + id, IndexBuckets.entryPath("u1", "received", id));
+            assertNull(IndexBuckets.directoryPath("u1", "received", id));
+
+            IndexBuckets.setEnabled(true);
+            assertEquals("user-messages/u1/received/2026-10/" + id, IndexBuckets.entryPath("u1", "received", id));
+            assertEquals("user-messages/u1/buckets/received/2026-10", IndexBuckets.directoryPath("u1", "received", id));
+        } finally {
+            IndexBuckets.setEnabled(false);
+        }
+    }
+
+    @Test
+    public void testBucketStartIsFirstMillisecondOfUtcMonth() {
+        assertEquals(1790812800000L, IndexBuckets.bucketStartOf(1790812800000L)); // 2026-10-01T00:00Z
+        assertEquals(1790812800000L, IndexBuckets.bucketStartOf(1792281600000L));
+        assertEquals(1788220800000L, IndexBuckets.bucketStartOf(1790812799999L)); // 2026-09-01T00:00Z
+    }
+
+    @Test
+    public void testBucketKeysAreTellableFromEntryKeys() {
+        assertTrue(IndexBuckets.isBucketKey("2026-10"));
+        assertFalse(IndexBuckets.isBucketKey(pushId(1792281600000L)));
+        assertFalse(IndexBuckets.isBucketKey("buckets"));
+        assertFalse(IndexBuckets.isBucketKey(null));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.SImpleMessenger.data;
+
+import static org.junit.Assert.*;
+
+import com.example.SImpleMessenger.data.model.Message;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MessageCacheTest {
+
+    private MessageCache cache;
+    private int messageSize;
+
+    @Before
+    public void setUp() {
+        messageSize = MessageCache.estimateSize(createMessage("m0"));
+        // Room for exactly three test messages
+        cache = new MessageCache(messageSize * 3);
+    }
+
+    @Test
+    public void testGetCountsHitsAndMisses() {
+        cache.put(createMessage("m1"));
+
+        assertNotNull(cache.get("m1"));
+        assertNull(cache.get("m2"));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedWhenFull() {
+        cache.put(createMessage("m1"));
+        cache.put(createMessage("m2"));
+        cache.put(createMessage("m3"));
+
+        // Touch m1 so m2 becomes the eldest entry
+        cache.get("m1");
+        cache.put(createMessage("m4"));
+
+        assertNull(cache.get("m2"));
+        assertNotNull(cache.get("m1"));
+        assertNotNull(cache.get("m3"));
+        assertNotNull(cache.get("m4"));
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.getSizeBytes() <= messageSize * 3);
+    }
+
+    @Test
+    public void testInvalidateRemovesEntryAndSize() {
+        cache.put(createMessage("m1"));
+        cache.invalidate("m1");
+
+        assertNull(cache.get("m1"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getSizeBytes());
+    }
+
+    @Test
+    public void testReplacingEntryKeepsSizeAccurate() {
+        cache.put(createMessage("m1"));
+        cache.put(createMessage("m1"));
+
+        assertEquals(1, cache.size());
+        assertEquals(messageSize, cache.getSizeBytes());
+    }
+
+    private Message createMessage(String id) {
+        Message message = new Message();
+        message.setId(id);
+        message.setSubject("Subject");
+        message.setContent("Some content for the cache size estimate");
+        return message;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.SImpleMessenger.data;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class NegativeLookupCacheTest {
+
+    private long now;
+    private NegativeLookupCache cache;
+
+    @Before
+    public void setUp() {
+        now = 1_000_000L;
+        cache = new NegativeLookupCache(() -> now);
+    }
+
+    @Test
+    public void testMissIsSuppressedUntilTtlExpires() {
+        cache.recordMiss("uid123");
+
+        assertTrue(cache.isKnownMissing("uid123"));
+        now += NegativeLookupCache.BASE_TTL_MS;
+        assertFalse(cache.isKnownMissing("uid123"));
+        assertEquals(1, cache.getSuppressedCount());
+    }
+
+    @Test
+    public void testRepeatedMissesBackOffExponentially() {
+        cache.recordMiss("uid123");
+        now += NegativeLookupCache.BASE_TTL_MS;
+        cache.recordMiss("uid123");
+
+        now += NegativeLookupCache.BASE_TTL_MS;
+        assertTrue(cache.isKnownMissing("uid123"));
+        now += NegativeLookupCache.BASE_TTL_MS;
+        assertFalse(cache.isKnownMissing("uid123"));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testBackoffIsCapped() {
+        for (int i = 0; i < 30; i++) {
+            cache.recordMiss("uid123");
+        }
+
+        now += NegativeLookupCache.MAX_TTL_MS;
+        assertFalse(cache.isKnownMissing("uid123"));
+    }
+
+    @Test
+    public void testEmailsIgnoreCaseAndFoundClearsMiss() {
+        cache.recordMiss("Gone@Example.com");
+
+        assertTrue(cache.isKnownMissing(" gone@example.COM"));
+        cache.recordFound("gone@example.com");
+        assertFalse(cache.isKnownMissing("gone@example.com"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.SImpleMessenger.data;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+import com.example.SImpleMessenger.data.codec.FirebaseMocks;
+import com.google.firebase.database.DatabaseReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class ReadStateBufferTest {
+
+    private static final String OWNER_ID = "owner_1";
+
+    @Mock
+    private DatabaseReference mockRootRef;
+
+    // Paths that exist; plain values unless listed in summaryPaths
+    private final Set<String> existingPaths = new HashSet<>();
+    private final Set<String> summaryPaths = new HashSet<>();
+    private final List<Map<String, Object>> writes = new ArrayList<>();
+    // updateChildren calls that fail, by call index
+    private final Set<Integer> failingWrites = new HashSet<>();
+    // Flushes posted through the scheduler and not yet cancelled
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private ReadStateBuffer buffer;
+
+    @Before
+    public void setUp() {
+        FirebaseMocks.stubChildReads(mockRootRef,
+                path -> existingPaths.contains(path) || summaryPaths.contains(path), summaryPaths::contains);
+        when(mockRootRef.updateChildren(anyMap())).thenAnswer(invocation -> {
+            writes.add(new HashMap<>(invocation.getArgument(0)));
+            return FirebaseMocks.completedTask(!failingWrites.contains(writes.size() - 1));
+        });
+        buffer = new ReadStateBuffer(mockRootRef, new ReadStateBuffer.Scheduler() {
+            @Override
+            public void postDelayed(Runnable task, long delayMs) {
+                scheduled.add(task);
+            }
+
+            @Override
+            public void cancel(Runnable task) {
+                scheduled.remove(task);
+            }
+        });
+    }
+
+    private void addMessage(String messageId, boolean withSummary) {
+        existingPaths.add("messages/" + messageId + "/recipientId");
+        String entryPath = IndexBuckets.entryPath(OWNER_ID, DatabaseHelper.USER_RECEIVED_NODE, messageId);
+        (withSummary ? summaryPaths : existingPaths).add(entryPath);
+    }
+
+    @Test
+    public void testFlushWritesMessagesAndSummariesInOneUpdate() {
+        addMessage("m1", true);
+        addMessage("m2", false);
+
+        buffer.markRead("m1", OWNER_ID);
+        buffer.markRead("m2", OWNER_ID);
+        buffer.flush();
+
+        assertEquals(1, writes.size());
+        Map<String, Object> updates = writes.get(0);
+        assertEquals(true, updates.get("/messages/m1/read"));
+        assertEquals(true, updates.get("/messages/m2/read"));
+        String summaryPath = "/" + IndexBuckets.entryPath(OWNER_ID, DatabaseHelper.USER_RECEIVED_NODE, "m1") + "/read";
+        assertEquals(true, updates.get(summaryPath));
+        // The legacy boolean entry of m2 is left alone
+        assertEquals(3, updates.size());
+        assertEquals(0, buffer.getPendingCount());
+    }
+
+    @Test
+    public void testFlushSkipsDeletedMessages() {
+        addMessage("m1", false);
+
+        buffer.markRead("m1", OWNER_ID);
+        buffer.markRead("gone", OWNER_ID);
+        buffer.flush();
+
+        assertEquals(1, writes.size());
+        assertTrue(writes.get(0).containsKey("/messages/m1/read"));
+        for (String path : writes.get(0).keySet()) {
+            assertFalse("Deleted message must not be recreated: " + path, path.contains("gone"));
+        }
+    }
+
+    @Test
+    public void testFlushOfOnlyDeletedMessagesWritesNothing() {
+        buffer.markRead("gone", OWNER_ID);
+        buffer.flush();
+
+        assertTrue(writes.isEmpty());
+    }
+
+    @Test
+    public void testRejectedBatchIsRetriedPerMessage() {
+        addMessage("m1", true);
+        addMessage("m2", false);
+        failingWrites.add(0);
+
+        buffer.markRead("m1", OWNER_ID);
+        buffer.markRead("m2", OWNER_ID);
+        buffer.flush();
+
+        assertEquals(3, writes.size());
+        assertEquals(2, writes.get(1).size());
+        assertTrue(writes.get(1).containsKey("/messages/m1/read"));
+        assertEquals(1, writes.get(2).size());
+        assertTrue(writes.get(2).containsKey("/messages/m2/read"));
+    }
+
+    @Test
+    public void testQueuedFlagsAreFlushedByTheTimer() {
+        addMessage("m1", false);
+
+        buffer.markRead("m1", OWNER_ID);
+        assertTrue(writes.isEmpty());
+        assertEquals(1, scheduled.size());
+
+        scheduled.remove(0).run();
+
+        assertEquals(1, writes.size());
+        assertEquals(0, buffer.getPendingCount());
+    }
+
+    @Test
+    public void testExplicitFlushCancelsTheTimer() {
+        addMessage("m1", false);
+
+        buffer.markRead("m1", OWNER_ID);
+        buffer.flush();
+
+        assertTrue(scheduled.isEmpty());
+        assertEquals(1, writes.size());
+    }
+}
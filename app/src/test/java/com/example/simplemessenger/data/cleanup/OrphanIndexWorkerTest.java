@@ -0,0 +1,115 @@
+package com.example.SImpleMessenger.data.cleanup;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseException;
+import com.google.firebase.database.DatabaseReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class OrphanIndexWorkerTest {
+
+    private static final String OWNER_ID = "owner_1";
+    private static final String NODE = "received";
+
+    @Mock
+    private DatabaseReference mockRootRef;
+
+    @Mock
+    private DatabaseReference mockMessagesRef;
+
+    // Result of reading /messages/{id}, by id
+    private final Map<String, Task<DataSnapshot>> reads = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        when(mockRootRef.child("messages")).thenReturn(mockMessagesRef);
+        when(mockMessagesRef.child(anyString())).thenAnswer(invocation -> {
+            DatabaseReference messageRef = mock(DatabaseReference.class);
+            when(messageRef.get()).thenReturn(reads.get(invocation.<String>getArgument(0)));
+            return messageRef;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private void message(String messageId, boolean exists) {
+        DataSnapshot snapshot = mock(DataSnapshot.class);
+        when(snapshot.exists()).thenReturn(exists);
+        Task<DataSnapshot> task = mock(Task.class);
+        when(task.isSuccessful()).thenReturn(true);
+        when(task.getResult()).thenReturn(snapshot);
+        reads.put(messageId, task);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void failedRead(String messageId, String error) {
+        Task<DataSnapshot> task = mock(Task.class);
+        when(task.isSuccessful()).thenReturn(false);
+        when(task.getException()).thenReturn(new DatabaseException(error));
+        reads.put(messageId, task);
+    }
+
+    private static String entryPath(String messageId) {
+        return "/user-messages/" + OWNER_ID + "/" + NODE + "/" + messageId;
+    }
+
+    @Test
+    public void testOnlyMissingMessagesArePruned() throws Exception {
+        message("live", true);
+        message("deleted", false);
+
+        List<String> ids = Arrays.asList("live", "deleted");
+        Map<String, DataSnapshot> messages = OrphanIndexWorker.readMessages(mockRootRef, ids);
+        Map<String, Object> updates = new HashMap<>();
+        List<String> orphans = OrphanIndexWorker.removeOrphans(OWNER_ID, NODE, messages, updates);
+
+        assertEquals(2, messages.size());
+        assertEquals(Collections.singletonList("deleted"), orphans);
+        assertEquals(1, updates.size());
+        assertTrue(updates.containsKey(entryPath("deleted")));
+        assertNull(updates.get(entryPath("deleted")));
+    }
+
+    @Test
+    public void testMissingMessageIsPruned() throws Exception {
+        message("gone", false);
+
+        Map<String, Object> updates = new HashMap<>();
+        List<String> orphans = OrphanIndexWorker.removeOrphans(OWNER_ID, NODE,
+                OrphanIndexWorker.readMessages(mockRootRef, Collections.singletonList("gone")), updates);
+
+        assertEquals(Collections.singletonList("gone"), orphans);
+        assertTrue(updates.containsKey(entryPath("gone")));
+    }
+
+    @Test
+    public void testFailedReadsStopTheSweep() {
+        message("live", true);
+        failedRead("unknown", "Firebase Database error: Permission denied");
+
+        try {
+            OrphanIndexWorker.readMessages(mockRootRef, Arrays.asList("live", "unknown"));
+            fail("A failed read must not be taken for a deleted message");
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof DatabaseException);
+        } catch (Exception e) {
+            fail("Unexpected " + e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.SImpleMessenger.data.codec;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.function.Predicate;
+
+/**
+ * Stubs the DatabaseReference and Task calls the write paths make against the root reference
+ */
+public final class FirebaseMocks {
+
+    private FirebaseMocks() {}
+
+    /**
+     * Makes {@code rootRef.child(path)} return a reference whose single reads answer
+     * right away with a snapshot; whether it exists and has children is decided per path
+     */
+    public static void stubChildReads(DatabaseReference rootRef, Predicate<String> exists,
+                                      Predicate<String> hasChildren) {
+        when(rootRef.child(anyString())).thenAnswer(invocation -> {
+            String path = invocation.getArgument(0);
+            DatabaseReference ref = mock(DatabaseReference.class);
+            doAnswer(listenerInvocation -> {
+                DataSnapshot snapshot = mock(DataSnapshot.class);
+                when(snapshot.exists()).thenReturn(exists.test(path));
+                when(snapshot.hasChildren()).thenReturn(hasChildren.test(path));
+                ((ValueEventListener) listenerInvocation.getArgument(0)).onDataChange(snapshot);
+                return null;
+            }).when(ref).addListenerForSingleValueEvent(any(ValueEventListener.class));
+            return ref;
+        });
+    }
+
+    /**
+     * @return A task that has already succeeded or failed, calling listeners as they are added
+     */
+    @SuppressWarnings("unchecked")
+    public static Task<Void> completedTask(boolean success) {
+        Task<Void> task = mock(Task.class);
+        when(task.addOnSuccessListener(any())).thenAnswer(invocation -> {
+            if (success) {
+                ((OnSuccessListener<Void>) invocation.getArgument(0)).onSuccess(null);
+            }
+            return task;
+        });
+        when(task.addOnFailureListener(any())).thenAnswer(invocation -> {
+            if (!success) {
+                ((OnFailureListener) invocation.getArgument(0)).onFailure(new Exception("Write failed"));
+            }
+            return task;
+        });
+        return task;
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.SImpleMessenger.data.codec;
+
+import static org.junit.Assert.*;
+
+import com.example.SImpleMessenger.data.model.Message;
+import com.example.SImpleMessenger.data.model.MessageSummary;
+import com.google.firebase.database.ServerValue;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class MessageCodecTest {
+
+    private static Message newMessage(String content) {
+        Message message = new Message();
+        message.setId("m1");
+        message.setSenderId("alice");
+        message.setSenderEmail("alice@example.com");
+        message.setRecipientId("bob");
+        message.setRecipientEmail("bob@example.com");
+        message.setSubject("Hello");
+        message.setContent(content);
+        message.setTimestamp(1700000000000L);
+        message.setRead(true);
+        message.setArchived(false);
+        message.setNote(false);
+        message.setPreviousMessageId("m0");
+        message.setCategory("work");
+        return message;
+    }
+
+    @Test
+    public void testHeaderRoundTripKeepsFieldsAndFlagsHeaderOnly() {
+        Message original = newMessage("Short body");
+        original.setReminderTime(1700000500000L);
+
+        Message decoded = MessageCodec.decode(Snapshots.of("m1", MessageCodec.encode(original)));
+
+        assertNotNull(decoded);
+        assertEquals("m1", decoded.getId());
+        assertEquals("alice", decoded.getSenderId());
+        assertEquals("alice@example.com", decoded.getSenderEmail());
+        assertEquals("bob", decoded.getRecipientId());
+        assertEquals("bob@example.com", decoded.getRecipientEmail());
+        assertEquals("Hello", decoded.getSubject());
+        assertEquals(1700000000000L, decoded.getTimestamp());
+        assertTrue(decoded.isRead());
+        assertTrue(decoded.isHasReminder());
+        assertEquals(1700000500000L, decoded.getReminderTime());
+        assertFalse(decoded.isArchived());
+        assertFalse(decoded.isNote());
+        assertEquals("m0", decoded.getPreviousMessageId());
+        assertEquals("work", decoded.getCategory());
+        // The header carries a preview only; the body lives in /message-bodies
+        assertTrue(decoded.isHeaderOnly());
+        assertEquals("Short body", decoded.getContent());
+    }
+
+    @Test
+    public void testLongContentIsCutToPreviewAndBodyRoundTrips() {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            content.append("line ").append(i).append('\n');
+        }
+        Message original = newMessage(content.toString());
+
+        Map<String, Object> header = MessageCodec.encode(original);
+        assertFalse(header.containsKey("content"));
+
+        Message decoded = MessageCodec.decode(Snapshots.of("m1", header));
+        assertTrue(decoded.isHeaderOnly());
+        assertEquals(MessageSummary.makePreview(content.toString()), decoded.getContent());
+        assertEquals(MessageSummary.PREVIEW_LENGTH, decoded.getContent().length());
+
+        String body = MessageCodec.decodeBody(Snapshots.of("m1", MessageCodec.encodeBody(original)));
+        assertEquals(content.toString(), body);
+    }
+
+    @Test
+    public void testLegacyInlineContentIsAFullMessage() {
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("senderId", "alice");
+        legacy.put("recipientId", "bob");
+        legacy.put("content", "Full body written before the split");
+        legacy.put("timestamp", 1600000000000L);
+        legacy.put("read", false);
+        legacy.put("id", "ignored");
+        legacy.put("someRetiredField", "ignored too");
+
+        Message decoded = MessageCodec.decode(Snapshots.of("legacy", legacy));
+
+        assertEquals("legacy", decoded.getId());
+        assertFalse(decoded.isHeaderOnly());
+        assertEquals("Full body written before the split", decoded.getContent());
+        assertFalse(decoded.isHasReminder());
+    }
+
+    @Test
+    public void testContentWinsOverPreviewWhenBothArePresent() {
+        Map<String, Object> header = new HashMap<>();
+        header.put("senderId", "alice");
+        header.put("preview", "preview");
+        header.put("content", "inline body");
+
+        Message decoded = MessageCodec.decode(Snapshots.of("m1", header));
+
+        assertFalse(decoded.isHeaderOnly());
+        assertEquals("inline body", decoded.getContent());
+    }
+
+    @Test
+    public void testTimestampShapes() {
+        assertEquals(42L, decodeTimestamp(42L));
+        // Values written by other clients may come back as doubles or strings
+        assertEquals(42L, decodeTimestamp(42.0));
+        assertEquals(42L, decodeTimestamp("42"));
+        assertEquals(0L, decodeTimestamp("not a number"));
+
+        // An unresolved ServerValue.TIMESTAMP from a pending local write reads as now
+        long before = System.currentTimeMillis();
+        long resolved = decodeTimestamp(new HashMap<>(ServerValue.TIMESTAMP));
+        assertTrue(resolved >= before && resolved <= System.currentTimeMillis());
+    }
+
+    private static long decodeTimestamp(Object value) {
+        Map<String, Object> header = new HashMap<>();
+        header.put("senderId", "alice");
+        header.put("timestamp", value);
+        return MessageCodec.decode(Snapshots.of("m1", header)).getTimestamp();
+    }
+
+    @Test
+    public void testReminderTimeImpliesReminderUnlessFlaggedOff() {
+        Map<String, Object> header = new HashMap<>();
+        header.put("senderId", "alice");
+        header.put("reminderTime", 5000L);
+        Message implied = MessageCodec.decode(Snapshots.of("m1", header));
+        assertTrue(implied.isHasReminder());
+        assertEquals(5000L, implied.getReminderTime());
+
+        header.put("hasReminder", false);
+        Message flaggedOff = MessageCodec.decode(Snapshots.of("m1", header));
+        assertFalse(flaggedOff.isHasReminder());
+    }
+
+    @Test
+    public void testEncodeUsesServerTimestampsAndOmitsUnsetFields() {
+        Message message = new Message();
+        message.setSenderId("alice");
+        message.setContent("hi");
+
+        Map<String, Object> header = MessageCodec.encode(message);
+
+        assertEquals(ServerValue.TIMESTAMP, header.get("timestamp"));
+        assertFalse(header.containsKey("reminderTime"));
+        assertFalse(header.containsKey("previousMessageId"));
+        assertFalse(header.containsKey("category"));
+
+        message.setHasReminder(true);
+        assertEquals(ServerValue.TIMESTAMP, MessageCodec.encode(message).get("reminderTime"));
+    }
+
+    @Test
+    public void testEmptyAndMissingNodesDecodeToNull() {
+        assertNull(MessageCodec.decode(null));
+        assertNull(MessageCodec.decode(Snapshots.of("gone", null)));
+        assertNull(MessageCodec.decodeBody(Snapshots.of("gone", null)));
+    }
+
+    @Test
+    public void testSummaryRoundTripAndLegacyBooleanEntry() {
+        Message message = newMessage("Body");
+        MessageSummary summary = MessageSummary.fromMessage(message, true);
+
+        MessageSummary decoded = MessageSummaryCodec.decode(Snapshots.of("m1", summary.toMap()));
+
+        assertEquals("alice", decoded.getCounterpartId());
+        assertEquals("alice@example.com", decoded.getCounterpartEmail());
+        assertEquals("Hello", decoded.getSubject());
+        assertEquals("Body", decoded.getPreview());
+        assertEquals(1700000000000L, decoded.getTimestamp());
+        assertTrue(decoded.isRead());
+        assertEquals("work", decoded.getCategory());
+
+        // Entries written before summaries are a plain true
+        assertNull(MessageSummaryCodec.decode(Snapshots.of("m1", true)));
+        assertNull(MessageSummary.fromSnapshot(Snapshots.of("m1", true)));
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.SImpleMessenger.data.codec;
+
+import static org.junit.Assert.*;
+
+import com.example.SImpleMessenger.data.model.Category;
+import com.example.SImpleMessenger.data.model.Contact;
+import com.example.SImpleMessenger.data.model.User;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ModelCodecTest {
+
+    @Test
+    public void testContactRoundTrip() {
+        Contact original = new Contact("owner", "c1", "bob", "bob@example.com");
+        original.setDisplayName("Bobby");
+        original.setCustomName(true);
+        original.setTimestamp(1234L);
+
+        Contact decoded = ContactCodec.decode(Snapshots.of("key1", ContactCodec.encode(original)));
+
+        assertEquals("key1", decoded.getId());
+        assertEquals("owner", decoded.getUserId());
+        assertEquals("c1", decoded.getContactId());
+        assertEquals("bob", decoded.getUserName());
+        assertEquals("Bobby", decoded.getDisplayName());
+        assertEquals("bob@example.com", decoded.getEmailAddress());
+        assertEquals(1234L, decoded.getTimestamp());
+        assertTrue(decoded.isCustomName());
+    }
+
+    @Test
+    public void testLegacyContactWithoutUserNameFallsBackToDisplayName() {
+        Map<String, Object> legacy = new HashMap<>();
+        legacy.put("contactId", "c1");
+        legacy.put("displayName", "Only a display name");
+        legacy.put("emailAddress", "c1@example.com");
+
+        Contact decoded = ContactCodec.decode(Snapshots.of("key1", legacy));
+
+        assertEquals("Only a display name", decoded.getUserName());
+        assertEquals(0L, decoded.getTimestamp());
+        assertFalse(decoded.isCustomName());
+        assertNull(ContactCodec.decode(Snapshots.of("key1", null)));
+    }
+
+    @Test
+    public void testTombstoneDecodesToNothing() {
+        Map<String, Object> tombstone = new HashMap<>();
+        tombstone.put(ContactCodec.DELETED, true);
+        tombstone.put("timestamp", 99L);
+
+        assertTrue(ContactCodec.isDeleted(Snapshots.of("key1", tombstone)));
+        assertNull(ContactCodec.decode(Snapshots.of("key1", tombstone)));
+        assertEquals(99L, ContactCodec.timestampOf(Snapshots.of("key1", tombstone)));
+        assertFalse(ContactCodec.isDeleted(Snapshots.of("key1",
+                ContactCodec.encode(new Contact("owner", "c1", "bob", "bob@example.com")))));
+    }
+
+    @Test
+    public void testUserRoundTripAndBeanNamedOnlineFlag() {
+        User original = new User("u1", "u1@example.com", "User One");
+        original.setOnline(true);
+        original.setLastSeen(10L);
+        original.setCreatedAt(5L);
+
+        User decoded = UserCodec.decode(Snapshots.of("u1", UserCodec.encode(original)));
+
+        assertEquals("u1", decoded.getUid());
+        assertEquals("u1@example.com", decoded.getEmail());
+        assertEquals("User One", decoded.getDisplayName());
+        assertTrue(decoded.isOnline());
+        assertEquals(10L, decoded.getLastSeen());
+        assertEquals(5L, decoded.getCreatedAt());
+
+        // Profiles saved with setValue(user) use the bean property name
+        Map<String, Object> beanShape = new HashMap<>();
+        beanShape.put("uid", "u2");
+        beanShape.put("online", true);
+        assertTrue(UserCodec.decode(Snapshots.of("u2", beanShape)).isOnline());
+    }
+
+    @Test
+    public void testCategoryRoundTrip() {
+        Category decoded = CategoryCodec.decode(Snapshots.of("0", CategoryCodec.encode(new Category("id1", "Work"))));
+
+        assertEquals("id1", decoded.getId());
+        assertEquals("Work", decoded.getName());
+        assertNull(CategoryCodec.decode(Snapshots.of("0", null)));
+    }
+}
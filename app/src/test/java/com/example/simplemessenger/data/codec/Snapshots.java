@@ -0,0 +1,49 @@
+package com.example.SImpleMessenger.data.codec;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds DataSnapshot mocks shaped like the ones Firebase hands out for a raw value
+ */
+final class Snapshots {
+
+    private Snapshots() {}
+
+    /**
+     * @param value A String, Number, Boolean, nested Map or null, as stored in the database
+     */
+    static DataSnapshot of(String key, Object value) {
+        DataSnapshot snapshot = mock(DataSnapshot.class);
+        when(snapshot.getKey()).thenReturn(key);
+        when(snapshot.getValue()).thenReturn(value);
+        when(snapshot.exists()).thenReturn(value != null);
+
+        Map<String, DataSnapshot> children = new HashMap<>();
+        if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                String childKey = (String) entry.getKey();
+                children.put(childKey, of(childKey, entry.getValue()));
+            }
+        }
+        List<DataSnapshot> childList = new ArrayList<>(children.values());
+        when(snapshot.hasChildren()).thenReturn(!childList.isEmpty());
+        when(snapshot.getChildrenCount()).thenReturn((long) childList.size());
+        when(snapshot.getChildren()).thenReturn(childList);
+        when(snapshot.hasChild(anyString())).thenAnswer(invocation -> children.containsKey(invocation.getArgument(0)));
+        when(snapshot.child(anyString())).thenAnswer(invocation -> {
+            String path = invocation.getArgument(0);
+            DataSnapshot child = children.get(path);
+            return child != null ? child : of(path, null);
+        });
+        return snapshot;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.SImpleMessenger.data.local;
+
+import static org.junit.Assert.*;
+
+import com.example.SImpleMessenger.data.model.Contact;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+public class ContactsSnapshotStoreTest {
+
+    @Test
+    public void testRoundTripsContactsAndWatermark() throws Exception {
+        Contact alice = new Contact("owner", "c1", "alice", "alice@example.com");
+        alice.setId("key1");
+        alice.setDisplayName("Alice");
+        alice.setCustomName(true);
+        alice.setTimestamp(1234L);
+        Contact bob = new Contact();
+        bob.setContactId("c2");
+        bob.setEmailAddress("bob@example.com");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ContactsSnapshotStore.write(new ContactsSnapshotStore.Stored("owner", 1234L, 99L,
+                Arrays.asList(alice, bob)), out);
+        ContactsSnapshotStore.Stored stored =
+                ContactsSnapshotStore.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals("owner", stored.ownerId);
+        assertEquals(1234L, stored.watermark);
+        assertEquals(99L, stored.lastFullSyncAt);
+        assertEquals(2, stored.contacts.size());
+        Contact readAlice = stored.contacts.get(0);
+        assertEquals("key1", readAlice.getId());
+        assertEquals("c1", readAlice.getContactId());
+        assertEquals("owner", readAlice.getUserId());
+        assertEquals("Alice", readAlice.getDisplayName());
+        assertEquals("alice@example.com", readAlice.getEmailAddress());
+        assertEquals(1234L, readAlice.getTimestamp());
+        assertTrue(readAlice.isCustomName());
+        assertNull(stored.contacts.get(1).getId());
+    }
+}
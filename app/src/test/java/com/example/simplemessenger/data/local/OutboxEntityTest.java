@@ -0,0 +1,51 @@
+package com.example.SImpleMessenger.data.local;
+
+import static org.junit.Assert.*;
+
+import com.example.SImpleMessenger.data.model.Message;
+
+import org.junit.Test;
+
+public class OutboxEntityTest {
+
+    @Test
+    public void testMessageSurvivesRoundTrip() {
+        Message message = new Message();
+        message.setId("m1");
+        message.setSenderId("alice");
+        message.setRecipientId("bob");
+        message.setRecipientEmail("bob@example.com");
+        message.setSubject("Lunch");
+        message.setContent("Noon?");
+        message.setTimestamp(1234L);
+        message.setCategory("work");
+
+        OutboxEntity entry = OutboxEntity.fromMessage("alice", message);
+        Message restored = entry.toMessage();
+
+        assertEquals("m1", entry.messageId);
+        assertEquals("alice", entry.ownerId);
+        assertEquals("m1", restored.getId());
+        assertEquals("bob", restored.getRecipientId());
+        assertEquals("bob@example.com", restored.getRecipientEmail());
+        assertEquals("Lunch", restored.getSubject());
+        assertEquals("Noon?", restored.getContent());
+        assertEquals(1234L, restored.getTimestamp());
+        assertEquals("work", restored.getCategory());
+        assertFalse(restored.isNote());
+    }
+
+    @Test
+    public void testNewEntryIsPending() {
+        Message note = new Message();
+        note.setId("n1");
+        note.setIsNote(true);
+
+        OutboxEntity entry = OutboxEntity.fromMessage("alice", note);
+
+        assertEquals(OutboxEntity.STATUS_PENDING, entry.status);
+        assertEquals(0, entry.attempts);
+        assertFalse(entry.isFailed());
+        assertTrue(entry.toMessage().isNote());
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.SImpleMessenger.data.search;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+public class FrecencyIndexTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    @Test
+    public void testScoresHalveEveryHalfLife() {
+        FrecencyIndex index = new FrecencyIndex();
+        index.record("alice@example.com", NOW);
+        index.record("alice@example.com", NOW);
+
+        double score = index.scores(NOW + FrecencyIndex.HALF_LIFE_MS).get("alice@example.com");
+        assertEquals(1.0, score, 1e-9);
+    }
+
+    @Test
+    public void testRecentSendsOutrankOldFrequentOnes() {
+        FrecencyIndex index = new FrecencyIndex();
+        long old = NOW - 5 * FrecencyIndex.HALF_LIFE_MS;
+        for (int i = 0; i < 10; i++) {
+            index.record("old@example.com", old);
+        }
+        index.record(" New@Example.com ", NOW);
+
+        Map<String, Double> scores = index.scores(NOW);
+        assertTrue(scores.get("new@example.com") > scores.get("old@example.com"));
+    }
+
+    @Test
+    public void testEvictsLowestScoreWhenFull() {
+        FrecencyIndex index = new FrecencyIndex();
+        index.record("oldest@example.com", NOW - FrecencyIndex.HALF_LIFE_MS);
+        for (int i = 0; i < FrecencyIndex.MAX_ENTRIES; i++) {
+            index.record("user" + i + "@example.com", NOW);
+        }
+
+        assertEquals(FrecencyIndex.MAX_ENTRIES, index.size());
+        assertFalse(index.scores(NOW).containsKey("oldest@example.com"));
+    }
+
+    @Test
+    public void testEncodeRoundTrips() {
+        FrecencyIndex index = new FrecencyIndex();
+        index.record("alice@example.com", NOW);
+        index.record("bob@example.com", NOW - 1000);
+
+        FrecencyIndex decoded = FrecencyIndex.decode(index.encode() + "garbage\n");
+
+        assertEquals(index.scores(NOW), decoded.scores(NOW));
+    }
+}
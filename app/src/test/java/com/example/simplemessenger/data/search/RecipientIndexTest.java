@@ -0,0 +1,60 @@
+package com.example.SImpleMessenger.data.search;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+public class RecipientIndexTest {
+
+    private RecipientIndex index;
+
+    @Before
+    public void setUp() {
+        index = new RecipientIndex();
+        index.put("c1", "alice.smith@example.com", "Alice Smith");
+        index.put("c2", "bob@example.com", "Bob Jones");
+        index.put("c3", "carol@smithfield.org", "Carol");
+    }
+
+    @Test
+    public void testEmailPrefixRanksAboveTokenAndSubstring() {
+        List<RecipientIndex.Suggestion> results = index.query("smith", 10, null);
+
+        assertEquals(2, results.size());
+        // "smith" starts a word of alice's address; it is only a substring of carol's domain
+        assertEquals("c1", results.get(0).contactId);
+        assertEquals("c3", results.get(1).contactId);
+    }
+
+    @Test
+    public void testMatchesDisplayNameWords() {
+        List<RecipientIndex.Suggestion> results = index.query("jon", 10, null);
+
+        assertEquals(1, results.size());
+        assertEquals("bob@example.com", results.get(0).email);
+    }
+
+    @Test
+    public void testQueriesLongerThanTrieDepthAreVerified() {
+        assertEquals(1, index.query("alice.smith@ex", 10, null).size());
+        assertTrue(index.query("alice.smith@nope", 10, null).isEmpty());
+    }
+
+    @Test
+    public void testLimitKeepsBestMatches() {
+        List<RecipientIndex.Suggestion> results = index.query("example", 1, null);
+
+        assertEquals(1, results.size());
+    }
+
+    @Test
+    public void testRemoveDropsContact() {
+        index.remove("c2");
+
+        assertTrue(index.query("bob", 10, null).isEmpty());
+        assertEquals(2, index.size());
+    }
+}